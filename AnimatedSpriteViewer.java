@@ -7,17 +7,20 @@ import java.awt.Image;
 import java.awt.Insets;
 import java.awt.MediaTracker;
 import java.awt.Toolkit;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
-import javax.imageio.ImageIO;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import javax.management.JMException;
 import javax.swing.*;
 import javax.swing.border.Border;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import sprite_renderer.AnimationState;
-import sprite_renderer.PoseList;
 import sprite_renderer.SceneRenderer;
 import sprite_renderer.Sprite;
 import sprite_renderer.SpriteType;
@@ -54,6 +57,46 @@ public class AnimatedSpriteViewer extends JFrame
     public static final String SPRITE_TYPE_SCHEMA_FILE = "sprite_type.xsd";
     public static final String SELECT_SPRITE_TYPE_TEXT = "Select Sprite Type";
     public static final String SELECT_ANIMATION_TEXT = "Select Animation State";
+    public static final int SPRITE_TYPES_VISIBLE_ROWS = 10;
+    
+    // FOR CONFIGURING HOW SPRITE TYPES ARE LOADED, THESE ARE SYSTEM
+    // PROPERTIES, e.g. java -Dasv.loader.threads=8 ...
+    public static final String LOADER_THREADS_PROPERTY = "asv.loader.threads";
+    public static final String LOADER_VIRTUAL_THREADS_PROPERTY = "asv.loader.virtualThreads";
+    public static final String LOADER_STREAMING_PROPERTY = "asv.loader.streaming";
+    public static final String SPRITE_PACK_PROPERTY = "asv.spritePack";
+    public static final String ATLAS_PROPERTY = "asv.loader.atlas";
+    public static final String COMPATIBLE_IMAGES_PROPERTY = "asv.loader.compatibleImages";
+    public static final String MEASURE_DRAW_COST_PROPERTY = "asv.loader.measureDrawCost";
+    public static final String DEDUPLICATE_IMAGES_PROPERTY = "asv.loader.dedupImages";
+    public static final String LAZY_LOADING_PROPERTY = "asv.loader.lazy";
+    public static final String CACHE_BYTES_PROPERTY = "asv.loader.cacheBytes";
+    public static final long DEFAULT_CACHE_BYTES = 256L * 1024 * 1024;
+    public static final String DISK_CACHE_PROPERTY = "asv.loader.diskCache";
+    public static final String DISK_CACHE_DIR_PROPERTY = "asv.loader.diskCacheDir";
+    public static final String DEFAULT_DISK_CACHE_DIR = "./data/frame_cache/";
+    public static final String DISK_CACHE_BYTES_PROPERTY = "asv.loader.diskCacheBytes";
+    public static final long DEFAULT_DISK_CACHE_BYTES = 512L * 1024 * 1024;
+    public static final String VALIDATION_MANIFEST_PROPERTY = "asv.loader.validationManifest";
+    public static final String VALIDATION_MANIFEST_FILE_PROPERTY = "asv.loader.validationManifestFile";
+    public static final String DEFAULT_VALIDATION_MANIFEST_FILE = "./data/validation_manifest.txt";
+    public static final String ASYNC_STARTUP_PROPERTY = "asv.startup.async";
+    public static final String PRIORITY_LOADING_PROPERTY = "asv.loader.priority";
+    public static final String PREFETCH_DISTANCE_PROPERTY = "asv.loader.prefetchDistance";
+    public static final String HOT_RELOAD_PROPERTY = "asv.hotReload";
+    public static final String HOT_RELOAD_DEBOUNCE_PROPERTY = "asv.hotReload.debounceMillis";
+    public static final String HUD_MILLIS_PER_TICK_PROPERTY = "asv.hud.millisPerTick";
+    public static final String THUMBNAILS_PROPERTY = "asv.thumbnails";
+    public static final String THUMBNAILS_DIR_PROPERTY = "asv.thumbnails.dir";
+    public static final String DEFAULT_THUMBNAILS_DIR = "./data/thumbnail_cache/";
+    public static final String THUMBNAIL_SIZE_PROPERTY = "asv.thumbnails.size";
+    public static final int DEFAULT_THUMBNAIL_SIZE = 32;
+    public static final String THUMBNAIL_THREADS_PROPERTY = "asv.thumbnails.threads";
+    
+    // FOR CROWD MODE
+    public static final int DEFAULT_CROWD_SIZE = 2000;
+    public static final int MAX_CROWD_SIZE = 100000;
+    public static final int CROWD_SIZE_STEP = 500;
  
     // WE'LL ONLY ACTUALLY HAVE ONE SPRITE AT A TIME IN HERE,
     // THE ONE THAT WE ARE CURRENTLY VIEWING
@@ -69,24 +112,51 @@ public class AnimatedSpriteViewer extends JFrame
     
     // THIS WILL DO OUR XML FILE LOADING FOR US
     private AnimatedSpriteXMLLoader xmlLoader;
+    
+    // AND THIS SETS IT UP AND LOADS WHOLE LIBRARIES WITH IT
+    private SpriteTypeLibraryLoader libraryLoader;
+    
+    // WHEN LOADING LAZILY, THIS LOADS SPRITE TYPES AS THEY'RE SELECTED
+    private SpriteTypeCache spriteTypeCache;
+    
+    // WHEN STARTING UP ASYNCHRONOUSLY, THIS LOADS SPRITE TYPES ONCE
+    // THE WINDOW IS UP, KEEPING TRACK OF HOW LONG EACH ONE TOOK
+    private SpriteTypeLoadWorker spriteTypeLoadWorker;
+    
+    // IF NOT NULL, THIS PICKS THE ORDER THE WORKER LOADS SPRITE TYPES IN
+    private SpriteTypeLoadScheduler spriteTypeLoadScheduler;
+    private HashMap<String, Long> spriteTypeLoadTimes;
+    private String spritePackFile;
+    
+    // WHEN HOT RELOADING, THIS RELOADS SPRITE TYPES AS THEIR FILES CHANGE
+    private SpriteTypeWatcher spriteTypeWatcher;
 
     // THE WEST WILL PROVIDE SPRITE TYPE AND ANIM STATE SELECTION CONTROLS
     private JPanel westOfSouthPanel;
 
-    // THIS WILL STORE A SELECTABLE LIST OF THE LOADED SPRITES
+    // THIS WILL STORE A SELECTABLE LIST OF THE LOADED SPRITES,
+    // WHICH THE USER CAN SEARCH
+    private JPanel spriteTypesListPanel;
+    private JTextField spriteTypesSearchField;
     private JScrollPane spriteTypesListJSP;
-    private JList spriteTypesList;
-    private DefaultListModel spriteTypesListModel;
+    private JList<String> spriteTypesList;
+    private SpriteTypeListModel spriteTypesListModel;
+    private SpriteTypeThumbnailCache spriteTypeThumbnailCache;
+    private JProgressBar spriteTypesProgressBar;
     
     // THIS WELL LET THE USER CHOOSE DIFFERENT ANIMATION STATES TO VIEW
-    private JComboBox spriteStateCombobox;
-    private DefaultComboBoxModel spriteStateComboBoxModel;
+    private JComboBox<Object> spriteStateCombobox;
+    private DefaultComboBoxModel<Object> spriteStateComboBoxModel;
     
     // THIS PANEL WILL ORGANIZE THE CENTER
     private JPanel southPanel;
     
     // THIS PANEL WILL RENDER OUR SPRITE
     private SceneRenderer sceneRenderingPanel;
+    
+    // AND THIS CAN DRAW A PERFORMANCE HUD OVER IT
+    private PerformanceHUD performanceHUD;
+    private JLayer<SceneRenderer> sceneRenderingLayer;
 
     // THIS TOOLBAR WILL ALLOW THE USER TO CONTROL ANIMATION
     private JPanel animationToolbar;
@@ -94,6 +164,32 @@ public class AnimatedSpriteViewer extends JFrame
     private JButton stopButton;
     private JButton speedUpButton;
     private JButton slowDownButton;
+    private JToggleButton hudButton;
+    
+    // THIS LETS THE USER SCRUB AND STEP THROUGH THE SELECTED ANIMATION
+    private PoseScrubber poseScrubber;
+    
+    // THESE CONTROL CROWD MODE, WHICH FILLS THE CENTER WITH THOUSANDS
+    // OF SPRITES INSTEAD OF THE ONE WE'RE VIEWING
+    private JPanel crowdToolbar;
+    private JToggleButton crowdButton;
+    private JSpinner crowdSizeSpinner;
+    private JCheckBox crowdSelectedOnlyBox;
+    private JLabel crowdStatusLabel;
+    private CrowdPanel crowdPanel;
+    private JScrollPane crowdScrollPane;
+    private SwingWorker<ArrayList<SpriteTypeFrames>, Void> crowdLoadWorker;
+    
+    // THE IMAGES AND POSES OF SPRITE TYPES THE CROWD HAD TO LOAD ITSELF,
+    // LEAST RECENTLY USED FIRST, AND THE IMAGE BYTES OF EACH. THEY'RE
+    // KEPT WITHIN THE SAME BUDGET THE SPRITE TYPE CACHE USES
+    private LinkedHashMap<String, SpriteTypeFrames> crowdFrames;
+    private HashMap<String, Long> crowdFrameBytes;
+    private long crowdBytes;
+    private long maxCrowdBytes;
+    
+    // THIS FILLS THE COMBO BOX WHEN A SPRITE TYPE IS SELECTED
+    private SpriteTypeSelectionListener spriteTypeSelectionListener;
     
     /**
      * The entire application will be initialized from here, including
@@ -105,6 +201,15 @@ public class AnimatedSpriteViewer extends JFrame
         initData();
         initGUI();
         initHandlers();
+        initAsyncLoading();
+        initHotReload();
+        initMetrics();
+        
+        // IF WE'RE STARTING UP ASYNCHRONOUSLY, NOW'S THE TIME TO LOAD
+        if (spriteTypeLoadWorker != null)
+        {
+            spriteTypeLoadWorker.execute();
+        }
     }
     
     /**
@@ -133,6 +238,8 @@ public class AnimatedSpriteViewer extends JFrame
         
         spriteTypes = new HashMap<String, SpriteType>();
         
+        spriteTypeLoadTimes = new HashMap<String, Long>();
+        
         // LOAD THE SPRITE TYPES FROM THE XML FILE
         try
         {
@@ -140,11 +247,44 @@ public class AnimatedSpriteViewer extends JFrame
             // OUR XML FILES
             xmlLoader = new AnimatedSpriteXMLLoader(this);
             
-            // FIRST UP IS THE SPRITE TYPES LIST
-            xmlLoader.loadSpriteTypeNames(SPRITES_DATA_PATH,
-                             SPRITE_TYPE_LIST_FILE, spriteTypeNames);
-            //load the sprite types into spriteTypes using spriteTypeNames
-            loadSpriteTypes(SPRITES_DATA_PATH, spriteTypeNames, spriteTypes);
+            // THE DECODER CHAIN AND EVERYTHING ELSE THE LOADER SETTINGS
+            // ASK FOR GET SET UP ON THE XML LOADER RIGHT HERE
+            libraryLoader = new SpriteTypeLibraryLoader(xmlLoader, System.getProperties());
+            
+            // IF THERE'S AN UP TO DATE SPRITE PACK WE DON'T NEED THE
+            // XML FILES AT ALL, OTHERWISE WE LOAD EVERYTHING FROM THEM
+            spritePackFile = System.getProperty(SPRITE_PACK_PROPERTY, SPRITES_DATA_PATH + SpritePackCompiler.DEFAULT_PACK_FILE);
+            if (Boolean.getBoolean(LAZY_LOADING_PROPERTY))
+            {
+                // WHEN LOADING LAZILY WE ONLY NEED THE NAMES FOR NOW, THE
+                // SPRITE TYPES THEMSELVES ARE LOADED AS THEY'RE SELECTED
+                xmlLoader.loadSpriteTypeNames(SPRITES_DATA_PATH,
+                                 SPRITE_TYPE_LIST_FILE, spriteTypeNames);
+                long cacheBytes = Long.getLong(CACHE_BYTES_PROPERTY, DEFAULT_CACHE_BYTES);
+                spriteTypeCache = new SpriteTypeCache(xmlLoader, SPRITES_DATA_PATH, spriteTypes, cacheBytes);
+            }
+            else if (Boolean.getBoolean(ASYNC_STARTUP_PROPERTY))
+            {
+                // NOTHING TO LOAD YET, WE'LL DO IT IN THE BACKGROUND
+                // ONCE THE GUI IS UP, SEE initAsyncLoading
+                if (Boolean.getBoolean(PRIORITY_LOADING_PROPERTY))
+                {
+                    // BUT IF THE USER CAN PICK WHAT'S LOADED FIRST, THEY
+                    // NEED TO SEE ALL THE NAMES RIGHT AWAY
+                    xmlLoader.loadSpriteTypeNames(SPRITES_DATA_PATH,
+                                     SPRITE_TYPE_LIST_FILE, spriteTypeNames);
+                    spriteTypeLoadScheduler = new SpriteTypeLoadScheduler(xmlLoader, SPRITES_DATA_PATH, spriteTypeNames,
+                            Integer.getInteger(LOADER_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                            Integer.getInteger(PREFETCH_DISTANCE_PROPERTY, SpriteTypeLoadScheduler.DEFAULT_PREFETCH_DISTANCE));
+                }
+            }
+            else if (!libraryLoader.loadSpriteTypePack(SPRITES_DATA_PATH, spritePackFile, spriteTypeNames, spriteTypes))
+            {
+                // FIRST UP IS THE SPRITE TYPES LIST, THEN THE SPRITE TYPES IN IT,
+                // HOW THE VALIDATION AND IMAGE PROCESSING WENT IS IN THE METRICS
+                libraryLoader.loadSpriteTypes(SPRITES_DATA_PATH, SPRITE_TYPE_LIST_FILE,
+                                 spriteTypeNames, spriteTypes);
+            }
         }
         catch(InvalidXMLFileFormatException ixffe)
         {
@@ -160,82 +300,17 @@ public class AnimatedSpriteViewer extends JFrame
     }
     
     /**
-     * loads the spriteTypes ArrayList parameter with the SpriteTypes
-     * in the XML files
-     * @param path 
-     * @param spriteTypeNames 
-     * @param spriteTypes 
-     * @throws InvalidXMLFileFormatException 
+     * This sizes the rows of the sprite type list to fit the longest
+     * sprite type name along with its load time. Giving the list a
+     * size for every row means it doesn't go through all of them to
+     * find out how big each one is.
      */
-    private void loadSpriteTypes( String path, ArrayList<String> spriteTypeNames,
-                                HashMap<String, SpriteType> spriteTypes) throws InvalidXMLFileFormatException
+    private void sizeSpriteTypesListRows()
     {
-        String xmlFile;
-        String xsdFile;
-        WhitespaceFreeXMLDoc cleanDoc;
-        WhitespaceFreeXMLNode width;
-        WhitespaceFreeXMLNode height;
-        ArrayList<WhitespaceFreeXMLNode> images;
-        ArrayList<WhitespaceFreeXMLNode> animationstates;
-        int id;
-        BufferedImage img = null;
-        
-        for (int i =0;i<spriteTypeNames.size();i++) {
-        // FIRST LET'S BUILD THE NAME OF THE XML FILE
-        xmlFile = ((path + spriteTypeNames.get(i)+'/'+ spriteTypeNames.get(i)).trim()) + ".xml";
-        
-        // NOW LET'S BUILD THE NAME OF THE SCHEMA
-        xsdFile = (path + SPRITE_TYPE_SCHEMA_FILE);
-        
-        // IS THE XML VALID PER THE SCHEMA?
-        cleanDoc = xmlLoader.loadXMLDocument(xmlFile, xsdFile);
-        
-        // IF THERE'S A PROBLEM LOADING THE XML FILE THEN
-        // SKIP THIS SPRITE TYPE
-        if (cleanDoc == null)
+        String prototype = spriteTypesListModel.getLongestName() + " (99999 ms)";
+        if (!prototype.equals(spriteTypesList.getPrototypeCellValue()))
         {
-            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
-        }
-        
-        // IT'S A VALID XML FILE SO LET'S GET THE DATA
-        WhitespaceFreeXMLNode spriteTypeListNode = cleanDoc.getRoot();
-        width = spriteTypeListNode.getChildOfType("width");
-        height = spriteTypeListNode.getChildOfType("height");
-        images = (spriteTypeListNode.getChildOfType("images_list")).getChildrenOfType("image_file");
-        animationstates = (spriteTypeListNode.getChildOfType("animations_list")).getChildrenOfType("animation_state");
-        
-        SpriteType spriteTypeFromXML = new SpriteType(Integer.parseInt(width.getData()), Integer.parseInt(height.getData()));
-        
-        //Add all the images to the new spriteType.
-        for (WhitespaceFreeXMLNode imageNode : images) {
-            id = Integer.parseInt(imageNode.getAttributeValue("id"));
-            
-            try {
-                String filename = (path + spriteTypeNames.get(i)).trim() +'/'+ imageNode.getAttributeValue("file_name");
-                img = ImageIO.read(new File(filename) );
-            } catch (IOException e) {
-            }
-            //Add the image with corresponding id to the new spriteType
-            spriteTypeFromXML.addImage(id, img); 
-        } 
-        
-        //Add all the animation states
-        for (WhitespaceFreeXMLNode state : animationstates) {
-            //Get the pose list
-            PoseList thePoseList = spriteTypeFromXML.addPoseList(AnimationState.valueOf(state.getChildOfType("state").getData()));
-            Iterator<WhitespaceFreeXMLNode> animationIterator = (state.getChildOfType("animation_sequence")).getChildren();
-            //Add the images to the pose list
-            while(animationIterator.hasNext())
-            {
-                WhitespaceFreeXMLNode poseNode = animationIterator.next();
-                String poseID = poseNode.getAttributeValue("image_id");
-                String poseDuration = poseNode.getAttributeValue("duration");
-                thePoseList.addPose(Integer.parseInt(poseID), Integer.parseInt(poseDuration));
-            } 
-        }
-
-        //Add the new SpriteType to the list
-        spriteTypes.put(spriteTypeNames.get(i), spriteTypeFromXML);
+            spriteTypesList.setPrototypeCellValue(prototype);
         }
     }
     
@@ -248,27 +323,81 @@ public class AnimatedSpriteViewer extends JFrame
         // NOTE THAT WE'VE ALREADY LOADED THE XML FILE
         // WITH ALL THE SPRITE TYPES, SO WE CAN USE
         // THEM HERE TO POPULATE THE JList
-        spriteTypesListModel = new DefaultListModel();
+        spriteTypesListModel = new SpriteTypeListModel();
         Iterator<String> spriteTypeNamesIt = spriteTypeNames.iterator();
         while (spriteTypeNamesIt.hasNext())
         {
             String spriteTypeName = spriteTypeNamesIt.next();
             spriteTypesListModel.addElement(spriteTypeName);
         }
-        spriteTypesList = new JList();
+        spriteTypesList = new JList<String>();
         spriteTypesList.setModel(spriteTypesListModel);
+        if (Boolean.getBoolean(THUMBNAILS_PROPERTY))
+        {
+            // KEPT OUT OF THE SPRITE TYPES DIRECTORY, LIKE THE FRAME CACHE
+            File thumbnailsDir = new File(System.getProperty(THUMBNAILS_DIR_PROPERTY, DEFAULT_THUMBNAILS_DIR));
+            try
+            {
+                spriteTypeThumbnailCache = new SpriteTypeThumbnailCache(SPRITES_DATA_PATH, thumbnailsDir,
+                        Integer.getInteger(THUMBNAIL_SIZE_PROPERTY, DEFAULT_THUMBNAIL_SIZE),
+                        Integer.getInteger(THUMBNAIL_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                        spriteTypesList);
+            }
+            catch (IOException ioe)
+            {
+                // THE NAMES WILL DO
+                System.err.println("Thumbnails disabled: " + ioe.getMessage());
+            }
+        }
+        spriteTypesList.setCellRenderer(new SpriteTypeListCellRenderer(spriteTypeLoadTimes, spriteTypeThumbnailCache));
+        
+        // EVERY ROW IS THE SIZE OF THE LONGEST NAME WITH A LOAD TIME, SO THE
+        // LIST ONLY HAS TO RENDER THE ROWS IT'S SHOWING, NOT EVERY ONE OF THEM
+        sizeSpriteTypesListRows();
+        spriteTypesListModel.addListDataListener(new ListDataListener()
+        {
+            @Override
+            public void intervalAdded(ListDataEvent e)
+            {
+                // NAMES ARRIVE ONE AT A TIME WHEN LOADING IN THE BACKGROUND
+                sizeSpriteTypesListRows();
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {}
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {}
+        });
+        spriteTypesList.setVisibleRowCount(SPRITE_TYPES_VISIBLE_ROWS);
         spriteTypesListJSP = new JScrollPane(spriteTypesList);
+        
+        // TYPING HERE NARROWS DOWN THE LIST
+        spriteTypesSearchField = new JTextField();
+        spriteTypesSearchField.setToolTipText("Search sprite types, start with "
+                + SpriteTypeListModel.PREFIX_SEARCH_MARKER + " to match the start of names");
+        spriteTypesListPanel = new JPanel();
+        spriteTypesListPanel.setLayout(new BorderLayout());
+        spriteTypesListPanel.add(spriteTypesSearchField, BorderLayout.NORTH);
+        spriteTypesListPanel.add(spriteTypesListJSP, BorderLayout.CENTER);
+        
+        // THIS ONLY SHOWS UP WHILE LOADING IN THE BACKGROUND
+        spriteTypesProgressBar = new JProgressBar();
+        spriteTypesProgressBar.setStringPainted(true);
+        spriteTypesProgressBar.setString("Loading sprite types");
+        spriteTypesProgressBar.setVisible(false);
               
         // OUR COMBO BOX STARTS OUT EMPTY
-        spriteStateComboBoxModel = new DefaultComboBoxModel();        
-        spriteStateCombobox = new JComboBox();
+        spriteStateComboBoxModel = new DefaultComboBoxModel<Object>();        
+        spriteStateCombobox = new JComboBox<Object>();
         spriteStateCombobox.setModel(spriteStateComboBoxModel);
         clearAnimationStatesComboBox();
 
         // NOW LET'S ARRANGE ALL OUR CONTROLS IN THE WEST
         westOfSouthPanel = new JPanel();
         westOfSouthPanel.setLayout(new BorderLayout());
-        westOfSouthPanel.add(spriteTypesList, BorderLayout.NORTH);
+        westOfSouthPanel.add(spriteTypesListPanel, BorderLayout.NORTH);
+        westOfSouthPanel.add(spriteTypesProgressBar, BorderLayout.CENTER);
         westOfSouthPanel.add(spriteStateCombobox, BorderLayout.SOUTH);
         
         // AND LET'S PUT A TITLED BORDER AROUND THE WEST OF THE SOUTH
@@ -287,19 +416,48 @@ public class AnimatedSpriteViewer extends JFrame
         try { mt.waitForAll(); }
         catch(InterruptedException ie)
         { ie.printStackTrace(); }
+        hudButton = new JToggleButton("HUD");
+        hudButton.setToolTipText("Show Performance HUD");
+        animationToolbar.add(hudButton);
+
+        // CROWD MODE GETS ITS OWN CONTROLS
+        crowdToolbar = new JPanel();
+        crowdButton = new JToggleButton("Crowd");
+        crowdButton.setToolTipText("Fill the scene with a crowd of sprites");
+        crowdSizeSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_CROWD_SIZE, 1, MAX_CROWD_SIZE, CROWD_SIZE_STEP));
+        crowdSizeSpinner.setToolTipText("Number of sprites in the crowd");
+        crowdSelectedOnlyBox = new JCheckBox("Selected type only");
+        crowdStatusLabel = new JLabel(" ");
+        crowdToolbar.add(crowdButton);
+        crowdToolbar.add(crowdSizeSpinner);
+        crowdToolbar.add(crowdSelectedOnlyBox);
+        crowdToolbar.add(crowdStatusLabel);
+        crowdPanel = new CrowdPanel(crowdStatusLabel);
+        crowdScrollPane = new JScrollPane(crowdPanel);
+        crowdFrames = new LinkedHashMap<String, SpriteTypeFrames>(16, 0.75f, true);
+        crowdFrameBytes = new HashMap<String, Long>();
+        crowdBytes = 0;
+        maxCrowdBytes = Long.getLong(CACHE_BYTES_PROPERTY, DEFAULT_CACHE_BYTES);
+
+        // THE SCRUBBER STARTS OUT WITH NOTHING TO SCRUB
+        poseScrubber = new PoseScrubber();
 
         // LET'S PUT OUR STUFF IN THE SOUTH
         southPanel = new JPanel();
         southPanel.add(westOfSouthPanel);
         southPanel.add(animationToolbar);
+        southPanel.add(poseScrubber);
+        southPanel.add(crowdToolbar);
         
         // AND OF COURSE OUR RENDERING PANEL
         sceneRenderingPanel = new SceneRenderer(spriteList);
         sceneRenderingPanel.setBackground(Color.white);
         sceneRenderingPanel.startScene();
+        performanceHUD = new PerformanceHUD(Integer.getInteger(HUD_MILLIS_PER_TICK_PROPERTY, CrowdPanel.FRAME_MILLIS));
+        sceneRenderingLayer = new JLayer<SceneRenderer>(sceneRenderingPanel, performanceHUD);
         
         // AND LET'S ARRANGE EVERYTHING IN THE FRAME
-        add(sceneRenderingPanel, BorderLayout.CENTER);
+        add(sceneRenderingLayer, BorderLayout.CENTER);
         add(southPanel, BorderLayout.SOUTH);
     }
 
@@ -360,14 +518,348 @@ public class AnimatedSpriteViewer extends JFrame
         startButton.addActionListener(sah);
         StopAnimationHandler stopah = new StopAnimationHandler(sceneRenderingPanel);
         stopButton.addActionListener(stopah);
-        SpriteTypeSelectionListener stsl = new SpriteTypeSelectionListener(spriteStateCombobox, spriteTypes, spriteList);
-        spriteTypesList.addListSelectionListener(stsl);
+        spriteTypeSelectionListener = new SpriteTypeSelectionListener(spriteStateCombobox, spriteTypes, spriteList,
+                spriteTypeCache, spriteTypeLoadScheduler);
+        spriteTypesList.addListSelectionListener(spriteTypeSelectionListener);
+        SpriteTypeSearchHandler stsh = new SpriteTypeSearchHandler(spriteTypesList, spriteTypesListModel);
+        spriteTypesSearchField.getDocument().addDocumentListener(stsh);
         AnimationStateSelectedListener assl = new AnimationStateSelectedListener(sceneRenderingPanel, spriteTypesList, spriteTypes, spriteList);
         spriteStateCombobox.addItemListener(assl);
+        AnimationFramesListener afl = new AnimationFramesListener(poseScrubber, performanceHUD, spriteTypesList, spriteTypes);
+        spriteStateCombobox.addItemListener(afl);
+        ToggleHUDHandler thh = new ToggleHUDHandler(performanceHUD);
+        hudButton.addActionListener(thh);
         SpeedUpAnimationHandler suah = new SpeedUpAnimationHandler(sceneRenderingPanel);
         speedUpButton.addActionListener(suah);
         SlowDownAnimationHandler sdah = new SlowDownAnimationHandler(sceneRenderingPanel);
         slowDownButton.addActionListener(sdah);
+        CrowdModeHandler cmh = new CrowdModeHandler(this, crowdButton, crowdSizeSpinner, crowdSelectedOnlyBox);
+        crowdButton.addActionListener(cmh);
+        crowdSelectedOnlyBox.addActionListener(cmh);
+        crowdSizeSpinner.addChangeListener(cmh);
+    }
+    
+    /**
+     * This method turns crowd mode on or off. When it's turned on, or
+     * changed while on, a new crowd is made, first loading the images
+     * and poses of any sprite types the crowd hasn't used before. This
+     * loading happens in the background, and the crowd shows up once
+     * it's done.
+     * 
+     * @param crowdMode true to show a crowd, false to go back to viewing
+     * a single sprite.
+     * 
+     * @param numSprites How many sprites to put in the crowd.
+     * 
+     * @param selectedTypeOnly If true, and a sprite type is selected, the
+     * crowd is made of that sprite type only, otherwise it's made of all
+     * the sprite types in the list.
+     */
+    public void setCrowdMode(boolean crowdMode, final int numSprites, boolean selectedTypeOnly)
+    {
+        // ANY CROWD STILL BEING LOADED IS NO LONGER WANTED
+        if (crowdLoadWorker != null)
+        {
+            crowdLoadWorker.cancel(true);
+            crowdLoadWorker = null;
+        }
+        
+        if (!crowdMode)
+        {
+            crowdPanel.stop();
+            crowdStatusLabel.setText(" ");
+            if (crowdScrollPane.getParent() != null)
+            {
+                remove(crowdScrollPane);
+                add(sceneRenderingLayer, BorderLayout.CENTER);
+                revalidate();
+                repaint();
+                if (!spriteList.isEmpty())
+                {
+                    sceneRenderingPanel.unpauseScene();
+                }
+            }
+            return;
+        }
+        
+        // FIGURE OUT WHICH SPRITE TYPES TO USE
+        final ArrayList<String> names = new ArrayList<String>();
+        if (selectedTypeOnly && (spriteTypesList.getSelectedValue() != null))
+        {
+            names.add(spriteTypesList.getSelectedValue().toString());
+        }
+        else
+        {
+            for (int i = 0; i < spriteTypesListModel.getNumSpriteTypes(); i++)
+            {
+                names.add(spriteTypesListModel.getSpriteTypeName(i));
+            }
+        }
+        final HashMap<String, SpriteTypeFrames> loadedFrames = new HashMap<String, SpriteTypeFrames>();
+        final HashMap<String, Long> newFrameBytes = new HashMap<String, Long>();
+        
+        // SPRITE TYPES WE'VE ALREADY LOADED DON'T NEED LOADING AGAIN,
+        // WHETHER THEY'RE LOADED FOR THE LIST OR FOR AN EARLIER CROWD
+        for (String name : names)
+        {
+            SpriteType type = spriteTypes.get(name);
+            if ((type != null) && (SpriteTypeFrames.getFrames(type) != null))
+            {
+                loadedFrames.put(name, SpriteTypeFrames.getFrames(type));
+            }
+            else if (crowdFrames.containsKey(name))
+            {
+                // THIS ALSO MAKES IT THE MOST RECENTLY USED
+                loadedFrames.put(name, crowdFrames.get(name));
+            }
+        }
+        crowdStatusLabel.setText("Loading crowd...");
+        
+        // AND LOAD WHAT WE DON'T HAVE YET
+        crowdLoadWorker = new SwingWorker<ArrayList<SpriteTypeFrames>, Void>()
+        {
+            @Override
+            protected ArrayList<SpriteTypeFrames> doInBackground() throws InvalidXMLFileFormatException
+            {
+                ArrayList<SpriteTypeFrames> frames = new ArrayList<SpriteTypeFrames>();
+                for (String name : names)
+                {
+                    if (isCancelled())
+                    {
+                        return null;
+                    }
+                    if (!loadedFrames.containsKey(name))
+                    {
+                        SpriteTypeBuilder builder = xmlLoader.createSpriteTypeBuilder(SPRITES_DATA_PATH, name);
+                        xmlLoader.readSpriteType(SPRITES_DATA_PATH, name, builder);
+                        loadedFrames.put(name, builder.getFrames());
+                        newFrameBytes.put(name, builder.getImageBytes());
+                    }
+                    frames.add(loadedFrames.get(name));
+                }
+                return frames;
+            }
+
+            @Override
+            protected void done()
+            {
+                if (isCancelled())
+                {
+                    return;
+                }
+                crowdLoadWorker = null;
+                try
+                {
+                    ArrayList<SpriteTypeFrames> frames = get();
+                    for (Map.Entry<String, Long> entry : newFrameBytes.entrySet())
+                    {
+                        keepCrowdFrames(entry.getKey(), loadedFrames.get(entry.getKey()), entry.getValue());
+                    }
+                    showCrowd(frames, numSprites);
+                }
+                catch (ExecutionException ee)
+                {
+                    crowdStatusLabel.setText(" ");
+                    crowdButton.setSelected(false);
+                    JOptionPane.showMessageDialog(AnimatedSpriteViewer.this, ee.getCause().toString());
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        crowdLoadWorker.execute();
+    }
+    
+    /**
+     * Keeps the frames the crowd had to load for a sprite type, so the
+     * next crowd doesn't have to load them again, then drops the least
+     * recently used ones until we're within budget. Just like in the
+     * sprite type cache, the most recently used one is always kept.
+     */
+    private void keepCrowdFrames(String spriteTypeName, SpriteTypeFrames frames, long imageBytes)
+    {
+        Long oldBytes = crowdFrameBytes.put(spriteTypeName, imageBytes);
+        if (oldBytes != null)
+        {
+            crowdBytes -= oldBytes;
+        }
+        crowdFrames.put(spriteTypeName, frames);
+        crowdBytes += imageBytes;
+        
+        Iterator<Map.Entry<String, SpriteTypeFrames>> it = crowdFrames.entrySet().iterator();
+        while ((crowdBytes > maxCrowdBytes) && (crowdFrames.size() > 1))
+        {
+            Map.Entry<String, SpriteTypeFrames> eldest = it.next();
+            crowdBytes -= crowdFrameBytes.remove(eldest.getKey());
+            it.remove();
+        }
+    }
+    
+    /**
+     * Puts the crowd where the scene renderer was, if it's not already
+     * there, and fills it with a new crowd.
+     */
+    private void showCrowd(ArrayList<SpriteTypeFrames> frames, int numSprites)
+    {
+        if (crowdScrollPane.getParent() == null)
+        {
+            sceneRenderingPanel.pauseScene();
+            remove(sceneRenderingLayer);
+            add(crowdScrollPane, BorderLayout.CENTER);
+            validate();
+        }
+        crowdPanel.populate(frames, numSprites, crowdScrollPane.getViewport().getExtentSize(), System.nanoTime());
+        crowdPanel.start();
+    }
+    
+    /**
+     * If we're starting up asynchronously, this sets up the worker that
+     * loads all the sprite types in the background, adding each one to
+     * the list as soon as it's loaded.
+     */
+    private void initAsyncLoading()
+    {
+        if (Boolean.getBoolean(ASYNC_STARTUP_PROPERTY) && (spriteTypeCache == null))
+        {
+            spriteTypesProgressBar.setVisible(true);
+            spriteTypeLoadWorker = new SpriteTypeLoadWorker(libraryLoader, SPRITES_DATA_PATH, spritePackFile,
+                    spriteTypeLoadScheduler, spriteTypes, spriteTypesListModel, spriteTypeLoadTimes,
+                    spriteTypesProgressBar, this, new SpriteTypeLoadListener()
+            {
+                @Override
+                public void spriteTypeLoaded(String spriteTypeName, SpriteType spriteType)
+                {
+                    // ITS LOAD TIME IS IN THE LIST NOW, AND IT MAY
+                    // BE THE ONE THE USER IS WAITING FOR
+                    spriteTypesList.repaint();
+                    spriteTypeSelectionListener.spriteTypeLoaded(spriteTypeName);
+                }
+            });
+        }
+    }
+    
+    /**
+     * This makes our metrics visible through JMX, so anyone can see
+     * where loading and drawing time goes while the viewer is in use.
+     */
+    private void initMetrics()
+    {
+        ViewerMetrics metrics = ViewerMetrics.getMetrics();
+        metrics.setSpriteTypeCache(spriteTypeCache);
+        metrics.setSpriteTypeLoadScheduler(spriteTypeLoadScheduler);
+        metrics.setSpriteTypeLibraryLoader(libraryLoader);
+        try
+        {
+            metrics.register();
+        }
+        catch (JMException jme)
+        {
+            // THE VIEWER WORKS FINE WITHOUT THEM
+            System.err.println("Unable to register metrics: " + jme);
+        }
+    }
+
+    /**
+     * If hot reloading has been asked for, this starts watching the
+     * sprite type files so that any changes to them show up right away,
+     * without restarting the viewer.
+     */
+    private void initHotReload()
+    {
+        if (!Boolean.getBoolean(HOT_RELOAD_PROPERTY))
+        {
+            return;
+        }
+        long debounceMillis = Long.getLong(HOT_RELOAD_DEBOUNCE_PROPERTY, SpriteTypeWatcher.DEFAULT_DEBOUNCE_MILLIS);
+        spriteTypeWatcher = new SpriteTypeWatcher(xmlLoader, SPRITES_DATA_PATH, SPRITE_TYPE_LIST_FILE,
+                spriteTypes, spriteTypesListModel, spriteTypeLoadTimes, spriteTypeCache,
+                new SpriteTypeReloadListener()
+        {
+            @Override
+            public void spriteTypeReloaded(String spriteTypeName, SpriteType spriteType)
+            {
+                // ITS FIRST POSE MAY LOOK DIFFERENT NOW
+                if (spriteTypeThumbnailCache != null)
+                {
+                    spriteTypeThumbnailCache.forget(spriteTypeName);
+                }
+                rebindSpriteType(spriteTypeName, spriteType);
+            }
+
+            @Override
+            public void spriteTypeRemoved(String spriteTypeName)
+            {
+                // ITS IMAGES ARE GONE TOO
+                ViewerMetrics.getMetrics().recordSpriteTypeRemoved(spriteTypeName);
+                if (spriteTypeThumbnailCache != null)
+                {
+                    spriteTypeThumbnailCache.forget(spriteTypeName);
+                }
+                
+                // IF IT WAS THE ONE BEING VIEWED, THERE'S NOTHING TO VIEW
+                if (spriteTypesList.getSelectedValue() == null)
+                {
+                    spriteList.clear();
+                    clearAnimationStatesComboBox();
+                    spriteTypeSelectionListener.reset();
+                }
+            }
+        }, debounceMillis);
+        try
+        {
+            spriteTypeWatcher.start();
+        }
+        catch (IOException ioe)
+        {
+            // WE CAN STILL VIEW EVERYTHING, JUST NOT CHANGES TO IT
+            System.err.println("Unable to watch " + SPRITES_DATA_PATH + " for changes: " + ioe);
+            spriteTypeWatcher = null;
+        }
+    }
+
+    /**
+     * Called after a sprite type was reloaded. If it's the one being
+     * viewed, the combo box gets its new animation states, and the
+     * sprite is replaced by one of the new sprite type, in the same
+     * animation state if it still has it.
+     */
+    private void rebindSpriteType(String spriteTypeName, SpriteType spriteType)
+    {
+        // ITS LOAD TIME MAY HAVE CHANGED
+        spriteTypesList.repaint();
+        Object selected = spriteTypesList.getSelectedValue();
+        if ((selected == null) || !selected.toString().equals(spriteTypeName))
+        {
+            return;
+        }
+        
+        // FILL THE COMBO BOX WITH THE NEW ANIMATION STATES
+        Object selectedState = spriteStateComboBoxModel.getSelectedItem();
+        boolean stateStillThere = false;
+        spriteStateComboBoxModel.removeAllElements();
+        spriteStateComboBoxModel.addElement(SELECT_ANIMATION_TEXT);
+        Iterator<AnimationState> statesIt = spriteType.getAnimationStates();
+        while (statesIt.hasNext())
+        {
+            AnimationState state = statesIt.next();
+            spriteStateComboBoxModel.addElement(state);
+            if (state.equals(selectedState))
+            {
+                stateStillThere = true;
+            }
+        }
+        
+        // SELECTING THE STATE AGAIN MAKES A SPRITE OF THE NEW TYPE
+        if (stateStillThere)
+        {
+            spriteStateComboBoxModel.setSelectedItem(selectedState);
+        }
+        else
+        {
+            spriteList.clear();
+        }
     }
     
     /**
@@ -1,19 +1,21 @@
 package animated_sprite_viewer;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Iterator;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Source;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
 import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import sprite_renderer.AnimationState;
+import sprite_renderer.SpriteType;
 
 /**
  * The AnimatedSpriteXMLLoader class knows how to load and 
@@ -41,6 +43,22 @@ public class AnimatedSpriteXMLLoader
     // THE VIEW IS USED TO HELP WITH IMAGE LOADING
     private AnimatedSpriteViewer view;
     
+    // COMPILED SCHEMAS AND THEIR VALIDATORS, SHARED BY ALL OUR LOADING
+    private SchemaCache schemaCache;
+    
+    // FOR READING SPRITE TYPES WITHOUT BUILDING A TREE FIRST
+    private SpriteTypeStreamReader streamReader;
+    private boolean streamingEnabled;
+    
+    // THIS TURNS IMAGE FILES INTO FRAMES
+    private FrameDecoder frameDecoder;
+    
+    // IF NOT NULL, EACH SPRITE TYPE'S IMAGES GET PACKED INTO ATLASES
+    private TextureAtlasPacker atlasPacker;
+    
+    // IF NOT NULL, FILES THAT ALREADY PASSED AREN'T VALIDATED AGAIN
+    private ValidationManifest validationManifest;
+    
     // DON'T BURY IMPORTANT STRING CONSTANTS INSIDE METHODS
     public static final String SCHEMA_STANDARD_SPEC_URL = "http://www.w3.org/2001/XMLSchema";
     public static final String SPRITE_TYPE_LIST_NODE_NAME = "sprite_type_list";
@@ -68,6 +86,81 @@ public class AnimatedSpriteXMLLoader
     {
         // WE'LL NEED THIS LATER
         view = initView;
+        schemaCache = new SchemaCache();
+        streamReader = new SpriteTypeStreamReader();
+        streamingEnabled = false;
+        frameDecoder = new ImageIOFrameDecoder();
+        atlasPacker = null;
+        validationManifest = null;
+    }
+
+    /**
+     * Accessor method for getting the cache of compiled schemas, which
+     * is useful for checking its hit and miss counts.
+     * 
+     * @return The schema cache used for all validation by this loader.
+     */
+    public SchemaCache getSchemaCache() { return schemaCache; }
+
+    /**
+     * Mutator method for choosing how sprite type xml files are read.
+     * 
+     * @param initStreamingEnabled If true, sprite types are read as a
+     * stream of events rather than being loaded into a tree first, which
+     * uses far less memory for sprite types with lots of poses.
+     */
+    public void setStreamingEnabled(boolean initStreamingEnabled)
+    {
+        streamingEnabled = initStreamingEnabled;
+    }
+
+    /**
+     * Accessor method for getting the decoder used for sprite type images.
+     * 
+     * @return The decoder every builder made by this loader will use.
+     */
+    public FrameDecoder getFrameDecoder() { return frameDecoder; }
+
+    /**
+     * Mutator method for changing how sprite type images are decoded.
+     * 
+     * @param initFrameDecoder Decoder used for sprite types loaded from now on.
+     */
+    public void setFrameDecoder(FrameDecoder initFrameDecoder)
+    {
+        frameDecoder = initFrameDecoder;
+    }
+
+    /**
+     * Mutator method for turning on atlas packing of sprite type images.
+     * 
+     * @param initAtlasPacker Packer used for each sprite type loaded from
+     * now on, or null to keep each image on its own.
+     */
+    public void setAtlasPacker(TextureAtlasPacker initAtlasPacker)
+    {
+        atlasPacker = initAtlasPacker;
+    }
+
+    /**
+     * Accessor method for getting the record of files that already
+     * passed validation.
+     * 
+     * @return The manifest used by this loader, or null if every file
+     * is always validated.
+     */
+    public ValidationManifest getValidationManifest() { return validationManifest; }
+
+    /**
+     * Mutator method for letting files skip validation when they, and
+     * the schema they passed, haven't changed since they last passed.
+     * 
+     * @param initValidationManifest Manifest to check and record files
+     * in, or null to always validate every file.
+     */
+    public void setValidationManifest(ValidationManifest initValidationManifest)
+    {
+        validationManifest = initValidationManifest;
     }
 
     /**
@@ -120,11 +213,208 @@ public class AnimatedSpriteXMLLoader
     }
            
     
+    /**
+     * This method loads a single sprite type, including all of its
+     * images and animation states, from its own xml file. Note that
+     * it touches no shared state, so it may be called for different
+     * sprite types from different threads at the same time.
+     * 
+     * @param path Path to the sprite types home directory.
+     * 
+     * @param spriteTypeName Name of the sprite type to load. Its xml
+     * file is expected at path/spriteTypeName/spriteTypeName.xml.
+     * 
+     * @return The fully loaded sprite type.
+     * 
+     * @throws InvalidXMLFileFormatException Thrown if the sprite type's
+     * xml file does not validate against the sprite type schema.
+     */
+    public SpriteType loadSpriteType(   String path,
+                                        String spriteTypeName)
+            throws InvalidXMLFileFormatException
+    {
+        SpriteTypeBuilder builder = createSpriteTypeBuilder(path, spriteTypeName);
+        readSpriteType(path, spriteTypeName, builder);
+        return builder.getSpriteType();
+    }
+
+    /**
+     * This method makes a builder set up for loading the named sprite
+     * type the way this loader has been configured to, which is handy
+     * when one needs more than just the sprite type out of the loading.
+     * 
+     * @param path Path to the sprite types home directory.
+     * 
+     * @param spriteTypeName Name of the sprite type the builder is for.
+     * 
+     * @return A builder ready to be passed to readSpriteType.
+     */
+    public SpriteTypeBuilder createSpriteTypeBuilder(String path, String spriteTypeName)
+    {
+        return new SpriteTypeBuilder((path + spriteTypeName).trim(), frameDecoder, atlasPacker);
+    }
+
+    /**
+     * This method validates a single sprite type's xml file and passes
+     * its contents on to the handler. If streaming has been turned on
+     * the file is read as a stream of events, otherwise it's first
+     * loaded into a WhitespaceFreeXMLDoc.
+     * 
+     * @param path Path to the sprite types home directory.
+     * 
+     * @param spriteTypeName Name of the sprite type to read.
+     * 
+     * @param handler Receives the contents of the sprite type.
+     * 
+     * @throws InvalidXMLFileFormatException Thrown if the sprite type's
+     * xml file does not validate against the sprite type schema.
+     */
+    public void readSpriteType( String path,
+                                String spriteTypeName,
+                                SpriteTypeHandler handler)
+            throws InvalidXMLFileFormatException
+    {
+        // KEEP TRACK OF HOW THIS GOES, THE BUILDER KNOWS ITS MEMORY
+        ViewerMetrics metrics = ViewerMetrics.getMetrics();
+        boolean loaded = false;
+        try
+        {
+            readSpriteTypeContents(path, spriteTypeName, handler);
+            loaded = true;
+        }
+        finally
+        {
+            if (!loaded)
+            {
+                metrics.recordSpriteTypeLoadFailed();
+            }
+            else if (handler instanceof SpriteTypeBuilder)
+            {
+                metrics.recordSpriteTypeLoaded(spriteTypeName, ((SpriteTypeBuilder)handler).getImageBytes());
+            }
+        }
+    }
+
+    /**
+     * Does the actual reading for readSpriteType.
+     */
+    private void readSpriteTypeContents(String path,
+                                        String spriteTypeName,
+                                        SpriteTypeHandler handler)
+            throws InvalidXMLFileFormatException
+    {
+        // FIRST LET'S BUILD THE NAME OF THE XML FILE
+        String xmlFile = ((path + spriteTypeName + '/' + spriteTypeName).trim()) + ".xml";
+        
+        // NOW LET'S BUILD THE NAME OF THE SCHEMA
+        String xsdFile = (path + AnimatedSpriteViewer.SPRITE_TYPE_SCHEMA_FILE);
+        
+        if (streamingEnabled)
+        {
+            streamSpriteType(xmlFile, xsdFile, handler);
+            return;
+        }
+        
+        // IS THE XML VALID PER THE SCHEMA? IT'S VALIDATED AS IT'S
+        // PARSED, SO THAT ALL COUNTS AS PARSING
+        long startTime = System.nanoTime();
+        WhitespaceFreeXMLDoc cleanDoc = loadXMLDocument(xmlFile, xsdFile);
+        ViewerMetrics.getMetrics().recordParsing(System.nanoTime() - startTime);
+        
+        // IF THERE'S A PROBLEM LOADING THE XML FILE THEN
+        // SKIP THIS SPRITE TYPE
+        if (cleanDoc == null)
+        {
+            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
+        }
+        
+        // IT'S A VALID XML FILE SO LET'S GET THE DATA
+        WhitespaceFreeXMLNode spriteTypeNode = cleanDoc.getRoot();
+        WhitespaceFreeXMLNode width = spriteTypeNode.getChildOfType(WIDTH_NODE_NAME);
+        WhitespaceFreeXMLNode height = spriteTypeNode.getChildOfType(HEIGHT_NODE_NAME);
+        WhitespaceFreeXMLNode imagesListNode = spriteTypeNode.getChildOfType(IMAGES_LIST_NODE_NAME);
+        WhitespaceFreeXMLNode animationsListNode = spriteTypeNode.getChildOfType(ANIMATIONS_LIST_NODE_NAME);
+        
+        handler.dimensions(Integer.parseInt(width.getData()), Integer.parseInt(height.getData()));
+        
+        // ALL THE IMAGES
+        int numImages = imagesListNode.getNumChildrenOfType(IMAGE_FILE_NODE_NAME);
+        for (int i = 0; i < numImages; i++)
+        {
+            WhitespaceFreeXMLNode imageNode = imagesListNode.getChildOfType(IMAGE_FILE_NODE_NAME, i);
+            int id = Integer.parseInt(imageNode.getAttributeValue(ID_ATTRIBUTE_NAME));
+            handler.imageFile(id, imageNode.getAttributeValue(FILE_NAME_ATTRIBUTE_NAME));
+        }
+        
+        // AND ALL THE ANIMATION STATES
+        int numStates = animationsListNode.getNumChildrenOfType(ANIMATION_STATE_NODE_NAME);
+        for (int i = 0; i < numStates; i++)
+        {
+            WhitespaceFreeXMLNode state = animationsListNode.getChildOfType(ANIMATION_STATE_NODE_NAME, i);
+            handler.startAnimationState(AnimationState.valueOf(state.getChildOfType(STATE_NODE_NAME).getData()));
+            Iterator<WhitespaceFreeXMLNode> animationIterator = (state.getChildOfType(ANIMATION_SEQUENCE_NODE_NAME)).getChildren();
+            while (animationIterator.hasNext())
+            {
+                WhitespaceFreeXMLNode poseNode = animationIterator.next();
+                String poseID = poseNode.getAttributeValue(IMAGE_ID_ATTRIBUTE_NAME);
+                String poseDuration = poseNode.getAttributeValue(DURATION_ATTRIBUTE_NAME);
+                handler.pose(Integer.parseInt(poseID), Integer.parseInt(poseDuration));
+            }
+            handler.endAnimationState();
+        }
+        handler.endSpriteType();
+    }
+
+    /**
+     * Validates the xmlFile and then streams its contents to the handler
+     * without building any tree of the document along the way. The file
+     * is only read once, and what's streamed is exactly what was
+     * validated.
+     */
+    private void streamSpriteType(String xmlFile, String xsdFile, SpriteTypeHandler handler)
+            throws InvalidXMLFileFormatException
+    {
+        ViewerMetrics metrics = ViewerMetrics.getMetrics();
+        long startTime = System.nanoTime();
+        byte[] contents;
+        try
+        {
+            contents = Files.readAllBytes(new File(xmlFile).toPath());
+        }
+        catch(IOException io)
+        {
+            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
+        }
+        if (!validateXMLContents(xmlFile, contents, xsdFile))
+        {
+            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
+        }
+        metrics.recordValidation(System.nanoTime() - startTime);
+        try
+        {
+            // IMAGES ARE DECODED AS THEY'RE STREAMED, WHICH ISN'T PARSING
+            long decodeNanos = (handler instanceof SpriteTypeBuilder) ? ((SpriteTypeBuilder)handler).getDecodeNanos() : 0;
+            startTime = System.nanoTime();
+            streamReader.read(new File(xmlFile).toURI().toString(), new ByteArrayInputStream(contents), handler);
+            long parseNanos = System.nanoTime() - startTime;
+            if (handler instanceof SpriteTypeBuilder)
+            {
+                parseNanos -= ((SpriteTypeBuilder)handler).getDecodeNanos() - decodeNanos;
+            }
+            metrics.recordParsing(parseNanos);
+        }
+        catch(XMLStreamException xse)
+        {
+            throw new InvalidXMLFileFormatException(xmlFile, xsdFile);
+        }
+    }
+    
     /**
      * This method reads in the xmlFile, validates it against the
      * schemaFile, and if valid, loads it into a WhitespaceFreeXMLDoc
      * and returns it, which helps because that's a much easier
-     * format for us to deal with.
+     * format for us to deal with. Note that validation happens while
+     * the file is being loaded, so it only gets read once.
      * 
      * @param xmlFile Path and name of xml file to load.
      * 
@@ -139,6 +429,64 @@ public class AnimatedSpriteXMLLoader
     public WhitespaceFreeXMLDoc loadXMLDocument(String xmlFile,
                                                 String schemaFile)
             throws InvalidXMLFileFormatException
+    {
+        try
+        {            
+            // LOAD IT STRAIGHT INTO A FORMAT WE LIKE, VALIDATING AS WE GO
+            WhitespaceFreeXMLDoc cleanDoc = new WhitespaceFreeXMLDoc();
+            if (validationManifest == null)
+            {
+                cleanDoc.loadDoc(xmlFile, schemaCache.getSchema(schemaFile));
+                return cleanDoc;
+            }
+            
+            // WE LOAD THE VERY BYTES WE CHECKED, SO THE FILE CAN'T
+            // CHANGE BETWEEN CHECKING IT AND LOADING IT
+            byte[] contents = Files.readAllBytes(new File(xmlFile).toPath());
+            InputSource source = new InputSource(new ByteArrayInputStream(contents));
+            source.setSystemId(new File(xmlFile).toURI().toString());
+            if (validationManifest.isValid(xmlFile, contents, schemaFile))
+            {
+                cleanDoc.loadDoc(source, null);
+            }
+            else
+            {
+                cleanDoc.loadDoc(source, schemaCache.getSchema(schemaFile));
+                validationManifest.recordValid(xmlFile, contents, schemaFile);
+            }
+            return cleanDoc;
+        }
+        // ANY PROBLEM HERE MEANS THE FILE IS NOT WELL FORMED, DOES
+        // NOT VALIDATE, OR IS NOT WHERE AND WHAT WE SAY IT IS
+        catch(SAXException se)
+        {
+            throw new InvalidXMLFileFormatException(xmlFile, schemaFile);
+        }
+        catch(IOException io)
+        {
+            throw new InvalidXMLFileFormatException(xmlFile, schemaFile);
+        }           
+    }
+
+    /**
+     * This method reads in the xmlFile, validates it against the
+     * schemaFile, and if valid, loads it into a WhitespaceFreeXMLDoc
+     * and returns it. Unlike loadXMLDocument, this reads the file twice,
+     * once to validate it and once to build a DOM, and then copies the
+     * DOM into the WhitespaceFreeXMLDoc.
+     * 
+     * @param xmlFile Path and name of xml file to load.
+     * 
+     * @param schemaFile Path and name of schema file to use for validation.
+     * 
+     * @return A WhitespaceFreeXMLDoc object fully loaded with the data found
+     * in the xmlFile, or null if it could not be parsed after validating.
+     * 
+     * @throws InvalidXMLFileFormatException Thrown if the xml file validation fails.
+     */
+    public WhitespaceFreeXMLDoc loadXMLDocumentViaDOM(  String xmlFile,
+                                                        String schemaFile)
+            throws InvalidXMLFileFormatException
     {
         // FIRST LET'S VALIDATE IT
         boolean validDoc = validateXMLDoc(xmlFile, schemaFile);
@@ -184,10 +532,10 @@ public class AnimatedSpriteXMLLoader
     /**
      * This method validates the xmlDocNameAndPath doc against the 
      * xmlSchemaNameAndPath schema and returns true if valid, false
-     * otherwise. Note that this is taken directly (with comments)
-     * from and example on the IBM site with only slight modifications.
+     * otherwise. Compiled schemas are cached, so validating many
+     * documents against the same schema only compiles it once.
      * 
-     * @see http://www.ibm.com/developerworks/xml/library/x-javaxmlvalidapi/index.html
+     * @see SchemaCache
      * 
      * @param xmlDocNameAndPath XML Doc to validate
      * 
@@ -200,24 +548,46 @@ public class AnimatedSpriteXMLLoader
     {
         try
         {
-            // 1. Lookup a factory for the W3C XML Schema language
-            SchemaFactory factory = 
-                    SchemaFactory.newInstance(SCHEMA_STANDARD_SPEC_URL);
+            // THE SCHEMA IS ONLY COMPILED THE FIRST TIME WE SEE IT,
+            // AFTER THAT THE CACHE HANDS US A POOLED VALIDATOR
+            if (validationManifest == null)
+            {
+                schemaCache.validate(xmlDocNameAndPath, xmlSchemaNameAndPath);
+                return true;
+            }
             
-            // 2. Compile the schema. 
-            // Here the schema is loaded from a java.io.File, but you could use 
-            // a java.net.URL or a javax.xml.transform.Source instead.
-            File schemaLocation = new File(xmlSchemaNameAndPath);
-            Schema schema = factory.newSchema(schemaLocation);
-            
-            // 3. Get a validator from the schema.
-            Validator validator = schema.newValidator();
-            
-            // 4. Parse the document you want to check.
-            Source source = new StreamSource(xmlDocNameAndPath);
-            
-            // 5. Check the document
-            validator.validate(source);
+            // UNLESS IT ALREADY PASSED AND NOTHING HAS CHANGED SINCE
+            byte[] contents = Files.readAllBytes(new File(xmlDocNameAndPath).toPath());
+            return validateXMLContents(xmlDocNameAndPath, contents, xmlSchemaNameAndPath);
+        }
+        catch (Exception e) 
+        {
+            return false;
+        }          
+    }
+
+    /**
+     * Validates the contents of an xml file we've already read, unless
+     * the validation manifest says these exact contents already passed.
+     */
+    private boolean validateXMLContents(String xmlFile,
+                                        byte[] contents,
+                                        String schemaFile)
+    {
+        try
+        {
+            if ((validationManifest != null)
+                    && validationManifest.isValid(xmlFile, contents, schemaFile))
+            {
+                return true;
+            }
+            schemaCache.validate(new StreamSource(new ByteArrayInputStream(contents),
+                                    new File(xmlFile).toURI().toString()),
+                                 schemaFile);
+            if (validationManifest != null)
+            {
+                validationManifest.recordValid(xmlFile, contents, schemaFile);
+            }
             return true;
         }
         catch (Exception e) 
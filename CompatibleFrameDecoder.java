@@ -0,0 +1,281 @@
+package animated_sprite_viewer;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+
+/**
+ * The CompatibleFrameDecoder class converts each frame, right after it
+ * is decoded, into the image format the screen can draw fastest. Images
+ * straight out of a PNG decoder are often paletted or of a custom type,
+ * and drawing those means converting every pixel on every draw.
+ *
+ * The transparency of each converted frame is picked from the alpha
+ * values actually in it: OPAQUE if they're all solid, BITMASK if they're
+ * all either solid or clear, and TRANSLUCENT otherwise. Translucent
+ * frames can also be premultiplied, which saves a multiply per pixel
+ * every time they're blended.
+ *
+ * It can also measure how long each frame takes to draw, before and
+ * after conversion, so we can see what the conversion bought us.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class CompatibleFrameDecoder implements FrameDecoder
+{
+    // HOW MANY TIMES WE DRAW A FRAME WHEN MEASURING IT
+    public static final int DRAW_COST_WARMUP_DRAWS = 5;
+    public static final int DRAW_COST_MEASURED_DRAWS = 20;
+
+    // THIS DOES THE ACTUAL DECODING
+    private FrameDecoder decoder;
+
+    // THE SCREEN'S CONFIGURATION, OR NULL IF THERE'S NO SCREEN
+    private GraphicsConfiguration gc;
+
+    // SETTINGS
+    private boolean premultiply;
+    private boolean measureDrawCost;
+
+    // RUNNING TOTALS FOR OUR REPORT
+    private int framesConverted;
+    private int opaqueFrames;
+    private int bitmaskFrames;
+    private int translucentFrames;
+    private int framesMeasured;
+    private long drawNanosBefore;
+    private long drawNanosAfter;
+
+    /**
+     * Constructor for this decoder.
+     *
+     * @param initDecoder Decoder that reads the frames before we convert them.
+     *
+     * @param initPremultiply If true, translucent frames are premultiplied.
+     *
+     * @param initMeasureDrawCost If true, each frame's draw time is measured
+     * before and after conversion. This makes loading slower.
+     */
+    public CompatibleFrameDecoder(  FrameDecoder initDecoder,
+                                    boolean initPremultiply,
+                                    boolean initMeasureDrawCost)
+    {
+        decoder = initDecoder;
+        premultiply = initPremultiply;
+        measureDrawCost = initMeasureDrawCost;
+        if (!GraphicsEnvironment.isHeadless())
+        {
+            gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+        }
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many frames have been converted.
+     *
+     * @return The number of frames converted so far.
+     */
+    public synchronized int getFramesConverted() { return framesConverted; }
+
+    /**
+     * Accessor method for getting the average time it took to draw a
+     * frame as it came out of the decoder.
+     *
+     * @return Average nanoseconds per draw before conversion, or 0 if
+     * nothing has been measured.
+     */
+    public synchronized long getAverageDrawNanosBefore()
+    {
+        return (framesMeasured == 0) ? 0 : (drawNanosBefore / framesMeasured);
+    }
+
+    /**
+     * Accessor method for getting the average time it took to draw a
+     * frame once it was converted.
+     *
+     * @return Average nanoseconds per draw after conversion, or 0 if
+     * nothing has been measured.
+     */
+    public synchronized long getAverageDrawNanosAfter()
+    {
+        return (framesMeasured == 0) ? 0 : (drawNanosAfter / framesMeasured);
+    }
+
+    /**
+     * This method builds a short report of everything converted so far.
+     *
+     * @return A one line summary of the conversion.
+     */
+    public synchronized String getReport()
+    {
+        String report = "Frame conversion: " + framesConverted + " frames ("
+                + opaqueFrames + " opaque, " + bitmaskFrames + " bitmask, "
+                + translucentFrames + " translucent)";
+        if (framesMeasured > 0)
+        {
+            report += ", average draw " + getAverageDrawNanosBefore() + " ns before, "
+                    + getAverageDrawNanosAfter() + " ns after";
+        }
+        return report;
+    }
+
+    @Override
+    public BufferedImage decode(FrameSource source) throws IOException
+    {
+        BufferedImage frame = decoder.decode(source);
+        if (frame == null)
+        {
+            return null;
+        }
+        return convertFrame(frame);
+    }
+
+    /**
+     * This method converts a frame that was read some other way than by
+     * our decoder, like out of a sprite pack, just as if we'd decoded it.
+     *
+     * @param frame The frame to convert.
+     *
+     * @return A copy of the frame in the fastest format to draw.
+     */
+    public BufferedImage convertFrame(BufferedImage frame)
+    {
+        int transparency = findTransparency(frame);
+        BufferedImage converted = convert(frame, transparency);
+
+        long before = 0;
+        long after = 0;
+        if (measureDrawCost)
+        {
+            before = measureDrawNanos(frame);
+            after = measureDrawNanos(converted);
+        }
+
+        // KEEP TRACK OF WHAT WE DID
+        synchronized (this)
+        {
+            framesConverted++;
+            if (transparency == Transparency.OPAQUE)
+                opaqueFrames++;
+            else if (transparency == Transparency.BITMASK)
+                bitmaskFrames++;
+            else
+                translucentFrames++;
+            if (measureDrawCost)
+            {
+                framesMeasured++;
+                drawNanosBefore += before;
+                drawNanosAfter += after;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Figures out the least transparency the frame needs by looking at
+     * the alpha values actually in it.
+     */
+    private int findTransparency(BufferedImage frame)
+    {
+        if (!frame.getColorModel().hasAlpha())
+        {
+            return Transparency.OPAQUE;
+        }
+        if (frame.getColorModel() instanceof IndexColorModel)
+        {
+            // PALETTED IMAGES ALREADY KNOW
+            return frame.getColorModel().getTransparency();
+        }
+
+        // OTHERWISE WE HAVE TO LOOK AT EVERY PIXEL
+        WritableRaster alpha = frame.getAlphaRaster();
+        int width = frame.getWidth();
+        int[] row = new int[width];
+        boolean anyClear = false;
+        for (int y = 0; y < frame.getHeight(); y++)
+        {
+            alpha.getSamples(0, y, width, 1, 0, row);
+            for (int x = 0; x < width; x++)
+            {
+                if (row[x] == 0)
+                {
+                    anyClear = true;
+                }
+                else if (row[x] != 255)
+                {
+                    return Transparency.TRANSLUCENT;
+                }
+            }
+        }
+        return anyClear ? Transparency.BITMASK : Transparency.OPAQUE;
+    }
+
+    /**
+     * Makes a copy of the frame in the fastest format for its transparency.
+     */
+    private BufferedImage convert(BufferedImage frame, int transparency)
+    {
+        BufferedImage converted = createTarget(frame.getWidth(), frame.getHeight(), transparency);
+        Graphics2D g = converted.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(frame, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    /**
+     * Makes an empty image of the right size and format for a frame.
+     */
+    private BufferedImage createTarget(int width, int height, int transparency)
+    {
+        if (gc == null)
+        {
+            // NO SCREEN TO BE COMPATIBLE WITH, SO USE THE USUAL SOFTWARE FORMATS
+            if (transparency == Transparency.OPAQUE)
+                return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            if (premultiply && (transparency == Transparency.TRANSLUCENT))
+                return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        BufferedImage compatible = gc.createCompatibleImage(width, height, transparency);
+        if (premultiply
+                && (transparency == Transparency.TRANSLUCENT)
+                && (compatible.getType() == BufferedImage.TYPE_INT_ARGB))
+        {
+            // SAME LAYOUT, BUT BLENDING CAN SKIP A MULTIPLY
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        return compatible;
+    }
+
+    /**
+     * Measures how long it takes to draw the frame onto an opaque
+     * image like the ones the scene gets rendered to.
+     */
+    private long measureDrawNanos(BufferedImage frame)
+    {
+        BufferedImage target = createTarget(frame.getWidth(), frame.getHeight(), Transparency.OPAQUE);
+        Graphics2D g = target.createGraphics();
+        for (int i = 0; i < DRAW_COST_WARMUP_DRAWS; i++)
+        {
+            g.drawImage(frame, 0, 0, null);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < DRAW_COST_MEASURED_DRAWS; i++)
+        {
+            g.drawImage(frame, 0, 0, null);
+        }
+        long elapsed = System.nanoTime() - startTime;
+        g.dispose();
+        return elapsed / DRAW_COST_MEASURED_DRAWS;
+    }
+}
@@ -0,0 +1,249 @@
+package animated_sprite_viewer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Random;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+import sprite_renderer.AnimationState;
+
+/**
+ * The CrowdPanel class fills a scene with a crowd of sprites, possibly
+ * thousands of them, for seeing how our sprite art holds up at the
+ * densities of a real game. Every sprite gets a random sprite type,
+ * animation state, position, and starting point in its animation.
+ *
+ * The scene is bigger than the panel is likely to be, so it's meant
+ * to be put in a scroll pane. A SpatialGrid finds which sprites are in
+ * the visible part of the scene, and only those are drawn, though all
+ * of them keep animating. The number of sprites, how many were drawn,
+ * and how long each frame took are shown in a status label.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class CrowdPanel extends JPanel
+{
+    private static final long serialVersionUID = 1L;
+
+    // HOW OFTEN WE MOVE THE ANIMATIONS ALONG AND DRAW THEM
+    public static final int FRAME_MILLIS = 16;
+
+    // HOW LONG A FRAME MAY TAKE IF WE'RE TO KEEP UP 60 FRAMES A SECOND
+    public static final double FRAME_BUDGET_MILLIS = 1000.0 / 60;
+
+    // HOW MANY TIMES BIGGER THAN THE PANEL THE SCENE IS, EACH WAY
+    public static final int SCENE_SCALE = 3;
+
+    // HOW OFTEN THE STATUS LABEL IS UPDATED
+    public static final int STATUS_MILLIS = 250;
+
+    // HOW MUCH EACH NEW FRAME TIME COUNTS IN THE AVERAGE WE SHOW
+    public static final double FRAME_TIME_SMOOTHING = 0.1;
+
+    // THE CROWD, AND THE GRID FOR FINDING THE VISIBLE PART OF IT
+    private ArrayList<PlaybackSprite> sprites;
+    private SpatialGrid grid;
+    private int sceneWidth;
+    private int sceneHeight;
+
+    // REUSED EVERY FRAME FOR THE SPRITES WE DRAW
+    private ArrayList<PlaybackSprite> visibleSprites;
+
+    // THIS DRIVES THE ANIMATION
+    private Timer timer;
+
+    // WHAT WE TELL THE USER ABOUT
+    private JLabel statusLabel;
+    private long updateNanos;
+    private double averageFrameMillis;
+    private int numDrawn;
+    private long lastStatusTime;
+
+    /**
+     * Constructor for an empty crowd.
+     *
+     * @param initStatusLabel Label that shows how the crowd is doing.
+     */
+    public CrowdPanel(JLabel initStatusLabel)
+    {
+        statusLabel = initStatusLabel;
+        sprites = new ArrayList<PlaybackSprite>();
+        visibleSprites = new ArrayList<PlaybackSprite>();
+        grid = new SpatialGrid(1, 1, SpatialGrid.DEFAULT_CELL_SIZE);
+        setBackground(Color.white);
+        timer = new Timer(FRAME_MILLIS, new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent ae)
+            {
+                advanceSprites();
+                repaint();
+            }
+        });
+        timer.setCoalesce(true);
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many sprites are in the crowd.
+     *
+     * @return The number of sprites in the scene.
+     */
+    public int getNumSprites() { return sprites.size(); }
+
+    /**
+     * Accessor method for getting how many sprites were drawn last frame.
+     *
+     * @return The number of sprites that were visible and drawn.
+     */
+    public int getNumDrawn() { return numDrawn; }
+
+    /**
+     * Accessor method for getting how long frames are taking.
+     *
+     * @return A running average of milliseconds per frame, counting both
+     * moving the animations along and drawing.
+     */
+    public double getAverageFrameMillis() { return averageFrameMillis; }
+
+    /**
+     * This method replaces the crowd with a new one.
+     *
+     * @param spriteTypeFrames The sprite types to pick from.
+     *
+     * @param numSprites How many sprites to put in the crowd.
+     *
+     * @param viewSize How much of the scene can be seen at once, the
+     * scene is made SCENE_SCALE times as wide and as tall.
+     *
+     * @param seed Seed for the random choices, the same seed with the
+     * same sprite types and view size gives the same crowd.
+     */
+    public void populate(   ArrayList<SpriteTypeFrames> spriteTypeFrames,
+                            int numSprites,
+                            Dimension viewSize,
+                            long seed)
+    {
+        // SIZE THE SCENE FROM WHAT'S VISIBLE
+        sceneWidth = Math.max(1, viewSize.width) * SCENE_SCALE;
+        sceneHeight = Math.max(1, viewSize.height) * SCENE_SCALE;
+
+        // ONLY SPRITE TYPES WITH SOMETHING TO ANIMATE
+        ArrayList<SpriteTypeFrames> choices = new ArrayList<SpriteTypeFrames>();
+        for (SpriteTypeFrames frames : spriteTypeFrames)
+        {
+            if (!frames.getAnimationStates().isEmpty())
+            {
+                choices.add(frames);
+            }
+        }
+
+        // AND MAKE THE CROWD
+        Random random = new Random(seed);
+        sprites = new ArrayList<PlaybackSprite>(numSprites);
+        grid = new SpatialGrid(sceneWidth, sceneHeight, SpatialGrid.DEFAULT_CELL_SIZE);
+        for (int i = 0; (i < numSprites) && !choices.isEmpty(); i++)
+        {
+            SpriteTypeFrames frames = choices.get(random.nextInt(choices.size()));
+            ArrayList<AnimationState> states = frames.getAnimationStates();
+            AnimationState state = states.get(random.nextInt(states.size()));
+            int x = random.nextInt(Math.max(1, sceneWidth - frames.getWidth()));
+            int y = random.nextInt(Math.max(1, sceneHeight - frames.getHeight()));
+            PlaybackSprite sprite = new PlaybackSprite(frames, state, x, y);
+
+            // SO THEY DON'T ALL MOVE IN STEP
+            long totalDuration = frames.getTimeline(state).getTotalDuration();
+            if (totalDuration > 0)
+            {
+                sprite.advance((int)(random.nextDouble() * totalDuration));
+            }
+            sprites.add(sprite);
+            grid.add(sprite);
+        }
+        averageFrameMillis = 0;
+        setPreferredSize(new Dimension(sceneWidth, sceneHeight));
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * This method starts the crowd animating.
+     */
+    public void start()
+    {
+        timer.start();
+    }
+
+    /**
+     * This method stops the crowd animating.
+     */
+    public void stop()
+    {
+        timer.stop();
+    }
+
+    /**
+     * Moves every sprite along by one tick, visible or not.
+     */
+    private void advanceSprites()
+    {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            sprites.get(i).advance(1);
+        }
+        updateNanos = System.nanoTime() - startTime;
+    }
+
+    /**
+     * Draws the sprites in the visible part of the scene, and keeps
+     * track of how long that, and the update before it, took.
+     *
+     * @param g Graphics to draw with.
+     */
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        long startTime = System.nanoTime();
+        super.paintComponent(g);
+
+        // ONLY WHAT CAN BE SEEN
+        visibleSprites.clear();
+        Rectangle visibleArea = g.getClipBounds();
+        if (visibleArea == null)
+        {
+            visibleArea = getVisibleRect();
+        }
+        grid.findSprites(visibleArea, visibleSprites);
+        Graphics2D g2 = (Graphics2D)g;
+        for (int i = 0; i < visibleSprites.size(); i++)
+        {
+            visibleSprites.get(i).draw(g2);
+        }
+        numDrawn = visibleSprites.size();
+
+        // KEEP TRACK OF HOW WE'RE DOING
+        long frameNanos = updateNanos + System.nanoTime() - startTime;
+        ViewerMetrics.getMetrics().recordCrowdFrame(frameNanos);
+        double frameMillis = frameNanos / 1e6;
+        averageFrameMillis = (averageFrameMillis == 0) ? frameMillis
+                : (averageFrameMillis + FRAME_TIME_SMOOTHING * (frameMillis - averageFrameMillis));
+        long now = System.currentTimeMillis();
+        if ((statusLabel != null) && ((now - lastStatusTime) >= STATUS_MILLIS))
+        {
+            lastStatusTime = now;
+            statusLabel.setText(String.format("%d sprites, %d drawn, %.2f ms per frame (budget %.1f ms)",
+                    sprites.size(), numDrawn, averageFrameMillis, FRAME_BUDGET_MILLIS));
+            statusLabel.setForeground((averageFrameMillis > FRAME_BUDGET_MILLIS) ? Color.red : Color.black);
+        }
+    }
+}
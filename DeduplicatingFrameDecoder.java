@@ -0,0 +1,214 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The DeduplicatingFrameDecoder class makes sure that image files with
+ * identical contents are only decoded once, no matter how many sprite
+ * types use them or what they're called. Files are identified by a hash
+ * of their contents, and every sprite type referencing the same contents
+ * gets the very same image.
+ *
+ * Decoded images are only weakly held, so an image no sprite type uses
+ * any more can still be reclaimed, for example when a lazily loaded
+ * sprite type gets evicted. Once one has been reclaimed, its entry is
+ * dropped too the next time anything is decoded.
+ *
+ * The file is only read once. Whatever we decode it with gets the
+ * bytes we hashed.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class DeduplicatingFrameDecoder implements FrameDecoder
+{
+    public static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+
+    // THIS DOES THE ACTUAL DECODING
+    private FrameDecoder decoder;
+
+    // ONE ENTRY FOR EACH DISTINCT IMAGE, BY CONTENT HASH
+    private ConcurrentHashMap<String, RegistryEntry> registry;
+
+    // IMAGES NOBODY WAS USING ANY MORE SHOW UP HERE ONCE THEY'RE RECLAIMED
+    private ReferenceQueue<BufferedImage> reclaimedImages;
+
+    // RUNNING TOTALS FOR OUR REPORT
+    private int imagesDecoded;
+    private int imagesShared;
+    private long bytesSaved;
+
+    /**
+     * Constructor for this decoder.
+     *
+     * @param initDecoder Decoder used the first time each image is seen.
+     */
+    public DeduplicatingFrameDecoder(FrameDecoder initDecoder)
+    {
+        decoder = initDecoder;
+        registry = new ConcurrentHashMap<String, RegistryEntry>();
+        reclaimedImages = new ReferenceQueue<BufferedImage>();
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many distinct images were decoded.
+     *
+     * @return The number of images actually decoded so far.
+     */
+    public synchronized int getImagesDecoded() { return imagesDecoded; }
+
+    /**
+     * Accessor method for getting how many times an already decoded
+     * image was handed out instead of decoding another copy.
+     *
+     * @return The number of shared references handed out so far.
+     */
+    public synchronized int getImagesShared() { return imagesShared; }
+
+    /**
+     * Accessor method for getting how much memory sharing has saved.
+     *
+     * @return Bytes of pixel storage the shared copies would have used.
+     */
+    public synchronized long getBytesSaved() { return bytesSaved; }
+
+    /**
+     * This method builds a short report of the deduplication so far.
+     *
+     * @return A one line summary of the deduplication.
+     */
+    public synchronized String getReport()
+    {
+        return "Image deduplication: " + imagesDecoded + " distinct images decoded, "
+                + imagesShared + " shared references, "
+                + (bytesSaved / 1024) + " KB saved";
+    }
+
+    @Override
+    public BufferedImage decode(FrameSource source) throws IOException
+    {
+        removeReclaimedEntries();
+        String contentHash = source.getContentHash();
+        RegistryEntry entry = registry.get(contentHash);
+        if (entry == null)
+        {
+            RegistryEntry newEntry = new RegistryEntry(contentHash);
+            entry = registry.putIfAbsent(contentHash, newEntry);
+            if (entry == null)
+            {
+                entry = newEntry;
+            }
+        }
+        return entry.get(source);
+    }
+
+    /**
+     * Drops the entries whose images have been reclaimed, so the registry
+     * doesn't keep growing as sprite types are evicted and reloaded. An
+     * entry that has since been given a new image is kept.
+     */
+    private void removeReclaimedEntries()
+    {
+        Reference<? extends BufferedImage> reclaimed;
+        while ((reclaimed = reclaimedImages.poll()) != null)
+        {
+            RegistryEntry entry = ((ImageReference)reclaimed).entry;
+            if (entry.isReclaimed((ImageReference)reclaimed))
+            {
+                registry.remove(entry.contentHash, entry);
+            }
+        }
+    }
+
+    /**
+     * This method computes the hash we identify image contents by.
+     *
+     * @param contents Everything in an image file.
+     *
+     * @return The hash of the contents, in hex.
+     */
+    public static String hashContents(byte[] contents)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+            return new BigInteger(1, digest.digest(contents)).toString(16);
+        }
+        catch (NoSuchAlgorithmException nsae)
+        {
+            // EVERY JVM IS REQUIRED TO HAVE SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /**
+     * Keeps track of the decoded image for one content hash. Only one
+     * thread at a time may decode it, any others asking for it at the
+     * same time wait and then share the result.
+     */
+    private class RegistryEntry
+    {
+        private String contentHash;
+        private ImageReference image;
+
+        private RegistryEntry(String initContentHash)
+        {
+            contentHash = initContentHash;
+        }
+
+        private synchronized boolean isReclaimed(ImageReference reclaimed)
+        {
+            return image == reclaimed;
+        }
+
+        private synchronized BufferedImage get(FrameSource source) throws IOException
+        {
+            BufferedImage shared = (image == null) ? null : image.get();
+            if (shared != null)
+            {
+                synchronized (DeduplicatingFrameDecoder.this)
+                {
+                    imagesShared++;
+                    bytesSaved += ImageMemory.getStorageBytes(shared);
+                }
+                return shared;
+            }
+
+            // FIRST TIME WE'VE SEEN IT, OR NOBODY IS USING IT ANY MORE
+            BufferedImage decoded = decoder.decode(source);
+            if (decoded != null)
+            {
+                image = new ImageReference(decoded, this);
+                synchronized (DeduplicatingFrameDecoder.this)
+                {
+                    imagesDecoded++;
+                }
+            }
+            return decoded;
+        }
+    }
+
+    /**
+     * A weak reference to a decoded image that knows which entry it's in.
+     */
+    private class ImageReference extends WeakReference<BufferedImage>
+    {
+        private RegistryEntry entry;
+
+        private ImageReference(BufferedImage image, RegistryEntry initEntry)
+        {
+            super(image, reclaimedImages);
+            entry = initEntry;
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package animated_sprite_viewer;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The DiskCachingFrameDecoder class keeps the decoded pixels of every
+ * frame in a cache directory, so the same image file never has to be
+ * decoded twice, not even across runs. Each entry is a file holding a
+ * small header and then the raw pixels, and is named after the hash of
+ * the image file's contents and the pixel format, so an edited image
+ * simply misses and renamed or copied images still hit.
+ *
+ * On a hit the entry is read into a direct buffer that each loading
+ * thread keeps for itself, and its pixels copied from there into a new
+ * image, with no decoding at all. The pixels are stored in little endian
+ * order, which is what nearly every machine uses, so that copy is just a
+ * block move.
+ *
+ * The image file itself is only ever read and hashed once, however many
+ * other decoders are stacked with this one, since the hash comes from
+ * the FrameSource, and on a miss the decoder underneath gets the same
+ * FrameSource, with the contents already read.
+ *
+ * The cache is kept under a size limit by throwing out the entries
+ * used least recently. We remember the order entries were used in
+ * between runs by their modification times.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class DiskCachingFrameDecoder implements FrameDecoder
+{
+    // WHAT'S AT THE START OF EVERY ENTRY
+    public static final int MAGIC = 0x41535650;
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+
+    public static final String ENTRY_EXTENSION = ".pixels";
+    public static final String TEMP_EXTENSION = ".tmp";
+
+    // HOW OFTEN A HIT BOTHERS TO UPDATE AN ENTRY'S MODIFICATION TIME
+    public static final long TOUCH_INTERVAL_MILLIS = 60L * 60 * 1000;
+
+    // BIGGEST BUFFER A LOADING THREAD HANGS ON TO BETWEEN ENTRIES, BIGGER
+    // ENTRIES GET AN ORDINARY BUFFER OF THEIR OWN THAT'S THROWN AWAY AFTER
+    public static final int MAX_POOLED_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    // THIS DOES THE ACTUAL DECODING, ON A MISS
+    private FrameDecoder decoder;
+
+    // WHERE THE ENTRIES GO
+    private File directory;
+
+    // THE BufferedImage TYPE WE STORE AND HAND OUT
+    private int imageType;
+
+    // HOW BIG WE LET THE CACHE GET
+    private long maxBytes;
+
+    // THE DIRECT BUFFER EACH LOADING THREAD READS AND WRITES ENTRIES WITH
+    private ThreadLocal<ByteBuffer> entryBuffers;
+
+    // SIZE OF EVERY ENTRY BY NAME, LEAST RECENTLY USED FIRST
+    private LinkedHashMap<String, Long> entries;
+    private long cachedBytes;
+
+    // RUNNING TOTALS FOR OUR REPORT
+    private int hits;
+    private int misses;
+    private int entriesWritten;
+    private int entriesEvicted;
+    private long hitNanos;
+    private long missNanos;
+
+    /**
+     * Constructor for this decoder, which finds out what's already in
+     * the cache directory, creating it if need be.
+     *
+     * @param initDecoder Decoder used for images that aren't cached yet.
+     *
+     * @param initDirectory Directory to keep the entries in.
+     *
+     * @param initImageType Pixel format to store, one of the int based
+     * BufferedImage types, TYPE_INT_ARGB, TYPE_INT_ARGB_PRE or
+     * TYPE_INT_RGB.
+     *
+     * @param initMaxBytes How many bytes the entries may take up in all.
+     *
+     * @throws IOException Thrown if the cache directory can't be created.
+     */
+    public DiskCachingFrameDecoder( FrameDecoder initDecoder,
+                                    File initDirectory,
+                                    int initImageType,
+                                    long initMaxBytes)
+        throws IOException
+    {
+        if ((initImageType != BufferedImage.TYPE_INT_ARGB)
+                && (initImageType != BufferedImage.TYPE_INT_ARGB_PRE)
+                && (initImageType != BufferedImage.TYPE_INT_RGB))
+        {
+            throw new IllegalArgumentException("Unsupported image type: " + initImageType);
+        }
+        decoder = initDecoder;
+        directory = initDirectory;
+        imageType = initImageType;
+        maxBytes = initMaxBytes;
+        entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        entryBuffers = new ThreadLocal<ByteBuffer>();
+        Files.createDirectories(directory.toPath());
+        scanDirectory();
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many frames came from the cache.
+     *
+     * @return The number of cache hits so far.
+     */
+    public synchronized int getHits() { return hits; }
+
+    /**
+     * Accessor method for getting how many frames had to be decoded.
+     *
+     * @return The number of cache misses so far.
+     */
+    public synchronized int getMisses() { return misses; }
+
+    /**
+     * Accessor method for getting how much the cache holds.
+     *
+     * @return Bytes taken up by all the entries.
+     */
+    public synchronized long getCachedBytes() { return cachedBytes; }
+
+    /**
+     * This method builds a short report of the cache so far.
+     *
+     * @return A one line summary of the cache.
+     */
+    public synchronized String getReport()
+    {
+        String report = "Frame disk cache: " + hits + " hits, " + misses + " misses, "
+                + entriesWritten + " written, " + entriesEvicted + " evicted, "
+                + entries.size() + " entries using " + (cachedBytes / 1024) + " KB";
+        if (hits > 0)
+        {
+            report += ", average hit " + (hitNanos / hits / 1000) + " us";
+        }
+        if (misses > 0)
+        {
+            report += ", average miss " + (missNanos / misses / 1000) + " us";
+        }
+        return report;
+    }
+
+    @Override
+    public BufferedImage decode(FrameSource source) throws IOException
+    {
+        File imageFile = source.getFile();
+        long startTime = System.nanoTime();
+        String entryName = source.getContentHash() + "-" + imageType + ENTRY_EXTENSION;
+        File entryFile = new File(directory, entryName);
+
+        // FIRST SEE IF WE'VE ALREADY GOT IT
+        BufferedImage cached = readEntry(entryFile);
+        if (cached != null)
+        {
+            long now = System.currentTimeMillis();
+            if (now - entryFile.lastModified() > TOUCH_INTERVAL_MILLIS)
+            {
+                entryFile.setLastModified(now);
+            }
+            synchronized (this)
+            {
+                hits++;
+                hitNanos += System.nanoTime() - startTime;
+                entries.get(entryName);
+            }
+            return cached;
+        }
+
+        // NO, SO DECODE IT AND KEEP IT FOR NEXT TIME, THE
+        // DECODER GETS THE CONTENTS WE'VE ALREADY READ
+        BufferedImage decoded = decoder.decode(source);
+        if (decoded == null)
+        {
+            return null;
+        }
+        BufferedImage converted = convert(decoded);
+        try
+        {
+            writeEntry(entryFile, converted);
+        }
+        catch (IOException ioe)
+        {
+            // THE CACHE IS ONLY A SHORTCUT, SO IF WE CAN'T WRITE IT WE
+            // STILL HAVE THE FRAME, IT'LL JUST BE DECODED AGAIN NEXT TIME
+            System.err.println("Couldn't cache " + imageFile + ": " + ioe.getMessage());
+        }
+        synchronized (this)
+        {
+            misses++;
+            missNanos += System.nanoTime() - startTime;
+        }
+        return converted;
+    }
+
+    /**
+     * Builds our list of entries from what's in the cache directory,
+     * oldest first, and clears away anything left half written by a
+     * run that didn't finish.
+     */
+    private void scanDirectory() throws IOException
+    {
+        File[] tempFiles = directory.listFiles(new ExtensionFilter(TEMP_EXTENSION));
+        File[] entryFiles = directory.listFiles(new ExtensionFilter(ENTRY_EXTENSION));
+        if ((tempFiles == null) || (entryFiles == null))
+        {
+            throw new IOException("Couldn't list cache directory " + directory);
+        }
+        for (File tempFile : tempFiles)
+        {
+            tempFile.delete();
+        }
+
+        // READ THE TIMES ONCE, SINCE SORTING WOULD ASK FOR THEM OVER AND OVER
+        final Map<File, Long> lastUsed = new LinkedHashMap<File, Long>();
+        for (File entryFile : entryFiles)
+        {
+            lastUsed.put(entryFile, entryFile.lastModified());
+        }
+        Arrays.sort(entryFiles, new Comparator<File>()
+        {
+            @Override
+            public int compare(File a, File b)
+            {
+                return lastUsed.get(a).compareTo(lastUsed.get(b));
+            }
+        });
+        synchronized (this)
+        {
+            for (File entryFile : entryFiles)
+            {
+                long size = entryFile.length();
+                entries.put(entryFile.getName(), size);
+                cachedBytes += size;
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Reads the pixels of a cached entry into a new image, or returns
+     * null if the entry isn't there or can't be used.
+     */
+    private BufferedImage readEntry(File entryFile) throws IOException
+    {
+        if (!entryFile.isFile())
+        {
+            return null;
+        }
+        RandomAccessFile file;
+        try
+        {
+            file = new RandomAccessFile(entryFile, "r");
+        }
+        catch (IOException ioe)
+        {
+            // IT WAS EVICTED OUT FROM UNDER US
+            return null;
+        }
+        try
+        {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if ((size >= HEADER_BYTES) && (size <= Integer.MAX_VALUE))
+            {
+                ByteBuffer buffer = getEntryBuffer((int)size);
+                while (buffer.hasRemaining())
+                {
+                    if (channel.read(buffer) < 0)
+                    {
+                        break;
+                    }
+                }
+                buffer.flip();
+                if (buffer.remaining() == size)
+                {
+                    int magic = buffer.getInt();
+                    int version = buffer.getInt();
+                    int width = buffer.getInt();
+                    int height = buffer.getInt();
+                    if ((magic == MAGIC) && (version == VERSION)
+                            && (width > 0) && (height > 0)
+                            && (size == HEADER_BYTES + 4L * width * height))
+                    {
+                        // COPIED IN THROUGH THE RASTER, SO JAVA2D CAN
+                        // STILL KEEP THE IMAGE IN VIDEO MEMORY
+                        BufferedImage img = new BufferedImage(width, height, imageType);
+                        int[] pixels = new int[width * height];
+                        buffer.asIntBuffer().get(pixels);
+                        img.getRaster().setDataElements(0, 0, width, height, pixels);
+                        return img;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            file.close();
+        }
+
+        // IT'S DAMAGED OR FROM ANOTHER VERSION, SO GET RID OF IT
+        removeEntry(entryFile);
+        return null;
+    }
+
+    /**
+     * Writes an image's pixels out as a new entry. It's written under a
+     * temporary name first and then renamed, so anyone reading the
+     * cache, even another copy of the viewer, never sees half of one.
+     */
+    private void writeEntry(File entryFile, BufferedImage img) throws IOException
+    {
+        // COPIED OUT THROUGH THE RASTER, LEAVING THE IMAGE ACCELERATABLE
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int[] pixels = (int[])img.getRaster().getDataElements(0, 0, width, height, null);
+        int entryBytes = HEADER_BYTES + 4 * pixels.length;
+        ByteBuffer buffer = getEntryBuffer(entryBytes);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        buffer.asIntBuffer().put(pixels);
+        buffer.position(buffer.limit());
+        buffer.flip();
+
+        File tempFile = File.createTempFile(entryFile.getName(), TEMP_EXTENSION, directory);
+        try
+        {
+            RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+            try
+            {
+                FileChannel channel = file.getChannel();
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+            finally
+            {
+                file.close();
+            }
+            try
+            {
+                Files.move(tempFile.toPath(), entryFile.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException amnse)
+            {
+                Files.move(tempFile.toPath(), entryFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+
+        synchronized (this)
+        {
+            Long oldSize = entries.put(entryFile.getName(), (long)entryBytes);
+            if (oldSize != null)
+            {
+                cachedBytes -= oldSize;
+            }
+            cachedBytes += entryBytes;
+            entriesWritten++;
+            evict();
+        }
+    }
+
+    /**
+     * Gets this thread's buffer ready for an entry of numBytes, making
+     * it bigger if it's too small, unless it would be too big to keep.
+     */
+    private ByteBuffer getEntryBuffer(int numBytes)
+    {
+        ByteBuffer buffer = entryBuffers.get();
+        if ((buffer == null) || (buffer.capacity() < numBytes))
+        {
+            if (numBytes > MAX_POOLED_BUFFER_BYTES)
+            {
+                return ByteBuffer.allocate(numBytes).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            int capacity = (buffer == null) ? numBytes : Math.max(numBytes, 2 * buffer.capacity());
+            buffer = ByteBuffer.allocateDirect(Math.min(capacity, MAX_POOLED_BUFFER_BYTES));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            entryBuffers.set(buffer);
+        }
+        buffer.clear();
+        buffer.limit(numBytes);
+        return buffer;
+    }
+
+    /**
+     * Deletes an entry and forgets about it.
+     */
+    private synchronized void removeEntry(File entryFile)
+    {
+        entryFile.delete();
+        Long size = entries.remove(entryFile.getName());
+        if (size != null)
+        {
+            cachedBytes -= size;
+        }
+    }
+
+    /**
+     * Throws out the least recently used entries until we're under our
+     * limit again, though never the one just used.
+     */
+    private synchronized void evict()
+    {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while ((cachedBytes > maxBytes) && (entries.size() > 1))
+        {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(directory, eldest.getKey()).delete();
+            cachedBytes -= eldest.getValue();
+            it.remove();
+            entriesEvicted++;
+        }
+    }
+
+    /**
+     * Puts a decoded frame into the pixel format we store, if it isn't
+     * already in it.
+     */
+    private BufferedImage convert(BufferedImage frame)
+    {
+        if ((frame.getType() == imageType)
+                && (frame.getRaster().getDataBuffer().getSize()
+                        == frame.getWidth() * frame.getHeight()))
+        {
+            return frame;
+        }
+        BufferedImage converted = new BufferedImage(frame.getWidth(), frame.getHeight(), imageType);
+        Graphics2D g = converted.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(frame, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    /**
+     * Picks out the files in the cache directory with one extension.
+     */
+    private static class ExtensionFilter implements FilenameFilter
+    {
+        private String extension;
+
+        private ExtensionFilter(String initExtension)
+        {
+            extension = initExtension;
+        }
+
+        @Override
+        public boolean accept(File dir, String name)
+        {
+            return name.endsWith(extension);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * The FrameDecoder interface turns a sprite type's image files into the
+ * images we keep for its frames. Decoders can be wrapped around one
+ * another, so that each stage of image loading can be switched on and
+ * off on its own.
+ * 
+ * Each image file is handed down the chain as a FrameSource, so that
+ * decoders needing what's in the file or its hash all share one read.
+ * 
+ * Note that decoders are shared by all the threads loading sprite
+ * types, so they must be safe to use from more than one at once.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public interface FrameDecoder
+{
+    /**
+     * This method reads the image file and returns it as a frame.
+     * 
+     * @param source The image file to read.
+     * 
+     * @return The decoded frame, or null if no image reader could
+     * understand the file.
+     * 
+     * @throws IOException Thrown if the file can't be read.
+     */
+    public BufferedImage decode(FrameSource source) throws IOException;
+}
@@ -0,0 +1,92 @@
+package animated_sprite_viewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * The FrameSource class is the image file a frame is decoded from, as
+ * it's passed down a chain of FrameDecoders. Decoders that need what's
+ * in the file, or its content hash, get them from here, so the file is
+ * only ever read once and only ever hashed once, however many decoders
+ * look at it.
+ *
+ * Note that a FrameSource is used by one loading thread at a time, so
+ * it doesn't need to be thread safe itself.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class FrameSource
+{
+    // THE IMAGE FILE
+    private File file;
+
+    // EVERYTHING IN IT, ONCE SOMEBODY HAS ASKED
+    private byte[] contents;
+
+    // AND ITS HASH, ONCE SOMEBODY HAS ASKED
+    private String contentHash;
+
+    /**
+     * Constructor for this source.
+     *
+     * @param initFile The image file a frame is to be decoded from.
+     */
+    public FrameSource(File initFile)
+    {
+        file = initFile;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting the image file.
+     *
+     * @return The image file this frame comes from.
+     */
+    public File getFile() { return file; }
+
+    /**
+     * Accessor method for checking whether the file has been read yet.
+     *
+     * @return True if getContents won't have to read the file.
+     */
+    public boolean hasContents() { return contents != null; }
+
+    /**
+     * This method gets everything in the image file, reading it the
+     * first time it's asked for.
+     *
+     * @return The contents of the image file.
+     *
+     * @throws IOException Thrown if the file can't be read.
+     */
+    public byte[] getContents() throws IOException
+    {
+        if (contents == null)
+        {
+            contents = Files.readAllBytes(file.toPath());
+        }
+        return contents;
+    }
+
+    /**
+     * This method gets the hash of the image file's contents, working
+     * it out the first time it's asked for.
+     *
+     * @see DeduplicatingFrameDecoder#hashContents(byte[])
+     *
+     * @return The content hash, in hex.
+     *
+     * @throws IOException Thrown if the file can't be read.
+     */
+    public String getContentHash() throws IOException
+    {
+        if (contentHash == null)
+        {
+            contentHash = DeduplicatingFrameDecoder.hashContents(getContents());
+        }
+        return contentHash;
+    }
+}
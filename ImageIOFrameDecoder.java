@@ -0,0 +1,27 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * The ImageIOFrameDecoder class decodes frames with ImageIO, which is
+ * how all our frames get decoded unless something else is asked for.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class ImageIOFrameDecoder implements FrameDecoder
+{
+    @Override
+    public BufferedImage decode(FrameSource source) throws IOException
+    {
+        // IF SOMEBODY ALREADY READ THE FILE, DON'T READ IT AGAIN
+        if (source.hasContents())
+        {
+            return ImageIO.read(new ByteArrayInputStream(source.getContents()));
+        }
+        return ImageIO.read(source.getFile());
+    }
+}
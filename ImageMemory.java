@@ -0,0 +1,47 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+
+/**
+ * The ImageMemory class knows how to figure out how much memory the
+ * pixels of an image take up, which we need for keeping our caches
+ * within their budgets and for reporting where memory goes.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class ImageMemory
+{
+    /**
+     * This method figures out how many bytes of pixel storage back the
+     * image. Note that a sub-image reports the storage of the whole
+     * image it was taken from, since that's what it keeps alive.
+     * 
+     * @param img The image to measure, may be null.
+     * 
+     * @return The size in bytes of the image's data buffer, or 0 for null.
+     */
+    public static long getStorageBytes(BufferedImage img)
+    {
+        if (img == null)
+        {
+            return 0;
+        }
+        return getStorageBytes(img.getRaster().getDataBuffer());
+    }
+
+    /**
+     * This method figures out how many bytes of pixel storage are in
+     * the buffer, across all of its banks.
+     * 
+     * @param buffer The data buffer to measure.
+     * 
+     * @return The size of the buffer in bytes.
+     */
+    public static long getStorageBytes(DataBuffer buffer)
+    {
+        long elementBytes = DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        return elementBytes * buffer.getSize() * buffer.getNumBanks();
+    }
+}
@@ -0,0 +1,234 @@
+package animated_sprite_viewer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The LatencyHistogram class counts how long something takes, over and
+ * over, so we can see its typical and worst times rather than just an
+ * average. Times are counted in buckets that get wider as times get
+ * longer, eight buckets to each doubling, so any percentile we report
+ * is within about an eighth of the real one.
+ *
+ * Recording a time never allocates or locks, it only bumps a few
+ * atomic counters, so it's cheap enough to leave on all the time and
+ * safe to do from any number of threads at once.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class LatencyHistogram
+{
+    // EACH DOUBLING OF TIME IS SPLIT INTO THIS MANY BUCKETS
+    public static final int SUB_BUCKET_BITS = 3;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // ENOUGH BUCKETS FOR ANY TIME A LONG CAN HOLD
+    public static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // HOW MANY TIMES FELL IN EACH BUCKET
+    private AtomicLongArray buckets;
+
+    // AND THE TOTALS, FOR THE MEAN AND THE WORST
+    private AtomicLong count;
+    private AtomicLong totalNanos;
+    private AtomicLong maxNanos;
+
+    /**
+     * Constructor for an empty histogram.
+     */
+    public LatencyHistogram()
+    {
+        buckets = new AtomicLongArray(NUM_BUCKETS);
+        count = new AtomicLong();
+        totalNanos = new AtomicLong();
+        maxNanos = new AtomicLong();
+    }
+
+    /**
+     * This method counts one more time.
+     *
+     * @param nanos How long it took, in nanoseconds.
+     */
+    public void record(long nanos)
+    {
+        nanos = Math.max(0, nanos);
+        buckets.incrementAndGet(getBucket(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while ((nanos > max) && !maxNanos.compareAndSet(max, nanos))
+        {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * This method forgets every time counted so far. Times recorded
+     * while it's clearing may or may not be kept.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    /**
+     * This method takes a copy of the histogram as it is now, for
+     * reporting.
+     *
+     * @return The counts so far.
+     */
+    public Snapshot getSnapshot()
+    {
+        long[] counts = new long[NUM_BUCKETS];
+        long numTimes = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            counts[i] = buckets.get(i);
+            numTimes += counts[i];
+        }
+        return new Snapshot(counts, numTimes, totalNanos.get(), maxNanos.get());
+    }
+
+    /**
+     * Finds the bucket a time falls in. Times under SUB_BUCKETS get a
+     * bucket each, after that each doubling is split evenly.
+     */
+    private static int getBucket(long nanos)
+    {
+        if (nanos < SUB_BUCKETS)
+        {
+            return (int)nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int)(nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) | subBucket;
+    }
+
+    /**
+     * Finds the longest time that falls in a bucket.
+     */
+    private static long getBucketMaxNanos(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long start = (long)(SUB_BUCKETS | (bucket & (SUB_BUCKETS - 1))) << (exponent - SUB_BUCKET_BITS);
+        return start + width - 1;
+    }
+
+    /**
+     * A copy of a histogram's counts at one moment, with everything we
+     * report about it worked out in milliseconds.
+     */
+    public static class Snapshot
+    {
+        private long[] counts;
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        private Snapshot(long[] initCounts, long initCount, long initTotalNanos, long initMaxNanos)
+        {
+            counts = initCounts;
+            count = initCount;
+            totalNanos = initTotalNanos;
+            maxNanos = initMaxNanos;
+        }
+
+        /**
+         * Accessor method for getting how many times were counted.
+         *
+         * @return The number of times counted.
+         */
+        public long getCount() { return count; }
+
+        /**
+         * Accessor method for getting the average time.
+         *
+         * @return The mean time in milliseconds, or 0 if there are none.
+         */
+        public double getMeanMillis()
+        {
+            return (count == 0) ? 0 : (totalNanos / 1e6 / count);
+        }
+
+        /**
+         * Accessor method for getting the typical time.
+         *
+         * @return The 50th percentile time in milliseconds.
+         */
+        public double getMedianMillis() { return getPercentileMillis(50); }
+
+        /**
+         * Accessor method for getting a slow time.
+         *
+         * @return The 90th percentile time in milliseconds.
+         */
+        public double getP90Millis() { return getPercentileMillis(90); }
+
+        /**
+         * Accessor method for getting a very slow time.
+         *
+         * @return The 99th percentile time in milliseconds.
+         */
+        public double getP99Millis() { return getPercentileMillis(99); }
+
+        /**
+         * Accessor method for getting the slowest time.
+         *
+         * @return The longest time in milliseconds.
+         */
+        public double getMaxMillis() { return maxNanos / 1e6; }
+
+        /**
+         * This method finds a percentile of the times, as the top of
+         * the bucket it falls in, though never more than the slowest.
+         *
+         * @param percentile The percentile wanted, from 0 to 100.
+         *
+         * @return The time in milliseconds at that percentile, or 0 if
+         * there are no times.
+         */
+        public double getPercentileMillis(double percentile)
+        {
+            if (count == 0)
+            {
+                return 0;
+            }
+            long rank = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++)
+            {
+                seen += counts[i];
+                if (seen >= rank)
+                {
+                    return Math.min(getBucketMaxNanos(i), maxNanos) / 1e6;
+                }
+            }
+            return maxNanos / 1e6;
+        }
+
+        /**
+         * This method builds a short report of the times.
+         *
+         * @return A one line summary of the times.
+         */
+        public String getReport()
+        {
+            return count + " times, mean " + String.format("%.3f", getMeanMillis())
+                    + " ms, p50 " + String.format("%.3f", getMedianMillis())
+                    + " ms, p99 " + String.format("%.3f", getP99Millis())
+                    + " ms, max " + String.format("%.3f", getMaxMillis()) + " ms";
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package animated_sprite_viewer;
+
+/**
+ * The MemoryBudget class keeps count of how many bytes some work is
+ * holding on to, so that new work can wait its turn rather than running
+ * us out of memory. Work waits until the count is under the budget
+ * before it starts, and adds what it turned out to need once it knows,
+ * so the count can go over the budget by what's started at the same
+ * time, but never by more.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class MemoryBudget
+{
+    // HOW MANY BYTES WE'D LIKE TO STAY UNDER
+    private long maxBytes;
+
+    // AND HOW MANY ARE BEING HELD RIGHT NOW
+    private long usedBytes;
+
+    /**
+     * Constructor for an unused budget.
+     *
+     * @param initMaxBytes How many bytes may be held at once.
+     */
+    public MemoryBudget(long initMaxBytes)
+    {
+        maxBytes = Math.max(1, initMaxBytes);
+        usedBytes = 0;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting the size of the budget.
+     *
+     * @return How many bytes may be held at once.
+     */
+    public long getMaxBytes() { return maxBytes; }
+
+    /**
+     * Accessor method for getting how much of the budget is used.
+     *
+     * @return How many bytes are being held right now.
+     */
+    public synchronized long getUsedBytes() { return usedBytes; }
+
+    /**
+     * This method waits until some of the budget is free.
+     *
+     * @throws InterruptedException Thrown if we're interrupted while
+     * waiting.
+     */
+    public synchronized void awaitRoom() throws InterruptedException
+    {
+        while (usedBytes >= maxBytes)
+        {
+            wait();
+        }
+    }
+
+    /**
+     * This method counts bytes that are now being held, whether or not
+     * there's room for them, since by the time we know how much some
+     * work needs it has already taken it.
+     *
+     * @param bytes How many more bytes are being held.
+     */
+    public synchronized void add(long bytes)
+    {
+        usedBytes += bytes;
+    }
+
+    /**
+     * This method gives bytes back to the budget, letting anyone waiting
+     * for room go ahead if there now is some.
+     *
+     * @param bytes How many bytes are no longer being held.
+     */
+    public synchronized void release(long bytes)
+    {
+        usedBytes = Math.max(0, usedBytes - bytes);
+        notifyAll();
+    }
+}
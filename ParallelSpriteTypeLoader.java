@@ -0,0 +1,173 @@
+package animated_sprite_viewer;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import sprite_renderer.SpriteType;
+
+/**
+ * The ParallelSpriteTypeLoader class loads whole sprite types
+ * concurrently using a pool of worker threads. Each sprite type is
+ * validated, parsed, and has its images decoded on a single worker,
+ * but different sprite types are loaded at the same time.
+ *
+ * Results are always collected in the order the sprite types were
+ * listed, so the resulting map and any error reported are the same
+ * as what loading them one at a time would produce.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class ParallelSpriteTypeLoader
+{
+    // USED FOR NAMING OUR WORKER THREADS
+    public static final String WORKER_THREAD_NAME = "sprite-type-loader-";
+
+    // THIS DOES THE ACTUAL LOADING OF EACH SPRITE TYPE
+    private AnimatedSpriteXMLLoader xmlLoader;
+
+    // HOW MANY SPRITE TYPES MAY BE LOADED AT ONCE
+    private int numThreads;
+
+    // IF TRUE, EACH SPRITE TYPE GETS ITS OWN VIRTUAL THREAD INSTEAD
+    private boolean useVirtualThreads;
+
+    /**
+     * Constructor for this loader, it just keeps the settings for later.
+     *
+     * @param initXMLLoader Loader used for each individual sprite type.
+     *
+     * @param initNumThreads Size of the worker pool.
+     *
+     * @param initUseVirtualThreads If true, and if the running JVM supports
+     * them, virtual threads are used instead of a fixed size pool.
+     */
+    public ParallelSpriteTypeLoader(    AnimatedSpriteXMLLoader initXMLLoader,
+                                        int initNumThreads,
+                                        boolean initUseVirtualThreads)
+    {
+        xmlLoader = initXMLLoader;
+        numThreads = Math.max(1, initNumThreads);
+        useVirtualThreads = initUseVirtualThreads;
+    }
+
+    /**
+     * Loads all the sprite types named in spriteTypeNames into the
+     * spriteTypes map. If any of them fails to load, the failure of the
+     * first such sprite type in list order is the one thrown, and only
+     * the sprite types listed before it will have been put in the map.
+     *
+     * @param path Path to the sprite types home directory.
+     *
+     * @param spriteTypeNames Names of all the sprite types to load.
+     *
+     * @param spriteTypes Map where we'll put all the loaded sprite types.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if a sprite type xml
+     * file does not validate against its schema.
+     */
+    public void loadSpriteTypes(String path,
+                                ArrayList<String> spriteTypeNames,
+                                HashMap<String, SpriteType> spriteTypes)
+            throws InvalidXMLFileFormatException
+    {
+        ExecutorService executor = createExecutor();
+        try
+        {
+            // HAND OUT ALL THE WORK FIRST
+            ArrayList<Future<SpriteType>> results = new ArrayList<Future<SpriteType>>();
+            for (final String spriteTypeName : spriteTypeNames)
+            {
+                final String typePath = path;
+                results.add(executor.submit(new Callable<SpriteType>()
+                {
+                    @Override
+                    public SpriteType call() throws InvalidXMLFileFormatException
+                    {
+                        return xmlLoader.loadSpriteType(typePath, spriteTypeName);
+                    }
+                }));
+            }
+
+            // THEN COLLECT IT IN LIST ORDER
+            for (int i = 0; i < spriteTypeNames.size(); i++)
+            {
+                spriteTypes.put(spriteTypeNames.get(i), waitFor(results.get(i)));
+            }
+        }
+        finally
+        {
+            // ANY WORK STILL PENDING AFTER A FAILURE IS NOT NEEDED
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a single sprite type to finish loading, unwrapping
+     * whatever went wrong so that it can be rethrown as is.
+     */
+    private SpriteType waitFor(Future<SpriteType> result)
+            throws InvalidXMLFileFormatException
+    {
+        try
+        {
+            return result.get();
+        }
+        catch (ExecutionException ee)
+        {
+            Throwable cause = ee.getCause();
+            if (cause instanceof InvalidXMLFileFormatException)
+                throw (InvalidXMLFileFormatException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        }
+    }
+
+    /**
+     * Builds the executor that will do our loading. Virtual threads only
+     * exist on newer JVMs, so we look them up reflectively and fall back
+     * to a regular pool when they're not there.
+     */
+    private ExecutorService createExecutor()
+    {
+        if (useVirtualThreads)
+        {
+            try
+            {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService)factory.invoke(null);
+            }
+            catch (Exception e)
+            {
+                // NOT SUPPORTED, SO USE PLATFORM THREADS
+            }
+        }
+        return Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+        {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, WORKER_THREAD_NAME + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+}
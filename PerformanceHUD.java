@@ -0,0 +1,421 @@
+package animated_sprite_viewer;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import javax.swing.JComponent;
+import javax.swing.JLayer;
+import javax.swing.plaf.LayerUI;
+import sprite_renderer.AnimationState;
+import sprite_renderer.SceneRenderer;
+
+/**
+ * The PerformanceHUD class draws a heads up display over the scene
+ * renderer showing how smoothly it's animating: the frames per second,
+ * a graph of recent frame times, the time scaler, and how much image
+ * memory the sprite type being viewed uses. It's a LayerUI, so it's
+ * painted right after the renderer every time the renderer paints, and
+ * it times those paints themselves.
+ *
+ * It also follows the selected animation along its timeline, at the
+ * renderer's tick length scaled by its time scaler, and shows for the
+ * last pose how long it was meant to be on screen and how long it
+ * actually was, from the first frame drawn with it to the first frame
+ * drawn after it. A pose that stays up longer than it should by more
+ * than a frame missed its deadline, which is the stutter artists see.
+ *
+ * Painting the HUD doesn't allocate anything of ours, all its text is
+ * written into one reused character buffer, so having it on doesn't
+ * change the frame times it's measuring.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class PerformanceHUD extends LayerUI<SceneRenderer>
+{
+    private static final long serialVersionUID = 1L;
+
+    // HOW MANY FRAMES THE GRAPH AND THE FRAME RATE COVER
+    public static final int FRAME_HISTORY = 120;
+
+    // HOW LONG A FRAME MAY TAKE AT 60 FRAMES A SECOND
+    public static final double FRAME_BUDGET_MILLIS = CrowdPanel.FRAME_BUDGET_MILLIS;
+
+    // A GAP BETWEEN FRAMES LONGER THAN THIS MEANS THE SCENE WAS PAUSED
+    public static final long PAUSE_NANOS = 500000000L;
+
+    // HOW THE HUD LOOKS
+    public static final int MARGIN = 8;
+    public static final int LINE_HEIGHT = 14;
+    public static final int GRAPH_HEIGHT = 40;
+    public static final int HUD_WIDTH = 300;
+    public static final int HUD_HEIGHT = 5 * LINE_HEIGHT + GRAPH_HEIGHT + 3 * MARGIN;
+    public static final double GRAPH_MAX_MILLIS = 2 * FRAME_BUDGET_MILLIS;
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color BACKGROUND = new Color(32, 32, 32);
+    private static final Color TEXT = Color.white;
+    private static final Color MISSED = new Color(255, 96, 96);
+    private static final Color GRAPH = new Color(96, 255, 96);
+    private static final Color BUDGET = Color.yellow;
+    private static final String NO_ANIMATION = "no animation selected";
+
+    // WHETHER WE'RE SHOWING
+    private boolean showing;
+
+    // HOW LONG A TICK OF POSE DURATION LASTS WHEN THE TIME SCALER IS 1
+    private double millisPerTick;
+
+    // WHEN RECENT FRAMES WERE DRAWN, AS GAPS BETWEEN THEM
+    private long[] frameNanos;
+    private int numFrames;
+    private int nextFrame;
+    private long lastPaintTime;
+
+    // THE ANIMATION BEING VIEWED, FOLLOWED ON OUR OWN CLOCK
+    private PlaybackSprite sprite;
+    private long imageBytes;
+    private double pendingNanos;
+    private long poseShownTime;
+
+    // WHAT HAPPENED WITH THE LAST POSE TO FINISH
+    private int lastPoseIndex;
+    private double lastPoseIntendedMillis;
+    private double lastPoseShownMillis;
+    private int numMissedPoses;
+
+    // ALL OUR TEXT IS BUILT IN HERE
+    private char[] text;
+
+    // THE HUD IS DRAWN HERE AND THEN COPIED OVER THE RENDERER, SINCE
+    // SETTING UP TEXT ON THE NEW GRAPHICS SWING GIVES US EVERY PAINT
+    // ALLOCATES, BUT OUR OWN GRAPHICS ONLY DOES THAT ONCE
+    private BufferedImage hudImage;
+    private Graphics2D hudGraphics;
+
+    /**
+     * Constructor for a HUD that starts out hidden.
+     *
+     * @param initMillisPerTick How many milliseconds a tick of pose
+     * duration lasts in the renderer when its time scaler is 1.
+     */
+    public PerformanceHUD(double initMillisPerTick)
+    {
+        showing = false;
+        millisPerTick = initMillisPerTick;
+        frameNanos = new long[FRAME_HISTORY];
+        text = new char[128];
+        setAnimation(null, null, 0);
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for testing if the HUD is being shown.
+     *
+     * @return true if it's drawn over the renderer, false otherwise.
+     */
+    public boolean isShowing() { return showing; }
+
+    /**
+     * Accessor method for getting how many poses have missed their
+     * deadlines since the animation was selected.
+     *
+     * @return The number of poses shown for more than a frame too long.
+     */
+    public int getNumMissedPoses() { return numMissedPoses; }
+
+    /**
+     * Mutator method for showing or hiding the HUD. Frame times are only
+     * kept while it's showing, so it starts fresh each time.
+     *
+     * @param initShowing true to show the HUD, false to hide it.
+     */
+    public void setShowing(boolean initShowing)
+    {
+        showing = initShowing;
+        numFrames = 0;
+        nextFrame = 0;
+        lastPaintTime = 0;
+        firePropertyChange("showing", !showing, showing);
+    }
+
+    /**
+     * This method changes which animation the HUD follows, starting it
+     * from its first pose, as the renderer does.
+     *
+     * @param frames Images and poses of the sprite type, or null if no
+     * animation is being viewed.
+     *
+     * @param state The animation state being viewed, or null.
+     *
+     * @param initImageBytes How much image memory the sprite type uses.
+     */
+    public void setAnimation(SpriteTypeFrames frames, AnimationState state, long initImageBytes)
+    {
+        if ((frames == null) || (state == null) || (frames.getTimeline(state) == null))
+        {
+            sprite = null;
+        }
+        else
+        {
+            sprite = new PlaybackSprite(frames, state, 0, 0);
+        }
+        imageBytes = initImageBytes;
+        pendingNanos = 0;
+        poseShownTime = 0;
+        lastPoseIndex = -1;
+        lastPoseIntendedMillis = 0;
+        lastPoseShownMillis = 0;
+        numMissedPoses = 0;
+    }
+
+    /**
+     * Repaints the layer when the HUD is shown or hidden.
+     */
+    @Override
+    public void applyPropertyChange(PropertyChangeEvent pce, JLayer<? extends SceneRenderer> layer)
+    {
+        if ("showing".equals(pce.getPropertyName()))
+        {
+            layer.repaint();
+        }
+    }
+
+    /**
+     * Paints the renderer, then, if we're showing, times the frame and
+     * draws the HUD over it.
+     *
+     * @param g Graphics to draw with.
+     *
+     * @param c The layer being painted.
+     */
+    @Override
+    public void paint(Graphics g, JComponent c)
+    {
+        super.paint(g, c);
+        if (!showing)
+        {
+            return;
+        }
+        SceneRenderer renderer = (SceneRenderer)((JLayer<?>)c).getView();
+        long now = System.nanoTime();
+        float timeScaler = renderer.getTimeScaler();
+        recordFrame(now, timeScaler);
+        if (hudImage == null)
+        {
+            hudImage = new BufferedImage(HUD_WIDTH, HUD_HEIGHT, BufferedImage.TYPE_INT_RGB);
+            hudGraphics = hudImage.createGraphics();
+            hudGraphics.setFont(FONT);
+        }
+        drawHUD(hudGraphics, timeScaler);
+        g.drawImage(hudImage, 0, 0, null);
+    }
+
+    /**
+     * Counts a frame drawn now, and moves our copy of the animation
+     * along by however long it's been since the last one.
+     */
+    private void recordFrame(long now, float timeScaler)
+    {
+        long gap = (lastPaintTime == 0) ? 0 : (now - lastPaintTime);
+        lastPaintTime = now;
+        if ((gap <= 0) || (gap > PAUSE_NANOS))
+        {
+            // NOTHING TO MEASURE, OR WE WERE PAUSED, SO START OVER
+            poseShownTime = now;
+            return;
+        }
+        frameNanos[nextFrame] = gap;
+        nextFrame = (nextFrame + 1) % FRAME_HISTORY;
+        numFrames = Math.min(numFrames + 1, FRAME_HISTORY);
+
+        if ((sprite == null) || (sprite.getTimeline().getTotalDuration() <= 0))
+        {
+            return;
+        }
+        if (poseShownTime == 0)
+        {
+            // THE FIRST FRAME OF A NEWLY SELECTED ANIMATION
+            poseShownTime = now;
+        }
+        double tickNanos = Math.max(1e-3, millisPerTick * timeScaler) * 1e6;
+        pendingNanos += gap;
+        long ticks = (long)(pendingNanos / tickNanos);
+        if (ticks == 0)
+        {
+            return;
+        }
+        pendingNanos -= ticks * tickNanos;
+        int poseIndex = sprite.getPoseIndex();
+        sprite.setTime(sprite.getTime() + ticks);
+        if (sprite.getPoseIndex() != poseIndex)
+        {
+            // THE POSE WE WERE ON IS DONE, HOW DID IT DO?
+            lastPoseIndex = poseIndex;
+            lastPoseIntendedMillis = sprite.getTimeline().getDuration(poseIndex) * millisPerTick * timeScaler;
+            lastPoseShownMillis = (now - poseShownTime) / 1e6;
+            if (lastPoseShownMillis > lastPoseIntendedMillis + FRAME_BUDGET_MILLIS)
+            {
+                numMissedPoses++;
+            }
+            poseShownTime = now;
+        }
+    }
+
+    /**
+     * Draws the text and the frame time graph in the top left corner.
+     */
+    private void drawHUD(Graphics g, float timeScaler)
+    {
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, HUD_WIDTH, HUD_HEIGHT);
+        g.setColor(TEXT);
+
+        // FRAME RATE
+        long totalNanos = 0;
+        for (int i = 0; i < numFrames; i++)
+        {
+            totalNanos += frameNanos[i];
+        }
+        double fps = (totalNanos == 0) ? 0 : (numFrames * 1e9 / totalNanos);
+        double averageMillis = (numFrames == 0) ? 0 : (totalNanos / 1e6 / numFrames);
+        int y = MARGIN + LINE_HEIGHT - 3;
+        int n = append(0, "FPS ");
+        n = append(n, fps, 1);
+        n = append(n, "  frame ");
+        n = append(n, averageMillis, 1);
+        n = append(n, " ms");
+        g.drawChars(text, 0, n, MARGIN, y);
+
+        // HOW FAST THE ANIMATION IS SET TO GO, AND WHAT IT COSTS
+        y += LINE_HEIGHT;
+        n = append(0, "time scaler ");
+        n = append(n, timeScaler, 2);
+        n = append(n, "  images ");
+        n = append(n, imageBytes / 1024.0, 0);
+        n = append(n, " KB");
+        g.drawChars(text, 0, n, MARGIN, y);
+
+        // AND HOW THE POSES ARE KEEPING UP
+        y += LINE_HEIGHT;
+        if (sprite == null)
+        {
+            n = append(0, NO_ANIMATION);
+            g.drawChars(text, 0, n, MARGIN, y);
+            y += 2 * LINE_HEIGHT;
+        }
+        else
+        {
+            n = append(0, "pose ");
+            n = append(n, sprite.getPoseIndex() + 1, 0);
+            n = append(n, " of ");
+            n = append(n, sprite.getTimeline().getNumPoses(), 0);
+            n = append(n, "  missed ");
+            n = append(n, numMissedPoses, 0);
+            g.drawChars(text, 0, n, MARGIN, y);
+            y += LINE_HEIGHT;
+            if (lastPoseIndex >= 0)
+            {
+                n = append(0, "last pose ");
+                n = append(n, lastPoseIndex + 1, 0);
+                n = append(n, ": ");
+                n = append(n, lastPoseIntendedMillis, 1);
+                n = append(n, " ms, shown ");
+                n = append(n, lastPoseShownMillis, 1);
+                n = append(n, " ms");
+                g.setColor((lastPoseShownMillis > lastPoseIntendedMillis + FRAME_BUDGET_MILLIS) ? MISSED : TEXT);
+                g.drawChars(text, 0, n, MARGIN, y);
+            }
+            y += LINE_HEIGHT;
+        }
+
+        // THE GRAPH, OLDEST FRAME ON THE LEFT, WITH THE BUDGET MARKED
+        int graphBottom = y + MARGIN + GRAPH_HEIGHT - LINE_HEIGHT + 3;
+        int budgetY = graphBottom - (int)(GRAPH_HEIGHT * FRAME_BUDGET_MILLIS / GRAPH_MAX_MILLIS);
+        g.setColor(BUDGET);
+        g.drawLine(MARGIN, budgetY, MARGIN + FRAME_HISTORY * 2, budgetY);
+        for (int i = 0; i < numFrames; i++)
+        {
+            long nanos = frameNanos[(nextFrame - numFrames + i + FRAME_HISTORY) % FRAME_HISTORY];
+            int barHeight = (int)Math.min(GRAPH_HEIGHT, GRAPH_HEIGHT * (nanos / 1e6) / GRAPH_MAX_MILLIS);
+            g.setColor((nanos / 1e6 > FRAME_BUDGET_MILLIS) ? MISSED : GRAPH);
+            g.drawLine(MARGIN + i * 2, graphBottom, MARGIN + i * 2, graphBottom - barHeight);
+        }
+    }
+
+    /**
+     * Puts some words in the text buffer.
+     *
+     * @return Where the text now ends.
+     */
+    private int append(int end, String words)
+    {
+        int length = Math.min(words.length(), text.length - end);
+        words.getChars(0, length, text, end);
+        return end + length;
+    }
+
+    /**
+     * Puts a number in the text buffer, rounded to some decimal places,
+     * without making a String of it.
+     *
+     * @return Where the text now ends.
+     */
+    private int append(int end, double value, int decimals)
+    {
+        if (value < 0)
+        {
+            end = appendChar(end, '-');
+            value = -value;
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++)
+        {
+            scale *= 10;
+        }
+        long scaled = Math.round(value * scale);
+        end = appendDigits(end, scaled / scale);
+        if (decimals > 0)
+        {
+            end = appendChar(end, '.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 0; digit /= 10)
+            {
+                end = appendChar(end, (char)('0' + (fraction / digit) % 10));
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Puts a whole number in the text buffer.
+     */
+    private int appendDigits(int end, long value)
+    {
+        long digit = 1;
+        while (value / digit >= 10)
+        {
+            digit *= 10;
+        }
+        for (; digit > 0; digit /= 10)
+        {
+            end = appendChar(end, (char)('0' + (value / digit) % 10));
+        }
+        return end;
+    }
+
+    /**
+     * Puts one character in the text buffer, if there's room.
+     */
+    private int appendChar(int end, char c)
+    {
+        if (end < text.length)
+        {
+            text[end++] = c;
+        }
+        return end;
+    }
+}
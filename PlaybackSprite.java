@@ -0,0 +1,204 @@
+package animated_sprite_viewer;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import sprite_renderer.AnimationState;
+
+/**
+ * The PlaybackSprite class plays one animation state of a sprite type
+ * on a clock we control, rather than on the renderer's own. Each call to
+ * advance moves it along its timeline by however many ticks we say, so
+ * the same calls always produce the same frames, which is what we need
+ * for drawing animations offscreen. It can also be put at any time or
+ * pose of its animation directly, for scrubbing through it.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class PlaybackSprite
+{
+    // WHAT WE'RE PLAYING
+    private SpriteTypeFrames frames;
+    private AnimationState state;
+    private PoseTimeline timeline;
+
+    // WHERE WE ARE IN IT, ALWAYS WITHIN ONE PLAY THROUGH
+    private long time;
+    private int poseIndex;
+
+    // AND WHERE WE'RE DRAWN
+    private int x;
+    private int y;
+
+    /**
+     * Constructor for a sprite at the start of its animation.
+     * 
+     * @param initFrames Images and poses of the sprite's type.
+     * 
+     * @param initState The animation state to play, which the sprite
+     * type must have.
+     * 
+     * @param initX Where the left of the sprite is drawn.
+     * 
+     * @param initY Where the top of the sprite is drawn.
+     */
+    public PlaybackSprite(  SpriteTypeFrames initFrames,
+                            AnimationState initState,
+                            int initX,
+                            int initY)
+    {
+        frames = initFrames;
+        state = initState;
+        timeline = frames.getTimeline(initState);
+        time = 0;
+        poseIndex = timeline.getPoseIndexAt(0);
+        x = initX;
+        y = initY;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting the animation state being played.
+     * 
+     * @return The animation state this sprite plays.
+     */
+    public AnimationState getState() { return state; }
+
+    /**
+     * Accessor method for getting where the sprite is drawn.
+     * 
+     * @return The x coordinate of the left of the sprite.
+     */
+    public int getX() { return x; }
+
+    /**
+     * Accessor method for getting where the sprite is drawn.
+     * 
+     * @return The y coordinate of the top of the sprite.
+     */
+    public int getY() { return y; }
+
+    /**
+     * Accessor method for getting how wide the sprite is drawn.
+     * 
+     * @return The width of the sprite's type.
+     */
+    public int getWidth() { return frames.getWidth(); }
+
+    /**
+     * Accessor method for getting how tall the sprite is drawn.
+     * 
+     * @return The height of the sprite's type.
+     */
+    public int getHeight() { return frames.getHeight(); }
+
+    /**
+     * Accessor method for getting the timeline being played.
+     * 
+     * @return The poses of the animation state this sprite plays.
+     */
+    public PoseTimeline getTimeline() { return timeline; }
+
+    /**
+     * Accessor method for getting how far into its animation the
+     * sprite is.
+     * 
+     * @return The time, from 0 up to the animation's total duration.
+     */
+    public long getTime() { return time; }
+
+    /**
+     * Accessor method for getting the pose the sprite shows right now.
+     * 
+     * @return The index of the current pose, or -1 if there are none.
+     */
+    public int getPoseIndex() { return poseIndex; }
+
+    /**
+     * Accessor method for getting the image the sprite shows right now.
+     * 
+     * @return The image of the current pose, or null if there isn't one.
+     */
+    public BufferedImage getCurrentImage()
+    {
+        if (poseIndex < 0)
+        {
+            return null;
+        }
+        return frames.getImage(timeline.getImageId(poseIndex));
+    }
+
+    /**
+     * This method moves the sprite along its animation, looping back to
+     * the first pose after the last one.
+     * 
+     * @param ticks How many ticks of the clock have gone by.
+     */
+    public void advance(int ticks)
+    {
+        setTime(time + ticks);
+    }
+
+    /**
+     * This method puts the sprite at any point of its animation.
+     * 
+     * @param newTime The time to go to, it's wrapped into the animation.
+     */
+    public void setTime(long newTime)
+    {
+        time = timeline.wrapTime(newTime);
+
+        // MOST OF THE TIME WE'RE STILL IN THE SAME POSE, OTHERWISE
+        // WE LOOK THE NEW ONE UP
+        if ((poseIndex >= 0)
+                && (time >= timeline.getStartTime(poseIndex))
+                && (time < timeline.getStartTime(poseIndex) + timeline.getDuration(poseIndex)))
+        {
+            return;
+        }
+        poseIndex = timeline.getPoseIndexAt(time);
+    }
+
+    /**
+     * This method moves the sprite to the start of a pose some number
+     * of poses away from the current one, looping around the ends of
+     * the animation. Poses that take no time are skipped over, since
+     * they're never shown.
+     * 
+     * @param poses How many poses to move, negative to go backwards.
+     */
+    public void stepPoses(int poses)
+    {
+        int numPoses = timeline.getNumPoses();
+        if ((numPoses == 0) || (timeline.getTotalDuration() <= 0))
+        {
+            return;
+        }
+        int direction = (poses < 0) ? -1 : 1;
+        int index = poseIndex;
+        for (int i = 0; i < Math.abs(poses); i++)
+        {
+            do
+            {
+                index = (index + direction + numPoses) % numPoses;
+            }
+            while (timeline.getDuration(index) == 0);
+        }
+        setTime(timeline.getStartTime(index));
+    }
+
+    /**
+     * This method draws the sprite's current image where it belongs.
+     * 
+     * @param g Graphics to draw with.
+     */
+    public void draw(Graphics2D g)
+    {
+        BufferedImage image = getCurrentImage();
+        if (image != null)
+        {
+            g.drawImage(image, x, y, null);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package animated_sprite_viewer;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import sprite_renderer.AnimationState;
+
+/**
+ * The PoseScrubber class lets the user look at any moment of an
+ * animation. Dragging its slider jumps straight to that time, and its
+ * step buttons move a pose at a time, and either way the pose shown then
+ * is drawn in a small preview next to them. Jumping anywhere is quick
+ * no matter how long the animation is, since the pose at a time is
+ * looked up in the animation's PoseTimeline rather than played to.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class PoseScrubber extends JPanel
+{
+    private static final long serialVersionUID = 1L;
+
+    // HOW BIG THE PREVIEW IS, BIGGER FRAMES ARE SCALED DOWN TO FIT
+    public static final int PREVIEW_SIZE = 64;
+
+    // SHOWN WHEN THERE'S NOTHING TO SCRUB
+    public static final String NO_ANIMATION_TEXT = "No animation selected";
+
+    // THE CONTROLS
+    private JButton previousPoseButton;
+    private JSlider timeSlider;
+    private JButton nextPoseButton;
+    private JLabel poseLabel;
+    private PreviewComponent preview;
+
+    // WHAT WE'RE SCRUBBING THROUGH, NULL IF NOTHING
+    private PlaybackSprite sprite;
+
+    // SO WE DON'T REACT TO OUR OWN CHANGES TO THE SLIDER
+    private boolean updatingSlider;
+
+    /**
+     * Constructor for this scrubber, it starts out with nothing to show.
+     */
+    public PoseScrubber()
+    {
+        previousPoseButton = new JButton("<");
+        previousPoseButton.setToolTipText("Previous Pose");
+        timeSlider = new JSlider(0, 0, 0);
+        timeSlider.setToolTipText("Scrub Through Animation");
+        nextPoseButton = new JButton(">");
+        nextPoseButton.setToolTipText("Next Pose");
+        poseLabel = new JLabel(NO_ANIMATION_TEXT);
+        preview = new PreviewComponent();
+        add(preview);
+        add(previousPoseButton);
+        add(timeSlider);
+        add(nextPoseButton);
+        add(poseLabel);
+
+        // DRAGGING JUMPS STRAIGHT TO THAT TIME
+        timeSlider.addChangeListener(new ChangeListener()
+        {
+            @Override
+            public void stateChanged(ChangeEvent ce)
+            {
+                if ((sprite != null) && !updatingSlider)
+                {
+                    sprite.setTime(timeSlider.getValue());
+                    showPose();
+                }
+            }
+        });
+
+        // AND THE BUTTONS MOVE A POSE AT A TIME
+        previousPoseButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent ae)
+            {
+                stepPoses(-1);
+            }
+        });
+        nextPoseButton.addActionListener(new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent ae)
+            {
+                stepPoses(1);
+            }
+        });
+        setAnimation(null, null);
+    }
+
+    /**
+     * This method changes which animation we scrub through, starting at
+     * its beginning.
+     *
+     * @param frames Images and poses of the sprite type, or null to show
+     * nothing.
+     *
+     * @param state The animation state to scrub through, or null to show
+     * nothing.
+     */
+    public void setAnimation(SpriteTypeFrames frames, AnimationState state)
+    {
+        if ((frames == null) || (state == null) || (frames.getTimeline(state) == null))
+        {
+            sprite = null;
+        }
+        else
+        {
+            sprite = new PlaybackSprite(frames, state, 0, 0);
+        }
+        boolean enabled = (sprite != null) && (sprite.getTimeline().getTotalDuration() > 0);
+        previousPoseButton.setEnabled(enabled);
+        timeSlider.setEnabled(enabled);
+        nextPoseButton.setEnabled(enabled);
+        updatingSlider = true;
+        timeSlider.setMaximum(enabled ? (int)Math.min(Integer.MAX_VALUE, sprite.getTimeline().getTotalDuration() - 1) : 0);
+        timeSlider.setValue(0);
+        updatingSlider = false;
+        showPose();
+    }
+
+    /**
+     * Moves some number of poses and puts the slider where that is.
+     */
+    private void stepPoses(int poses)
+    {
+        if (sprite == null)
+        {
+            return;
+        }
+        sprite.stepPoses(poses);
+        updatingSlider = true;
+        timeSlider.setValue((int)Math.min(Integer.MAX_VALUE, sprite.getTime()));
+        updatingSlider = false;
+        showPose();
+    }
+
+    /**
+     * Updates the label and the preview to match the current pose.
+     */
+    private void showPose()
+    {
+        if (sprite == null)
+        {
+            poseLabel.setText(NO_ANIMATION_TEXT);
+        }
+        else
+        {
+            PoseTimeline timeline = sprite.getTimeline();
+            poseLabel.setText("Pose " + (sprite.getPoseIndex() + 1) + " of " + timeline.getNumPoses()
+                    + ", time " + sprite.getTime() + " of " + timeline.getTotalDuration());
+        }
+        preview.repaint();
+    }
+
+    /**
+     * Draws the current pose, scaled down if it doesn't fit.
+     */
+    private class PreviewComponent extends JComponent
+    {
+        private static final long serialVersionUID = 1L;
+
+        private PreviewComponent()
+        {
+            setPreferredSize(new Dimension(PREVIEW_SIZE, PREVIEW_SIZE));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g)
+        {
+            g.setColor(Color.white);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            BufferedImage image = (sprite == null) ? null : sprite.getCurrentImage();
+            if (image == null)
+            {
+                return;
+            }
+            double scale = Math.min(1.0, Math.min((double)getWidth() / image.getWidth(),
+                                                  (double)getHeight() / image.getHeight()));
+            int width = (int)(image.getWidth() * scale);
+            int height = (int)(image.getHeight() * scale);
+            g.drawImage(image, (getWidth() - width) / 2, (getHeight() - height) / 2, width, height, null);
+        }
+    }
+}
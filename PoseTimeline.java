@@ -0,0 +1,166 @@
+package animated_sprite_viewer;
+
+import java.util.Arrays;
+
+/**
+ * The PoseTimeline class holds the poses of one animation state, in
+ * order, each with the id of the image it shows and how long it lasts.
+ * It's our own copy of what goes into a sprite type's PoseList, kept so
+ * that we can step through an animation ourselves, for example when
+ * drawing it offscreen.
+ * 
+ * As poses are added we also keep the time each one starts at, so the
+ * pose shown at any time can be found with a binary search, instead of
+ * adding up durations from the first pose. That's what lets us jump
+ * straight to any point of even a very long animation.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class PoseTimeline
+{
+    // HOW MANY POSES WE HAVE ROOM FOR TO START WITH
+    public static final int INITIAL_CAPACITY = 8;
+
+    // THE POSES, IN ORDER, AND THE TIME EACH ONE STARTS AT
+    private int[] imageIds;
+    private int[] durations;
+    private long[] startTimes;
+    private int numPoses;
+
+    // ALL THE DURATIONS ADDED UP
+    private long totalDuration;
+
+    /**
+     * Constructor for an empty timeline.
+     */
+    public PoseTimeline()
+    {
+        imageIds = new int[INITIAL_CAPACITY];
+        durations = new int[INITIAL_CAPACITY];
+        startTimes = new long[INITIAL_CAPACITY];
+        numPoses = 0;
+        totalDuration = 0;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many poses there are.
+     * 
+     * @return The number of poses in this timeline.
+     */
+    public int getNumPoses() { return numPoses; }
+
+    /**
+     * Accessor method for getting the image shown by a pose.
+     * 
+     * @param index Index of the pose, from 0 to getNumPoses() - 1.
+     * 
+     * @return The id of the image the pose shows.
+     */
+    public int getImageId(int index) { return imageIds[index]; }
+
+    /**
+     * Accessor method for getting how long a pose lasts.
+     * 
+     * @param index Index of the pose, from 0 to getNumPoses() - 1.
+     * 
+     * @return The duration of the pose.
+     */
+    public int getDuration(int index) { return durations[index]; }
+
+    /**
+     * Accessor method for getting when a pose starts.
+     * 
+     * @param index Index of the pose, from 0 to getNumPoses() - 1.
+     * 
+     * @return The durations of all the poses before it added up.
+     */
+    public long getStartTime(int index) { return startTimes[index]; }
+
+    /**
+     * Accessor method for getting how long the whole animation lasts.
+     * 
+     * @return The durations of all the poses added up.
+     */
+    public long getTotalDuration() { return totalDuration; }
+
+    /**
+     * This method adds a pose to the end of the timeline.
+     * 
+     * @param imageId Id of the image the pose shows.
+     * 
+     * @param duration How long the pose lasts.
+     */
+    public void addPose(int imageId, int duration)
+    {
+        if (numPoses == imageIds.length)
+        {
+            imageIds = Arrays.copyOf(imageIds, numPoses * 2);
+            durations = Arrays.copyOf(durations, numPoses * 2);
+            startTimes = Arrays.copyOf(startTimes, numPoses * 2);
+        }
+        imageIds[numPoses] = imageId;
+        durations[numPoses] = duration;
+        startTimes[numPoses] = totalDuration;
+        numPoses++;
+        totalDuration += duration;
+    }
+
+    /**
+     * This method turns any time into the matching time within one play
+     * through of the animation, since animations loop.
+     * 
+     * @param time Any time, may be negative or past the end.
+     * 
+     * @return The same point of the animation, from 0 up to but not
+     * including getTotalDuration(), or 0 if the animation takes no time.
+     */
+    public long wrapTime(long time)
+    {
+        if (totalDuration <= 0)
+        {
+            return 0;
+        }
+        long wrapped = time % totalDuration;
+        return (wrapped < 0) ? (wrapped + totalDuration) : wrapped;
+    }
+
+    /**
+     * This method finds the pose shown at a given time. Poses that take
+     * no time are never shown, so they're never the answer unless all
+     * of them take no time.
+     * 
+     * @param time Any time, it's wrapped into the animation first.
+     * 
+     * @return The index of the pose shown at that time, or -1 if there
+     * are no poses.
+     */
+    public int getPoseIndexAt(long time)
+    {
+        if (numPoses == 0)
+        {
+            return -1;
+        }
+        long t = wrapTime(time);
+
+        // FIND THE FIRST POSE STARTING AFTER t, THE ONE BEFORE IT IS
+        // THE ONE SHOWN, AND SKIPS ANY STARTING AT t BUT TAKING NO TIME
+        int low = 0;
+        int high = numPoses;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (startTimes[middle] <= t)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return Math.max(0, low - 1);
+    }
+}
@@ -0,0 +1,369 @@
+package animated_sprite_viewer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import sprite_renderer.AnimationState;
+import sprite_renderer.SceneRenderer;
+import sprite_renderer.Sprite;
+import sprite_renderer.SpriteType;
+
+/**
+ * The RenderBenchmark class measures how fast sprites can be drawn,
+ * without any window. It loads the real sprite types, puts N sprites
+ * playing up to M animation states each into a scene, and then draws
+ * the scene into an offscreen image over and over, stepping every
+ * animation along on a clock of its own so that each run draws exactly
+ * the same frames. Afterwards it reports the frames per second, the
+ * distribution of frame times, and how much was allocated per frame.
+ *
+ * It's configured with system properties, for example:
+ *
+ * java -Djava.awt.headless=true -Dasv.bench.sprites=500 -Dasv.bench.states=2
+ *      animated_sprite_viewer.RenderBenchmark
+ *
+ * The images are loaded just like the viewer loads them, so the loader
+ * settings such as asv.loader.compatibleImages and asv.loader.atlas
+ * apply here too. Setting asv.bench.sceneRenderer also times painting
+ * the same sprites with a SceneRenderer. Its animations run on its own
+ * clock, so only its drawing is comparable, not which frames it draws.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class RenderBenchmark
+{
+    // FOR CONFIGURING THE BENCHMARK, THESE ARE SYSTEM PROPERTIES
+    public static final String SPRITES_PROPERTY = "asv.bench.sprites";
+    public static final String STATES_PROPERTY = "asv.bench.states";
+    public static final String FRAMES_PROPERTY = "asv.bench.frames";
+    public static final String WARMUP_FRAMES_PROPERTY = "asv.bench.warmupFrames";
+    public static final String TICKS_PER_FRAME_PROPERTY = "asv.bench.ticksPerFrame";
+    public static final String WIDTH_PROPERTY = "asv.bench.width";
+    public static final String HEIGHT_PROPERTY = "asv.bench.height";
+    public static final String SCENE_RENDERER_PROPERTY = "asv.bench.sceneRenderer";
+
+    // AND THEIR DEFAULTS, THE SIZE IS THAT OF THE VIEWER'S WINDOW
+    public static final int DEFAULT_SPRITES = 100;
+    public static final int DEFAULT_STATES = 1;
+    public static final int DEFAULT_FRAMES = 2000;
+    public static final int DEFAULT_WARMUP_FRAMES = 500;
+    public static final int DEFAULT_TICKS_PER_FRAME = 1;
+    public static final int DEFAULT_WIDTH = 700;
+    public static final int DEFAULT_HEIGHT = 500;
+
+    // THE SIZE OF THE SCENE
+    private int width;
+    private int height;
+
+    // WHAT WE DRAW EVERY FRAME
+    private ArrayList<PlaybackSprite> sprites;
+
+    // AND THE SAME SPRITES FOR THE SCENE RENDERER
+    private ArrayList<Sprite> rendererSprites;
+
+    /**
+     * Constructor for this benchmark, it sets up a scene to draw.
+     *
+     * @param initWidth Width of the scene.
+     *
+     * @param initHeight Height of the scene.
+     */
+    public RenderBenchmark(int initWidth, int initHeight)
+    {
+        width = initWidth;
+        height = initHeight;
+        sprites = new ArrayList<PlaybackSprite>();
+        rendererSprites = new ArrayList<Sprite>();
+    }
+
+    /**
+     * This method fills the scene with sprites. They're spread evenly
+     * over it, each sprite type in turn, and each sprite type plays its
+     * first few animation states in turn.
+     *
+     * @param spriteTypes The sprite types, in list order.
+     *
+     * @param spriteTypeFrames The images and poses of each sprite type,
+     * in the same order.
+     *
+     * @param numSprites How many sprites to put in the scene.
+     *
+     * @param numStates How many animation states of each sprite type to
+     * play, at most.
+     */
+    public void addSprites( ArrayList<SpriteType> spriteTypes,
+                            ArrayList<SpriteTypeFrames> spriteTypeFrames,
+                            int numSprites,
+                            int numStates)
+    {
+        int columns = (int)Math.ceil(Math.sqrt(numSprites));
+        int rows = (numSprites + columns - 1) / Math.max(1, columns);
+        for (int i = 0; i < numSprites; i++)
+        {
+            int typeIndex = i % spriteTypes.size();
+            SpriteTypeFrames frames = spriteTypeFrames.get(typeIndex);
+            ArrayList<AnimationState> states = frames.getAnimationStates();
+            if (states.isEmpty())
+            {
+                continue;
+            }
+            int stateIndex = (i / spriteTypes.size()) % Math.min(numStates, states.size());
+            AnimationState state = states.get(stateIndex);
+            int x = ((i % columns) * width) / columns;
+            int y = ((i / columns) * height) / Math.max(1, rows);
+            sprites.add(new PlaybackSprite(frames, state, x, y));
+
+            Sprite sprite = new Sprite(spriteTypes.get(typeIndex), state);
+            sprite.setPositionX(x);
+            sprite.setPositionY(y);
+            rendererSprites.add(sprite);
+        }
+    }
+
+    /**
+     * This method draws the scene frame after frame, timing each one.
+     *
+     * @param numFrames How many frames to draw and time.
+     *
+     * @param warmupFrames How many frames to draw first without timing
+     * them, so we measure compiled code.
+     *
+     * @param ticksPerFrame How far each frame moves the animations along.
+     *
+     * @return The results of the timed frames.
+     */
+    public Result run(int numFrames, int warmupFrames, int ticksPerFrame)
+    {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        for (int i = 0; i < warmupFrames; i++)
+        {
+            drawFrame(g, ticksPerFrame);
+        }
+
+        long[] frameNanos = new long[numFrames];
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < numFrames; i++)
+        {
+            long frameStart = System.nanoTime();
+            drawFrame(g, ticksPerFrame);
+            frameNanos[i] = System.nanoTime() - frameStart;
+        }
+        long totalNanos = System.nanoTime() - startTime;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        g.dispose();
+        return new Result("Offscreen", sprites.size(), frameNanos, totalNanos,
+                (allocatedBefore < 0) ? -1 : allocated / Math.max(1, numFrames));
+    }
+
+    /**
+     * This method paints the same sprites with a SceneRenderer over and
+     * over, timing each paint.
+     *
+     * @param numFrames How many frames to paint and time.
+     *
+     * @param warmupFrames How many frames to paint first without timing
+     * them.
+     *
+     * @return The results of the timed frames.
+     */
+    public Result runSceneRenderer(int numFrames, int warmupFrames)
+    {
+        SceneRenderer renderer = new SceneRenderer(rendererSprites);
+        renderer.setBackground(Color.white);
+        renderer.setSize(width, height);
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        for (int i = 0; i < warmupFrames; i++)
+        {
+            renderer.paint(g);
+        }
+
+        long[] frameNanos = new long[numFrames];
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < numFrames; i++)
+        {
+            long frameStart = System.nanoTime();
+            renderer.paint(g);
+            frameNanos[i] = System.nanoTime() - frameStart;
+        }
+        long totalNanos = System.nanoTime() - startTime;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        g.dispose();
+        return new Result("SceneRenderer", rendererSprites.size(), frameNanos, totalNanos,
+                (allocatedBefore < 0) ? -1 : allocated / Math.max(1, numFrames));
+    }
+
+    /**
+     * Clears the scene, draws every sprite, and then moves them all
+     * along for the next frame.
+     */
+    private void drawFrame(Graphics2D g, int ticksPerFrame)
+    {
+        g.setColor(Color.white);
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < sprites.size(); i++)
+        {
+            PlaybackSprite sprite = sprites.get(i);
+            sprite.draw(g);
+            sprite.advance(ticksPerFrame);
+        }
+    }
+
+    /**
+     * Gets how much this thread has allocated so far, if the JVM can
+     * tell us.
+     *
+     * @return Bytes allocated by this thread, or -1 if we can't know.
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean)threads;
+            if (hotspotThreads.isThreadAllocatedMemorySupported()
+                    && hotspotThreads.isThreadAllocatedMemoryEnabled())
+            {
+                return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The results of timing a number of frames.
+     */
+    public static class Result
+    {
+        private String name;
+        private int numSprites;
+        private long[] sortedFrameNanos;
+        private long totalNanos;
+        private long bytesPerFrame;
+
+        private Result(String initName, int initNumSprites, long[] initFrameNanos, long initTotalNanos, long initBytesPerFrame)
+        {
+            name = initName;
+            numSprites = initNumSprites;
+            sortedFrameNanos = initFrameNanos.clone();
+            Arrays.sort(sortedFrameNanos);
+            totalNanos = initTotalNanos;
+            bytesPerFrame = initBytesPerFrame;
+        }
+
+        /**
+         * Accessor method for getting the frames drawn per second.
+         *
+         * @return The average frames per second over the whole run.
+         */
+        public double getFramesPerSecond()
+        {
+            return (totalNanos == 0) ? 0 : (sortedFrameNanos.length * 1e9 / totalNanos);
+        }
+
+        /**
+         * Accessor method for getting a percentile of the frame times.
+         *
+         * @param percentile The percentile wanted, from 0 to 100.
+         *
+         * @return The frame time, in nanoseconds, at that percentile.
+         */
+        public long getFrameNanos(double percentile)
+        {
+            if (sortedFrameNanos.length == 0)
+            {
+                return 0;
+            }
+            int index = (int)Math.ceil(percentile / 100 * sortedFrameNanos.length) - 1;
+            return sortedFrameNanos[Math.max(0, Math.min(sortedFrameNanos.length - 1, index))];
+        }
+
+        /**
+         * Accessor method for getting how much was allocated per frame.
+         *
+         * @return Average bytes allocated per frame, or -1 if the JVM
+         * can't tell us.
+         */
+        public long getBytesPerFrame() { return bytesPerFrame; }
+
+        /**
+         * This method builds a short report of the results.
+         *
+         * @return A one line summary of the results.
+         */
+        public String getReport()
+        {
+            return name + ": " + numSprites + " sprites, " + sortedFrameNanos.length + " frames, "
+                    + String.format("%.1f", getFramesPerSecond()) + " fps, frame time p50 "
+                    + String.format("%.3f", getFrameNanos(50) / 1e6) + " ms, p99 "
+                    + String.format("%.3f", getFrameNanos(99) / 1e6) + " ms, max "
+                    + String.format("%.3f", getFrameNanos(100) / 1e6) + " ms, "
+                    + ((bytesPerFrame < 0) ? "allocations unknown" : (bytesPerFrame + " bytes allocated per frame"));
+        }
+    }
+
+    /**
+     * Loads the sprite types and runs the benchmark.
+     *
+     * @param args Optionally, the sprite types home directory to load
+     * from instead of the usual one.
+     */
+    public static void main(String[] args)
+    {
+        String path = SpriteTypeLibraryLoader.setUpCommandLineTool(args, 0);
+
+        // WE NEED THE FRAMES AS WELL AS THE SPRITE TYPES, SO WE READ THEM
+        // OURSELVES, BUT WITH THE XML LOADER THE VIEWER'S SETTINGS GIVE US
+        SpriteTypeLibraryLoader libraryLoader = new SpriteTypeLibraryLoader(
+                new AnimatedSpriteXMLLoader(null), System.getProperties());
+        AnimatedSpriteXMLLoader xmlLoader = libraryLoader.getXMLLoader();
+        ArrayList<SpriteType> spriteTypes = new ArrayList<SpriteType>();
+        ArrayList<SpriteTypeFrames> spriteTypeFrames = new ArrayList<SpriteTypeFrames>();
+        try
+        {
+            ArrayList<String> spriteTypeNames = new ArrayList<String>();
+            xmlLoader.loadSpriteTypeNames(path, AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE, spriteTypeNames);
+            for (String name : spriteTypeNames)
+            {
+                SpriteTypeBuilder builder = xmlLoader.createSpriteTypeBuilder(path, name);
+                xmlLoader.readSpriteType(path, name, builder);
+                spriteTypes.add(builder.getSpriteType());
+                spriteTypeFrames.add(builder.getFrames());
+            }
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            System.err.println(ixffe.toString());
+            System.exit(1);
+        }
+        if (spriteTypes.isEmpty())
+        {
+            System.err.println("No sprite types to draw");
+            System.exit(1);
+        }
+
+        // SET UP THE SCENE AND DRAW IT
+        RenderBenchmark benchmark = new RenderBenchmark(
+                Integer.getInteger(WIDTH_PROPERTY, DEFAULT_WIDTH),
+                Integer.getInteger(HEIGHT_PROPERTY, DEFAULT_HEIGHT));
+        benchmark.addSprites(spriteTypes, spriteTypeFrames,
+                Integer.getInteger(SPRITES_PROPERTY, DEFAULT_SPRITES),
+                Math.max(1, Integer.getInteger(STATES_PROPERTY, DEFAULT_STATES)));
+        int numFrames = Integer.getInteger(FRAMES_PROPERTY, DEFAULT_FRAMES);
+        int warmupFrames = Integer.getInteger(WARMUP_FRAMES_PROPERTY, DEFAULT_WARMUP_FRAMES);
+        int ticksPerFrame = Integer.getInteger(TICKS_PER_FRAME_PROPERTY, DEFAULT_TICKS_PER_FRAME);
+        System.out.println(benchmark.run(numFrames, warmupFrames, ticksPerFrame).getReport());
+        if (Boolean.getBoolean(SCENE_RENDERER_PROPERTY))
+        {
+            System.out.println(benchmark.runSceneRenderer(numFrames, warmupFrames).getReport());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package animated_sprite_viewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import org.xml.sax.SAXException;
+
+/**
+ * The SchemaCache class keeps compiled XML schemas around so that
+ * each schema file only has to be compiled once, no matter how many
+ * documents get validated against it. Schemas are keyed by their path
+ * and recompiled only if the schema file has been modified since.
+ *
+ * Compiled schemas may be shared between threads but validators may
+ * not, so each cached schema also keeps a pool of idle validators that
+ * are handed out to one thread at a time and reused afterwards.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SchemaCache
+{
+    // ALL THE SCHEMAS WE'VE COMPILED SO FAR, BY ABSOLUTE PATH
+    private ConcurrentHashMap<String, CachedSchema> schemas;
+
+    // FOR KEEPING TRACK OF HOW WELL THE CACHE IS DOING
+    private AtomicInteger hits;
+    private AtomicInteger misses;
+
+    /**
+     * Default constructor, it starts out with an empty cache.
+     */
+    public SchemaCache()
+    {
+        schemas = new ConcurrentHashMap<String, CachedSchema>();
+        hits = new AtomicInteger();
+        misses = new AtomicInteger();
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting the number of lookups that were
+     * answered by an already compiled schema.
+     *
+     * @return The number of cache hits so far.
+     */
+    public int getHits() { return hits.get(); }
+
+    /**
+     * Accessor method for getting the number of lookups that required
+     * a schema to be compiled.
+     *
+     * @return The number of cache misses so far.
+     */
+    public int getMisses() { return misses.get(); }
+
+    /**
+     * Accessor method for getting the number of schemas currently cached.
+     *
+     * @return The number of compiled schemas in the cache.
+     */
+    public int getSize() { return schemas.size(); }
+
+    /**
+     * This method returns the compiled schema for the schemaFile,
+     * compiling it only if it's not yet cached or if the file has been
+     * modified since it was compiled.
+     *
+     * @param schemaFile Path and name of the schema file.
+     *
+     * @return The compiled schema, which is safe to share among threads.
+     *
+     * @throws SAXException Thrown if the schema itself can't be compiled.
+     */
+    public Schema getSchema(String schemaFile) throws SAXException
+    {
+        return getCachedSchema(schemaFile).schema;
+    }
+
+    /**
+     * This method validates the xmlFile against the schemaFile using a
+     * pooled validator. It may be called from multiple threads at once.
+     *
+     * @param xmlFile Path and name of the xml file to validate.
+     *
+     * @param schemaFile Path and name of the schema file to use.
+     *
+     * @throws SAXException Thrown if the xml file doesn't validate, or if
+     * the schema can't be compiled.
+     *
+     * @throws IOException Thrown if either file can't be read.
+     */
+    public void validate(String xmlFile, String schemaFile)
+            throws SAXException, IOException
+    {
+        validate(new StreamSource(xmlFile), schemaFile);
+    }
+
+    /**
+     * This method validates the source against the schemaFile using a
+     * pooled validator. It may be called from multiple threads at once.
+     *
+     * @param source The xml document to validate.
+     *
+     * @param schemaFile Path and name of the schema file to use.
+     *
+     * @throws SAXException Thrown if the source doesn't validate, or if
+     * the schema can't be compiled.
+     *
+     * @throws IOException Thrown if the source can't be read.
+     */
+    public void validate(Source source, String schemaFile)
+            throws SAXException, IOException
+    {
+        CachedSchema cachedSchema = getCachedSchema(schemaFile);
+
+        // BORROW A VALIDATOR, OR MAKE ONE IF NONE ARE IDLE
+        Validator validator = cachedSchema.idleValidators.poll();
+        if (validator == null)
+        {
+            validator = cachedSchema.schema.newValidator();
+        }
+        try
+        {
+            validator.validate(source);
+        }
+        finally
+        {
+            // AND PUT IT BACK CLEAN FOR THE NEXT ONE
+            validator.reset();
+            cachedSchema.idleValidators.offer(validator);
+        }
+    }
+
+    /**
+     * Empties the cache, forcing all schemas to be recompiled on next use.
+     */
+    public void clear()
+    {
+        schemas.clear();
+    }
+
+    /**
+     * Finds the cached schema for schemaFile, compiling and caching it
+     * if it's missing or out of date.
+     */
+    private CachedSchema getCachedSchema(String schemaFile) throws SAXException
+    {
+        File schemaLocation = new File(schemaFile);
+        String key = schemaLocation.getAbsolutePath();
+        long lastModified = schemaLocation.lastModified();
+
+        // THE COMMON CASE NEEDS NO LOCKING
+        CachedSchema cachedSchema = schemas.get(key);
+        if ((cachedSchema != null) && (cachedSchema.lastModified == lastModified))
+        {
+            hits.incrementAndGet();
+            return cachedSchema;
+        }
+        return compileSchema(key, schemaLocation, lastModified);
+    }
+
+    /**
+     * Compiles the schema and caches it. This is synchronized so that
+     * threads all asking for the same missing schema at the same time
+     * only compile it once, and because SchemaFactory is not thread safe.
+     */
+    private synchronized CachedSchema compileSchema(String key, File schemaLocation, long lastModified)
+            throws SAXException
+    {
+        // SOMEBODY MAY HAVE COMPILED IT WHILE WE WERE WAITING
+        CachedSchema cachedSchema = schemas.get(key);
+        if ((cachedSchema != null) && (cachedSchema.lastModified == lastModified))
+        {
+            hits.incrementAndGet();
+            return cachedSchema;
+        }
+
+        misses.incrementAndGet();
+        SchemaFactory factory = SchemaFactory.newInstance(AnimatedSpriteXMLLoader.SCHEMA_STANDARD_SPEC_URL);
+        Schema schema = factory.newSchema(schemaLocation);
+        cachedSchema = new CachedSchema(schema, lastModified);
+        schemas.put(key, cachedSchema);
+        return cachedSchema;
+    }
+
+    /**
+     * A compiled schema along with the modification time of the file
+     * it was compiled from and its pool of idle validators.
+     */
+    private static class CachedSchema
+    {
+        private Schema schema;
+        private long lastModified;
+        private ConcurrentLinkedQueue<Validator> idleValidators;
+
+        private CachedSchema(Schema initSchema, long initLastModified)
+        {
+            schema = initSchema;
+            lastModified = initLastModified;
+            idleValidators = new ConcurrentLinkedQueue<Validator>();
+        }
+    }
+}
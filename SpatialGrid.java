@@ -0,0 +1,133 @@
+package animated_sprite_viewer;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+
+/**
+ * The SpatialGrid class divides a scene into square cells and keeps
+ * track of which sprites are in each one, so that finding the sprites
+ * inside a rectangle, like the part of the scene that's visible, only
+ * means looking at the cells the rectangle covers instead of at every
+ * sprite in the scene.
+ * 
+ * Each sprite is kept in the cell its top left corner is in. A sprite
+ * can stick out of its cell, so when looking for sprites we also look
+ * at the cells just above and to the left of the rectangle, as far as
+ * the biggest sprite could reach.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpatialGrid
+{
+    // HOW BIG EACH CELL IS, A FEW SPRITES ACROSS WORKS WELL
+    public static final int DEFAULT_CELL_SIZE = 128;
+
+    private int cellSize;
+    private int columns;
+    private int rows;
+
+    // THE SPRITES IN EACH CELL, ROW BY ROW
+    private ArrayList<ArrayList<PlaybackSprite>> cells;
+
+    // THE BIGGEST SPRITE WE'VE BEEN GIVEN
+    private int maxSpriteWidth;
+    private int maxSpriteHeight;
+
+    private int numSprites;
+
+    /**
+     * Constructor for an empty grid covering a scene.
+     * 
+     * @param initWidth Width of the scene.
+     * 
+     * @param initHeight Height of the scene.
+     * 
+     * @param initCellSize Width and height of each cell.
+     */
+    public SpatialGrid(int initWidth, int initHeight, int initCellSize)
+    {
+        cellSize = Math.max(1, initCellSize);
+        columns = Math.max(1, (initWidth + cellSize - 1) / cellSize);
+        rows = Math.max(1, (initHeight + cellSize - 1) / cellSize);
+        cells = new ArrayList<ArrayList<PlaybackSprite>>(columns * rows);
+        for (int i = 0; i < columns * rows; i++)
+        {
+            cells.add(new ArrayList<PlaybackSprite>());
+        }
+        maxSpriteWidth = 0;
+        maxSpriteHeight = 0;
+        numSprites = 0;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many sprites are in the grid.
+     * 
+     * @return The number of sprites added so far.
+     */
+    public int getNumSprites() { return numSprites; }
+
+    /**
+     * This method puts a sprite in the grid. Sprites outside the scene
+     * are kept in the nearest cell.
+     * 
+     * @param sprite The sprite to add.
+     */
+    public void add(PlaybackSprite sprite)
+    {
+        int column = clamp(sprite.getX() / cellSize, columns);
+        int row = clamp(sprite.getY() / cellSize, rows);
+        cells.get(row * columns + column).add(sprite);
+        maxSpriteWidth = Math.max(maxSpriteWidth, sprite.getWidth());
+        maxSpriteHeight = Math.max(maxSpriteHeight, sprite.getHeight());
+        numSprites++;
+    }
+
+    /**
+     * This method finds all the sprites that are at least partly inside
+     * a rectangle.
+     * 
+     * @param area The rectangle to look in, in scene coordinates.
+     * 
+     * @param found Where the sprites found are put. It is not cleared
+     * first, so it can be reused from one frame to the next.
+     */
+    public void findSprites(Rectangle area, ArrayList<PlaybackSprite> found)
+    {
+        // THE CELLS ANY SPRITE OVERLAPPING THE AREA COULD BE IN
+        int firstColumn = clamp((area.x - maxSpriteWidth) / cellSize, columns);
+        int firstRow = clamp((area.y - maxSpriteHeight) / cellSize, rows);
+        int lastColumn = clamp((area.x + area.width) / cellSize, columns);
+        int lastRow = clamp((area.y + area.height) / cellSize, rows);
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                ArrayList<PlaybackSprite> cell = cells.get(row * columns + column);
+                for (int i = 0; i < cell.size(); i++)
+                {
+                    PlaybackSprite sprite = cell.get(i);
+                    if ((sprite.getX() < area.x + area.width)
+                            && (sprite.getX() + sprite.getWidth() > area.x)
+                            && (sprite.getY() < area.y + area.height)
+                            && (sprite.getY() + sprite.getHeight() > area.y))
+                    {
+                        found.add(sprite);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps a cell coordinate inside the grid. Note that anything left
+     * of or above the scene rounds towards cell 0, which is where it
+     * would be clamped to anyway.
+     */
+    private int clamp(int cell, int numCells)
+    {
+        return Math.max(0, Math.min(numCells - 1, cell));
+    }
+}
@@ -0,0 +1,640 @@
+package animated_sprite_viewer;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import sprite_renderer.AnimationState;
+
+/**
+ * The SpriteExporter class writes every animation of every sprite type
+ * out to image files, without any window, so review sheets can be made
+ * for the whole library in one batch job. Each animation state of each
+ * sprite type can be written as a sprite sheet with one cell per pose,
+ * as a numbered sequence of PNG frames, and as an animated GIF whose
+ * frames last as long as their poses do.
+ *
+ * Sprite types are loaded by a pool of loader threads, the same way the
+ * viewer loads them, and as each one is loaded its animation states are
+ * handed to a pool of encoder threads, so many sprite types and states
+ * are exported at once. Loaders wait for a MemoryBudget before starting
+ * on another sprite type, so the decoded images waiting to be exported
+ * stay around the budget however big the library is.
+ *
+ * It's run from the command line, and configured with system
+ * properties, for example:
+ *
+ * java -Dasv.export.formats=sheet,gif animated_sprite_viewer.SpriteExporter export/
+ *
+ * Poses that take no time are never shown, so they're left out of
+ * everything we write. GIFs can't do partial transparency, so their
+ * frames are drawn over a white background, like the viewer's.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteExporter
+{
+    // FOR CONFIGURING THE EXPORT, THESE ARE SYSTEM PROPERTIES
+    public static final String FORMATS_PROPERTY = "asv.export.formats";
+    public static final String THREADS_PROPERTY = "asv.export.threads";
+    public static final String MEMORY_BYTES_PROPERTY = "asv.export.memoryBytes";
+    public static final String MILLIS_PER_TICK_PROPERTY = "asv.export.millisPerTick";
+
+    // THE FORMATS WE CAN WRITE
+    public static final String SHEET_FORMAT = "sheet";
+    public static final String PNG_SEQUENCE_FORMAT = "png";
+    public static final String GIF_FORMAT = "gif";
+
+    // AND THE DEFAULTS, A TICK LASTS AS LONG AS ONE OF THE CROWD'S
+    public static final String DEFAULT_FORMATS = SHEET_FORMAT + ',' + PNG_SEQUENCE_FORMAT + ',' + GIF_FORMAT;
+    public static final int DEFAULT_MILLIS_PER_TICK = CrowdPanel.FRAME_MILLIS;
+    public static final int DEFAULT_MEMORY_FRACTION = 4;
+
+    // WHAT GIF FRAMES ARE DRAWN OVER
+    public static final Color GIF_BACKGROUND = Color.white;
+
+    // USED FOR NAMING OUR THREADS
+    public static final String LOADER_THREAD_NAME = "sprite-export-loader-";
+    public static final String ENCODER_THREAD_NAME = "sprite-export-encoder-";
+
+    // THIS LOADS THE SPRITE TYPES
+    private AnimatedSpriteXMLLoader xmlLoader;
+
+    // WHERE EVERYTHING IS WRITTEN, A DIRECTORY PER SPRITE TYPE
+    private File outputDirectory;
+
+    // HOW MANY THREADS LOAD, AND HOW MANY ENCODE
+    private int numThreads;
+
+    // HOW MUCH DECODED IMAGERY MAY WAIT TO BE EXPORTED
+    private MemoryBudget budget;
+
+    // WHAT WE WRITE
+    private boolean sheetsEnabled;
+    private boolean pngSequencesEnabled;
+    private boolean gifsEnabled;
+
+    // HOW LONG A TICK OF POSE DURATION LASTS IN A GIF
+    private int millisPerTick;
+
+    // WHAT WE'VE WRITTEN SO FAR
+    private AtomicInteger numFiles;
+    private AtomicLong numBytes;
+
+    /**
+     * Constructor for this exporter, it writes every format until told
+     * otherwise.
+     *
+     * @param initXMLLoader Loader used for each sprite type.
+     *
+     * @param initOutputDirectory Where to write everything.
+     *
+     * @param initNumThreads How many threads load sprite types, the same
+     * number again encode them.
+     *
+     * @param initMemoryBytes How many bytes of decoded images may be
+     * waiting to be exported at once.
+     */
+    public SpriteExporter(  AnimatedSpriteXMLLoader initXMLLoader,
+                            File initOutputDirectory,
+                            int initNumThreads,
+                            long initMemoryBytes)
+    {
+        xmlLoader = initXMLLoader;
+        outputDirectory = initOutputDirectory;
+        numThreads = Math.max(1, initNumThreads);
+        budget = new MemoryBudget(initMemoryBytes);
+        sheetsEnabled = true;
+        pngSequencesEnabled = true;
+        gifsEnabled = true;
+        millisPerTick = DEFAULT_MILLIS_PER_TICK;
+        numFiles = new AtomicInteger();
+        numBytes = new AtomicLong();
+    }
+
+    /**
+     * Mutator method for choosing what to write.
+     *
+     * @param formats A comma separated list of SHEET_FORMAT,
+     * PNG_SEQUENCE_FORMAT, and GIF_FORMAT.
+     *
+     * @throws IllegalArgumentException Thrown if a format isn't one we
+     * know.
+     */
+    public void setFormats(String formats)
+    {
+        sheetsEnabled = false;
+        pngSequencesEnabled = false;
+        gifsEnabled = false;
+        for (String format : formats.split(","))
+        {
+            format = format.trim();
+            if (format.equals(SHEET_FORMAT))
+                sheetsEnabled = true;
+            else if (format.equals(PNG_SEQUENCE_FORMAT))
+                pngSequencesEnabled = true;
+            else if (format.equals(GIF_FORMAT))
+                gifsEnabled = true;
+            else if (format.length() > 0)
+                throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+    }
+
+    /**
+     * Mutator method for how long poses last in GIFs.
+     *
+     * @param initMillisPerTick How many milliseconds a tick of pose
+     * duration lasts.
+     */
+    public void setMillisPerTick(int initMillisPerTick)
+    {
+        millisPerTick = Math.max(1, initMillisPerTick);
+    }
+
+    /**
+     * This method exports every animation state of all the named sprite
+     * types. A sprite type that can't be loaded, or an animation that
+     * can't be written, is reported in the result and the rest of the
+     * export carries on without it.
+     *
+     * @param path Path to the sprite types home directory.
+     *
+     * @param spriteTypeNames Names of all the sprite types to export.
+     *
+     * @return What was exported, and what went wrong.
+     *
+     * @throws InterruptedException Thrown if we're interrupted while
+     * waiting for the export to finish.
+     */
+    public Result export(final String path, ArrayList<String> spriteTypeNames)
+            throws InterruptedException
+    {
+        long startTime = System.nanoTime();
+        numFiles.set(0);
+        numBytes.set(0);
+        ExecutorService loaders = createExecutor(LOADER_THREAD_NAME);
+        final ExecutorService encoders = createExecutor(ENCODER_THREAD_NAME);
+        try
+        {
+            // HAND OUT ALL THE SPRITE TYPES FIRST, EACH ONE HANDS OUT
+            // ITS OWN ANIMATION STATES ONCE IT'S LOADED
+            ArrayList<Future<ArrayList<Future<AnimationState>>>> loads =
+                    new ArrayList<Future<ArrayList<Future<AnimationState>>>>();
+            for (final String spriteTypeName : spriteTypeNames)
+            {
+                loads.add(loaders.submit(new Callable<ArrayList<Future<AnimationState>>>()
+                {
+                    @Override
+                    public ArrayList<Future<AnimationState>> call() throws Exception
+                    {
+                        return exportSpriteType(path, spriteTypeName, encoders);
+                    }
+                }));
+            }
+
+            // THEN COLLECT HOW IT ALL WENT IN LIST ORDER
+            Result result = new Result();
+            for (int i = 0; i < spriteTypeNames.size(); i++)
+            {
+                String spriteTypeName = spriteTypeNames.get(i);
+                try
+                {
+                    for (Future<AnimationState> animation : loads.get(i).get())
+                    {
+                        try
+                        {
+                            animation.get();
+                            result.numAnimations++;
+                        }
+                        catch (ExecutionException ee)
+                        {
+                            result.failures.add(spriteTypeName + ": " + ee.getCause());
+                        }
+                    }
+                    result.numSpriteTypes++;
+                }
+                catch (ExecutionException ee)
+                {
+                    result.failures.add(spriteTypeName + ": " + ee.getCause());
+                }
+            }
+            result.numFiles = numFiles.get();
+            result.numBytes = numBytes.get();
+            result.totalNanos = System.nanoTime() - startTime;
+            return result;
+        }
+        finally
+        {
+            loaders.shutdownNow();
+            encoders.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads one sprite type, once there's room in the budget for it, and
+     * hands each of its animation states to the encoders. Its images are
+     * counted against the budget until the last of them is written.
+     */
+    private ArrayList<Future<AnimationState>> exportSpriteType( String path,
+                                                                final String spriteTypeName,
+                                                                ExecutorService encoders)
+            throws InvalidXMLFileFormatException, InterruptedException
+    {
+        budget.awaitRoom();
+        SpriteTypeBuilder builder = xmlLoader.createSpriteTypeBuilder(path, spriteTypeName);
+        xmlLoader.readSpriteType(path, spriteTypeName, builder);
+        final SpriteTypeFrames frames = builder.getFrames();
+        final long imageBytes = builder.getImageBytes();
+        budget.add(imageBytes);
+
+        final File directory = new File(outputDirectory, spriteTypeName);
+        directory.mkdirs();
+        ArrayList<AnimationState> states = frames.getAnimationStates();
+        final AtomicInteger remaining = new AtomicInteger(states.size());
+        ArrayList<Future<AnimationState>> animations = new ArrayList<Future<AnimationState>>();
+        if (states.isEmpty())
+        {
+            budget.release(imageBytes);
+        }
+        for (final AnimationState state : states)
+        {
+            animations.add(encoders.submit(new Callable<AnimationState>()
+            {
+                @Override
+                public AnimationState call() throws IOException
+                {
+                    try
+                    {
+                        exportAnimation(frames, state, directory, spriteTypeName + '_' + state.name());
+                        return state;
+                    }
+                    finally
+                    {
+                        if (remaining.decrementAndGet() == 0)
+                        {
+                            budget.release(imageBytes);
+                        }
+                    }
+                }
+            }));
+        }
+        return animations;
+    }
+
+    /**
+     * Writes one animation state in every format we've been asked for.
+     */
+    private void exportAnimation(   SpriteTypeFrames frames,
+                                    AnimationState state,
+                                    File directory,
+                                    String baseName) throws IOException
+    {
+        // ONLY THE POSES THAT ARE EVER SHOWN
+        PoseTimeline timeline = frames.getTimeline(state);
+        ArrayList<Integer> poses = new ArrayList<Integer>();
+        for (int i = 0; i < timeline.getNumPoses(); i++)
+        {
+            if (timeline.getDuration(i) > 0)
+            {
+                poses.add(i);
+            }
+        }
+        if (poses.isEmpty())
+        {
+            return;
+        }
+        if (sheetsEnabled)
+        {
+            writeSheet(frames, timeline, poses, new File(directory, baseName + "_sheet.png"));
+        }
+        if (pngSequencesEnabled)
+        {
+            File sequenceDirectory = new File(directory, state.name());
+            sequenceDirectory.mkdirs();
+            writePNGSequence(frames, timeline, poses, sequenceDirectory, baseName);
+        }
+        if (gifsEnabled)
+        {
+            writeGIF(frames, timeline, poses, new File(directory, baseName + ".gif"));
+        }
+    }
+
+    /**
+     * Writes a sprite sheet with a cell for every pose, left to right
+     * and top to bottom in the order they're shown, in a grid as close
+     * to square as we can make it.
+     */
+    private void writeSheet(SpriteTypeFrames frames,
+                            PoseTimeline timeline,
+                            ArrayList<Integer> poses,
+                            File file) throws IOException
+    {
+        int width = Math.max(1, frames.getWidth());
+        int height = Math.max(1, frames.getHeight());
+        int columns = (int)Math.ceil(Math.sqrt(poses.size()));
+        int rows = (poses.size() + columns - 1) / columns;
+        BufferedImage sheet = new BufferedImage(columns * width, rows * height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sheet.createGraphics();
+        for (int i = 0; i < poses.size(); i++)
+        {
+            BufferedImage image = frames.getImage(timeline.getImageId(poses.get(i)));
+            if (image != null)
+            {
+                g.drawImage(image, (i % columns) * width, (i / columns) * height, null);
+            }
+        }
+        g.dispose();
+        write(sheet, "png", file);
+    }
+
+    /**
+     * Writes every pose as its own PNG, numbered in the order they're
+     * shown, all the size of the sprite type.
+     */
+    private void writePNGSequence(  SpriteTypeFrames frames,
+                                    PoseTimeline timeline,
+                                    ArrayList<Integer> poses,
+                                    File directory,
+                                    String baseName) throws IOException
+    {
+        BufferedImage frame = new BufferedImage(Math.max(1, frames.getWidth()),
+                                                Math.max(1, frames.getHeight()),
+                                                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = frame.createGraphics();
+        for (int i = 0; i < poses.size(); i++)
+        {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            BufferedImage image = frames.getImage(timeline.getImageId(poses.get(i)));
+            if (image != null)
+            {
+                g.drawImage(image, 0, 0, null);
+            }
+            write(frame, "png", new File(directory, baseName + '_' + String.format("%03d", i) + ".png"));
+        }
+        g.dispose();
+    }
+
+    /**
+     * Writes the animation as a looping GIF. GIF frame delays are in
+     * hundredths of a second, so each pose ends at its end time rounded
+     * to that, which keeps the whole animation the right length however
+     * the individual poses round. A pose too short to last a hundredth
+     * of a second at all is left out and its time goes to the next one.
+     */
+    private void writeGIF(  SpriteTypeFrames frames,
+                            PoseTimeline timeline,
+                            ArrayList<Integer> poses,
+                            File file) throws IOException
+    {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+        if (!writers.hasNext())
+        {
+            throw new IOException("No GIF writer available");
+        }
+        ImageWriter writer = writers.next();
+        file.delete();
+        ImageOutputStream out = ImageIO.createImageOutputStream(file);
+        if (out == null)
+        {
+            throw new IOException("Can't write " + file);
+        }
+        try
+        {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            BufferedImage frame = new BufferedImage(Math.max(1, frames.getWidth()),
+                                                    Math.max(1, frames.getHeight()),
+                                                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = frame.createGraphics();
+            long shownCentis = 0;
+            boolean first = true;
+            for (int i = 0; i < poses.size(); i++)
+            {
+                int pose = poses.get(i);
+                long endTicks = timeline.getStartTime(pose) + timeline.getDuration(pose);
+                long endCentis = Math.round(endTicks * millisPerTick / 10.0);
+                int delay = (int)(endCentis - shownCentis);
+
+                // A GIF NEEDS AT LEAST ONE FRAME, HOWEVER SHORT
+                if ((delay <= 0) && !(first && (i == poses.size() - 1)))
+                {
+                    continue;
+                }
+                shownCentis = endCentis;
+                g.setColor(GIF_BACKGROUND);
+                g.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+                BufferedImage image = frames.getImage(timeline.getImageId(pose));
+                if (image != null)
+                {
+                    g.drawImage(image, 0, 0, null);
+                }
+                IIOMetadata metadata = writer.getDefaultImageMetadata(
+                        ImageTypeSpecifier.createFromRenderedImage(frame), null);
+                setGIFFrameMetadata(metadata, Math.max(1, delay), first);
+                writer.writeToSequence(new IIOImage(frame, null, metadata), null);
+                first = false;
+            }
+            g.dispose();
+            writer.endWriteSequence();
+        }
+        finally
+        {
+            out.close();
+            writer.dispose();
+        }
+        numFiles.incrementAndGet();
+        numBytes.addAndGet(file.length());
+    }
+
+    /**
+     * Sets how long a GIF frame lasts, and on the first frame, that the
+     * GIF loops forever, like our animations do.
+     */
+    private void setGIFFrameMetadata(IIOMetadata metadata, int delayCentis, boolean first)
+            throws IOException
+    {
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode)metadata.getAsTree(format);
+        IIOMetadataNode control = getChildNode(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(delayCentis));
+        control.setAttribute("transparentColorIndex", "0");
+        if (first)
+        {
+            IIOMetadataNode extension = new IIOMetadataNode("ApplicationExtension");
+            extension.setAttribute("applicationID", "NETSCAPE");
+            extension.setAttribute("authenticationCode", "2.0");
+            extension.setUserObject(new byte[] { 1, 0, 0 });
+            getChildNode(root, "ApplicationExtensions").appendChild(extension);
+        }
+        metadata.setFromTree(format, root);
+    }
+
+    /**
+     * Finds the named child of a metadata node, adding it if it's not
+     * there yet.
+     */
+    private IIOMetadataNode getChildNode(IIOMetadataNode parent, String name)
+    {
+        for (int i = 0; i < parent.getLength(); i++)
+        {
+            if (parent.item(i).getNodeName().equals(name))
+            {
+                return (IIOMetadataNode)parent.item(i);
+            }
+        }
+        IIOMetadataNode child = new IIOMetadataNode(name);
+        parent.appendChild(child);
+        return child;
+    }
+
+    /**
+     * Writes an image and counts it.
+     */
+    private void write(BufferedImage image, String format, File file) throws IOException
+    {
+        if (!ImageIO.write(image, format, file))
+        {
+            throw new IOException("No " + format + " writer available");
+        }
+        numFiles.incrementAndGet();
+        numBytes.addAndGet(file.length());
+    }
+
+    /**
+     * Builds a pool of daemon threads, so a failed export never keeps
+     * the JVM from exiting.
+     */
+    private ExecutorService createExecutor(final String threadName)
+    {
+        return Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+        {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, threadName + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * What an export did.
+     */
+    public static class Result
+    {
+        private int numSpriteTypes;
+        private int numAnimations;
+        private int numFiles;
+        private long numBytes;
+        private long totalNanos;
+        private ArrayList<String> failures;
+
+        private Result()
+        {
+            failures = new ArrayList<String>();
+        }
+
+        /**
+         * Accessor method for getting what went wrong.
+         *
+         * @return A line for every sprite type or animation that couldn't
+         * be exported, in list order.
+         */
+        public ArrayList<String> getFailures() { return failures; }
+
+        /**
+         * This method builds a short report of the export.
+         *
+         * @return A one line summary of the export.
+         */
+        public String getReport()
+        {
+            return "Exported " + numAnimations + " animations of " + numSpriteTypes + " sprite types to "
+                    + numFiles + " files, " + String.format("%.1f", numBytes / (1024.0 * 1024.0)) + " MB, in "
+                    + String.format("%.1f", totalNanos / 1e9) + " s"
+                    + (failures.isEmpty() ? "" : (", " + failures.size() + " failed"));
+        }
+    }
+
+    /**
+     * Loads the sprite types and exports them all.
+     *
+     * @param args The directory to export into and, optionally, the
+     * sprite types home directory to load from instead of the usual one.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: SpriteExporter <output directory> [sprite types directory]");
+            System.exit(1);
+        }
+        String path = SpriteTypeLibraryLoader.setUpCommandLineTool(args, 1);
+
+        // THE EXPORTER LOADS EACH SPRITE TYPE ITSELF, WHEN IT HAS THE
+        // MEMORY FOR IT, WITH THE XML LOADER THE VIEWER'S SETTINGS GIVE US
+        SpriteTypeLibraryLoader libraryLoader = new SpriteTypeLibraryLoader(
+                new AnimatedSpriteXMLLoader(null), System.getProperties());
+        AnimatedSpriteXMLLoader xmlLoader = libraryLoader.getXMLLoader();
+        SpriteExporter exporter = new SpriteExporter(xmlLoader, new File(args[0]),
+                Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                Long.getLong(MEMORY_BYTES_PROPERTY, Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_FRACTION));
+        exporter.setMillisPerTick(Integer.getInteger(MILLIS_PER_TICK_PROPERTY, DEFAULT_MILLIS_PER_TICK));
+        try
+        {
+            exporter.setFormats(System.getProperty(FORMATS_PROPERTY, DEFAULT_FORMATS));
+            ArrayList<String> spriteTypeNames = new ArrayList<String>();
+            xmlLoader.loadSpriteTypeNames(path, AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE, spriteTypeNames);
+            Result result = exporter.export(path, spriteTypeNames);
+            for (String failure : result.getFailures())
+            {
+                System.err.println(failure);
+            }
+            System.out.println(result.getReport());
+            System.exit(result.getFailures().isEmpty() ? 0 : 1);
+        }
+        catch (IllegalArgumentException iae)
+        {
+            System.err.println(iae.getMessage());
+            System.exit(1);
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            System.err.println(ixffe.toString());
+            System.exit(1);
+        }
+        catch (InterruptedException ie)
+        {
+            System.err.println("Export interrupted");
+            System.exit(1);
+        }
+    }
+}
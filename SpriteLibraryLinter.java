@@ -0,0 +1,502 @@
+package animated_sprite_viewer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import sprite_renderer.AnimationState;
+
+/**
+ * The SpriteLibraryLinter class checks every sprite type in the library
+ * without any window, so broken or too heavy sprite types can be caught,
+ * for example by a build, before anyone opens them in the viewer. Each
+ * sprite type is loaded just the way the viewer loads it, and then we
+ * look at what came out.
+ *
+ * These count as errors:
+ *
+ * - the xml file is missing or doesn't validate
+ * - an image id is declared twice
+ * - an image file is missing or can't be decoded
+ * - a pose uses an image id that was never declared
+ * - the decoded images take more memory than we allow, if we've been
+ * given a limit
+ *
+ * and these as warnings:
+ *
+ * - an image is never used by any pose
+ * - an animation state takes no time at all, so it never animates
+ *
+ * Every sprite type is checked, however many fail, and sprite types are
+ * checked by a pool of threads, many at once. For each one we report
+ * how many images and poses it has, how much memory its decoded images
+ * take, and how long each of its animation states lasts.
+ *
+ * It's run from the command line, and configured with system
+ * properties, for example:
+ *
+ * java -Dasv.lint.maxImageBytes=4194304 animated_sprite_viewer.SpriteLibraryLinter
+ *
+ * It exits with 1 if there were any errors, so builds can fail on it.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteLibraryLinter
+{
+    // FOR CONFIGURING THE LINTER, THESE ARE SYSTEM PROPERTIES
+    public static final String THREADS_PROPERTY = "asv.lint.threads";
+    public static final String MAX_IMAGE_BYTES_PROPERTY = "asv.lint.maxImageBytes";
+
+    // USED FOR NAMING OUR THREADS
+    public static final String LINTER_THREAD_NAME = "sprite-linter-";
+
+    // THIS LOADS THE SPRITE TYPES
+    private AnimatedSpriteXMLLoader xmlLoader;
+
+    // HOW MANY SPRITE TYPES WE CHECK AT ONCE
+    private int numThreads;
+
+    // HOW MUCH MEMORY A SPRITE TYPE'S IMAGES MAY TAKE, 0 FOR NO LIMIT
+    private long maxImageBytes;
+
+    /**
+     * Constructor for this linter, it has no memory limit until given one.
+     *
+     * @param initXMLLoader Loader used for each sprite type.
+     *
+     * @param initNumThreads How many sprite types to check at once.
+     */
+    public SpriteLibraryLinter(AnimatedSpriteXMLLoader initXMLLoader, int initNumThreads)
+    {
+        xmlLoader = initXMLLoader;
+        numThreads = Math.max(1, initNumThreads);
+        maxImageBytes = 0;
+    }
+
+    /**
+     * Mutator method for limiting how heavy a sprite type may be.
+     *
+     * @param initMaxImageBytes How many bytes a sprite type's decoded
+     * images may take, or 0 for no limit.
+     */
+    public void setMaxImageBytes(long initMaxImageBytes)
+    {
+        maxImageBytes = Math.max(0, initMaxImageBytes);
+    }
+
+    /**
+     * This method checks all the named sprite types.
+     *
+     * @param path Path to the sprite types home directory.
+     *
+     * @param spriteTypeNames Names of all the sprite types to check.
+     *
+     * @return What we found, for each sprite type in list order.
+     *
+     * @throws InterruptedException Thrown if we're interrupted while
+     * waiting for the checking to finish.
+     */
+    public Result lint(final String path, ArrayList<String> spriteTypeNames)
+            throws InterruptedException
+    {
+        long startTime = System.nanoTime();
+        ExecutorService linters = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+        {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, LINTER_THREAD_NAME + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try
+        {
+            ArrayList<Future<SpriteTypeReport>> checks = new ArrayList<Future<SpriteTypeReport>>();
+            for (final String spriteTypeName : spriteTypeNames)
+            {
+                checks.add(linters.submit(new Callable<SpriteTypeReport>()
+                {
+                    @Override
+                    public SpriteTypeReport call()
+                    {
+                        return lintSpriteType(path, spriteTypeName);
+                    }
+                }));
+            }
+
+            // COLLECT THEM IN LIST ORDER
+            Result result = new Result();
+            for (int i = 0; i < spriteTypeNames.size(); i++)
+            {
+                SpriteTypeReport report;
+                try
+                {
+                    report = checks.get(i).get();
+                }
+                catch (ExecutionException ee)
+                {
+                    // ANYTHING THE LOADER DIDN'T SEE COMING
+                    report = new SpriteTypeReport(spriteTypeNames.get(i));
+                    report.errors.add("couldn't be loaded: " + ee.getCause());
+                }
+                result.spriteTypeReports.add(report);
+                result.numErrors += report.errors.size();
+                result.numWarnings += report.warnings.size();
+            }
+            result.totalNanos = System.nanoTime() - startTime;
+            return result;
+        }
+        finally
+        {
+            linters.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads one sprite type and checks what came out.
+     */
+    private SpriteTypeReport lintSpriteType(String path, String spriteTypeName)
+    {
+        SpriteTypeReport report = new SpriteTypeReport(spriteTypeName);
+        SpriteTypeBuilder builder = xmlLoader.createSpriteTypeBuilder(path, spriteTypeName);
+        ImageListHandler handler = new ImageListHandler(builder, report);
+        try
+        {
+            xmlLoader.readSpriteType(path, spriteTypeName, handler);
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            report.errors.add(ixffe.toString());
+            return report;
+        }
+
+        // EVERY IMAGE SHOULD HAVE DECODED
+        for (int imageId : builder.getFailedImageIds())
+        {
+            report.errors.add("image " + imageId + " (" + handler.imageFiles.get(imageId)
+                    + ") is missing or can't be decoded");
+        }
+
+        // EVERY POSE SHOULD USE ONE OF THEM, AND EVERY ONE SHOULD BE USED
+        SpriteTypeFrames frames = builder.getFrames();
+        TreeSet<Integer> unusedIds = new TreeSet<Integer>(handler.imageFiles.keySet());
+        for (AnimationState state : frames.getAnimationStates())
+        {
+            PoseTimeline timeline = frames.getTimeline(state);
+            TreeSet<Integer> missingIds = new TreeSet<Integer>();
+            for (int i = 0; i < timeline.getNumPoses(); i++)
+            {
+                int imageId = timeline.getImageId(i);
+                if (!handler.imageFiles.containsKey(imageId))
+                {
+                    missingIds.add(imageId);
+                }
+                unusedIds.remove(imageId);
+            }
+            for (int imageId : missingIds)
+            {
+                report.errors.add(state + " uses image id " + imageId + ", which isn't declared");
+            }
+            if (timeline.getTotalDuration() == 0)
+            {
+                report.warnings.add(state + " takes no time, so it never animates");
+            }
+            report.numPoses += timeline.getNumPoses();
+            report.durations.put(state, timeline.getTotalDuration());
+        }
+        for (int imageId : unusedIds)
+        {
+            report.warnings.add("image " + imageId + " (" + handler.imageFiles.get(imageId)
+                    + ") is never used");
+        }
+
+        // AND IT SHOULDN'T BE TOO HEAVY
+        report.numImages = handler.imageFiles.size();
+        report.imageBytes = builder.getImageBytes();
+        if ((maxImageBytes > 0) && (report.imageBytes > maxImageBytes))
+        {
+            report.errors.add("images take " + (report.imageBytes / 1024) + " KB, more than the "
+                    + (maxImageBytes / 1024) + " KB allowed");
+        }
+        report.loaded = true;
+        return report;
+    }
+
+    /**
+     * Passes everything on to the builder, keeping a list of the images
+     * declared along the way, since the builder doesn't keep their names.
+     */
+    private static class ImageListHandler implements SpriteTypeHandler
+    {
+        private SpriteTypeBuilder builder;
+        private SpriteTypeReport report;
+        private LinkedHashMap<Integer, String> imageFiles;
+
+        private ImageListHandler(SpriteTypeBuilder initBuilder, SpriteTypeReport initReport)
+        {
+            builder = initBuilder;
+            report = initReport;
+            imageFiles = new LinkedHashMap<Integer, String>();
+        }
+
+        @Override
+        public void dimensions(int width, int height)
+        {
+            builder.dimensions(width, height);
+        }
+
+        @Override
+        public void imageFile(int id, String fileName)
+        {
+            if (imageFiles.containsKey(id))
+            {
+                report.errors.add("image id " + id + " is declared for both "
+                        + imageFiles.get(id) + " and " + fileName);
+            }
+            imageFiles.put(id, fileName);
+            builder.imageFile(id, fileName);
+        }
+
+        @Override
+        public void startAnimationState(AnimationState state)
+        {
+            builder.startAnimationState(state);
+        }
+
+        @Override
+        public void pose(int imageId, int duration)
+        {
+            builder.pose(imageId, duration);
+        }
+
+        @Override
+        public void endAnimationState()
+        {
+            builder.endAnimationState();
+        }
+
+        @Override
+        public void endSpriteType()
+        {
+            builder.endSpriteType();
+        }
+    }
+
+    /**
+     * What we found out about one sprite type.
+     */
+    public static class SpriteTypeReport
+    {
+        private String spriteTypeName;
+        private boolean loaded;
+        private int numImages;
+        private int numPoses;
+        private long imageBytes;
+        private LinkedHashMap<AnimationState, Long> durations;
+        private ArrayList<String> errors;
+        private ArrayList<String> warnings;
+
+        private SpriteTypeReport(String initSpriteTypeName)
+        {
+            spriteTypeName = initSpriteTypeName;
+            durations = new LinkedHashMap<AnimationState, Long>();
+            errors = new ArrayList<String>();
+            warnings = new ArrayList<String>();
+        }
+
+        // ACCESSOR METHODS
+
+        /**
+         * Accessor method for getting which sprite type this is about.
+         *
+         * @return The name of the sprite type.
+         */
+        public String getSpriteTypeName() { return spriteTypeName; }
+
+        /**
+         * Accessor method for getting how many images the sprite type
+         * declares.
+         *
+         * @return The number of images.
+         */
+        public int getNumImages() { return numImages; }
+
+        /**
+         * Accessor method for getting how many poses the sprite type has
+         * in all its animation states together.
+         *
+         * @return The number of poses.
+         */
+        public int getNumPoses() { return numPoses; }
+
+        /**
+         * Accessor method for getting how heavy the sprite type is.
+         *
+         * @return Bytes taken by its decoded images.
+         */
+        public long getImageBytes() { return imageBytes; }
+
+        /**
+         * Accessor method for getting how long each animation lasts.
+         *
+         * @return The total duration of each animation state, in ticks,
+         * in the order they're declared.
+         */
+        public LinkedHashMap<AnimationState, Long> getDurations() { return durations; }
+
+        /**
+         * Accessor method for getting what's wrong with the sprite type.
+         *
+         * @return A line for each error found.
+         */
+        public ArrayList<String> getErrors() { return errors; }
+
+        /**
+         * Accessor method for getting what looks wrong with the sprite type.
+         *
+         * @return A line for each warning found.
+         */
+        public ArrayList<String> getWarnings() { return warnings; }
+
+        /**
+         * This method builds a short report of the sprite type.
+         *
+         * @return A one line summary, without the errors and warnings.
+         */
+        public String getReport()
+        {
+            if (!loaded)
+            {
+                return spriteTypeName + ": not loaded";
+            }
+            StringBuilder report = new StringBuilder();
+            report.append(spriteTypeName).append(": ")
+                  .append(numImages).append(" images, ")
+                  .append(numPoses).append(" poses, ")
+                  .append(imageBytes / 1024).append(" KB decoded");
+            for (Map.Entry<AnimationState, Long> duration : durations.entrySet())
+            {
+                report.append(", ").append(duration.getKey())
+                      .append(' ').append(duration.getValue()).append(" ticks");
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * What a run of the linter found.
+     */
+    public static class Result
+    {
+        private ArrayList<SpriteTypeReport> spriteTypeReports;
+        private int numErrors;
+        private int numWarnings;
+        private long totalNanos;
+
+        private Result()
+        {
+            spriteTypeReports = new ArrayList<SpriteTypeReport>();
+        }
+
+        // ACCESSOR METHODS
+
+        /**
+         * Accessor method for getting what we found for each sprite type.
+         *
+         * @return A report for each sprite type, in list order.
+         */
+        public ArrayList<SpriteTypeReport> getSpriteTypeReports() { return spriteTypeReports; }
+
+        /**
+         * Accessor method for getting how many errors were found.
+         *
+         * @return The number of errors in all the sprite types.
+         */
+        public int getNumErrors() { return numErrors; }
+
+        /**
+         * Accessor method for getting how many warnings were found.
+         *
+         * @return The number of warnings in all the sprite types.
+         */
+        public int getNumWarnings() { return numWarnings; }
+
+        /**
+         * This method builds a short report of the whole run.
+         *
+         * @return A one line summary of the run.
+         */
+        public String getReport()
+        {
+            long imageBytes = 0;
+            for (SpriteTypeReport report : spriteTypeReports)
+            {
+                imageBytes += report.imageBytes;
+            }
+            return "Checked " + spriteTypeReports.size() + " sprite types, "
+                    + String.format("%.1f", imageBytes / (1024.0 * 1024.0)) + " MB decoded, in "
+                    + String.format("%.1f", totalNanos / 1e9) + " s: "
+                    + numErrors + " errors, " + numWarnings + " warnings";
+        }
+    }
+
+    /**
+     * Loads the sprite types, checks them all, and prints what we found.
+     *
+     * @param args Optionally, the sprite types home directory to check
+     * instead of the usual one.
+     */
+    public static void main(String[] args)
+    {
+        String path = SpriteTypeLibraryLoader.setUpCommandLineTool(args, 0);
+
+        // WHATEVER THE VIEWER'S SETTINGS DO TO THE FRAMES, WE CHECK
+        SpriteTypeLibraryLoader libraryLoader = new SpriteTypeLibraryLoader(
+                new AnimatedSpriteXMLLoader(null), System.getProperties());
+        AnimatedSpriteXMLLoader xmlLoader = libraryLoader.getXMLLoader();
+        SpriteLibraryLinter linter = new SpriteLibraryLinter(xmlLoader,
+                Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        linter.setMaxImageBytes(Long.getLong(MAX_IMAGE_BYTES_PROPERTY, 0));
+        try
+        {
+            ArrayList<String> spriteTypeNames = new ArrayList<String>();
+            xmlLoader.loadSpriteTypeNames(path, AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE, spriteTypeNames);
+            Result result = linter.lint(path, spriteTypeNames);
+            for (SpriteTypeReport report : result.getSpriteTypeReports())
+            {
+                System.out.println(report.getReport());
+                for (String error : report.getErrors())
+                {
+                    System.out.println("    error: " + error);
+                }
+                for (String warning : report.getWarnings())
+                {
+                    System.out.println("    warning: " + warning);
+                }
+            }
+            System.out.println(result.getReport());
+            System.exit((result.getNumErrors() == 0) ? 0 : 1);
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            System.err.println(ixffe.toString());
+            System.exit(1);
+        }
+        catch (InterruptedException ie)
+        {
+            System.err.println("Linting interrupted");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import javax.imageio.ImageIO;
+import sprite_renderer.AnimationState;
+
+/**
+ * The SpritePackCompiler class turns a whole sprite types directory into
+ * a single binary sprite pack. The pack holds the list of sprite types,
+ * their pose tables, and all of their images already decoded, so that
+ * SpritePackLoader can build every sprite type without any xml parsing
+ * or image decoding.
+ *
+ * A pack file is laid out as follows, with all numbers big endian:
+ *
+ * header:  int magic, int version, 32 byte source hash, long tables offset
+ * pixels:  the ARGB pixels of every image, one int per pixel, row by row
+ * tables:  int sprite type count, then for each sprite type its name,
+ *          width, height, image table, and animation state pose tables
+ *
+ * Strings are stored as an int byte count followed by UTF-8 bytes. The
+ * source hash is computed from the names, sizes, and modification times
+ * of every file in the sprite types directory, so any change there makes
+ * the pack stale. Note that it doesn't look at what's in the files, so
+ * an edit that keeps a file's size and modification time, like copying
+ * files over with their times preserved, needs the pack compiled again
+ * by hand.
+ *
+ * Packs can't be over 2 GB, since SpritePackLoader maps them in one piece.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpritePackCompiler
+{
+    // DON'T BURY IMPORTANT CONSTANTS INSIDE METHODS
+    public static final String DEFAULT_PACK_FILE = "sprite_types.pack";
+    public static final int PACK_MAGIC = 0x41535650;
+    public static final int PACK_VERSION = 1;
+    public static final int SOURCE_HASH_LENGTH = 32;
+    public static final int HEADER_LENGTH = 4 + 4 + SOURCE_HASH_LENGTH + 8;
+    public static final int MISSING_IMAGE = -1;
+    public static final String SOURCE_HASH_ALGORITHM = "SHA-256";
+    public static final Charset PACK_CHARSET = Charset.forName("UTF-8");
+
+    // THIS DOES ALL OF OUR XML READING
+    private AnimatedSpriteXMLLoader xmlLoader;
+
+    /**
+     * Constructor for this compiler.
+     *
+     * @param initXMLLoader Loader used for reading the sprite type xml files.
+     */
+    public SpritePackCompiler(AnimatedSpriteXMLLoader initXMLLoader)
+    {
+        xmlLoader = initXMLLoader;
+    }
+
+    /**
+     * This method compiles every sprite type listed in the sprite type
+     * list found in path into a single pack file. The pack is written to
+     * a temporary file first, so an existing pack is only replaced once
+     * the new one is complete.
+     *
+     * @param path Path to the sprite types home directory.
+     *
+     * @param packFile Path and name of the pack file to write.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if any of the xml files
+     * does not validate against its schema.
+     *
+     * @throws IOException Thrown if the pack can't be written.
+     */
+    public void compile(String path, String packFile)
+            throws InvalidXMLFileFormatException, IOException
+    {
+        // HASH THE SOURCES BEFORE READING THEM, SO THAT CHANGES MADE
+        // WHILE WE'RE COMPILING WILL MAKE THE PACK STALE
+        byte[] sourceHash = computeSourceHash(path, packFile);
+
+        ArrayList<String> spriteTypeNames = new ArrayList<String>();
+        xmlLoader.loadSpriteTypeNames(path, AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE, spriteTypeNames);
+
+        File tempFile = new File(packFile + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        long tablesOffset;
+        ArrayList<PackedSpriteType> packedTypes = new ArrayList<PackedSpriteType>();
+        try
+        {
+            // THE HEADER, WE'LL COME BACK FOR THE TABLES OFFSET
+            out.writeInt(PACK_MAGIC);
+            out.writeInt(PACK_VERSION);
+            out.write(sourceHash);
+            out.writeLong(0);
+            long position = HEADER_LENGTH;
+
+            // THEN ALL THE PIXELS, ONE SPRITE TYPE AT A TIME
+            for (String spriteTypeName : spriteTypeNames)
+            {
+                PackedSpriteType packedType = new PackedSpriteType(spriteTypeName, (path + spriteTypeName).trim());
+                xmlLoader.readSpriteType(path, spriteTypeName, packedType);
+                for (PackedImage image : packedType.images)
+                {
+                    if (image.pixels != null)
+                    {
+                        image.offset = position;
+                        ByteBuffer pixelBytes = ByteBuffer.allocate(4 * image.pixels.length);
+                        pixelBytes.asIntBuffer().put(image.pixels);
+                        out.write(pixelBytes.array());
+                        position += pixelBytes.capacity();
+                        if (position > Integer.MAX_VALUE)
+                        {
+                            throw new IOException("Sprite pack would be over 2 GB, too big to load");
+                        }
+
+                        // WE DON'T NEED TO HOLD ON TO THEM ANY MORE
+                        image.pixels = null;
+                    }
+                }
+                packedTypes.add(packedType);
+            }
+
+            // AND FINALLY THE TABLES
+            tablesOffset = position;
+            writeTables(out, packedTypes);
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            // DON'T LEAVE HALF A PACK LYING AROUND
+            out.close();
+            tempFile.delete();
+            throw ixffe;
+        }
+        catch (IOException ioe)
+        {
+            out.close();
+            tempFile.delete();
+            throw ioe;
+        }
+        finally
+        {
+            out.close();
+        }
+
+        // NOW THAT WE KNOW WHERE THE TABLES ARE WE CAN FINISH THE HEADER
+        RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+        try
+        {
+            raf.seek(HEADER_LENGTH - 8);
+            raf.writeLong(tablesOffset);
+        }
+        finally
+        {
+            raf.close();
+        }
+        Files.move(tempFile.toPath(), Paths.get(packFile), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Writes the sprite type tables of the pack.
+     */
+    private void writeTables(DataOutputStream out, ArrayList<PackedSpriteType> packedTypes)
+            throws IOException
+    {
+        out.writeInt(packedTypes.size());
+        for (PackedSpriteType packedType : packedTypes)
+        {
+            writeString(out, packedType.name);
+            out.writeInt(packedType.width);
+            out.writeInt(packedType.height);
+            out.writeInt(packedType.images.size());
+            for (PackedImage image : packedType.images)
+            {
+                out.writeInt(image.id);
+                out.writeInt(image.width);
+                out.writeInt(image.height);
+                out.writeLong(image.offset);
+            }
+            out.writeInt(packedType.states.size());
+            for (int i = 0; i < packedType.states.size(); i++)
+            {
+                writeString(out, packedType.states.get(i).name());
+                ArrayList<Integer> poses = packedType.poses.get(i);
+                out.writeInt(poses.size() / 2);
+                for (int pose : poses)
+                {
+                    out.writeInt(pose);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a string as its byte count followed by its UTF-8 bytes.
+     */
+    private void writeString(DataOutputStream out, String s) throws IOException
+    {
+        byte[] bytes = s.getBytes(PACK_CHARSET);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * This method computes a hash of the sprite types directory found in
+     * path. It only looks at the names, sizes, and modification times of
+     * the files in it, not their contents, so it's cheap enough to check
+     * at every startup.
+     *
+     * @param path Path to the sprite types home directory.
+     *
+     * @param packFile Path and name of the pack file, which is left out
+     * of the hash in case it lives inside the sprite types directory.
+     *
+     * @return The hash, SOURCE_HASH_LENGTH bytes long.
+     *
+     * @throws IOException Thrown if the directory can't be walked.
+     */
+    public static byte[] computeSourceHash(String path, String packFile)
+            throws IOException
+    {
+        final Path root = Paths.get(path).toAbsolutePath().normalize();
+        final Path pack = Paths.get(packFile).toAbsolutePath().normalize();
+        final Path tempPack = Paths.get(packFile + ".tmp").toAbsolutePath().normalize();
+        final ArrayList<String> entries = new ArrayList<String>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+            {
+                Path normalized = file.toAbsolutePath().normalize();
+                if (!normalized.equals(pack) && !normalized.equals(tempPack))
+                {
+                    entries.add(root.relativize(normalized).toString().replace('\\', '/')
+                            + '|' + attrs.size() + '|' + attrs.lastModifiedTime().toMillis());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // WALK ORDER DEPENDS ON THE FILE SYSTEM, SO SORT THEM
+        Collections.sort(entries);
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance(SOURCE_HASH_ALGORITHM);
+            for (String entry : entries)
+            {
+                digest.update(entry.getBytes(PACK_CHARSET));
+                digest.update((byte)'\n');
+            }
+            return digest.digest();
+        }
+        catch (NoSuchAlgorithmException nsae)
+        {
+            // EVERY JVM IS REQUIRED TO HAVE SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /**
+     * Collects everything about one sprite type that goes into the pack,
+     * decoding its images as they're listed.
+     */
+    private static class PackedSpriteType implements SpriteTypeHandler
+    {
+        private String name;
+        private String imagesPath;
+        private int width;
+        private int height;
+        private ArrayList<PackedImage> images = new ArrayList<PackedImage>();
+        private ArrayList<AnimationState> states = new ArrayList<AnimationState>();
+        private ArrayList<ArrayList<Integer>> poses = new ArrayList<ArrayList<Integer>>();
+
+        // JUST LIKE SpriteTypeBuilder, A MISSING IMAGE REUSES THE LAST ONE
+        private BufferedImage img;
+
+        private PackedSpriteType(String initName, String initImagesPath)
+        {
+            name = initName;
+            imagesPath = initImagesPath;
+        }
+
+        @Override
+        public void dimensions(int initWidth, int initHeight)
+        {
+            width = initWidth;
+            height = initHeight;
+        }
+
+        @Override
+        public void imageFile(int id, String fileName)
+        {
+            try
+            {
+                img = ImageIO.read(new File(imagesPath + '/' + fileName));
+            }
+            catch (IOException e)
+            {
+            }
+            PackedImage image = new PackedImage();
+            image.id = id;
+            if (img == null)
+            {
+                image.width = MISSING_IMAGE;
+                image.height = MISSING_IMAGE;
+                image.offset = MISSING_IMAGE;
+            }
+            else
+            {
+                image.width = img.getWidth();
+                image.height = img.getHeight();
+                image.pixels = img.getRGB(0, 0, image.width, image.height, null, 0, image.width);
+            }
+            images.add(image);
+        }
+
+        @Override
+        public void startAnimationState(AnimationState state)
+        {
+            states.add(state);
+            poses.add(new ArrayList<Integer>());
+        }
+
+        @Override
+        public void pose(int imageId, int duration)
+        {
+            ArrayList<Integer> statePoses = poses.get(poses.size() - 1);
+            statePoses.add(imageId);
+            statePoses.add(duration);
+        }
+
+        @Override
+        public void endAnimationState()
+        {
+        }
+
+        @Override
+        public void endSpriteType()
+        {
+        }
+    }
+
+    /**
+     * One image of a sprite type, along with where its pixels went.
+     */
+    private static class PackedImage
+    {
+        private int id;
+        private int width;
+        private int height;
+        private long offset;
+        private int[] pixels;
+    }
+
+    /**
+     * Compiles a sprite pack from the command line. The first argument,
+     * if given, is the sprite types directory and the second the pack
+     * file to write.
+     *
+     * @param args Optional sprite types directory and pack file.
+     */
+    public static void main(String[] args)
+    {
+        String path = (args.length > 0) ? args[0] : AnimatedSpriteViewer.SPRITES_DATA_PATH;
+        if (!path.endsWith("/"))
+        {
+            path = path + '/';
+        }
+        String packFile = (args.length > 1) ? args[1] : path + DEFAULT_PACK_FILE;
+        try
+        {
+            long startTime = System.currentTimeMillis();
+            SpritePackCompiler compiler = new SpritePackCompiler(new AnimatedSpriteXMLLoader(null));
+            compiler.compile(path, packFile);
+            System.out.println("Compiled " + packFile + " in " + (System.currentTimeMillis() - startTime) + " ms");
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            System.err.println(ixffe.toString());
+            System.exit(1);
+        }
+        catch (IOException ioe)
+        {
+            ioe.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
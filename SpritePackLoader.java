@@ -0,0 +1,293 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import sprite_renderer.AnimationState;
+import sprite_renderer.PoseList;
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpritePackLoader class loads all the sprite types out of a pack
+ * made by SpritePackCompiler. The pack is memory mapped and its pixels
+ * copied straight into images, so no xml parsing or image decoding is
+ * needed at all.
+ *
+ * A pack is only used if it has the right version and was compiled
+ * from exactly the sprite types directory we're loading from. If not,
+ * the caller is told so it can fall back to loading from xml.
+ *
+ * Since pack images never go through a FrameDecoder, deduplication and
+ * the frame disk cache don't apply to them. Converting them for the
+ * screen still can, by giving us the CompatibleFrameDecoder to use.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpritePackLoader
+{
+    // IF NOT NULL, EVERY IMAGE IS CONVERTED FOR THE SCREEN WITH THIS
+    private CompatibleFrameDecoder compatibleDecoder;
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting what converts pack images for the screen.
+     *
+     * @return The decoder doing the conversion, or null if there isn't one.
+     */
+    public CompatibleFrameDecoder getCompatibleDecoder() { return compatibleDecoder; }
+
+    // MUTATOR METHODS
+
+    /**
+     * Mutator method for converting pack images for the screen the same
+     * way decoded images are.
+     *
+     * @param initCompatibleDecoder The decoder whose conversion to use,
+     * or null to use the images just as they're stored.
+     */
+    public void setCompatibleDecoder(CompatibleFrameDecoder initCompatibleDecoder)
+    {
+        compatibleDecoder = initCompatibleDecoder;
+    }
+
+    /**
+     * This method loads all the sprite types out of the packFile into
+     * spriteTypes, and their names in list order into spriteTypeNames.
+     * Nothing is added to either list unless the whole pack loads.
+     *
+     * @param path Path to the sprite types home directory that the pack
+     * should have been compiled from.
+     *
+     * @param packFile Path and name of the pack file.
+     *
+     * @param spriteTypeNames List where we'll put all the sprite type names.
+     *
+     * @param spriteTypes Map where we'll put all the loaded sprite types.
+     *
+     * @return true if the pack was loaded, false if there's no pack, or
+     * it's from a different version, or it's stale or damaged, in which
+     * case the sprite types should be loaded from xml instead.
+     */
+    public boolean loadSpriteTypes( String path,
+                                    String packFile,
+                                    ArrayList<String> spriteTypeNames,
+                                    HashMap<String, SpriteType> spriteTypes)
+    {
+        File file = new File(packFile);
+        if (!file.isFile())
+        {
+            return false;
+        }
+        try
+        {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try
+            {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > Integer.MAX_VALUE)
+                {
+                    // TOO BIG TO MAP IN ONE PIECE, THE COMPILER WON'T MAKE THESE
+                    System.err.println("Sprite pack " + packFile + " is over 2 GB and can't be used");
+                    return false;
+                }
+                MappedByteBuffer pack = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!isCurrent(pack, path, packFile))
+                {
+                    return false;
+                }
+
+                // BUILD EVERYTHING ON THE SIDE FIRST
+                PackTables tables = readTables(pack);
+
+                // AND ONLY KEEP IT, OR COUNT ANY OF IT, ONCE IT'S ALL THERE,
+                // SO A PACK THAT FAILS PARTWAY ISN'T COUNTED AS WELL AS
+                // THE XML FILES WE LOAD INSTEAD
+                ViewerMetrics metrics = ViewerMetrics.getMetrics();
+                for (long decodingNanos : tables.decodingTimes)
+                {
+                    metrics.recordDecoding(decodingNanos);
+                }
+                for (String name : tables.names)
+                {
+                    SpriteTypeFrames.register(tables.types.get(name), tables.frames.get(name));
+                    metrics.recordSpriteTypeLoaded(name, tables.imageBytes.get(name));
+                }
+                spriteTypeNames.addAll(tables.names);
+                spriteTypes.putAll(tables.types);
+                return true;
+            }
+            finally
+            {
+                raf.close();
+            }
+        }
+        // A DAMAGED OR OUTDATED PACK IS NOT AN ERROR, WE JUST DON'T USE IT
+        catch (IOException ioe)
+        {
+            return false;
+        }
+        catch (BufferUnderflowException bue)
+        {
+            return false;
+        }
+        catch (IllegalArgumentException iae)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Checks the header of the pack to see if it can be used.
+     */
+    private boolean isCurrent(MappedByteBuffer pack, String path, String packFile)
+            throws IOException
+    {
+        if ((pack.getInt() != SpritePackCompiler.PACK_MAGIC)
+                || (pack.getInt() != SpritePackCompiler.PACK_VERSION))
+        {
+            return false;
+        }
+        byte[] packHash = new byte[SpritePackCompiler.SOURCE_HASH_LENGTH];
+        pack.get(packHash);
+        byte[] sourceHash = SpritePackCompiler.computeSourceHash(path, packFile);
+        return Arrays.equals(packHash, sourceHash);
+    }
+
+    /**
+     * Reads all the sprite type tables, building each sprite type as we go.
+     */
+    private PackTables readTables(MappedByteBuffer pack)
+    {
+        PackTables tables = new PackTables();
+        pack.position(checkOffset(pack, pack.getLong(), 0));
+        int numTypes = pack.getInt();
+        for (int i = 0; i < numTypes; i++)
+        {
+            String name = readString(pack);
+            int width = pack.getInt();
+            int height = pack.getInt();
+            SpriteType spriteType = new SpriteType(width, height);
+            SpriteTypeFrames frames = new SpriteTypeFrames(width, height);
+            long imageBytes = 0;
+
+            // ALL THE IMAGES, COPYING THEIR PIXELS IS OUR DECODING
+            int numImages = pack.getInt();
+            for (int j = 0; j < numImages; j++)
+            {
+                int id = pack.getInt();
+                int imageWidth = pack.getInt();
+                int imageHeight = pack.getInt();
+                long offset = pack.getLong();
+                BufferedImage img = null;
+                if (offset != SpritePackCompiler.MISSING_IMAGE)
+                {
+                    long startTime = System.nanoTime();
+                    img = readImage(pack, checkOffset(pack, offset, 4L * imageWidth * imageHeight),
+                                    imageWidth, imageHeight);
+                    if (compatibleDecoder != null)
+                    {
+                        img = compatibleDecoder.convertFrame(img);
+                    }
+                    tables.decodingTimes.add(System.nanoTime() - startTime);
+                    imageBytes += ImageMemory.getStorageBytes(img);
+                }
+                spriteType.addImage(id, img);
+                frames.addImage(id, img);
+            }
+
+            // AND ALL THE ANIMATION STATES
+            int numStates = pack.getInt();
+            for (int j = 0; j < numStates; j++)
+            {
+                AnimationState state = AnimationState.valueOf(readString(pack));
+                PoseList poseList = spriteType.addPoseList(state);
+                PoseTimeline timeline = frames.addTimeline(state);
+                int numPoses = pack.getInt();
+                for (int k = 0; k < numPoses; k++)
+                {
+                    int imageId = pack.getInt();
+                    int duration = pack.getInt();
+                    poseList.addPose(imageId, duration);
+                    timeline.addPose(imageId, duration);
+                }
+            }
+            tables.names.add(name);
+            tables.types.put(name, spriteType);
+            tables.frames.put(name, frames);
+            tables.imageBytes.put(name, imageBytes);
+        }
+        return tables;
+    }
+
+    /**
+     * Makes sure length bytes at offset are all inside the pack, so a
+     * damaged offset is rejected instead of read from the wrong place.
+     */
+    private int checkOffset(MappedByteBuffer pack, long offset, long length)
+    {
+        if ((offset < SpritePackCompiler.HEADER_LENGTH) || (length < 0)
+                || (offset + length > pack.limit()))
+        {
+            throw new IllegalArgumentException("Offset " + offset + " is outside the pack");
+        }
+        return (int)offset;
+    }
+
+    /**
+     * Copies an image's pixels out of the pack. They're set through the
+     * raster rather than written into its array, since taking the array
+     * stops Java2D from ever accelerating the image.
+     */
+    private BufferedImage readImage(MappedByteBuffer pack, int offset, int width, int height)
+    {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = new int[width * height];
+        int tablePosition = pack.position();
+        pack.position(offset);
+        pack.asIntBuffer().get(pixels);
+        pack.position(tablePosition);
+        img.getRaster().setDataElements(0, 0, width, height, pixels);
+        return img;
+    }
+
+    /**
+     * Reads a string stored as its byte count followed by its UTF-8 bytes.
+     */
+    private String readString(MappedByteBuffer pack)
+    {
+        // A DAMAGED LENGTH MUSTN'T GET AS FAR AS MAKING THE ARRAY
+        int length = pack.getInt();
+        if ((length < 0) || (length > pack.remaining()))
+        {
+            throw new IllegalArgumentException("String length " + length + " is outside the pack");
+        }
+        byte[] bytes = new byte[length];
+        pack.get(bytes);
+        return new String(bytes, SpritePackCompiler.PACK_CHARSET);
+    }
+
+    /**
+     * Everything read out of a pack's tables, kept to one side until
+     * we know the whole pack is good.
+     */
+    private static class PackTables
+    {
+        // THE SPRITE TYPE NAMES IN LIST ORDER, AND EACH ONE'S SPRITE TYPE
+        private ArrayList<String> names = new ArrayList<String>();
+        private HashMap<String, SpriteType> types = new HashMap<String, SpriteType>();
+
+        // WHAT GOES INTO THE METRICS AND THE FRAMES REGISTRY
+        private HashMap<String, SpriteTypeFrames> frames = new HashMap<String, SpriteTypeFrames>();
+        private HashMap<String, Long> imageBytes = new HashMap<String, Long>();
+        private ArrayList<Long> decodingTimes = new ArrayList<Long>();
+    }
+}
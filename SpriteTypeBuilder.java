@@ -0,0 +1,235 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import sprite_renderer.AnimationState;
+import sprite_renderer.PoseList;
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeBuilder class builds a SpriteType, including all of
+ * its images and pose lists, as the contents of its xml file arrive.
+ * Images are read from the sprite type's own directory by a FrameDecoder
+ * as soon as they're listed. If an atlas packer is provided, the images are held
+ * back until the whole sprite type has been read and are then added
+ * as sub-images of the atlases they were packed into.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeBuilder implements SpriteTypeHandler
+{
+    // DIRECTORY WHERE THIS SPRITE TYPE'S IMAGES ARE FOUND
+    private String imagesPath;
+    
+    // THIS TURNS IMAGE FILES INTO FRAMES
+    private FrameDecoder frameDecoder;
+    
+    // THE SPRITE TYPE WE'RE BUILDING
+    private SpriteType spriteType;
+    
+    // THE POSE LIST WE'RE CURRENTLY ADDING POSES TO
+    private PoseList currentPoseList;
+    
+    // OUR OWN RECORD OF THE IMAGES AND POSES, FOR DRAWING THEM OURSELVES
+    private SpriteTypeFrames frames;
+    private PoseTimeline currentTimeline;
+    
+    // THE LAST IMAGE WE READ. NOTE THAT IF AN IMAGE CAN'T BE READ
+    // WE REUSE THE PREVIOUS ONE, AS WE ALWAYS HAVE
+    private BufferedImage img;
+    
+    // IDS OF THE IMAGES THAT COULDN'T BE READ
+    private ArrayList<Integer> failedImageIds;
+    
+    // IF WE'RE PACKING, THE IMAGES WAITING TO BE PACKED AND THEIR IDS
+    private TextureAtlasPacker atlasPacker;
+    private ArrayList<Integer> pendingIds;
+    private ArrayList<BufferedImage> pendingImages;
+    
+    // HOW MUCH PIXEL STORAGE OUR IMAGES USE, COUNTING SHARED BUFFERS ONCE
+    private IdentityHashMap<DataBuffer, DataBuffer> imageBuffers;
+    private long imageBytes;
+    
+    // HOW LONG DECODING OUR IMAGES HAS TAKEN
+    private long decodeNanos;
+
+    /**
+     * Constructor for this builder.
+     * 
+     * @param initImagesPath Directory with all the sprite type's images.
+     */
+    public SpriteTypeBuilder(String initImagesPath)
+    {
+        this(initImagesPath, new ImageIOFrameDecoder(), null);
+    }
+
+    /**
+     * Constructor for this builder that decodes images its own way and
+     * may pack them into atlases.
+     * 
+     * @param initImagesPath Directory with all the sprite type's images.
+     * 
+     * @param initFrameDecoder Decoder used for reading each image.
+     * 
+     * @param initAtlasPacker Packer used once all the images are read,
+     * or null to add each image as is.
+     */
+    public SpriteTypeBuilder(   String initImagesPath,
+                                FrameDecoder initFrameDecoder,
+                                TextureAtlasPacker initAtlasPacker)
+    {
+        imagesPath = initImagesPath;
+        frameDecoder = initFrameDecoder;
+        spriteType = null;
+        currentPoseList = null;
+        frames = null;
+        currentTimeline = null;
+        img = null;
+        failedImageIds = new ArrayList<Integer>();
+        atlasPacker = initAtlasPacker;
+        pendingIds = new ArrayList<Integer>();
+        pendingImages = new ArrayList<BufferedImage>();
+        imageBuffers = new IdentityHashMap<DataBuffer, DataBuffer>();
+        imageBytes = 0;
+        decodeNanos = 0;
+    }
+
+    /**
+     * Accessor method for getting the sprite type that's been built.
+     * 
+     * @return The sprite type, or null if nothing has been read yet.
+     */
+    public SpriteType getSpriteType() { return spriteType; }
+
+    /**
+     * Accessor method for getting the images and poses of the sprite
+     * type that's been built, for drawing it without the renderer.
+     * 
+     * @return The sprite type's frames, or null if nothing has been read yet.
+     */
+    public SpriteTypeFrames getFrames() { return frames; }
+
+    /**
+     * Accessor method for getting how much memory the images added to
+     * the sprite type take up. Images that share pixel storage, like
+     * the sub-images of an atlas, are only counted once.
+     * 
+     * @return Bytes of pixel storage used by the sprite type's images.
+     */
+    public long getImageBytes() { return imageBytes; }
+
+    /**
+     * Accessor method for getting how long decoding the sprite type's
+     * images has taken so far.
+     * 
+     * @return Nanoseconds spent decoding images.
+     */
+    public long getDecodeNanos() { return decodeNanos; }
+
+    /**
+     * Accessor method for getting which images couldn't be read, and so
+     * were given the previous image instead.
+     * 
+     * @return The ids of images that are missing or couldn't be decoded,
+     * in the order they were listed.
+     */
+    public ArrayList<Integer> getFailedImageIds() { return failedImageIds; }
+
+    @Override
+    public void dimensions(int width, int height)
+    {
+        spriteType = new SpriteType(width, height);
+        frames = new SpriteTypeFrames(width, height);
+        SpriteTypeFrames.register(spriteType, frames);
+    }
+
+    @Override
+    public void imageFile(int id, String fileName)
+    {
+        long startTime = System.nanoTime();
+        try
+        {
+            BufferedImage decoded = frameDecoder.decode(new FrameSource(new File(imagesPath + '/' + fileName)));
+            if (decoded == null)
+            {
+                failedImageIds.add(id);
+            }
+            img = decoded;
+        }
+        catch (IOException e)
+        {
+            failedImageIds.add(id);
+        }
+        long nanos = System.nanoTime() - startTime;
+        decodeNanos += nanos;
+        ViewerMetrics.getMetrics().recordDecoding(nanos);
+        if (atlasPacker != null)
+        {
+            pendingIds.add(id);
+            pendingImages.add(img);
+        }
+        else
+        {
+            addImage(id, img);
+        }
+    }
+
+    @Override
+    public void startAnimationState(AnimationState state)
+    {
+        currentPoseList = spriteType.addPoseList(state);
+        currentTimeline = frames.addTimeline(state);
+    }
+
+    @Override
+    public void pose(int imageId, int duration)
+    {
+        currentPoseList.addPose(imageId, duration);
+        currentTimeline.addPose(imageId, duration);
+    }
+
+    @Override
+    public void endAnimationState()
+    {
+        currentPoseList = null;
+        currentTimeline = null;
+    }
+
+    @Override
+    public void endSpriteType()
+    {
+        if (atlasPacker != null)
+        {
+            // NOW WE HAVE EVERYTHING WE CAN PACK IT ALL TOGETHER
+            IdentityHashMap<BufferedImage, BufferedImage> packedImages = atlasPacker.pack(pendingImages);
+            for (int i = 0; i < pendingIds.size(); i++)
+            {
+                BufferedImage pendingImage = pendingImages.get(i);
+                BufferedImage packedImage = (pendingImage == null) ? null : packedImages.get(pendingImage);
+                addImage(pendingIds.get(i), packedImage);
+            }
+            pendingIds.clear();
+            pendingImages.clear();
+        }
+    }
+
+    /**
+     * Adds the image to the sprite type, keeping track of its memory.
+     */
+    private void addImage(int id, BufferedImage image)
+    {
+        if ((image != null) && !imageBuffers.containsKey(image.getRaster().getDataBuffer()))
+        {
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            imageBuffers.put(buffer, buffer);
+            imageBytes += ImageMemory.getStorageBytes(buffer);
+        }
+        spriteType.addImage(id, image);
+        frames.addImage(id, image);
+    }
+}
@@ -0,0 +1,257 @@
+package animated_sprite_viewer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeCache class loads sprite types only when they're asked
+ * for and keeps the most recently used ones around, up to a budget of
+ * bytes of image memory. When loading a sprite type takes us over the
+ * budget, the least recently used ones are dropped, and they'll simply
+ * be loaded again should they be asked for later.
+ *
+ * The cache keeps the sprite types map it was given in step with what
+ * it holds, so anything looking sprite types up by name in that map
+ * sees exactly the sprite types currently loaded.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeCache
+{
+    // USED FOR LOADING SPRITE TYPES THAT AREN'T IN THE CACHE
+    private AnimatedSpriteXMLLoader xmlLoader;
+    private String path;
+
+    // THE LOADED SPRITE TYPES, SHARED WITH THE REST OF THE APP
+    private HashMap<String, SpriteType> spriteTypes;
+
+    // IMAGE BYTES OF EACH LOADED SPRITE TYPE, LEAST RECENTLY USED FIRST
+    private LinkedHashMap<String, Long> usage;
+
+    // OUR BUDGET AND HOW MUCH OF IT IS USED
+    private long maxBytes;
+    private long currentBytes;
+
+    // FOR KEEPING TRACK OF HOW WELL THE CACHE IS DOING
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    /**
+     * Constructor for this cache.
+     *
+     * @param initXMLLoader Loader used for loading missing sprite types.
+     *
+     * @param initPath Path to the sprite types home directory.
+     *
+     * @param initSpriteTypes Map that will hold the loaded sprite types.
+     *
+     * @param initMaxBytes Most image memory the cached sprite types may
+     * use. Note that the most recently used sprite type is always kept,
+     * even if it is bigger than this on its own.
+     */
+    public SpriteTypeCache( AnimatedSpriteXMLLoader initXMLLoader,
+                            String initPath,
+                            HashMap<String, SpriteType> initSpriteTypes,
+                            long initMaxBytes)
+    {
+        xmlLoader = initXMLLoader;
+        path = initPath;
+        spriteTypes = initSpriteTypes;
+        maxBytes = initMaxBytes;
+        usage = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        currentBytes = 0;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting the image memory budget of this cache.
+     *
+     * @return The most bytes of images the cache tries to hold.
+     */
+    public synchronized long getMaxBytes() { return maxBytes; }
+
+    /**
+     * Accessor method for getting how much image memory is cached.
+     *
+     * @return The bytes of images held by the loaded sprite types.
+     */
+    public synchronized long getCurrentBytes() { return currentBytes; }
+
+    /**
+     * Accessor method for getting how many requests found their
+     * sprite type already loaded.
+     *
+     * @return The number of cache hits so far.
+     */
+    public synchronized int getHits() { return hits; }
+
+    /**
+     * Accessor method for getting how many requests had to load
+     * their sprite type.
+     *
+     * @return The number of cache misses so far.
+     */
+    public synchronized int getMisses() { return misses; }
+
+    /**
+     * Accessor method for getting how many sprite types have been
+     * dropped to stay within budget.
+     *
+     * @return The number of evictions so far.
+     */
+    public synchronized int getEvictions() { return evictions; }
+
+    /**
+     * This method returns the named sprite type, loading it first if
+     * it's not currently in the cache.
+     *
+     * @param spriteTypeName Name of the sprite type to get.
+     *
+     * @return The loaded sprite type.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the sprite type had
+     * to be loaded and its xml file does not validate.
+     */
+    public synchronized SpriteType get(String spriteTypeName)
+            throws InvalidXMLFileFormatException
+    {
+        // THIS ALSO MAKES IT THE MOST RECENTLY USED
+        if (usage.get(spriteTypeName) != null)
+        {
+            hits++;
+            return spriteTypes.get(spriteTypeName);
+        }
+
+        // OTHERWISE WE HAVE TO GO LOAD IT
+        return add(spriteTypeName, read(spriteTypeName));
+    }
+
+    /**
+     * This method reads the named sprite type without putting it in the
+     * cache, so that it can be read on another thread without holding
+     * up anyone using the cache. Once it's read, it goes in through add.
+     *
+     * @param spriteTypeName Name of the sprite type to read.
+     *
+     * @return The builder holding the sprite type that was read.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if the sprite type's
+     * xml file does not validate.
+     */
+    public SpriteTypeBuilder read(String spriteTypeName)
+            throws InvalidXMLFileFormatException
+    {
+        SpriteTypeBuilder builder = xmlLoader.createSpriteTypeBuilder(path, spriteTypeName);
+        xmlLoader.readSpriteType(path, spriteTypeName, builder);
+        return builder;
+    }
+
+    /**
+     * This method puts a sprite type that was read by read into the
+     * cache. If it was loaded again in the meantime, the one already in
+     * the cache is kept.
+     *
+     * @param spriteTypeName Name of the sprite type that was read.
+     *
+     * @param builder The builder holding the sprite type.
+     *
+     * @return The sprite type now in the cache.
+     */
+    public synchronized SpriteType add(String spriteTypeName, SpriteTypeBuilder builder)
+    {
+        if (usage.get(spriteTypeName) != null)
+        {
+            hits++;
+            return spriteTypes.get(spriteTypeName);
+        }
+        misses++;
+        SpriteType spriteType = builder.getSpriteType();
+        usage.put(spriteTypeName, builder.getImageBytes());
+        spriteTypes.put(spriteTypeName, spriteType);
+        currentBytes += builder.getImageBytes();
+        evictOverBudget();
+        return spriteType;
+    }
+
+    /**
+     * This method tests to see if the named sprite type is currently
+     * loaded, without counting as a use of it.
+     *
+     * @param spriteTypeName Name of the sprite type to look for.
+     *
+     * @return true if it's in the cache, false otherwise.
+     */
+    public synchronized boolean contains(String spriteTypeName)
+    {
+        return usage.containsKey(spriteTypeName);
+    }
+
+    /**
+     * This method swaps a newly loaded version of a sprite type in for
+     * the one in the cache, for example after its files have changed.
+     * Sprite types not currently in the cache are left alone, since
+     * they'll be loaded fresh whenever they're next asked for.
+     *
+     * @param spriteTypeName Name of the sprite type that was reloaded.
+     *
+     * @param spriteType The newly loaded sprite type.
+     *
+     * @param imageBytes Bytes of image memory the new version uses.
+     *
+     * @return true if the cached sprite type was replaced, false if it
+     * was not in the cache.
+     */
+    public synchronized boolean replace(String spriteTypeName, SpriteType spriteType, long imageBytes)
+    {
+        Long oldBytes = usage.get(spriteTypeName);
+        if (oldBytes == null)
+        {
+            return false;
+        }
+        usage.put(spriteTypeName, imageBytes);
+        spriteTypes.put(spriteTypeName, spriteType);
+        currentBytes += imageBytes - oldBytes;
+        evictOverBudget();
+        return true;
+    }
+
+    /**
+     * This method drops a sprite type from the cache, for example after
+     * it has been taken out of the sprite type list.
+     *
+     * @param spriteTypeName Name of the sprite type to drop.
+     */
+    public synchronized void remove(String spriteTypeName)
+    {
+        Long oldBytes = usage.remove(spriteTypeName);
+        if (oldBytes != null)
+        {
+            currentBytes -= oldBytes;
+            spriteTypes.remove(spriteTypeName);
+        }
+    }
+
+    /**
+     * Drops least recently used sprite types until we're within budget,
+     * always keeping the most recently used one.
+     */
+    private void evictOverBudget()
+    {
+        Iterator<Map.Entry<String, Long>> it = usage.entrySet().iterator();
+        while ((currentBytes > maxBytes) && (usage.size() > 1))
+        {
+            Map.Entry<String, Long> eldest = it.next();
+            currentBytes -= eldest.getValue();
+            spriteTypes.remove(eldest.getKey());
+            ViewerMetrics.getMetrics().recordSpriteTypeRemoved(eldest.getKey());
+            it.remove();
+            evictions++;
+        }
+    }
+}
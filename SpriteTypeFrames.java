@@ -0,0 +1,155 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import sprite_renderer.AnimationState;
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeFrames class holds everything needed to draw a sprite
+ * type's animations ourselves: its images by id, and the timeline of
+ * poses of each of its animation states. SpriteTypeBuilder fills one in
+ * alongside the SpriteType it builds, sharing the very same images, so
+ * having it costs no more than a few small arrays.
+ * 
+ * The frames of every sprite type we build are registered with the
+ * sprite type they belong to, so they can be found from the SpriteType
+ * alone. The registry only holds sprite types weakly, so it never keeps
+ * one alive that the rest of the app is done with.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeFrames
+{
+    // THE FRAMES OF EVERY SPRITE TYPE WE'VE BUILT
+    private static final Map<SpriteType, SpriteTypeFrames> REGISTRY =
+            Collections.synchronizedMap(new WeakHashMap<SpriteType, SpriteTypeFrames>());
+
+    // THE SIZE OF THE SPRITE TYPE
+    private int width;
+    private int height;
+
+    // ITS IMAGES, BY ID
+    private HashMap<Integer, BufferedImage> images;
+
+    // AND ITS ANIMATION STATES, IN THE ORDER THEY WERE LISTED
+    private LinkedHashMap<AnimationState, PoseTimeline> timelines;
+
+    /**
+     * Constructor for a sprite type's frames, with no images or
+     * animation states yet.
+     * 
+     * @param initWidth Width of the sprite type.
+     * 
+     * @param initHeight Height of the sprite type.
+     */
+    public SpriteTypeFrames(int initWidth, int initHeight)
+    {
+        width = initWidth;
+        height = initHeight;
+        images = new HashMap<Integer, BufferedImage>();
+        timelines = new LinkedHashMap<AnimationState, PoseTimeline>();
+    }
+
+    /**
+     * This method remembers which frames belong to a sprite type.
+     * 
+     * @param spriteType The sprite type.
+     * 
+     * @param frames Its images and poses.
+     */
+    public static void register(SpriteType spriteType, SpriteTypeFrames frames)
+    {
+        REGISTRY.put(spriteType, frames);
+    }
+
+    /**
+     * This method finds the frames belonging to a sprite type.
+     * 
+     * @param spriteType The sprite type.
+     * 
+     * @return Its images and poses, or null if it wasn't built by us.
+     */
+    public static SpriteTypeFrames getFrames(SpriteType spriteType)
+    {
+        return REGISTRY.get(spriteType);
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting the width of the sprite type.
+     * 
+     * @return The width of the sprite type.
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * Accessor method for getting the height of the sprite type.
+     * 
+     * @return The height of the sprite type.
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * Accessor method for getting one of the sprite type's images.
+     * 
+     * @param id Id of the image.
+     * 
+     * @return The image, or null if there's no image with that id.
+     */
+    public BufferedImage getImage(int id) { return images.get(id); }
+
+    /**
+     * Accessor method for getting the poses of an animation state.
+     * 
+     * @param state The animation state.
+     * 
+     * @return Its timeline, or null if the sprite type doesn't have it.
+     */
+    public PoseTimeline getTimeline(AnimationState state) { return timelines.get(state); }
+
+    /**
+     * Accessor method for getting all of the sprite type's animation
+     * states.
+     * 
+     * @return A new list of the animation states, in the order they
+     * were listed in the sprite type's xml file.
+     */
+    public ArrayList<AnimationState> getAnimationStates()
+    {
+        return new ArrayList<AnimationState>(timelines.keySet());
+    }
+
+    /**
+     * This method adds an image to the sprite type.
+     * 
+     * @param id Id of the image.
+     * 
+     * @param image The image, may be null if it couldn't be read.
+     */
+    public void addImage(int id, BufferedImage image)
+    {
+        images.put(id, image);
+    }
+
+    /**
+     * This method adds an animation state to the sprite type.
+     * 
+     * @param state The animation state.
+     * 
+     * @return Its new, empty, timeline to add poses to.
+     */
+    public PoseTimeline addTimeline(AnimationState state)
+    {
+        PoseTimeline timeline = new PoseTimeline();
+        timelines.put(state, timeline);
+        return timeline;
+    }
+}
@@ -0,0 +1,65 @@
+package animated_sprite_viewer;
+
+import sprite_renderer.AnimationState;
+
+/**
+ * The SpriteTypeHandler interface receives the contents of a sprite
+ * type xml file one piece at a time, in document order. This lets us
+ * build sprite types (or gather whatever else we need from their xml
+ * files) without first building a whole tree of the document.
+ * 
+ * The calls always arrive in this order: dimensions, then imageFile
+ * once for each image, then for each animation state a call to
+ * startAnimationState, pose once for each of its poses, and then
+ * endAnimationState, and finally endSpriteType.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public interface SpriteTypeHandler
+{
+    /**
+     * Called with the size of the sprite type, before anything else.
+     * 
+     * @param width Width of the sprite type's images.
+     * 
+     * @param height Height of the sprite type's images.
+     */
+    public void dimensions(int width, int height);
+
+    /**
+     * Called for each image listed by the sprite type.
+     * 
+     * @param id Id the poses use to refer to this image.
+     * 
+     * @param fileName Name of the image file, relative to the
+     * sprite type's own directory.
+     */
+    public void imageFile(int id, String fileName);
+
+    /**
+     * Called when a new animation state begins.
+     * 
+     * @param state The animation state whose poses follow.
+     */
+    public void startAnimationState(AnimationState state);
+
+    /**
+     * Called for each pose of the current animation state, in order.
+     * 
+     * @param imageId Id of the image to show for this pose.
+     * 
+     * @param duration How long this pose is shown for.
+     */
+    public void pose(int imageId, int duration);
+
+    /**
+     * Called after the last pose of the current animation state.
+     */
+    public void endAnimationState();
+
+    /**
+     * Called once the whole sprite type has been read.
+     */
+    public void endSpriteType();
+}
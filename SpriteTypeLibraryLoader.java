@@ -0,0 +1,323 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Properties;
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeLibraryLoader class is the path the viewer takes to load
+ * a whole library of sprite types at startup. It sets the xml loader up
+ * the way the settings ask for, with a validation manifest, a frame
+ * decoder chain, and a texture atlas, and then loads every sprite type,
+ * either out of a sprite pack or from the xml files, on as many threads
+ * as the settings ask for.
+ *
+ * The settings are the same ones the viewer takes as system properties,
+ * see the AnimatedSpriteViewer constants, so anything that wants to load
+ * a library the way the viewer does, like the loader benchmarks, can
+ * pass in its own.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeLibraryLoader
+{
+    // THIS DOES ALL OF OUR XML READING
+    private AnimatedSpriteXMLLoader xmlLoader;
+
+    // THE SETTINGS WE WERE GIVEN
+    private Properties settings;
+
+    // EVERYTHING THE SETTINGS TURNED ON, null FOR WHAT THEY DIDN'T
+    private ValidationManifest validationManifest;
+    private DiskCachingFrameDecoder diskCachingDecoder;
+    private CompatibleFrameDecoder compatibleDecoder;
+    private DeduplicatingFrameDecoder deduplicatingDecoder;
+    private TextureAtlasPacker atlasPacker;
+
+    // FOR LOADING SPRITE PACKS, WHICH SKIP THE XML ENTIRELY
+    private SpritePackLoader packLoader;
+
+    /**
+     * Constructor for this loader, it sets up xmlLoader the way the
+     * settings ask for. Anything that can't be set up, like a disk cache
+     * in a directory we can't write to, is left out with a message, since
+     * the sprite types will load just the same without it.
+     *
+     * @param initXMLLoader Loader used for reading the xml files.
+     *
+     * @param initSettings The loader settings, keyed by the same property
+     * names as the viewer's system properties.
+     */
+    public SpriteTypeLibraryLoader(AnimatedSpriteXMLLoader initXMLLoader, Properties initSettings)
+    {
+        xmlLoader = initXMLLoader;
+        settings = initSettings;
+        xmlLoader.setStreamingEnabled(getBooleanSetting(AnimatedSpriteViewer.LOADER_STREAMING_PROPERTY));
+        if (getBooleanSetting(AnimatedSpriteViewer.VALIDATION_MANIFEST_PROPERTY))
+        {
+            // KEPT OUT OF THE SPRITE TYPES DIRECTORY, LIKE THE FRAME CACHE
+            File manifestFile = new File(settings.getProperty(AnimatedSpriteViewer.VALIDATION_MANIFEST_FILE_PROPERTY,
+                                            AnimatedSpriteViewer.DEFAULT_VALIDATION_MANIFEST_FILE));
+            try
+            {
+                validationManifest = new ValidationManifest(manifestFile);
+                xmlLoader.setValidationManifest(validationManifest);
+            }
+            catch (IOException ioe)
+            {
+                // WE'LL JUST VALIDATE EVERYTHING
+                System.err.println("Validation manifest disabled: " + ioe.getMessage());
+            }
+        }
+        if (getBooleanSetting(AnimatedSpriteViewer.DISK_CACHE_PROPERTY))
+        {
+            // THIS GOES UNDER EVERYTHING ELSE, SINCE ALL IT SAVES US
+            // IS THE DECODING, AND IT'S KEPT OUT OF THE SPRITE TYPES
+            // DIRECTORY SO THE HOT RELOADER DOESN'T SEE IT CHANGING
+            File diskCacheDir = new File(settings.getProperty(AnimatedSpriteViewer.DISK_CACHE_DIR_PROPERTY,
+                                            AnimatedSpriteViewer.DEFAULT_DISK_CACHE_DIR));
+            long diskCacheBytes = getLongSetting(AnimatedSpriteViewer.DISK_CACHE_BYTES_PROPERTY,
+                                            AnimatedSpriteViewer.DEFAULT_DISK_CACHE_BYTES);
+            try
+            {
+                diskCachingDecoder = new DiskCachingFrameDecoder(xmlLoader.getFrameDecoder(),
+                                        diskCacheDir, BufferedImage.TYPE_INT_ARGB, diskCacheBytes);
+                xmlLoader.setFrameDecoder(diskCachingDecoder);
+            }
+            catch (IOException ioe)
+            {
+                // WE CAN DO WITHOUT IT
+                System.err.println("Frame disk cache disabled: " + ioe.getMessage());
+            }
+        }
+        if (getBooleanSetting(AnimatedSpriteViewer.COMPATIBLE_IMAGES_PROPERTY))
+        {
+            compatibleDecoder = new CompatibleFrameDecoder(xmlLoader.getFrameDecoder(), true,
+                                    getBooleanSetting(AnimatedSpriteViewer.MEASURE_DRAW_COST_PROPERTY));
+            xmlLoader.setFrameDecoder(compatibleDecoder);
+        }
+        if (getBooleanSetting(AnimatedSpriteViewer.DEDUPLICATE_IMAGES_PROPERTY))
+        {
+            // THIS GOES OUTSIDE THE CONVERSION, SO THAT SHARED
+            // IMAGES ARE ONLY CONVERTED ONCE TOO
+            deduplicatingDecoder = new DeduplicatingFrameDecoder(xmlLoader.getFrameDecoder());
+            xmlLoader.setFrameDecoder(deduplicatingDecoder);
+        }
+        if (getBooleanSetting(AnimatedSpriteViewer.ATLAS_PROPERTY))
+        {
+            atlasPacker = new TextureAtlasPacker(TextureAtlasPacker.DEFAULT_MAX_ATLAS_SIZE);
+            xmlLoader.setAtlasPacker(atlasPacker);
+        }
+
+        // PACK IMAGES ARE ALREADY DECODED, BUT STILL GET CONVERTED FOR THE SCREEN
+        packLoader = new SpritePackLoader();
+        packLoader.setCompatibleDecoder(compatibleDecoder);
+    }
+
+    /**
+     * This method gets a command line tool that loads a library, like the
+     * linter or the exporter, ready to run. Tools don't open any windows,
+     * so unless we've been told otherwise AWT is run headless, and the
+     * sprite types home directory is taken from the command line if it
+     * was given there.
+     *
+     * @param args The tool's command line arguments.
+     *
+     * @param pathArg Index in args of the optional sprite types home
+     * directory.
+     *
+     * @return Path to the sprite types home directory, ending in '/'.
+     */
+    public static String setUpCommandLineTool(String[] args, int pathArg)
+    {
+        if (System.getProperty("java.awt.headless") == null)
+        {
+            System.setProperty("java.awt.headless", "true");
+        }
+        String path = (args.length > pathArg) ? args[pathArg] : AnimatedSpriteViewer.SPRITES_DATA_PATH;
+        if (!path.endsWith("/"))
+        {
+            path = path + '/';
+        }
+        return path;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting the xml loader.
+     *
+     * @return The loader this library loader reads the xml files with.
+     */
+    public AnimatedSpriteXMLLoader getXMLLoader() { return xmlLoader; }
+
+    /**
+     * Accessor method for getting the validation manifest.
+     *
+     * @return The validation manifest, or null if there isn't one.
+     */
+    public ValidationManifest getValidationManifest() { return validationManifest; }
+
+    /**
+     * Accessor method for getting the frame disk cache.
+     *
+     * @return The disk caching decoder, or null if there isn't one.
+     */
+    public DiskCachingFrameDecoder getDiskCachingDecoder() { return diskCachingDecoder; }
+
+    /**
+     * Accessor method for getting the compatible image converter.
+     *
+     * @return The compatible image decoder, or null if there isn't one.
+     */
+    public CompatibleFrameDecoder getCompatibleDecoder() { return compatibleDecoder; }
+
+    /**
+     * Accessor method for getting the image deduplicator.
+     *
+     * @return The deduplicating decoder, or null if there isn't one.
+     */
+    public DeduplicatingFrameDecoder getDeduplicatingDecoder() { return deduplicatingDecoder; }
+
+    /**
+     * Accessor method for getting the texture atlas packer.
+     *
+     * @return The atlas packer, or null if there isn't one.
+     */
+    public TextureAtlasPacker getAtlasPacker() { return atlasPacker; }
+
+    /**
+     * This method puts together the reports of everything the settings
+     * turned on, so the user knows how the validation and the image
+     * processing went.
+     *
+     * @return The reports, one per line, or an empty String if nothing
+     * was turned on.
+     */
+    public String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+        if (validationManifest != null)
+        {
+            report.append(validationManifest.getReport()).append('\n');
+        }
+        if (diskCachingDecoder != null)
+        {
+            report.append(diskCachingDecoder.getReport()).append('\n');
+        }
+        if (compatibleDecoder != null)
+        {
+            report.append(compatibleDecoder.getReport()).append('\n');
+        }
+        if (deduplicatingDecoder != null)
+        {
+            report.append(deduplicatingDecoder.getReport()).append('\n');
+        }
+        if (atlasPacker != null)
+        {
+            report.append(atlasPacker.getReport()).append('\n');
+        }
+        return report.toString();
+    }
+
+    /**
+     * This method loads all the sprite types out of the packFile into
+     * spriteTypes, and their names in list order into spriteTypeNames.
+     *
+     * @param path Path to the sprite types home directory.
+     *
+     * @param packFile Path and name of the pack file.
+     *
+     * @param spriteTypeNames List where we'll put all the sprite type names.
+     *
+     * @param spriteTypes Map where we'll put all the loaded sprite types.
+     *
+     * @return true if the pack was loaded, false if it should be loaded
+     * from the xml files instead.
+     */
+    public boolean loadSpriteTypePack(  String path,
+                                        String packFile,
+                                        ArrayList<String> spriteTypeNames,
+                                        HashMap<String, SpriteType> spriteTypes)
+    {
+        return packLoader.loadSpriteTypes(path, packFile, spriteTypeNames, spriteTypes);
+    }
+
+    /**
+     * This method loads the names in the sprite type list into
+     * spriteTypeNames, then every sprite type they name into spriteTypes.
+     * If more than one loader thread has been asked for, whole sprite
+     * types are loaded concurrently, otherwise they are loaded one at a
+     * time on this thread.
+     *
+     * @param path Path to the sprite types home directory.
+     *
+     * @param listFile Name of the sprite type list xml file in path.
+     *
+     * @param spriteTypeNames List where we'll put all the sprite type names.
+     *
+     * @param spriteTypes Map where we'll put all the loaded sprite types.
+     *
+     * @throws InvalidXMLFileFormatException Thrown if an xml file does not
+     * validate against its schema.
+     */
+    public void loadSpriteTypes(String path,
+                                String listFile,
+                                ArrayList<String> spriteTypeNames,
+                                HashMap<String, SpriteType> spriteTypes)
+            throws InvalidXMLFileFormatException
+    {
+        xmlLoader.loadSpriteTypeNames(path, listFile, spriteTypeNames);
+
+        int loaderThreads = (int)getLongSetting(AnimatedSpriteViewer.LOADER_THREADS_PROPERTY, 1);
+        boolean useVirtualThreads = getBooleanSetting(AnimatedSpriteViewer.LOADER_VIRTUAL_THREADS_PROPERTY);
+        if ((loaderThreads > 1) || useVirtualThreads)
+        {
+            ParallelSpriteTypeLoader parallelLoader = new ParallelSpriteTypeLoader(xmlLoader, loaderThreads, useVirtualThreads);
+            parallelLoader.loadSpriteTypes(path, spriteTypeNames, spriteTypes);
+            return;
+        }
+
+        for (int i = 0; i < spriteTypeNames.size(); i++)
+        {
+            SpriteType spriteTypeFromXML = xmlLoader.loadSpriteType(path, spriteTypeNames.get(i));
+            spriteTypes.put(spriteTypeNames.get(i), spriteTypeFromXML);
+        }
+    }
+
+    /**
+     * Reads a true/false setting, the same way Boolean.getBoolean reads
+     * a system property.
+     */
+    private boolean getBooleanSetting(String name)
+    {
+        return Boolean.parseBoolean(settings.getProperty(name));
+    }
+
+    /**
+     * Reads a number setting, the same way Long.getLong reads a system
+     * property, falling back on defaultValue if it's missing or not a
+     * number.
+     */
+    private long getLongSetting(String name, long defaultValue)
+    {
+        String value = settings.getProperty(name);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Long.decode(value);
+        }
+        catch (NumberFormatException nfe)
+        {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package animated_sprite_viewer;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.Icon;
+import javax.swing.JList;
+
+/**
+ * The SpriteTypeListCellRenderer class shows each sprite type in the
+ * list along with how long it took to load, and if we have a thumbnail
+ * cache, a thumbnail of its first pose. Note that the list itself
+ * still holds just the names, since that's how sprite types get
+ * looked up when they're selected.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeListCellRenderer extends DefaultListCellRenderer
+{
+    private static final long serialVersionUID = 1L;
+
+    // MILLISECONDS IT TOOK TO LOAD EACH SPRITE TYPE
+    private HashMap<String, Long> loadTimes;
+
+    // THIS MAKES THE THUMBNAILS, IF WE'RE SHOWING THEM
+    private SpriteTypeThumbnailCache thumbnails;
+    private ThumbnailIcon thumbnailIcon;
+
+    /**
+     * Constructor for this renderer.
+     * 
+     * @param initLoadTimes Load time of each sprite type, by name.
+     */
+    public SpriteTypeListCellRenderer(HashMap<String, Long> initLoadTimes)
+    {
+        this(initLoadTimes, null);
+    }
+
+    /**
+     * Constructor for this renderer, for showing thumbnails too.
+     * 
+     * @param initLoadTimes Load time of each sprite type, by name.
+     * 
+     * @param initThumbnails Cache to get the thumbnails from, or null
+     * for no thumbnails.
+     */
+    public SpriteTypeListCellRenderer(  HashMap<String, Long> initLoadTimes,
+                                        SpriteTypeThumbnailCache initThumbnails)
+    {
+        loadTimes = initLoadTimes;
+        thumbnails = initThumbnails;
+        if (thumbnails != null)
+        {
+            thumbnailIcon = new ThumbnailIcon(thumbnails.getThumbnailSize());
+        }
+    }
+
+    @Override
+    public Component getListCellRendererComponent(  JList<?> list,
+                                                    Object value,
+                                                    int index,
+                                                    boolean isSelected,
+                                                    boolean cellHasFocus)
+    {
+        Object text = value;
+        Long loadMillis = loadTimes.get(value.toString());
+        if (loadMillis != null)
+        {
+            text = value + " (" + loadMillis + " ms)";
+        }
+        super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+        if (thumbnails != null)
+        {
+            // THE PROTOTYPE ISN'T A SPRITE TYPE, IT JUST NEEDS ROOM FOR A
+            // THUMBNAIL, AND UNTIL A THUMBNAIL IS READY WE LEAVE ITS ROOM EMPTY
+            if (value.equals(list.getPrototypeCellValue()))
+            {
+                thumbnailIcon.thumbnail = null;
+            }
+            else
+            {
+                thumbnailIcon.thumbnail = thumbnails.getThumbnail(value.toString());
+            }
+            setIcon(thumbnailIcon);
+        }
+        return this;
+    }
+
+    /**
+     * Draws whichever thumbnail the renderer was last given, centered
+     * in a square that's the same size whether there's one or not.
+     */
+    private static class ThumbnailIcon implements Icon
+    {
+        private int size;
+        private BufferedImage thumbnail;
+
+        private ThumbnailIcon(int initSize)
+        {
+            size = initSize;
+        }
+
+        @Override
+        public int getIconWidth() { return size; }
+
+        @Override
+        public int getIconHeight() { return size; }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y)
+        {
+            if (thumbnail != null)
+            {
+                g.drawImage(thumbnail,
+                            x + (size - thumbnail.getWidth()) / 2,
+                            y + (size - thumbnail.getHeight()) / 2,
+                            null);
+            }
+        }
+    }
+}
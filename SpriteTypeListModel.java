@@ -0,0 +1,494 @@
+package animated_sprite_viewer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Locale;
+import javax.swing.AbstractListModel;
+
+/**
+ * The SpriteTypeListModel class holds the names of all the sprite types
+ * for the sprite type list, and lets the user narrow down which ones are
+ * showing by searching for them. It takes the place of a DefaultListModel
+ * so that the list stays quick with tens of thousands of sprite types.
+ * The list only ever asks for the names it's drawing, and each one is
+ * just looked up, so nothing is made for the rows that are scrolled out
+ * of sight.
+ *
+ * Searching uses a suffix array, which is all the endings of all the
+ * names, lower cased, sorted. All the names containing some text then
+ * sit next to each other in it, so we find them with two binary
+ * searches no matter how many names there are. Searching for text that
+ * starts with ^ only matches names starting with the rest of it. The
+ * index is only built once we search, and built again when searching
+ * after names have been added or removed.
+ *
+ * Like DefaultListModel, this should only be used from the event
+ * dispatch thread.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeListModel extends AbstractListModel<String>
+{
+    private static final long serialVersionUID = 1L;
+
+    // SEARCHING FOR TEXT STARTING WITH THIS ONLY MATCHES STARTS OF NAMES
+    public static final String PREFIX_SEARCH_MARKER = "^";
+
+    // WE SORT THIS FEW SUFFIXES A SIMPLER WAY
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    // ENDS EACH NAME IN THE INDEX, SORTING BEFORE EVERYTHING ELSE
+    private static final char END_OF_NAME = '\0';
+
+    // ALL THE SPRITE TYPE NAMES, IN LIST ORDER
+    private ArrayList<String> names;
+    private HashSet<String> nameSet;
+    private String longestName;
+
+    // WHAT WE'RE SEARCHING FOR, OR NULL TO SHOW EVERYTHING
+    private String filter;
+
+    // WHEN SEARCHING, THE INDICES OF THE NAMES THAT ARE SHOWING
+    private int[] visibleIndices;
+    private int numVisible;
+
+    // THE INDEX: ALL THE NAMES LOWER CASED, ONE AFTER ANOTHER, WITH THE
+    // START OF EACH ONE, WHICH NAME EACH CHARACTER IS IN, AND THE SUFFIXES
+    private char[] text;
+    private int[] nameStarts;
+    private int[] nameAt;
+    private int[] suffixes;
+    private boolean indexStale;
+
+    /**
+     * Default constructor, it starts out with no names.
+     */
+    public SpriteTypeListModel()
+    {
+        names = new ArrayList<String>();
+        nameSet = new HashSet<String>();
+        longestName = "";
+        filter = null;
+        visibleIndices = new int[0];
+        numVisible = 0;
+        indexStale = true;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting what we're searching for.
+     *
+     * @return The search text, or null if everything is showing.
+     */
+    public String getFilter() { return filter; }
+
+    /**
+     * Accessor method for getting the longest name we've been given,
+     * which is handy for sizing the list.
+     *
+     * @return The longest sprite type name.
+     */
+    public String getLongestName() { return longestName; }
+
+    /**
+     * Accessor method for getting how many sprite types there are,
+     * counting the ones the search is hiding.
+     *
+     * @return The number of sprite type names.
+     */
+    public int getNumSpriteTypes() { return names.size(); }
+
+    /**
+     * Accessor method for getting a sprite type name whether or not
+     * the search is hiding it.
+     *
+     * @param index Where the name is among all of them, in list order.
+     *
+     * @return The name at that index.
+     */
+    public String getSpriteTypeName(int index) { return names.get(index); }
+
+    /**
+     * This method gets how many names are showing.
+     *
+     * @return The number of names that match the search.
+     */
+    @Override
+    public int getSize()
+    {
+        return (filter == null) ? names.size() : numVisible;
+    }
+
+    /**
+     * This method gets one of the names that are showing.
+     *
+     * @param index Where the name is in the list as it's showing.
+     *
+     * @return The name showing at that index.
+     */
+    @Override
+    public String getElementAt(int index)
+    {
+        if (filter == null)
+        {
+            return names.get(index);
+        }
+        if ((index < 0) || (index >= numVisible))
+        {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return names.get(visibleIndices[index]);
+    }
+
+    /**
+     * This method checks whether we have a name, whether or not the
+     * search is hiding it.
+     *
+     * @param name The sprite type name to look for.
+     *
+     * @return True if we have it, false otherwise.
+     */
+    public boolean contains(Object name)
+    {
+        return nameSet.contains(name);
+    }
+
+    /**
+     * This method adds a name to the end of the list. It only shows up
+     * if it matches what we're searching for.
+     *
+     * @param name The sprite type name to add.
+     */
+    public void addElement(String name)
+    {
+        names.add(name);
+        nameSet.add(name);
+        if (name.length() > longestName.length())
+        {
+            longestName = name;
+        }
+        indexStale = true;
+        if (filter == null)
+        {
+            fireIntervalAdded(this, names.size() - 1, names.size() - 1);
+        }
+        else if (matches(name, filter))
+        {
+            // IT'S THE LAST NAME, SO IT GOES AT THE END OF WHAT'S SHOWING TOO
+            if (numVisible == visibleIndices.length)
+            {
+                visibleIndices = Arrays.copyOf(visibleIndices, Math.max(16, 2 * numVisible));
+            }
+            visibleIndices[numVisible++] = names.size() - 1;
+            fireIntervalAdded(this, numVisible - 1, numVisible - 1);
+        }
+    }
+
+    /**
+     * This method removes a name from the list.
+     *
+     * @param name The sprite type name to remove.
+     *
+     * @return True if we had it, false otherwise.
+     */
+    public boolean removeElement(Object name)
+    {
+        int index = names.indexOf(name);
+        if (index < 0)
+        {
+            return false;
+        }
+        names.remove(index);
+        nameSet.remove(name);
+        if (name.equals(longestName))
+        {
+            longestName = "";
+            for (String n : names)
+            {
+                if (n.length() > longestName.length())
+                {
+                    longestName = n;
+                }
+            }
+        }
+        indexStale = true;
+        if (filter == null)
+        {
+            fireIntervalRemoved(this, index, index);
+            return true;
+        }
+
+        // EVERYTHING SHOWING AFTER IT MOVES UP ONE
+        int removedRow = -1;
+        int row = 0;
+        for (int i = 0; i < numVisible; i++)
+        {
+            int visibleIndex = visibleIndices[i];
+            if (visibleIndex == index)
+            {
+                removedRow = i;
+                continue;
+            }
+            visibleIndices[row++] = (visibleIndex > index) ? (visibleIndex - 1) : visibleIndex;
+        }
+        numVisible = row;
+        if (removedRow >= 0)
+        {
+            fireIntervalRemoved(this, removedRow, removedRow);
+        }
+        return true;
+    }
+
+    /**
+     * This method changes what we're searching for, so that only the
+     * names containing it show. Case doesn't matter, and if it starts
+     * with ^ only names starting with the rest of it show.
+     *
+     * @param initFilter The text to search for, or null or empty to
+     * show everything.
+     */
+    public void setFilter(String initFilter)
+    {
+        String newFilter = ((initFilter == null) || initFilter.isEmpty())
+                ? null : initFilter.toLowerCase(Locale.ROOT);
+        if ((newFilter == null) ? (filter == null) : newFilter.equals(filter))
+        {
+            return;
+        }
+        int oldSize = getSize();
+        filter = newFilter;
+        if (filter != null)
+        {
+            search(filter);
+        }
+
+        // THE LIST TREATS THIS LIKE ANY OTHER REMOVAL AND ADDITION
+        if (oldSize > 0)
+        {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        int newSize = getSize();
+        if (newSize > 0)
+        {
+            fireIntervalAdded(this, 0, newSize - 1);
+        }
+    }
+
+    /**
+     * Finds the names matching the filter using the index, leaving
+     * their indices in list order in visibleIndices.
+     */
+    private void search(String searchFilter)
+    {
+        if (indexStale)
+        {
+            buildIndex();
+        }
+        boolean prefixOnly = searchFilter.startsWith(PREFIX_SEARCH_MARKER);
+        char[] query = (prefixOnly ? searchFilter.substring(PREFIX_SEARCH_MARKER.length()) : searchFilter).toCharArray();
+        BitSet found = new BitSet(names.size());
+
+        // ALL THE SUFFIXES STARTING WITH THE QUERY ARE TOGETHER
+        int first = findFirstSuffix(query, false);
+        int last = findFirstSuffix(query, true);
+        for (int i = first; i < last; i++)
+        {
+            int position = suffixes[i];
+            int nameIndex = nameAt[position];
+            if (!prefixOnly || (nameStarts[nameIndex] == position))
+            {
+                found.set(nameIndex);
+            }
+        }
+
+        // NAMES CAN HAVE THE QUERY IN THEM MORE THAN ONCE, BUT ONLY SHOW UP ONCE
+        numVisible = found.cardinality();
+        visibleIndices = new int[Math.max(16, numVisible)];
+        int row = 0;
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1))
+        {
+            visibleIndices[row++] = i;
+        }
+    }
+
+    /**
+     * Binary searches the suffix array for the first suffix that starts
+     * with the query, or with after set, the first one after those.
+     */
+    private int findFirstSuffix(char[] query, boolean after)
+    {
+        int low = 0;
+        int high = suffixes.length;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            int comparison = compareToQuery(suffixes[middle], query);
+            if ((comparison < 0) || (after && (comparison == 0)))
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares the start of the suffix at position with the query, so
+     * it counts as equal if the suffix starts with it.
+     */
+    private int compareToQuery(int position, char[] query)
+    {
+        for (int i = 0; i < query.length; i++)
+        {
+            char c = text[position + i];
+            if (c != query[i])
+            {
+                return c - query[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Checks a single name against the filter, for names added while
+     * we're searching.
+     */
+    private static boolean matches(String name, String searchFilter)
+    {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        if (searchFilter.startsWith(PREFIX_SEARCH_MARKER))
+        {
+            return lowerCaseName.startsWith(searchFilter.substring(PREFIX_SEARCH_MARKER.length()));
+        }
+        return lowerCaseName.contains(searchFilter);
+    }
+
+    /**
+     * Builds the suffix array over all the names as they are now.
+     */
+    private void buildIndex()
+    {
+        int length = 0;
+        String[] lowerCaseNames = new String[names.size()];
+        for (int i = 0; i < lowerCaseNames.length; i++)
+        {
+            lowerCaseNames[i] = names.get(i).toLowerCase(Locale.ROOT);
+            length += lowerCaseNames[i].length() + 1;
+        }
+        text = new char[length];
+        nameStarts = new int[lowerCaseNames.length];
+        nameAt = new int[length];
+        suffixes = new int[length - lowerCaseNames.length];
+        int position = 0;
+        int numSuffixes = 0;
+        for (int i = 0; i < lowerCaseNames.length; i++)
+        {
+            nameStarts[i] = position;
+            String name = lowerCaseNames[i];
+            name.getChars(0, name.length(), text, position);
+            for (int j = 0; j < name.length(); j++)
+            {
+                nameAt[position] = i;
+                suffixes[numSuffixes++] = position++;
+            }
+            nameAt[position] = i;
+            text[position++] = END_OF_NAME;
+        }
+        sortSuffixes(0, suffixes.length, 0);
+        indexStale = false;
+    }
+
+    /**
+     * Sorts suffixes[low] up to suffixes[high] whose first depth characters
+     * are all the same. This is a three way radix quicksort, which splits
+     * on one character at a time, so it never compares the characters
+     * it already knows are the same again.
+     */
+    private void sortSuffixes(int low, int high, int depth)
+    {
+        while (high - low > 1)
+        {
+            if (high - low < INSERTION_SORT_THRESHOLD)
+            {
+                insertionSortSuffixes(low, high, depth);
+                return;
+            }
+
+            // SPLIT INTO LESS THAN, EQUAL TO AND GREATER THAN THE PIVOT
+            char pivot = text[suffixes[(low + high) >>> 1] + depth];
+            int lessThan = low;
+            int greaterThan = high - 1;
+            int i = low;
+            while (i <= greaterThan)
+            {
+                char c = text[suffixes[i] + depth];
+                if (c < pivot)
+                {
+                    swapSuffixes(lessThan++, i++);
+                }
+                else if (c > pivot)
+                {
+                    swapSuffixes(i, greaterThan--);
+                }
+                else
+                {
+                    i++;
+                }
+            }
+            sortSuffixes(low, lessThan, depth);
+            sortSuffixes(greaterThan + 1, high, depth);
+
+            // SUFFIXES THAT ALL ENDED HERE ARE EQUAL, THE REST GO ON TO THE NEXT CHARACTER
+            if (pivot == END_OF_NAME)
+            {
+                return;
+            }
+            low = lessThan;
+            high = greaterThan + 1;
+            depth++;
+        }
+    }
+
+    /**
+     * Sorts a few suffixes that are the same up to depth.
+     */
+    private void insertionSortSuffixes(int low, int high, int depth)
+    {
+        for (int i = low + 1; i < high; i++)
+        {
+            for (int j = i; (j > low) && (compareSuffixes(suffixes[j], suffixes[j - 1], depth) < 0); j--)
+            {
+                swapSuffixes(j, j - 1);
+            }
+        }
+    }
+
+    /**
+     * Compares two suffixes from depth on, up to the end of their names.
+     */
+    private int compareSuffixes(int position1, int position2, int depth)
+    {
+        int i = position1 + depth;
+        int j = position2 + depth;
+        while ((text[i] == text[j]) && (text[i] != END_OF_NAME))
+        {
+            i++;
+            j++;
+        }
+        return text[i] - text[j];
+    }
+
+    private void swapSuffixes(int i, int j)
+    {
+        int temp = suffixes[i];
+        suffixes[i] = suffixes[j];
+        suffixes[j] = temp;
+    }
+}
@@ -0,0 +1,24 @@
+package animated_sprite_viewer;
+
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeLoadListener interface is told about sprite types as
+ * they're loaded in the background. It's called on the event dispatch
+ * thread, after the sprite types map has already been updated.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public interface SpriteTypeLoadListener
+{
+    /**
+     * Called after a sprite type has been loaded and put in the sprite
+     * types map.
+     * 
+     * @param spriteTypeName Name of the sprite type that was loaded.
+     * 
+     * @param spriteType The newly loaded sprite type.
+     */
+    public void spriteTypeLoaded(String spriteTypeName, SpriteType spriteType);
+}
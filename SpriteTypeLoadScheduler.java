@@ -0,0 +1,508 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeLoadScheduler class loads sprite types in the background
+ * in whatever order the user needs them, rather than just in list order.
+ * Every sprite type starts out queued in list order, and:
+ *
+ * - a sprite type the user selects jumps to the front of the queue,
+ * the most recently selected first
+ * - its neighbors in the list come next, since the user is likely to
+ * look at them soon
+ * - everything else follows in list order
+ *
+ * If a selected sprite type is already being loaded, it's left to finish,
+ * but every other sprite type being loaded waits before decoding its
+ * next image until all the selected ones are done, so the selected one
+ * has the disks and processors to itself. A selected sprite type that
+ * hasn't started yet doesn't wait for one of our threads to free up,
+ * it gets a thread of its own, and then the same goes for it.
+ *
+ * To do that, the loader's frame decoder is wrapped by one that checks
+ * in with us first. This only holds up loading done by our own threads,
+ * anyone else using the same loader is never made to wait.
+ *
+ * Loaded sprite types are handed out by take, in the order they finish.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeLoadScheduler
+{
+    // HOW URGENTLY A SPRITE TYPE IS NEEDED, HIGHER GOES FIRST
+    public static final int BACKGROUND_PRIORITY = 0;
+    public static final int PREFETCH_PRIORITY = 1;
+    public static final int DEMAND_PRIORITY = 2;
+
+    // HOW MANY SPRITE TYPES ON EACH SIDE OF A SELECTION GET PREFETCHED
+    public static final int DEFAULT_PREFETCH_DISTANCE = 2;
+
+    // USED FOR NAMING OUR THREADS
+    public static final String WORKER_THREAD_NAME = "sprite-type-scheduler-";
+
+    // FOR LOADING THE SPRITE TYPES
+    private AnimatedSpriteXMLLoader xmlLoader;
+    private String path;
+
+    // EVERY SPRITE TYPE WE LOAD, IN LIST ORDER AND BY NAME
+    private ArrayList<LoadJob> jobsInListOrder;
+    private HashMap<String, LoadJob> jobs;
+
+    // THE ONES THAT HAVEN'T STARTED LOADING YET, MOST URGENT FIRST
+    private PriorityQueue<LoadJob> waitingJobs;
+
+    // HOW MANY SELECTED SPRITE TYPES ARE LOADING RIGHT NOW
+    private int numDemandedLoading;
+
+    // FOR ORDERING SPRITE TYPES OF THE SAME PRIORITY
+    private long requestCount;
+
+    // THE ONES THAT ARE DONE, WAITING TO BE TAKEN, AND HOW MANY ARE LEFT TO TAKE
+    private LinkedBlockingQueue<LoadJob> finishedJobs;
+    private int numLeftToTake;
+
+    // THE JOB EACH OF OUR THREADS IS DOING, NOTHING FOR ANYONE ELSE'S
+    private ThreadLocal<LoadJob> currentJob;
+
+    private int numThreads;
+    private int prefetchDistance;
+    private Thread[] threads;
+
+    // ONLY LOADS SELECTED SPRITE TYPES, AND ONLY WHILE THERE ARE ANY
+    private Thread demandThread;
+
+    // HOW LONG SELECTED SPRITE TYPES TOOK TO ARRIVE, FROM WHEN THEY WERE SELECTED
+    private LatencyHistogram demandWaits;
+    private int numDemanded;
+    private int numPrefetched;
+
+    /**
+     * Constructor for this scheduler. Note that it changes the loader's
+     * frame decoder, so any other decoder should be set on the loader
+     * before this is made.
+     *
+     * @param initXMLLoader Loader used for each sprite type.
+     *
+     * @param initPath Path to the sprite types home directory.
+     *
+     * @param spriteTypeNames Names of all the sprite types to load, in
+     * list order.
+     *
+     * @param initNumThreads How many sprite types to load at once.
+     *
+     * @param initPrefetchDistance How many sprite types on each side of
+     * a selected one to load next.
+     */
+    public SpriteTypeLoadScheduler( AnimatedSpriteXMLLoader initXMLLoader,
+                                    String initPath,
+                                    ArrayList<String> spriteTypeNames,
+                                    int initNumThreads,
+                                    int initPrefetchDistance)
+    {
+        xmlLoader = initXMLLoader;
+        path = initPath;
+        numThreads = Math.max(1, initNumThreads);
+        prefetchDistance = Math.max(0, initPrefetchDistance);
+        jobsInListOrder = new ArrayList<LoadJob>();
+        jobs = new HashMap<String, LoadJob>();
+        waitingJobs = new PriorityQueue<LoadJob>(Math.max(1, spriteTypeNames.size()), new Comparator<LoadJob>()
+        {
+            @Override
+            public int compare(LoadJob a, LoadJob b)
+            {
+                if (a.priority != b.priority)
+                {
+                    return (a.priority > b.priority) ? -1 : 1;
+                }
+                return (a.order < b.order) ? -1 : ((a.order == b.order) ? 0 : 1);
+            }
+        });
+        for (String spriteTypeName : spriteTypeNames)
+        {
+            // A NAME LISTED TWICE IS ONLY LOADED ONCE
+            if (!jobs.containsKey(spriteTypeName))
+            {
+                LoadJob job = new LoadJob(spriteTypeName, jobsInListOrder.size());
+                jobsInListOrder.add(job);
+                jobs.put(spriteTypeName, job);
+                waitingJobs.add(job);
+            }
+        }
+        numDemandedLoading = 0;
+        requestCount = 0;
+        finishedJobs = new LinkedBlockingQueue<LoadJob>();
+        numLeftToTake = jobsInListOrder.size();
+        currentJob = new ThreadLocal<LoadJob>();
+        threads = null;
+        demandThread = null;
+        demandWaits = new LatencyHistogram();
+        xmlLoader.setFrameDecoder(new SchedulingFrameDecoder(xmlLoader.getFrameDecoder()));
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many sprite types we load.
+     *
+     * @return The number of sprite types, counting each name once.
+     */
+    public int getNumSpriteTypes() { return jobsInListOrder.size(); }
+
+    /**
+     * Accessor method for getting how long selected sprite types took to
+     * arrive after being selected. Those already loaded when selected
+     * aren't counted.
+     *
+     * @return The wait for each selected sprite type so far.
+     */
+    public LatencyHistogram.Snapshot getDemandWaits() { return demandWaits.getSnapshot(); }
+
+    /**
+     * This method builds a short report of the scheduling so far.
+     *
+     * @return A one line summary of the scheduling.
+     */
+    public synchronized String getReport()
+    {
+        return "Load scheduling: " + numDemanded + " sprite types selected before loading, "
+                + numPrefetched + " prefetched, selection waits " + demandWaits.getSnapshot().getReport();
+    }
+
+    /**
+     * This method starts our threads loading the sprite types. It may
+     * only be called once.
+     */
+    public synchronized void start()
+    {
+        if (threads != null)
+        {
+            throw new IllegalStateException("Already started");
+        }
+        threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    loadJobs(false);
+                }
+            }, WORKER_THREAD_NAME + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * This method is called when the user selects a sprite type. It's
+     * loaded before anything else, unless it already has been, and its
+     * neighbors in the list are loaded right after it.
+     *
+     * @param spriteTypeName Name of the sprite type selected.
+     */
+    public synchronized void demand(String spriteTypeName)
+    {
+        LoadJob job = jobs.get(spriteTypeName);
+        if (job == null)
+        {
+            return;
+        }
+        if ((job.state != LoadJob.DONE) && (job.priority != DEMAND_PRIORITY))
+        {
+            numDemanded++;
+            job.demandTime = System.nanoTime();
+            if (job.state == LoadJob.WAITING)
+            {
+                requeue(job, DEMAND_PRIORITY, -(++requestCount));
+                startDemandThread();
+            }
+            else
+            {
+                // IT'S HALF LOADED, SO EVERYONE ELSE WAITS FOR IT TO FINISH
+                job.priority = DEMAND_PRIORITY;
+                numDemandedLoading++;
+            }
+        }
+
+        // CLOSEST NEIGHBORS FIRST
+        for (int distance = 1; distance <= prefetchDistance; distance++)
+        {
+            prefetch(job.index - distance);
+            prefetch(job.index + distance);
+        }
+        notifyAll();
+    }
+
+    /**
+     * This method waits for the next sprite type to finish loading.
+     *
+     * @return The sprite type, or null once every one has been taken.
+     *
+     * @throws InterruptedException Thrown if we're interrupted while
+     * waiting.
+     */
+    public LoadJob take() throws InterruptedException
+    {
+        synchronized (this)
+        {
+            if (numLeftToTake == 0)
+            {
+                return null;
+            }
+            numLeftToTake--;
+        }
+        return finishedJobs.take();
+    }
+
+    /**
+     * Moves a waiting sprite type up to a more urgent priority.
+     */
+    private void prefetch(int index)
+    {
+        if ((index < 0) || (index >= jobsInListOrder.size()))
+        {
+            return;
+        }
+        LoadJob job = jobsInListOrder.get(index);
+        if ((job.state == LoadJob.WAITING) && (job.priority < PREFETCH_PRIORITY))
+        {
+            numPrefetched++;
+            requeue(job, PREFETCH_PRIORITY, ++requestCount);
+        }
+    }
+
+    /**
+     * Changes where a waiting sprite type is in the queue. It has to be
+     * taken out and put back, since the queue only orders things as
+     * they're added.
+     */
+    private void requeue(LoadJob job, int priority, long order)
+    {
+        if (waitingJobs.remove(job))
+        {
+            job.priority = priority;
+            job.order = order;
+            waitingJobs.add(job);
+        }
+    }
+
+    /**
+     * Starts a thread for the selected sprite types, unless one is
+     * already going or we haven't been started.
+     */
+    private void startDemandThread()
+    {
+        if ((threads == null) || (demandThread != null))
+        {
+            return;
+        }
+        demandThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                loadJobs(true);
+            }
+        }, WORKER_THREAD_NAME + "demand");
+        demandThread.setDaemon(true);
+        demandThread.start();
+    }
+
+    /**
+     * What each of our threads does, load the most urgent sprite type
+     * until there are none left, or none that have been selected.
+     */
+    private void loadJobs(boolean demandedOnly)
+    {
+        LoadJob job;
+        while ((job = nextJob(demandedOnly)) != null)
+        {
+            currentJob.set(job);
+            long startTime = System.nanoTime();
+            try
+            {
+                job.spriteType = xmlLoader.loadSpriteType(path, job.spriteTypeName);
+            }
+            catch (InvalidXMLFileFormatException ixffe)
+            {
+                job.failure = ixffe;
+            }
+            catch (RuntimeException re)
+            {
+                job.failure = re;
+            }
+            finally
+            {
+                // EVEN AN Error HAS TO FINISH THE JOB, OR ANYTHING WAITING
+                // ON A SELECTED SPRITE TYPE WOULD WAIT FOREVER. THIS THREAD
+                // GOES DOWN WITH IT, BUT WHOEVER TAKES THE JOB HEARS ABOUT IT
+                if ((job.spriteType == null) && (job.failure == null))
+                {
+                    job.failure = new IllegalStateException("Loading " + job.spriteTypeName + " was abandoned");
+                }
+                currentJob.remove();
+                job.loadMillis = (System.nanoTime() - startTime) / 1000000;
+                finishJob(job);
+            }
+        }
+    }
+
+    /**
+     * Takes the most urgent sprite type off the queue.
+     */
+    private synchronized LoadJob nextJob(boolean demandedOnly)
+    {
+        LoadJob job = waitingJobs.peek();
+        if ((job == null) || (demandedOnly && (job.priority != DEMAND_PRIORITY)))
+        {
+            if (demandedOnly)
+            {
+                // WE'RE DONE, THE NEXT SELECTION STARTS ANOTHER
+                demandThread = null;
+            }
+            return null;
+        }
+        waitingJobs.poll();
+        job.state = LoadJob.LOADING;
+        if (job.priority == DEMAND_PRIORITY)
+        {
+            numDemandedLoading++;
+        }
+        return job;
+    }
+
+    /**
+     * Hands a loaded sprite type over, and lets anything waiting on it
+     * carry on.
+     */
+    private void finishJob(LoadJob job)
+    {
+        synchronized (this)
+        {
+            job.state = LoadJob.DONE;
+            if (job.priority == DEMAND_PRIORITY)
+            {
+                numDemandedLoading--;
+                demandWaits.record(System.nanoTime() - job.demandTime);
+                notifyAll();
+            }
+        }
+        finishedJobs.add(job);
+    }
+
+    /**
+     * Called by our threads before decoding each image. Unless the
+     * sprite type it's for has been selected, this waits for all the
+     * selected sprite types being loaded to finish first.
+     */
+    private synchronized void awaitTurn() throws IOException
+    {
+        LoadJob job = currentJob.get();
+        if (job == null)
+        {
+            return;
+        }
+        try
+        {
+            while ((numDemandedLoading > 0) && (job.priority != DEMAND_PRIORITY))
+            {
+                wait();
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to decode", ie);
+        }
+    }
+
+    /**
+     * Checks in with the scheduler before each image is decoded.
+     */
+    private class SchedulingFrameDecoder implements FrameDecoder
+    {
+        private FrameDecoder decoder;
+
+        private SchedulingFrameDecoder(FrameDecoder initDecoder)
+        {
+            decoder = initDecoder;
+        }
+
+        @Override
+        public BufferedImage decode(FrameSource source) throws IOException
+        {
+            awaitTurn();
+            return decoder.decode(source);
+        }
+    }
+
+    /**
+     * One sprite type to load, how urgently, and how it went.
+     */
+    public static class LoadJob
+    {
+        // WHERE A SPRITE TYPE IS IN ITS LOADING
+        private static final int WAITING = 0;
+        private static final int LOADING = 1;
+        private static final int DONE = 2;
+
+        private String spriteTypeName;
+        private int index;
+        private int priority;
+        private long order;
+        private int state;
+        private long demandTime;
+        private SpriteType spriteType;
+        private long loadMillis;
+        private Exception failure;
+
+        private LoadJob(String initSpriteTypeName, int initIndex)
+        {
+            spriteTypeName = initSpriteTypeName;
+            index = initIndex;
+            priority = BACKGROUND_PRIORITY;
+            order = initIndex;
+            state = WAITING;
+        }
+
+        // ACCESSOR METHODS
+
+        /**
+         * Accessor method for getting which sprite type this is.
+         *
+         * @return The name of the sprite type.
+         */
+        public String getSpriteTypeName() { return spriteTypeName; }
+
+        /**
+         * Accessor method for getting the loaded sprite type.
+         *
+         * @return The sprite type, or null if it couldn't be loaded.
+         */
+        public SpriteType getSpriteType() { return spriteType; }
+
+        /**
+         * Accessor method for getting how long loading took.
+         *
+         * @return Milliseconds it took to load the sprite type.
+         */
+        public long getLoadMillis() { return loadMillis; }
+
+        /**
+         * Accessor method for getting what went wrong.
+         *
+         * @return Why the sprite type couldn't be loaded, or null if it was.
+         */
+        public Exception getFailure() { return failure; }
+    }
+}
@@ -0,0 +1,289 @@
+package animated_sprite_viewer;
+
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import javax.swing.JOptionPane;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeLoadWorker class loads all the sprite types in the
+ * background once the window is already up. Each sprite type is handed
+ * over to the GUI as soon as it's loaded, so it shows up in the list
+ * right away and can be viewed while the rest are still loading.
+ * 
+ * If it's given a SpriteTypeLoadScheduler, the sprite types are loaded
+ * by that instead, in whatever order the user needs them. The scheduler
+ * is made with the sprite type names, so they're expected to be in the
+ * list already, and the loaded sprite types aren't added to it again.
+ * 
+ * Note that the sprite types map and the list model are only ever
+ * changed on the event dispatch thread, so the event handlers using
+ * them never see them half updated.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeLoadWorker extends SwingWorker<Void, SpriteTypeLoadWorker.LoadedSpriteType>
+{
+    // FOR LOADING THE SPRITE TYPES, THE LIBRARY LOADER HAS
+    // THE SPRITE PACK LOADER SET UP THE WAY THE VIEWER WANTS
+    private SpriteTypeLibraryLoader libraryLoader;
+    private AnimatedSpriteXMLLoader xmlLoader;
+    private String path;
+    private String packFile;
+    
+    // IF NOT NULL, THIS PICKS THE ORDER SPRITE TYPES ARE LOADED IN
+    private SpriteTypeLoadScheduler scheduler;
+    
+    // WHERE THE LOADED SPRITE TYPES GO
+    private HashMap<String, SpriteType> spriteTypes;
+    private SpriteTypeListModel spriteTypesListModel;
+    private HashMap<String, Long> loadTimes;
+    
+    // FOR SHOWING HOW FAR ALONG WE ARE
+    private JProgressBar progressBar;
+    
+    // FOR PUTTING UP A DIALOG IF SOMETHING GOES WRONG
+    private Component parent;
+    
+    // GETS TOLD ABOUT EACH SPRITE TYPE AS IT ARRIVES, MAY BE NULL
+    private SpriteTypeLoadListener listener;
+
+    /**
+     * Constructor for this worker, it just keeps everything for later.
+     * 
+     * @param initLibraryLoader Loader used for the sprite pack, and whose
+     * xml loader is used for each sprite type.
+     * 
+     * @param initPath Path to the sprite types home directory.
+     * 
+     * @param initPackFile Sprite pack to try first, or null to always
+     * load from xml.
+     * 
+     * @param initSpriteTypes Map where loaded sprite types are put.
+     * 
+     * @param initSpriteTypesListModel List model each sprite type's name
+     * is added to once it's loaded.
+     * 
+     * @param initLoadTimes Map where the milliseconds it took to load
+     * each sprite type are put.
+     * 
+     * @param initProgressBar Progress bar that shows how many sprite
+     * types have been loaded, hidden once they all are.
+     * 
+     * @param initParent Component any error dialog is shown over.
+     */
+    public SpriteTypeLoadWorker(SpriteTypeLibraryLoader initLibraryLoader,
+                                String initPath,
+                                String initPackFile,
+                                HashMap<String, SpriteType> initSpriteTypes,
+                                SpriteTypeListModel initSpriteTypesListModel,
+                                HashMap<String, Long> initLoadTimes,
+                                JProgressBar initProgressBar,
+                                Component initParent)
+    {
+        this(initLibraryLoader, initPath, initPackFile, null, initSpriteTypes, initSpriteTypesListModel,
+                initLoadTimes, initProgressBar, initParent, null);
+    }
+
+    /**
+     * Constructor for a worker that loads through a scheduler, so the
+     * sprite types the user needs are loaded first.
+     * 
+     * @param initLibraryLoader Loader used for the sprite pack, and whose
+     * xml loader is used for each sprite type.
+     * 
+     * @param initPath Path to the sprite types home directory.
+     * 
+     * @param initPackFile Sprite pack to try first, or null to always
+     * load from xml.
+     * 
+     * @param initScheduler Scheduler that loads the sprite types, or null
+     * to load them one at a time in list order. If not null, the sprite
+     * type names must already be in the list model.
+     * 
+     * @param initSpriteTypes Map where loaded sprite types are put.
+     * 
+     * @param initSpriteTypesListModel List model of the sprite type names.
+     * 
+     * @param initLoadTimes Map where the milliseconds it took to load
+     * each sprite type are put.
+     * 
+     * @param initProgressBar Progress bar that shows how many sprite
+     * types have been loaded, hidden once they all are.
+     * 
+     * @param initParent Component any error dialog is shown over.
+     * 
+     * @param initListener Told about each sprite type once it's loaded,
+     * may be null.
+     */
+    public SpriteTypeLoadWorker(SpriteTypeLibraryLoader initLibraryLoader,
+                                String initPath,
+                                String initPackFile,
+                                SpriteTypeLoadScheduler initScheduler,
+                                HashMap<String, SpriteType> initSpriteTypes,
+                                SpriteTypeListModel initSpriteTypesListModel,
+                                HashMap<String, Long> initLoadTimes,
+                                JProgressBar initProgressBar,
+                                Component initParent,
+                                SpriteTypeLoadListener initListener)
+    {
+        libraryLoader = initLibraryLoader;
+        xmlLoader = initLibraryLoader.getXMLLoader();
+        path = initPath;
+        packFile = initPackFile;
+        scheduler = initScheduler;
+        spriteTypes = initSpriteTypes;
+        spriteTypesListModel = initSpriteTypesListModel;
+        loadTimes = initLoadTimes;
+        progressBar = initProgressBar;
+        parent = initParent;
+        listener = initListener;
+    }
+
+    /**
+     * Loads each sprite type in turn, off the event dispatch thread,
+     * handing each one over as soon as it's ready.
+     * 
+     * @return Nothing, everything loaded is handed over via publish.
+     * 
+     * @throws InvalidXMLFileFormatException Thrown if one of the xml
+     * files does not validate against its schema.
+     * 
+     * @throws InterruptedException Thrown if we're cancelled while
+     * waiting for the scheduler.
+     */
+    @Override
+    protected Void doInBackground() throws InvalidXMLFileFormatException, InterruptedException
+    {
+        ArrayList<String> spriteTypeNames = new ArrayList<String>();
+        
+        // A CURRENT SPRITE PACK HAS EVERYTHING ALREADY
+        HashMap<String, SpriteType> packedTypes = new HashMap<String, SpriteType>();
+        if ((packFile != null)
+                && libraryLoader.loadSpriteTypePack(path, packFile, spriteTypeNames, packedTypes))
+        {
+            for (int i = 0; i < spriteTypeNames.size(); i++)
+            {
+                String name = spriteTypeNames.get(i);
+                publish(new LoadedSpriteType(name, packedTypes.get(name), 0, i + 1, spriteTypeNames.size()));
+            }
+            return null;
+        }
+        
+        // OTHERWISE THE SCHEDULER MAY PICK THE ORDER
+        if (scheduler != null)
+        {
+            scheduler.start();
+            int count = 0;
+            SpriteTypeLoadScheduler.LoadJob job;
+            while ((job = scheduler.take()) != null)
+            {
+                if (job.getFailure() instanceof InvalidXMLFileFormatException)
+                {
+                    throw (InvalidXMLFileFormatException)job.getFailure();
+                }
+                if (job.getFailure() != null)
+                {
+                    throw new RuntimeException(job.getFailure());
+                }
+                count++;
+                publish(new LoadedSpriteType(job.getSpriteTypeName(), job.getSpriteType(),
+                        job.getLoadMillis(), count, scheduler.getNumSpriteTypes()));
+            }
+            return null;
+        }
+        
+        // OR IT'S ONE XML FILE AT A TIME
+        xmlLoader.loadSpriteTypeNames(path, AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE, spriteTypeNames);
+        for (int i = 0; i < spriteTypeNames.size(); i++)
+        {
+            String name = spriteTypeNames.get(i);
+            long startTime = System.nanoTime();
+            SpriteType spriteType = xmlLoader.loadSpriteType(path, name);
+            long loadMillis = (System.nanoTime() - startTime) / 1000000;
+            publish(new LoadedSpriteType(name, spriteType, loadMillis, i + 1, spriteTypeNames.size()));
+        }
+        return null;
+    }
+
+    /**
+     * Hands the newly loaded sprite types over to the GUI. This runs
+     * on the event dispatch thread.
+     * 
+     * @param loaded The sprite types loaded since this was last called.
+     */
+    @Override
+    protected void process(List<LoadedSpriteType> loaded)
+    {
+        for (LoadedSpriteType loadedType : loaded)
+        {
+            spriteTypes.put(loadedType.name, loadedType.spriteType);
+            loadTimes.put(loadedType.name, loadedType.loadMillis);
+            if (scheduler == null)
+            {
+                spriteTypesListModel.addElement(loadedType.name);
+            }
+            progressBar.setMaximum(loadedType.total);
+            progressBar.setValue(loadedType.count);
+            progressBar.setString("Loaded " + loadedType.count + " of " + loadedType.total);
+            if (listener != null)
+            {
+                listener.spriteTypeLoaded(loadedType.name, loadedType.spriteType);
+            }
+        }
+    }
+
+    /**
+     * Called on the event dispatch thread once everything is loaded,
+     * or once loading has failed.
+     */
+    @Override
+    protected void done()
+    {
+        progressBar.setVisible(false);
+        try
+        {
+            get();
+        }
+        catch (ExecutionException ee)
+        {
+            // JUST LIKE LOADING AT STARTUP, AN INVALID FILE MEANS
+            // WE HAVE NOTHING TO DO, SO LET THE USER KNOW WHY
+            Throwable cause = ee.getCause();
+            JOptionPane.showMessageDialog(parent, cause.toString());
+            System.exit(0);
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A sprite type that's been loaded, along with how long that took
+     * and how far along the loading is.
+     */
+    public static class LoadedSpriteType
+    {
+        private String name;
+        private SpriteType spriteType;
+        private long loadMillis;
+        private int count;
+        private int total;
+
+        private LoadedSpriteType(String initName, SpriteType initSpriteType, long initLoadMillis, int initCount, int initTotal)
+        {
+            name = initName;
+            spriteType = initSpriteType;
+            loadMillis = initLoadMillis;
+            count = initCount;
+            total = initTotal;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package animated_sprite_viewer;
+
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeReloadListener interface is told about sprite types
+ * that were reloaded or removed because their files changed while the
+ * viewer was running. Both methods are called on the event dispatch
+ * thread, after the sprite types map has already been updated.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public interface SpriteTypeReloadListener
+{
+    /**
+     * Called after a new version of a sprite type has replaced the old
+     * one in the sprite types map.
+     * 
+     * @param spriteTypeName Name of the sprite type that was reloaded.
+     * 
+     * @param spriteType The newly loaded sprite type.
+     */
+    public void spriteTypeReloaded(String spriteTypeName, SpriteType spriteType);
+
+    /**
+     * Called after a sprite type has been taken out of the sprite type
+     * list and removed from the sprite types map.
+     * 
+     * @param spriteTypeName Name of the sprite type that was removed.
+     */
+    public void spriteTypeRemoved(String spriteTypeName);
+}
@@ -0,0 +1,162 @@
+package animated_sprite_viewer;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import sprite_renderer.AnimationState;
+import static animated_sprite_viewer.AnimatedSpriteXMLLoader.*;
+
+/**
+ * The SpriteTypeStreamReader class reads a sprite type xml file as a
+ * stream of parsing events and passes its contents straight on to a
+ * SpriteTypeHandler. Neither a DOM nor a WhitespaceFreeXMLDoc is ever
+ * built, so the memory needed to read a sprite type no longer grows
+ * with its number of poses.
+ * 
+ * Note that this class does not validate anything, the file should
+ * be validated against the sprite type schema before it is read.
+ * 
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeStreamReader
+{
+    // THIS IS WHERE OUR STREAM READERS COME FROM
+    private XMLInputFactory inputFactory;
+
+    /**
+     * Default constructor, it sets up the factory used for all reading.
+     */
+    public SpriteTypeStreamReader()
+    {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    /**
+     * This method reads all of the xmlFile and passes what it finds
+     * on to the handler, in document order.
+     * 
+     * @param xmlFile Path and name of the sprite type xml file to read.
+     * 
+     * @param handler Receives the contents of the sprite type.
+     * 
+     * @throws XMLStreamException Thrown if the xml file is not well formed.
+     * 
+     * @throws IOException Thrown if the xml file can't be read.
+     */
+    public void read(String xmlFile, SpriteTypeHandler handler)
+            throws XMLStreamException, IOException
+    {
+        InputStream in = new BufferedInputStream(new FileInputStream(xmlFile));
+        try
+        {
+            read(xmlFile, in, handler);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * This method reads all of a sprite type xml document from a stream
+     * and passes what it finds on to the handler, in document order.
+     * This lets us read the very bytes we've just validated instead of
+     * reading the file all over again. The stream is left open.
+     * 
+     * @param systemId Where the document came from, for error messages.
+     * 
+     * @param in The sprite type xml document.
+     * 
+     * @param handler Receives the contents of the sprite type.
+     * 
+     * @throws XMLStreamException Thrown if the document is not well formed.
+     */
+    public void read(String systemId, InputStream in, SpriteTypeHandler handler)
+            throws XMLStreamException
+    {
+        XMLStreamReader reader = null;
+        try
+        {
+            // THE FACTORY IS SHARED, SO ONLY ONE READER AT A TIME MAY BE MADE
+            synchronized (inputFactory)
+            {
+                reader = inputFactory.createXMLStreamReader(systemId, in);
+            }
+            read(reader, handler);
+        }
+        finally
+        {
+            if (reader != null)
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * This method reads everything left in the reader and passes what
+     * it finds on to the handler, in document order.
+     */
+    private void read(XMLStreamReader reader, SpriteTypeHandler handler)
+            throws XMLStreamException
+    {
+        // WIDTH AND HEIGHT ARE PASSED ALONG TOGETHER
+        int width = 0;
+        boolean haveWidth = false;
+        
+        while (reader.hasNext())
+        {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                String name = reader.getLocalName();
+                if (name.equals(POSE_NODE_NAME))
+                {
+                    // BY FAR THE MOST COMMON, SO IT GOES FIRST
+                    handler.pose(
+                            Integer.parseInt(reader.getAttributeValue(null, IMAGE_ID_ATTRIBUTE_NAME)),
+                            Integer.parseInt(reader.getAttributeValue(null, DURATION_ATTRIBUTE_NAME)));
+                }
+                else if (name.equals(IMAGE_FILE_NODE_NAME))
+                {
+                    handler.imageFile(
+                            Integer.parseInt(reader.getAttributeValue(null, ID_ATTRIBUTE_NAME)),
+                            reader.getAttributeValue(null, FILE_NAME_ATTRIBUTE_NAME));
+                }
+                else if (name.equals(STATE_NODE_NAME))
+                {
+                    handler.startAnimationState(AnimationState.valueOf(reader.getElementText().trim()));
+                }
+                else if (name.equals(WIDTH_NODE_NAME))
+                {
+                    width = Integer.parseInt(reader.getElementText().trim());
+                    haveWidth = true;
+                }
+                else if (name.equals(HEIGHT_NODE_NAME) && haveWidth)
+                {
+                    handler.dimensions(width, Integer.parseInt(reader.getElementText().trim()));
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                String name = reader.getLocalName();
+                if (name.equals(ANIMATION_STATE_NODE_NAME))
+                {
+                    handler.endAnimationState();
+                }
+                else if (name.equals(SPRITE_TYPE_NODE_NAME))
+                {
+                    handler.endSpriteType();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package animated_sprite_viewer;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import javax.xml.stream.XMLStreamException;
+import sprite_renderer.AnimationState;
+
+/**
+ * The SpriteTypeThumbnailCache class makes small thumbnails of the first
+ * pose of each sprite type, for showing in the sprite type list. Asking
+ * for a thumbnail never waits. If it isn't ready yet we get null back,
+ * a pool of worker threads makes it, and the list is repainted once it's
+ * done. The thumbnails asked for most recently are made first, so after
+ * scrolling quickly through the list the rows now showing don't wait on
+ * the rows scrolled past.
+ *
+ * Thumbnails are made by halving the image again and again until it's
+ * nearly small enough and then scaling it the rest of the way, which
+ * looks much better than scaling it down all at once. They're kept in
+ * memory, and also in a cache directory as png files named after the
+ * hash of the image file's contents, so next time we only have to read
+ * in the thumbnail. Sprite types that share an image share a thumbnail.
+ * Thumbnails are so small that we don't bother limiting how many are
+ * kept on disk.
+ *
+ * The xml files are only streamed through to find the first pose, they
+ * aren't validated, since a thumbnail shouldn't cost a schema validation
+ * and a bad file just means no thumbnail. For the same reason none of
+ * this is recorded in the viewer's loading metrics.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeThumbnailCache
+{
+    public static final String WORKER_THREAD_NAME = "Thumbnail Worker ";
+    public static final String THUMBNAIL_EXTENSION = ".png";
+    public static final String TEMP_EXTENSION = ".tmp";
+
+    // HOW MANY THUMBNAILS WE KEEP IN MEMORY
+    public static final int MAX_THUMBNAILS_IN_MEMORY = 4096;
+
+    // FOR READING THE SPRITE TYPES' XML FILES
+    private SpriteTypeStreamReader streamReader;
+    private String path;
+
+    // WHERE THE THUMBNAILS GO ON DISK
+    private File directory;
+
+    // THUMBNAILS FIT IN A SQUARE THIS MANY PIXELS ACROSS
+    private int thumbnailSize;
+
+    // THIS GETS REPAINTED WHENEVER A THUMBNAIL IS READY
+    private Component repaintTarget;
+
+    // THE HASH OF THE IMAGE OF EACH SPRITE TYPE'S FIRST POSE
+    private HashMap<String, String> imageHashes;
+
+    // THE THUMBNAILS, BY IMAGE HASH, LEAST RECENTLY USED FIRST
+    private LinkedHashMap<String, BufferedImage> thumbnails;
+
+    // SPRITE TYPES BEING WORKED ON, AND ONES WE COULDN'T MAKE ONE FOR
+    private HashSet<String> pendingNames;
+    private HashSet<String> failedNames;
+
+    // THE WORKERS, AND HOW WE ORDER THEIR JOBS
+    private ThreadPoolExecutor executor;
+    private long nextJobNumber;
+
+    /**
+     * Constructor for this cache, which starts up its worker threads.
+     *
+     * @param initPath Path to the sprite types home directory.
+     *
+     * @param initDirectory Directory to keep the thumbnails in.
+     *
+     * @param initThumbnailSize How many pixels across thumbnails can be.
+     *
+     * @param numThreads How many threads to make thumbnails with.
+     *
+     * @param initRepaintTarget Component to repaint when a thumbnail
+     * is ready.
+     *
+     * @throws IOException Thrown if the directory can't be created.
+     */
+    public SpriteTypeThumbnailCache(String initPath,
+                                    File initDirectory,
+                                    int initThumbnailSize,
+                                    int numThreads,
+                                    Component initRepaintTarget)
+            throws IOException
+    {
+        streamReader = new SpriteTypeStreamReader();
+        path = initPath;
+        directory = initDirectory;
+        thumbnailSize = initThumbnailSize;
+        repaintTarget = initRepaintTarget;
+        Files.createDirectories(directory.toPath());
+        imageHashes = new HashMap<String, String>();
+        thumbnails = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest)
+            {
+                return size() > MAX_THUMBNAILS_IN_MEMORY;
+            }
+        };
+        pendingNames = new HashSet<String>();
+        failedNames = new HashSet<String>();
+        nextJobNumber = 0;
+
+        // THE WORKERS RUN AT LOW PRIORITY SO THEY NEVER GET IN THE WAY OF THE GUI
+        executor = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory()
+        {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, WORKER_THREAD_NAME + count.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+
+        // SO THAT ASKING FOR THE FIRST THUMBNAILS DOESN'T HAVE TO START THEM
+        executor.prestartAllCoreThreads();
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how big thumbnails can be.
+     *
+     * @return How many pixels across and down thumbnails can be.
+     */
+    public int getThumbnailSize() { return thumbnailSize; }
+
+    /**
+     * This method gets the thumbnail of a sprite type if it's ready.
+     * If it's not, it gets made in the background. This never waits,
+     * so it can be called while painting.
+     *
+     * @param spriteTypeName The sprite type to get the thumbnail of.
+     *
+     * @return The thumbnail, or null if it isn't ready or the sprite
+     * type doesn't have one.
+     */
+    public BufferedImage getThumbnail(String spriteTypeName)
+    {
+        long jobNumber;
+        synchronized (this)
+        {
+            String imageHash = imageHashes.get(spriteTypeName);
+            if (imageHash != null)
+            {
+                BufferedImage thumbnail = thumbnails.get(imageHash);
+                if (thumbnail != null)
+                {
+                    return thumbnail;
+                }
+            }
+            if (failedNames.contains(spriteTypeName) || !pendingNames.add(spriteTypeName))
+            {
+                return null;
+            }
+            jobNumber = ++nextJobNumber;
+        }
+        executor.execute(new ThumbnailJob(spriteTypeName, jobNumber));
+        return null;
+    }
+
+    /**
+     * This method forgets what we know about a sprite type, for when
+     * it has changed or been removed. Its thumbnail is made again the
+     * next time it's asked for.
+     *
+     * @param spriteTypeName The sprite type that changed.
+     */
+    public synchronized void forget(String spriteTypeName)
+    {
+        imageHashes.remove(spriteTypeName);
+        failedNames.remove(spriteTypeName);
+    }
+
+    /**
+     * Makes the thumbnail for one sprite type, or finds it on disk.
+     */
+    private void makeThumbnail(String spriteTypeName)
+    {
+        BufferedImage thumbnail = null;
+        String imageHash = null;
+        try
+        {
+            // ALL WE NEED FROM THE XML FILE IS WHICH IMAGE COMES FIRST
+            String spriteTypeDir = (path + spriteTypeName).trim() + '/';
+            FirstPoseFinder finder = new FirstPoseFinder();
+            streamReader.read(spriteTypeDir + spriteTypeName + ".xml", finder);
+            if (finder.firstPoseFileName != null)
+            {
+                File imageFile = new File(spriteTypeDir + finder.firstPoseFileName);
+                byte[] contents = Files.readAllBytes(imageFile.toPath());
+                imageHash = DeduplicatingFrameDecoder.hashContents(contents);
+                thumbnail = findThumbnail(imageHash, contents);
+            }
+        }
+        catch (XMLStreamException xse)
+        {
+            // IT JUST WON'T HAVE A THUMBNAIL
+        }
+        catch (IllegalArgumentException iae)
+        {
+            // NOR IF IT'S WELL FORMED BUT WOULDN'T HAVE VALIDATED
+        }
+        catch (IOException ioe)
+        {
+            // NOR IF ITS IMAGE CAN'T BE READ
+        }
+        synchronized (this)
+        {
+            pendingNames.remove(spriteTypeName);
+            if (thumbnail == null)
+            {
+                failedNames.add(spriteTypeName);
+                return;
+            }
+            imageHashes.put(spriteTypeName, imageHash);
+            thumbnails.put(imageHash, thumbnail);
+        }
+        repaintTarget.repaint();
+    }
+
+    /**
+     * Finds the thumbnail for an image in memory or on disk, making it
+     * if it's in neither.
+     */
+    private BufferedImage findThumbnail(String imageHash, byte[] contents) throws IOException
+    {
+        synchronized (this)
+        {
+            BufferedImage thumbnail = thumbnails.get(imageHash);
+            if (thumbnail != null)
+            {
+                return thumbnail;
+            }
+        }
+        File thumbnailFile = new File(directory, imageHash + "-" + thumbnailSize + THUMBNAIL_EXTENSION);
+        if (thumbnailFile.isFile())
+        {
+            BufferedImage thumbnail = null;
+            try
+            {
+                thumbnail = ImageIO.read(thumbnailFile);
+            }
+            catch (IOException ioe)
+            {
+                // WE'LL JUST MAKE IT AGAIN
+            }
+            if (thumbnail != null)
+            {
+                return thumbnail;
+            }
+            thumbnailFile.delete();
+        }
+        BufferedImage img = ImageIO.read(new ByteArrayInputStream(contents));
+        if (img == null)
+        {
+            return null;
+        }
+        BufferedImage thumbnail = downsample(img, thumbnailSize);
+        try
+        {
+            writeThumbnail(thumbnailFile, thumbnail);
+        }
+        catch (IOException ioe)
+        {
+            // WE STILL HAVE IT FOR NOW, WE'LL JUST HAVE TO MAKE IT AGAIN NEXT TIME
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Writes a thumbnail under a temporary name and then renames it, so
+     * that another run never reads half of one.
+     */
+    private void writeThumbnail(File thumbnailFile, BufferedImage thumbnail) throws IOException
+    {
+        File tempFile = File.createTempFile(thumbnailFile.getName(), TEMP_EXTENSION, directory);
+        try
+        {
+            ImageIO.write(thumbnail, "png", tempFile);
+            try
+            {
+                Files.move(tempFile.toPath(), thumbnailFile.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException amnse)
+            {
+                Files.move(tempFile.toPath(), thumbnailFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * This method scales an image down to fit in a square, halving it
+     * one step at a time with bilinear filtering so that every pixel of
+     * the original counts towards the result. Images that already fit
+     * are left their size.
+     *
+     * @param img The image to scale down.
+     *
+     * @param maxSize How many pixels across and down the result can be.
+     *
+     * @return The scaled down image.
+     */
+    public static BufferedImage downsample(BufferedImage img, int maxSize)
+    {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        double scale = Math.min(1.0, Math.min((double)maxSize / width, (double)maxSize / height));
+        int targetWidth = Math.max(1, (int)Math.round(width * scale));
+        int targetHeight = Math.max(1, (int)Math.round(height * scale));
+
+        // THE FIRST STEP ALSO GETS IT INTO A FORMAT THAT'S QUICK TO DRAW
+        BufferedImage current = img;
+        do
+        {
+            width = Math.max(width / 2, targetWidth);
+            height = Math.max(height / 2, targetHeight);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = next.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(current, 0, 0, width, height, null);
+            g2.dispose();
+            current = next;
+        }
+        while ((width != targetWidth) || (height != targetHeight));
+        return current;
+    }
+
+    /**
+     * A job for the workers. Jobs asked for later go first.
+     */
+    private class ThumbnailJob implements Runnable, Comparable<ThumbnailJob>
+    {
+        private String spriteTypeName;
+        private long jobNumber;
+
+        private ThumbnailJob(String initSpriteTypeName, long initJobNumber)
+        {
+            spriteTypeName = initSpriteTypeName;
+            jobNumber = initJobNumber;
+        }
+
+        @Override
+        public void run()
+        {
+            makeThumbnail(spriteTypeName);
+        }
+
+        @Override
+        public int compareTo(ThumbnailJob other)
+        {
+            return (jobNumber > other.jobNumber) ? -1 : ((jobNumber < other.jobNumber) ? 1 : 0);
+        }
+    }
+
+    /**
+     * Picks out the image file of the first pose of the first animation
+     * state while a sprite type's xml file is read.
+     */
+    private static class FirstPoseFinder implements SpriteTypeHandler
+    {
+        private HashMap<Integer, String> fileNames = new HashMap<Integer, String>();
+        private String firstPoseFileName;
+
+        @Override
+        public void dimensions(int width, int height) {}
+
+        @Override
+        public void imageFile(int id, String fileName)
+        {
+            fileNames.put(id, fileName);
+        }
+
+        @Override
+        public void startAnimationState(AnimationState state) {}
+
+        @Override
+        public void pose(int imageId, int duration)
+        {
+            if (firstPoseFileName == null)
+            {
+                firstPoseFileName = fileNames.get(imageId);
+            }
+        }
+
+        @Override
+        public void endAnimationState() {}
+
+        @Override
+        public void endSpriteType() {}
+    }
+}
@@ -0,0 +1,476 @@
+package animated_sprite_viewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import sprite_renderer.SpriteType;
+
+/**
+ * The SpriteTypeWatcher class watches the sprite types home directory
+ * and each sprite type's own directory for changes, and reloads only
+ * what changed. Editing a frame or a pose duration reloads just that
+ * one sprite type, and editing the sprite type list adds and removes
+ * sprite types to match it.
+ *
+ * Editors tend to write files in bursts, so we wait until a directory
+ * has been quiet for a little while before reloading anything. Loading
+ * is done on the watcher's own thread, and the newly loaded sprite type
+ * is then put in the sprite types map on the event dispatch thread in
+ * a single step, so the GUI only ever sees the old version or the new
+ * one. If the changed files don't load, for example because they were
+ * caught half written, the old version is simply kept.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteTypeWatcher implements Runnable
+{
+    // USED FOR NAMING OUR THREAD
+    public static final String WATCHER_THREAD_NAME = "sprite-type-watcher";
+
+    // HOW LONG THINGS HAVE TO BE QUIET BEFORE WE RELOAD
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 250;
+
+    // FOR LOADING THE SPRITE TYPES
+    private AnimatedSpriteXMLLoader xmlLoader;
+    private String path;
+    private String listFile;
+
+    // WHERE THE LOADED SPRITE TYPES GO, ONLY CHANGED ON THE EVENT
+    // DISPATCH THREAD
+    private HashMap<String, SpriteType> spriteTypes;
+    private SpriteTypeListModel spriteTypesListModel;
+    private HashMap<String, Long> loadTimes;
+
+    // WHEN LOADING LAZILY, ONLY SPRITE TYPES IN HERE GET RELOADED
+    private SpriteTypeCache cache;
+
+    // GETS TOLD ABOUT EVERYTHING WE RELOAD
+    private SpriteTypeReloadListener listener;
+
+    private long debounceMillis;
+
+    // THE WATCHING ITSELF, THE KEY OF EACH SPRITE TYPE'S DIRECTORY
+    // MAPS TO ITS NAME, THE HOME DIRECTORY'S KEY IS rootKey
+    private WatchService watchService;
+    private WatchKey rootKey;
+    private HashMap<WatchKey, String> typeKeys;
+
+    // THE SPRITE TYPES IN THE LIST LAST TIME WE READ IT
+    private HashSet<String> knownNames;
+
+    private Thread thread;
+
+    /**
+     * Constructor for this watcher, it just keeps everything for later.
+     *
+     * @param initXMLLoader Loader used for each changed sprite type.
+     *
+     * @param initPath Path to the sprite types home directory.
+     *
+     * @param initListFile Name of the sprite type list file, found in
+     * the sprite types home directory.
+     *
+     * @param initSpriteTypes Map where reloaded sprite types are put.
+     *
+     * @param initSpriteTypesListModel List model sprite types are added
+     * to and removed from when the list file changes.
+     *
+     * @param initLoadTimes Map where the milliseconds it took to reload
+     * each sprite type are put.
+     *
+     * @param initCache The cache when loading lazily, otherwise null.
+     *
+     * @param initListener Told about each sprite type that's reloaded or
+     * removed, may be null.
+     *
+     * @param initDebounceMillis How long there must be no changes before
+     * we go and reload what changed.
+     */
+    public SpriteTypeWatcher(   AnimatedSpriteXMLLoader initXMLLoader,
+                                String initPath,
+                                String initListFile,
+                                HashMap<String, SpriteType> initSpriteTypes,
+                                SpriteTypeListModel initSpriteTypesListModel,
+                                HashMap<String, Long> initLoadTimes,
+                                SpriteTypeCache initCache,
+                                SpriteTypeReloadListener initListener,
+                                long initDebounceMillis)
+    {
+        xmlLoader = initXMLLoader;
+        path = initPath;
+        listFile = initListFile;
+        spriteTypes = initSpriteTypes;
+        spriteTypesListModel = initSpriteTypesListModel;
+        loadTimes = initLoadTimes;
+        cache = initCache;
+        listener = initListener;
+        debounceMillis = initDebounceMillis;
+        typeKeys = new HashMap<WatchKey, String>();
+        knownNames = new HashSet<String>();
+    }
+
+    /**
+     * This method starts watching the sprite types home directory and
+     * the directory of every sprite type currently in the list.
+     *
+     * @throws IOException Thrown if the directories can't be watched.
+     */
+    public void start() throws IOException
+    {
+        watchService = FileSystems.getDefault().newWatchService();
+        rootKey = register(Paths.get(path));
+
+        // IF THE LIST DOESN'T LOAD RIGHT NOW WE'LL PICK IT UP
+        // ONCE IT'S BEEN FIXED
+        ArrayList<String> names = new ArrayList<String>();
+        try
+        {
+            xmlLoader.loadSpriteTypeNames(path, listFile, names);
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            System.err.println(ixffe.toString());
+        }
+        for (String name : names)
+        {
+            watchSpriteType(name);
+        }
+
+        thread = new Thread(this, WATCHER_THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * This method stops watching. Anything already being reloaded is
+     * still finished.
+     */
+    public void close()
+    {
+        try
+        {
+            watchService.close();
+        }
+        catch (IOException ioe)
+        {
+            // WE'RE DONE WITH IT ANYWAY
+        }
+    }
+
+    /**
+     * Waits for changes, and once they've stopped coming for a while,
+     * reloads what changed. This runs on the watcher's own thread until
+     * the watcher is closed.
+     */
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (true)
+            {
+                HashSet<String> changedTypes = new HashSet<String>();
+                boolean listChanged = collectChanges(watchService.take(), changedTypes);
+
+                // KEEP GATHERING UNTIL THINGS QUIET DOWN
+                WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                while (key != null)
+                {
+                    listChanged |= collectChanges(key, changedTypes);
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+
+                // A CHANGED LIST MAY ADD OR REMOVE SPRITE TYPES, AND
+                // ANY IT ADDS ARE ALREADY LOADED FRESH
+                if (listChanged)
+                {
+                    reloadSpriteTypeList(changedTypes);
+                }
+                for (String name : changedTypes)
+                {
+                    reloadSpriteType(name);
+                }
+            }
+        }
+        catch (ClosedWatchServiceException cwse)
+        {
+            // WE'VE BEEN CLOSED
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Goes through the events of one watch key, adding the names of any
+     * sprite types that changed to changedTypes.
+     *
+     * @return true if the sprite type list file changed, false otherwise.
+     */
+    private boolean collectChanges(WatchKey key, HashSet<String> changedTypes)
+    {
+        boolean listChanged = false;
+        String typeName = typeKeys.get(key);
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            if (key != rootKey)
+            {
+                // ANYTHING IN A SPRITE TYPE'S DIRECTORY COUNTS
+                if (typeName != null)
+                {
+                    changedTypes.add(typeName);
+                }
+            }
+            else if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+            {
+                // WE DON'T KNOW WHAT WE MISSED
+                listChanged = true;
+            }
+            else
+            {
+                String fileName = event.context().toString();
+                if (fileName.equals(listFile))
+                {
+                    listChanged = true;
+                }
+                else if ((event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+                        && knownNames.contains(fileName))
+                {
+                    // A SPRITE TYPE'S DIRECTORY WAS REPLACED OR RENAMED
+                    // INTO PLACE, SO WE HAVE TO WATCH THE NEW ONE
+                    watchSpriteType(fileName);
+                    changedTypes.add(fileName);
+                }
+            }
+        }
+
+        // A KEY THAT'S NO LONGER VALID BELONGS TO A DELETED DIRECTORY
+        if (!key.reset())
+        {
+            typeKeys.remove(key);
+        }
+        return listChanged;
+    }
+
+    /**
+     * Reads the sprite type list again, then adds the sprite types that
+     * are new to it and removes the ones no longer in it.
+     */
+    private void reloadSpriteTypeList(HashSet<String> changedTypes)
+    {
+        final ArrayList<String> names = new ArrayList<String>();
+        try
+        {
+            xmlLoader.loadSpriteTypeNames(path, listFile, names);
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            System.err.println(ixffe.toString() + ", keeping the previous sprite type list");
+            return;
+        }
+
+        // FIGURE OUT WHAT'S DIFFERENT
+        final ArrayList<String> removedNames = new ArrayList<String>();
+        for (String name : knownNames)
+        {
+            if (!names.contains(name))
+            {
+                removedNames.add(name);
+            }
+        }
+        final HashMap<String, SpriteType> addedTypes = new HashMap<String, SpriteType>();
+        final ArrayList<String> addedNames = new ArrayList<String>();
+        for (String name : names)
+        {
+            if (knownNames.contains(name))
+            {
+                continue;
+            }
+            watchSpriteType(name);
+            changedTypes.remove(name);
+            if (cache != null)
+            {
+                // THE CACHE WILL LOAD IT WHEN IT'S SELECTED
+                addedNames.add(name);
+                continue;
+            }
+            try
+            {
+                addedTypes.put(name, xmlLoader.loadSpriteType(path, name));
+                addedNames.add(name);
+            }
+            catch (InvalidXMLFileFormatException ixffe)
+            {
+                // IT'LL BE TRIED AGAIN WHEN ITS FILES CHANGE
+                System.err.println(ixffe.toString());
+            }
+        }
+        for (String name : removedNames)
+        {
+            unwatchSpriteType(name);
+            changedTypes.remove(name);
+        }
+
+        // AND HAND IT ALL OVER TO THE GUI
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (String name : removedNames)
+                {
+                    spriteTypesListModel.removeElement(name);
+                    if (cache != null)
+                        cache.remove(name);
+                    else
+                        spriteTypes.remove(name);
+                    loadTimes.remove(name);
+                    if (listener != null)
+                    {
+                        listener.spriteTypeRemoved(name);
+                    }
+                }
+                for (String name : addedNames)
+                {
+                    if (addedTypes.containsKey(name))
+                    {
+                        spriteTypes.put(name, addedTypes.get(name));
+                    }
+                    if (!spriteTypesListModel.contains(name))
+                    {
+                        spriteTypesListModel.addElement(name);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads a sprite type again and swaps the new version in for the
+     * old one, keeping the old one if the new one doesn't load.
+     */
+    private void reloadSpriteType(final String name)
+    {
+        // WHEN LOADING LAZILY, ONES NOT IN THE CACHE WILL BE LOADED
+        // FRESH ANYWAY WHEN THEY'RE NEXT SELECTED
+        if ((cache != null) && !cache.contains(name))
+        {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        final SpriteTypeBuilder builder = xmlLoader.createSpriteTypeBuilder(path, name);
+        try
+        {
+            xmlLoader.readSpriteType(path, name, builder);
+        }
+        catch (InvalidXMLFileFormatException ixffe)
+        {
+            System.err.println(ixffe.toString() + ", keeping the previous version of " + name);
+            return;
+        }
+        final SpriteType spriteType = builder.getSpriteType();
+        final long loadMillis = (System.nanoTime() - startTime) / 1000000;
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (cache != null)
+                {
+                    if (!cache.replace(name, spriteType, builder.getImageBytes()))
+                    {
+                        return;
+                    }
+                }
+                else
+                {
+                    spriteTypes.put(name, spriteType);
+                }
+                loadTimes.put(name, loadMillis);
+                if (listener != null)
+                {
+                    listener.spriteTypeReloaded(name, spriteType);
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts watching a sprite type's directory, if it exists.
+     */
+    private void watchSpriteType(String name)
+    {
+        knownNames.add(name);
+        unwatchKeys(name);
+        File directory = new File(path + name);
+        if (!directory.isDirectory())
+        {
+            // IT'LL BE WATCHED ONCE IT SHOWS UP IN THE HOME DIRECTORY
+            return;
+        }
+        try
+        {
+            typeKeys.put(register(directory.toPath()), name);
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("Unable to watch " + directory + ": " + ioe);
+        }
+    }
+
+    /**
+     * Stops watching a sprite type that's no longer in the list.
+     */
+    private void unwatchSpriteType(String name)
+    {
+        knownNames.remove(name);
+        unwatchKeys(name);
+    }
+
+    /**
+     * Cancels any watch keys we have for the named sprite type.
+     */
+    private void unwatchKeys(String name)
+    {
+        Iterator<Map.Entry<WatchKey, String>> it = typeKeys.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<WatchKey, String> entry = it.next();
+            if (entry.getValue().equals(name))
+            {
+                entry.getKey().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Registers a directory with our watch service for everything that
+     * can happen to the files in it.
+     */
+    private WatchKey register(Path directory) throws IOException
+    {
+        return directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+}
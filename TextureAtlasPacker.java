@@ -0,0 +1,280 @@
+package animated_sprite_viewer;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+/**
+ * The TextureAtlasPacker class packs all the frames of a sprite type
+ * into one or a few large atlas images. Each frame is then replaced by
+ * a sub-image of its atlas, which shares the atlas's pixel storage, so
+ * a sprite type's frames all live in a few rasters instead of one each.
+ *
+ * Frames are packed onto shelves, tallest first, which works well for
+ * sprite frames since they tend to be close in size. The packer also
+ * keeps running totals across everything it has packed, so we can see
+ * how efficient the packing was and how much memory it saved.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class TextureAtlasPacker
+{
+    // NO ATLAS WILL BE WIDER OR TALLER THAN THIS
+    public static final int DEFAULT_MAX_ATLAS_SIZE = 2048;
+
+    // EMPTY PIXELS LEFT AROUND EACH FRAME SO FILTERING NEVER BLEEDS
+    public static final int FRAME_PADDING = 1;
+
+    // THE BIGGEST ATLAS WE'LL MAKE
+    private int maxAtlasSize;
+
+    // RUNNING TOTALS FOR OUR REPORT
+    private int framesPacked;
+    private int framesSkipped;
+    private int atlasesCreated;
+    private long framePixels;
+    private long atlasPixels;
+    private long bytesBefore;
+    private long bytesAfter;
+
+    /**
+     * Constructor for this packer.
+     *
+     * @param initMaxAtlasSize Largest width and height allowed for an atlas.
+     */
+    public TextureAtlasPacker(int initMaxAtlasSize)
+    {
+        maxAtlasSize = initMaxAtlasSize;
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many frames have been packed.
+     *
+     * @return The number of frames now living in an atlas.
+     */
+    public synchronized int getFramesPacked() { return framesPacked; }
+
+    /**
+     * Accessor method for getting how many atlases have been created.
+     *
+     * @return The number of atlas images made so far.
+     */
+    public synchronized int getAtlasesCreated() { return atlasesCreated; }
+
+    /**
+     * Accessor method for getting how well the atlases are filled.
+     *
+     * @return The fraction of atlas pixels covered by frames, from 0 to 1.
+     */
+    public synchronized double getPackingEfficiency()
+    {
+        return (atlasPixels == 0) ? 0 : ((double)framePixels / atlasPixels);
+    }
+
+    /**
+     * Accessor method for getting how much pixel storage was saved.
+     * Note that this can be negative, for example if paletted frames
+     * get packed into a full color atlas.
+     *
+     * @return Bytes of pixel storage the frames used on their own minus
+     * the bytes used by the atlases that replaced them.
+     */
+    public synchronized long getBytesSaved() { return bytesBefore - bytesAfter; }
+
+    /**
+     * This method builds a short report of everything packed so far.
+     *
+     * @return A one line summary of the packing.
+     */
+    public synchronized String getReport()
+    {
+        return "Atlas packing: " + framesPacked + " frames in " + atlasesCreated + " atlases ("
+                + framesSkipped + " too big to pack), "
+                + Math.round(getPackingEfficiency() * 100) + "% efficient, "
+                + (bytesBefore / 1024) + " KB of frames became " + (bytesAfter / 1024) + " KB of atlases, "
+                + (getBytesSaved() / 1024) + " KB saved";
+    }
+
+    /**
+     * This method packs all the frames into as few atlases as it can and
+     * returns, for each frame, the sub-image of the atlas that replaces
+     * it. Frames that appear more than once are only packed once. Frames
+     * too big to fit in an atlas are left alone and map to themselves.
+     *
+     * @param frames The frames to pack, null entries are ignored.
+     *
+     * @return A map from each frame to the image that should replace it.
+     */
+    public IdentityHashMap<BufferedImage, BufferedImage> pack(ArrayList<BufferedImage> frames)
+    {
+        IdentityHashMap<BufferedImage, BufferedImage> packedFrames = new IdentityHashMap<BufferedImage, BufferedImage>();
+
+        // FIRST FIGURE OUT WHAT ACTUALLY NEEDS PACKING
+        ArrayList<BufferedImage> toPack = new ArrayList<BufferedImage>();
+        int skipped = 0;
+        for (BufferedImage frame : frames)
+        {
+            if ((frame == null) || packedFrames.containsKey(frame))
+            {
+                continue;
+            }
+            packedFrames.put(frame, frame);
+            if (((frame.getWidth() + 2 * FRAME_PADDING) > maxAtlasSize)
+                    || ((frame.getHeight() + 2 * FRAME_PADDING) > maxAtlasSize))
+            {
+                skipped++;
+            }
+            else
+            {
+                toPack.add(frame);
+            }
+        }
+
+        // TALLEST FIRST MAKES FOR THE TIGHTEST SHELVES
+        Collections.sort(toPack, new Comparator<BufferedImage>()
+        {
+            @Override
+            public int compare(BufferedImage a, BufferedImage b)
+            {
+                return b.getHeight() - a.getHeight();
+            }
+        });
+
+        // AND PACK THEM, ONE ATLAS AT A TIME
+        long before = 0;
+        long after = 0;
+        long usedPixels = 0;
+        long totalPixels = 0;
+        int numAtlases = 0;
+        int next = 0;
+        while (next < toPack.size())
+        {
+            int atlasWidth = chooseAtlasWidth(toPack, next);
+            int[] positions = new int[2 * toPack.size()];
+            int end = layOutShelves(toPack, next, atlasWidth, positions);
+            int atlasHeight = 0;
+            for (int i = next; i < end; i++)
+            {
+                atlasHeight = Math.max(atlasHeight, positions[2 * i + 1] + toPack.get(i).getHeight() + FRAME_PADDING);
+            }
+
+            // NOW COPY ALL THE FRAMES INTO THE ATLAS, NOTE THAT WE COPY
+            // PIXELS RATHER THAN DRAW SO THAT THEY COME OUT EXACTLY THE SAME
+            BufferedImage atlas = new BufferedImage(atlasWidth, atlasHeight, chooseAtlasType(toPack, next, end));
+            for (int i = next; i < end; i++)
+            {
+                BufferedImage frame = toPack.get(i);
+                int x = positions[2 * i];
+                int y = positions[2 * i + 1];
+                int[] pixels = frame.getRGB(0, 0, frame.getWidth(), frame.getHeight(), null, 0, frame.getWidth());
+                atlas.setRGB(x, y, frame.getWidth(), frame.getHeight(), pixels, 0, frame.getWidth());
+                packedFrames.put(frame, atlas.getSubimage(x, y, frame.getWidth(), frame.getHeight()));
+                usedPixels += (long)frame.getWidth() * frame.getHeight();
+                before += ImageMemory.getStorageBytes(frame);
+            }
+            after += ImageMemory.getStorageBytes(atlas);
+            totalPixels += (long)atlasWidth * atlasHeight;
+            numAtlases++;
+            next = end;
+        }
+
+        // KEEP TRACK OF HOW WE DID
+        synchronized (this)
+        {
+            framesPacked += toPack.size();
+            framesSkipped += skipped;
+            atlasesCreated += numAtlases;
+            framePixels += usedPixels;
+            atlasPixels += totalPixels;
+            bytesBefore += before;
+            bytesAfter += after;
+        }
+        return packedFrames;
+    }
+
+    /**
+     * Picks an atlas width that would make the remaining frames roughly
+     * square, without going over our maximum.
+     */
+    private int chooseAtlasWidth(ArrayList<BufferedImage> frames, int first)
+    {
+        long area = 0;
+        int widest = 0;
+        for (int i = first; i < frames.size(); i++)
+        {
+            int w = frames.get(i).getWidth() + 2 * FRAME_PADDING;
+            int h = frames.get(i).getHeight() + 2 * FRAME_PADDING;
+            area += (long)w * h;
+            widest = Math.max(widest, w);
+        }
+        int width = (int)Math.ceil(Math.sqrt(area));
+        return Math.min(maxAtlasSize, Math.max(widest, width));
+    }
+
+    /**
+     * Picks the image type for an atlas. If all its frames share a type
+     * that setRGB copies exactly, like the formats CompatibleFrameDecoder
+     * produces, the atlas keeps that type, otherwise it's plain ARGB.
+     */
+    private int chooseAtlasType(ArrayList<BufferedImage> frames, int first, int end)
+    {
+        int type = frames.get(first).getType();
+        for (int i = first + 1; i < end; i++)
+        {
+            if (frames.get(i).getType() != type)
+            {
+                return BufferedImage.TYPE_INT_ARGB;
+            }
+        }
+        if ((type == BufferedImage.TYPE_INT_ARGB_PRE)
+                || (type == BufferedImage.TYPE_INT_RGB)
+                || (type == BufferedImage.TYPE_4BYTE_ABGR)
+                || (type == BufferedImage.TYPE_4BYTE_ABGR_PRE))
+        {
+            return type;
+        }
+        return BufferedImage.TYPE_INT_ARGB;
+    }
+
+    /**
+     * Places frames on shelves starting with frames[first], filling in
+     * positions with x, y pairs, until the atlas is full.
+     *
+     * @return The index of the first frame that did not fit.
+     */
+    private int layOutShelves(ArrayList<BufferedImage> frames, int first, int atlasWidth, int[] positions)
+    {
+        int x = 0;
+        int shelfY = 0;
+        int shelfHeight = 0;
+        for (int i = first; i < frames.size(); i++)
+        {
+            int w = frames.get(i).getWidth() + 2 * FRAME_PADDING;
+            int h = frames.get(i).getHeight() + 2 * FRAME_PADDING;
+
+            // START A NEW SHELF IF THIS ONE IS FULL
+            if ((x + w) > atlasWidth)
+            {
+                shelfY += shelfHeight;
+                x = 0;
+                shelfHeight = 0;
+            }
+
+            // AND A NEW ATLAS IF THIS ONE IS
+            if ((shelfY + h) > maxAtlasSize)
+            {
+                return i;
+            }
+            positions[2 * i] = x + FRAME_PADDING;
+            positions[2 * i + 1] = shelfY + FRAME_PADDING;
+            x += w;
+            shelfHeight = Math.max(shelfHeight, h);
+        }
+        return frames.size();
+    }
+}
@@ -0,0 +1,378 @@
+package animated_sprite_viewer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The ValidationManifest class remembers which xml files have already
+ * passed validation, and against what, so that unchanged files don't
+ * have to be validated again every time we start up. For each xml file
+ * it keeps the hash of the contents that passed along with the hash of
+ * the schema they passed against. A file only counts as valid if both
+ * hashes still match, so editing either one means it gets validated
+ * again.
+ *
+ * The manifest is kept in a text file with one line per file that
+ * passed. New lines are appended as files pass, so nothing is lost if
+ * we stop partway through a load, and a later line for the same file
+ * replaces any earlier one. When the file has built up too many
+ * replaced lines it gets rewritten with just the current ones.
+ *
+ * Note that skipping validation only gives the same documents because
+ * our schemas don't supply default values for anything.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class ValidationManifest
+{
+    public static final Charset MANIFEST_CHARSET = Charset.forName("UTF-8");
+    public static final String FIELD_SEPARATOR = "\t";
+
+    // THE FILE IS REWRITTEN ONCE IT HAS THIS MANY TIMES MORE LINES THAN ENTRIES
+    public static final int COMPACTION_RATIO = 2;
+
+    // WHERE WE KEEP EVERYTHING BETWEEN RUNS
+    private File manifestFile;
+
+    // WHAT PASSED, BY ABSOLUTE PATH OF THE XML FILE
+    private HashMap<String, ManifestEntry> entries;
+
+    // SCHEMA HASHES, SO WE ONLY HASH EACH SCHEMA AGAIN WHEN IT CHANGES
+    private HashMap<String, SchemaHash> schemaHashes;
+
+    // FOR APPENDING NEW ENTRIES AS THEY COME
+    private Writer appender;
+    private int linesInFile;
+
+    // RUNNING TOTALS FOR OUR REPORT
+    private int hits;
+    private int misses;
+
+    /**
+     * Constructor for this manifest, which reads in whatever an earlier
+     * run left in the manifest file, if anything.
+     *
+     * @param initManifestFile File to keep the manifest in.
+     *
+     * @throws IOException Thrown if the manifest file exists but can't
+     * be read.
+     */
+    public ValidationManifest(File initManifestFile) throws IOException
+    {
+        manifestFile = initManifestFile;
+        entries = new HashMap<String, ManifestEntry>();
+        schemaHashes = new HashMap<String, SchemaHash>();
+        appender = null;
+        linesInFile = 0;
+        if (manifestFile.isFile())
+        {
+            readManifest();
+        }
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting how many files were found unchanged
+     * and so didn't need validating.
+     *
+     * @return The number of validations skipped so far.
+     */
+    public synchronized int getHits() { return hits; }
+
+    /**
+     * Accessor method for getting how many files had to be validated.
+     *
+     * @return The number of files found new or changed so far.
+     */
+    public synchronized int getMisses() { return misses; }
+
+    /**
+     * Accessor method for getting how many files the manifest knows of.
+     *
+     * @return The number of files recorded as having passed.
+     */
+    public synchronized int getSize() { return entries.size(); }
+
+    /**
+     * This method builds a short report of the manifest so far.
+     *
+     * @return A one line summary of the manifest.
+     */
+    public synchronized String getReport()
+    {
+        return "Validation manifest: " + hits + " validations skipped, "
+                + misses + " files validated, " + entries.size() + " files recorded";
+    }
+
+    /**
+     * This method checks whether an xml file is known to be valid, that
+     * is whether these exact contents already passed against this exact
+     * schema.
+     *
+     * @param xmlFile Path and name of the xml file.
+     *
+     * @param contents Everything in the xml file, as it is now.
+     *
+     * @param schemaFile Path and name of the schema file it must pass.
+     *
+     * @return True if it passed before and neither file has changed
+     * since, false if it must be validated.
+     *
+     * @throws IOException Thrown if the schema file can't be read.
+     */
+    public boolean isValid(String xmlFile, byte[] contents, String schemaFile)
+            throws IOException
+    {
+        String schemaHash = getSchemaHash(schemaFile);
+        String contentHash = DeduplicatingFrameDecoder.hashContents(contents);
+        synchronized (this)
+        {
+            ManifestEntry entry = entries.get(new File(xmlFile).getAbsolutePath());
+            if ((entry != null)
+                    && entry.contentHash.equals(contentHash)
+                    && entry.schemaHash.equals(schemaHash))
+            {
+                hits++;
+                return true;
+            }
+            misses++;
+            return false;
+        }
+    }
+
+    /**
+     * This method records that an xml file has just passed validation.
+     * If the manifest file can't be written we carry on without it,
+     * since all that costs us is validating the file again next time.
+     *
+     * @param xmlFile Path and name of the xml file.
+     *
+     * @param contents Everything in the xml file, exactly as validated.
+     *
+     * @param schemaFile Path and name of the schema file it passed.
+     *
+     * @throws IOException Thrown if the schema file can't be read.
+     */
+    public void recordValid(String xmlFile, byte[] contents, String schemaFile)
+            throws IOException
+    {
+        String schemaHash = getSchemaHash(schemaFile);
+        String contentHash = DeduplicatingFrameDecoder.hashContents(contents);
+        String path = new File(xmlFile).getAbsolutePath();
+        synchronized (this)
+        {
+            ManifestEntry entry = new ManifestEntry(contentHash, schemaHash);
+            ManifestEntry oldEntry = entries.put(path, entry);
+            if ((oldEntry != null)
+                    && oldEntry.contentHash.equals(contentHash)
+                    && oldEntry.schemaHash.equals(schemaHash))
+            {
+                // NOTHING NEW TO WRITE DOWN
+                return;
+            }
+            try
+            {
+                if (linesInFile >= COMPACTION_RATIO * Math.max(entries.size(), 16))
+                {
+                    writeManifest();
+                }
+                else
+                {
+                    appendLine(path, entry);
+                }
+            }
+            catch (IOException ioe)
+            {
+                System.err.println("Couldn't update validation manifest " + manifestFile
+                        + ": " + ioe.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This method closes the manifest file. It's reopened if anything
+     * else is recorded afterwards.
+     */
+    public synchronized void close()
+    {
+        if (appender != null)
+        {
+            try
+            {
+                appender.close();
+            }
+            catch (IOException ioe)
+            {
+                // IT WAS ALREADY FLUSHED, SO THERE'S NOTHING TO LOSE
+            }
+            appender = null;
+        }
+    }
+
+    /**
+     * Finds the hash of a schema file, only reading it again if it has
+     * been modified since we last did.
+     */
+    private String getSchemaHash(String schemaFile) throws IOException
+    {
+        File schemaLocation = new File(schemaFile);
+        String key = schemaLocation.getAbsolutePath();
+        long lastModified = schemaLocation.lastModified();
+        long length = schemaLocation.length();
+        synchronized (this)
+        {
+            SchemaHash schemaHash = schemaHashes.get(key);
+            if ((schemaHash != null)
+                    && (schemaHash.lastModified == lastModified)
+                    && (schemaHash.length == length))
+            {
+                return schemaHash.hash;
+            }
+        }
+        String hash = DeduplicatingFrameDecoder.hashContents(Files.readAllBytes(schemaLocation.toPath()));
+        synchronized (this)
+        {
+            schemaHashes.put(key, new SchemaHash(hash, lastModified, length));
+        }
+        return hash;
+    }
+
+    /**
+     * Reads in the manifest file, skipping any line that isn't complete,
+     * like one cut off by a run that was stopped while writing it.
+     */
+    private void readManifest() throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(manifestFile), MANIFEST_CHARSET));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                linesInFile++;
+                String[] fields = line.split(FIELD_SEPARATOR, 3);
+                if ((fields.length == 3) && !fields[0].isEmpty()
+                        && !fields[1].isEmpty() && !fields[2].isEmpty())
+                {
+                    entries.put(fields[2], new ManifestEntry(fields[0], fields[1]));
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Adds one entry to the end of the manifest file.
+     */
+    private void appendLine(String path, ManifestEntry entry) throws IOException
+    {
+        if (appender == null)
+        {
+            File parent = manifestFile.getAbsoluteFile().getParentFile();
+            Files.createDirectories(parent.toPath());
+            appender = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(manifestFile, true), MANIFEST_CHARSET));
+        }
+        appender.write(entry.contentHash + FIELD_SEPARATOR + entry.schemaHash
+                + FIELD_SEPARATOR + path + "\n");
+        appender.flush();
+        linesInFile++;
+    }
+
+    /**
+     * Rewrites the manifest file with only the current entries. It's
+     * written under a temporary name and then renamed, so the old one
+     * is still there if anything goes wrong.
+     */
+    private void writeManifest() throws IOException
+    {
+        close();
+        File parent = manifestFile.getAbsoluteFile().getParentFile();
+        Files.createDirectories(parent.toPath());
+        File tempFile = File.createTempFile(manifestFile.getName(), ".tmp", parent);
+        try
+        {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tempFile), MANIFEST_CHARSET));
+            try
+            {
+                for (Map.Entry<String, ManifestEntry> e : entries.entrySet())
+                {
+                    writer.write(e.getValue().contentHash + FIELD_SEPARATOR
+                            + e.getValue().schemaHash + FIELD_SEPARATOR + e.getKey() + "\n");
+                }
+            }
+            finally
+            {
+                writer.close();
+            }
+            try
+            {
+                Files.move(tempFile.toPath(), manifestFile.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException amnse)
+            {
+                Files.move(tempFile.toPath(), manifestFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            linesInFile = entries.size();
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * The hashes of the contents that passed and the schema they passed.
+     */
+    private static class ManifestEntry
+    {
+        private String contentHash;
+        private String schemaHash;
+
+        private ManifestEntry(String initContentHash, String initSchemaHash)
+        {
+            contentHash = initContentHash;
+            schemaHash = initSchemaHash;
+        }
+    }
+
+    /**
+     * The hash of a schema file, along with what the file looked like
+     * when we hashed it.
+     */
+    private static class SchemaHash
+    {
+        private String hash;
+        private long lastModified;
+        private long length;
+
+        private SchemaHash(String initHash, long initLastModified, long initLength)
+        {
+            hash = initHash;
+            lastModified = initLastModified;
+            length = initLength;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package animated_sprite_viewer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The ViewerMetrics class keeps track of where the viewer's time and
+ * memory go: how long validating, parsing, and decoding sprite types
+ * takes, how long it takes to see an animation once it's selected, how
+ * long crowd frames take, how much image memory each sprite type uses,
+ * and how the sprite type cache is doing. They can all be watched
+ * through JMX once register has been called.
+ *
+ * There's only one of these, shared by the whole app. Recording a time
+ * or a count never allocates or locks, so it stays on all the time.
+ * Only the decoded bytes of each sprite type are kept in a map, which is
+ * updated once per sprite type loaded, never per frame.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class ViewerMetrics implements ViewerMetricsMXBean
+{
+    // WHERE TO FIND US IN JMX
+    public static final String OBJECT_NAME = "animated_sprite_viewer:type=ViewerMetrics";
+
+    // THE ONE AND ONLY
+    private static final ViewerMetrics METRICS = new ViewerMetrics();
+
+    // COUNTS
+    private AtomicLong spriteTypesLoaded;
+    private AtomicLong spriteTypeLoadFailures;
+    private AtomicLong imagesDecoded;
+
+    // TIMES
+    private LatencyHistogram validationTimes;
+    private LatencyHistogram parsingTimes;
+    private LatencyHistogram decodingTimes;
+    private LatencyHistogram selectionToFirstFrameTimes;
+    private LatencyHistogram crowdFrameTimes;
+
+    // MEMORY
+    private ConcurrentHashMap<String, Long> decodedBytes;
+
+    // THE SPRITE TYPE CACHE, IF SPRITE TYPES ARE LOADED LAZILY
+    private volatile SpriteTypeCache spriteTypeCache;
+
+    // THE LOAD SCHEDULER, IF THE USER PICKS WHAT'S LOADED FIRST
+    private volatile SpriteTypeLoadScheduler spriteTypeLoadScheduler;
+
+    // THE LOADER THE LIBRARY WAS LOADED WITH
+    private volatile SpriteTypeLibraryLoader spriteTypeLibraryLoader;
+
+    /**
+     * Constructor for the metrics, everything starts at zero.
+     */
+    private ViewerMetrics()
+    {
+        spriteTypesLoaded = new AtomicLong();
+        spriteTypeLoadFailures = new AtomicLong();
+        imagesDecoded = new AtomicLong();
+        validationTimes = new LatencyHistogram();
+        parsingTimes = new LatencyHistogram();
+        decodingTimes = new LatencyHistogram();
+        selectionToFirstFrameTimes = new LatencyHistogram();
+        crowdFrameTimes = new LatencyHistogram();
+        decodedBytes = new ConcurrentHashMap<String, Long>();
+        spriteTypeCache = null;
+        spriteTypeLoadScheduler = null;
+        spriteTypeLibraryLoader = null;
+    }
+
+    /**
+     * Accessor method for getting the app's metrics.
+     *
+     * @return The metrics everything records to.
+     */
+    public static ViewerMetrics getMetrics() { return METRICS; }
+
+    /**
+     * This method makes the metrics visible through JMX, under
+     * OBJECT_NAME. Registering more than once does nothing.
+     *
+     * @throws JMException Thrown if the metrics can't be registered.
+     */
+    public void register() throws JMException
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            server.registerMBean(this, new ObjectName(OBJECT_NAME));
+        }
+        catch (InstanceAlreadyExistsException iaee)
+        {
+            // ALREADY THERE
+        }
+    }
+
+    /**
+     * Mutator method for the cache whose usage we report.
+     *
+     * @param initSpriteTypeCache The cache, or null if there isn't one.
+     */
+    public void setSpriteTypeCache(SpriteTypeCache initSpriteTypeCache)
+    {
+        spriteTypeCache = initSpriteTypeCache;
+    }
+
+    /**
+     * Mutator method for the load scheduler whose scheduling we report.
+     *
+     * @param initSpriteTypeLoadScheduler The scheduler, or null if there
+     * isn't one.
+     */
+    public void setSpriteTypeLoadScheduler(SpriteTypeLoadScheduler initSpriteTypeLoadScheduler)
+    {
+        spriteTypeLoadScheduler = initSpriteTypeLoadScheduler;
+    }
+
+    /**
+     * Mutator method for the library loader whose validation and image
+     * processing we report.
+     *
+     * @param initSpriteTypeLibraryLoader The library loader, or null if
+     * there isn't one.
+     */
+    public void setSpriteTypeLibraryLoader(SpriteTypeLibraryLoader initSpriteTypeLibraryLoader)
+    {
+        spriteTypeLibraryLoader = initSpriteTypeLibraryLoader;
+    }
+
+    // RECORDING METHODS
+
+    /**
+     * This method records how long validating a file took.
+     *
+     * @param nanos How long it took.
+     */
+    public void recordValidation(long nanos) { validationTimes.record(nanos); }
+
+    /**
+     * This method records how long parsing a file took.
+     *
+     * @param nanos How long it took.
+     */
+    public void recordParsing(long nanos) { parsingTimes.record(nanos); }
+
+    /**
+     * This method records how long decoding an image took.
+     *
+     * @param nanos How long it took.
+     */
+    public void recordDecoding(long nanos)
+    {
+        imagesDecoded.incrementAndGet();
+        decodingTimes.record(nanos);
+    }
+
+    /**
+     * This method records how long it took from selecting an animation
+     * state to its first frame being drawn.
+     *
+     * @param nanos How long it took.
+     */
+    public void recordSelectionToFirstFrame(long nanos) { selectionToFirstFrameTimes.record(nanos); }
+
+    /**
+     * This method records how long a crowd frame took.
+     *
+     * @param nanos How long it took.
+     */
+    public void recordCrowdFrame(long nanos) { crowdFrameTimes.record(nanos); }
+
+    /**
+     * This method records that a sprite type was loaded.
+     *
+     * @param spriteTypeName Name of the sprite type.
+     *
+     * @param imageBytes Bytes of decoded images it uses.
+     */
+    public void recordSpriteTypeLoaded(String spriteTypeName, long imageBytes)
+    {
+        spriteTypesLoaded.incrementAndGet();
+        decodedBytes.put(spriteTypeName, imageBytes);
+    }
+
+    /**
+     * This method records that a sprite type failed to load.
+     */
+    public void recordSpriteTypeLoadFailed() { spriteTypeLoadFailures.incrementAndGet(); }
+
+    /**
+     * This method forgets a sprite type's memory, for when it's gone.
+     *
+     * @param spriteTypeName Name of the sprite type.
+     */
+    public void recordSpriteTypeRemoved(String spriteTypeName) { decodedBytes.remove(spriteTypeName); }
+
+    /**
+     * Accessor method for getting one sprite type's image memory.
+     *
+     * @param spriteTypeName Name of the sprite type.
+     *
+     * @return Bytes of decoded images it used when last loaded, or 0 if
+     * it isn't loaded.
+     */
+    public long getDecodedBytes(String spriteTypeName)
+    {
+        Long bytes = decodedBytes.get(spriteTypeName);
+        return (bytes == null) ? 0 : bytes;
+    }
+
+    // WHAT JMX SEES
+
+    @Override
+    public long getSpriteTypesLoaded() { return spriteTypesLoaded.get(); }
+
+    @Override
+    public long getSpriteTypeLoadFailures() { return spriteTypeLoadFailures.get(); }
+
+    @Override
+    public long getImagesDecoded() { return imagesDecoded.get(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getValidationTimes() { return validationTimes.getSnapshot(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getParsingTimes() { return parsingTimes.getSnapshot(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getDecodingTimes() { return decodingTimes.getSnapshot(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getSelectionToFirstFrameTimes() { return selectionToFirstFrameTimes.getSnapshot(); }
+
+    @Override
+    public LatencyHistogram.Snapshot getCrowdFrameTimes() { return crowdFrameTimes.getSnapshot(); }
+
+    @Override
+    public Map<String, Long> getDecodedBytesBySpriteType()
+    {
+        return new TreeMap<String, Long>(decodedBytes);
+    }
+
+    @Override
+    public long getDecodedBytes()
+    {
+        long total = 0;
+        for (Long bytes : decodedBytes.values())
+        {
+            total += bytes;
+        }
+        return total;
+    }
+
+    @Override
+    public long getCacheBytes()
+    {
+        SpriteTypeCache cache = spriteTypeCache;
+        return (cache == null) ? 0 : cache.getCurrentBytes();
+    }
+
+    @Override
+    public long getCacheMaxBytes()
+    {
+        SpriteTypeCache cache = spriteTypeCache;
+        return (cache == null) ? 0 : cache.getMaxBytes();
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        SpriteTypeCache cache = spriteTypeCache;
+        return (cache == null) ? 0 : cache.getHits();
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        SpriteTypeCache cache = spriteTypeCache;
+        return (cache == null) ? 0 : cache.getMisses();
+    }
+
+    @Override
+    public long getCacheEvictions()
+    {
+        SpriteTypeCache cache = spriteTypeCache;
+        return (cache == null) ? 0 : cache.getEvictions();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getSelectionWaitTimes()
+    {
+        SpriteTypeLoadScheduler scheduler = spriteTypeLoadScheduler;
+        return (scheduler == null) ? new LatencyHistogram().getSnapshot() : scheduler.getDemandWaits();
+    }
+
+    @Override
+    public String getLoadSchedulingReport()
+    {
+        SpriteTypeLoadScheduler scheduler = spriteTypeLoadScheduler;
+        return (scheduler == null) ? "" : scheduler.getReport();
+    }
+
+    @Override
+    public String getLibraryLoaderReport()
+    {
+        SpriteTypeLibraryLoader libraryLoader = spriteTypeLibraryLoader;
+        return (libraryLoader == null) ? "" : libraryLoader.getReport();
+    }
+
+    @Override
+    public void reset()
+    {
+        spriteTypesLoaded.set(0);
+        spriteTypeLoadFailures.set(0);
+        imagesDecoded.set(0);
+        validationTimes.reset();
+        parsingTimes.reset();
+        decodingTimes.reset();
+        selectionToFirstFrameTimes.reset();
+        crowdFrameTimes.reset();
+    }
+}
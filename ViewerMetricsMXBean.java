@@ -0,0 +1,158 @@
+package animated_sprite_viewer;
+
+import java.util.Map;
+
+/**
+ * The ViewerMetricsMXBean interface is what the viewer's metrics look
+ * like through JMX, for example in jconsole, under the name
+ * ViewerMetrics.OBJECT_NAME. Times are reported as histograms in
+ * milliseconds, everything else as counts and bytes.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public interface ViewerMetricsMXBean
+{
+    /**
+     * Accessor method for getting how many sprite types were loaded.
+     *
+     * @return The number of sprite types loaded, counting reloads.
+     */
+    public long getSpriteTypesLoaded();
+
+    /**
+     * Accessor method for getting how many sprite types failed to load.
+     *
+     * @return The number of sprite type loads that failed.
+     */
+    public long getSpriteTypeLoadFailures();
+
+    /**
+     * Accessor method for getting how many images were decoded.
+     *
+     * @return The number of images decoded.
+     */
+    public long getImagesDecoded();
+
+    /**
+     * Accessor method for getting how long validating sprite type xml
+     * files took, when it was done on its own. Files that are validated
+     * as they're loaded are counted in the parsing times instead.
+     *
+     * @return The validation times.
+     */
+    public LatencyHistogram.Snapshot getValidationTimes();
+
+    /**
+     * Accessor method for getting how long parsing sprite type xml
+     * files took, not counting decoding their images.
+     *
+     * @return The parsing times.
+     */
+    public LatencyHistogram.Snapshot getParsingTimes();
+
+    /**
+     * Accessor method for getting how long decoding each image took.
+     *
+     * @return The decoding times.
+     */
+    public LatencyHistogram.Snapshot getDecodingTimes();
+
+    /**
+     * Accessor method for getting how long it took from selecting an
+     * animation state to its first frame being drawn.
+     *
+     * @return The selection to first frame times.
+     */
+    public LatencyHistogram.Snapshot getSelectionToFirstFrameTimes();
+
+    /**
+     * Accessor method for getting how long crowd mode frames took.
+     *
+     * @return The crowd frame times.
+     */
+    public LatencyHistogram.Snapshot getCrowdFrameTimes();
+
+    /**
+     * Accessor method for getting the decoded image memory of each
+     * sprite type, as of when it was last loaded.
+     *
+     * @return Bytes of decoded images, by sprite type name.
+     */
+    public Map<String, Long> getDecodedBytesBySpriteType();
+
+    /**
+     * Accessor method for getting the decoded image memory of all the
+     * sprite types together.
+     *
+     * @return Bytes of decoded images of every sprite type.
+     */
+    public long getDecodedBytes();
+
+    /**
+     * Accessor method for getting how much of its budget the sprite type
+     * cache is using.
+     *
+     * @return Bytes held by the cache, or 0 if there's no cache.
+     */
+    public long getCacheBytes();
+
+    /**
+     * Accessor method for getting the sprite type cache's budget.
+     *
+     * @return The cache's budget in bytes, or 0 if there's no cache.
+     */
+    public long getCacheMaxBytes();
+
+    /**
+     * Accessor method for getting how often the cache had what we asked for.
+     *
+     * @return The number of cache hits, or 0 if there's no cache.
+     */
+    public long getCacheHits();
+
+    /**
+     * Accessor method for getting how often the cache had to load.
+     *
+     * @return The number of cache misses, or 0 if there's no cache.
+     */
+    public long getCacheMisses();
+
+    /**
+     * Accessor method for getting how often the cache dropped something.
+     *
+     * @return The number of cache evictions, or 0 if there's no cache.
+     */
+    public long getCacheEvictions();
+
+    /**
+     * Accessor method for getting how long sprite types selected before
+     * they were loaded took to arrive.
+     *
+     * @return The selection wait times, empty if there's no scheduler.
+     */
+    public LatencyHistogram.Snapshot getSelectionWaitTimes();
+
+    /**
+     * Accessor method for getting a summary of the load scheduling.
+     *
+     * @return The scheduler's report, or an empty String if there's no
+     * scheduler.
+     */
+    public String getLoadSchedulingReport();
+
+    /**
+     * Accessor method for getting how the library loader's validation
+     * and image processing went.
+     *
+     * @return The library loader's report, or an empty String if there's
+     * no library loader or it had nothing turned on.
+     */
+    public String getLibraryLoaderReport();
+
+    /**
+     * This method forgets all the times and counts so far, but not the
+     * decoded bytes of the sprite types, which are still loaded.
+     */
+    public void reset();
+}
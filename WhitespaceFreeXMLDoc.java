@@ -1,10 +1,22 @@
 package animated_sprite_viewer;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.Schema;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.ext.DefaultHandler2;
 
 /**
  * The WhitespaceFreeXMLDoc class makes our life easier. It stores
@@ -19,6 +31,10 @@ import org.w3c.dom.NodeList;
  */
 public class WhitespaceFreeXMLDoc 
 {
+    // FOR SETTING UP THE STREAMING PARSER
+    private static final String NAMESPACE_PREFIXES_FEATURE = "http://xml.org/sax/features/namespace-prefixes";
+    private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+
     // ROOT OF THE TREE
     private WhitespaceFreeXMLNode root;
 
@@ -63,6 +79,69 @@ public class WhitespaceFreeXMLDoc
         root = newRootNode;
     }    
 
+    /**
+     * This method loads the xmlFile straight into this doc in a single
+     * streaming pass, validating it against the schema as it goes. No
+     * DOM tree is built along the way, and the file is only read once.
+     * The resulting tree is the same as what loadDoc would have built
+     * from a DOM of the same file.
+     * 
+     * @param xmlFile Path and name of the xml file to load.
+     * 
+     * @param schema Compiled schema to validate against while loading.
+     * 
+     * @throws SAXException Thrown if the xml file is not well formed or
+     * does not validate against the schema.
+     * 
+     * @throws IOException Thrown if the xml file can't be read.
+     */
+    public void loadDoc(String xmlFile, Schema schema)
+            throws SAXException, IOException
+    {
+        loadDoc(new InputSource(new File(xmlFile).toURI().toString()), schema);
+    }
+
+    /**
+     * This method loads an xml document straight into this doc in a
+     * single streaming pass, the same way loadDoc does for a file, but
+     * from wherever the source says it is. This is useful when we've
+     * already read the file's contents for some other reason.
+     * 
+     * @param source Where to read the xml document from.
+     * 
+     * @param schema Compiled schema to validate against while loading,
+     * or null to load it without validating.
+     * 
+     * @throws SAXException Thrown if the document is not well formed or
+     * does not validate against the schema.
+     * 
+     * @throws IOException Thrown if the document can't be read.
+     */
+    public void loadDoc(InputSource source, Schema schema)
+            throws SAXException, IOException
+    {
+        // THIS IS JAVA API STUFF, THE PARSER VALIDATES AS IT PARSES
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(true);
+        spf.setSchema(schema);
+        try
+        {
+            // WE WANT xmlns ATTRIBUTES REPORTED, LIKE THE DOM DOES
+            spf.setFeature(NAMESPACE_PREFIXES_FEATURE, true);
+            SAXParser parser = spf.newSAXParser();
+            WhitespaceFreeXMLHandler handler = new WhitespaceFreeXMLHandler();
+            parser.setProperty(LEXICAL_HANDLER_PROPERTY, handler);
+            parser.parse(source, handler);
+            
+            // IF EVERYTHING WORKED THEN KEEP THE WHOLE TREE
+            root = handler.root;
+        }
+        catch(ParserConfigurationException pce)
+        {
+            throw new SAXException(pce);
+        }
+    }
+
     /**
      * This recursive method loads all the necessary data from the nodeToLoadFrom
      * node into the nodeToLoad node. This includes node attributes and children
@@ -136,4 +215,97 @@ public class WhitespaceFreeXMLDoc
             }
         }        
     }
+
+    /**
+     * This handler builds our whitespace free tree from parsing events.
+     * It follows the same rules as loadWhitespaceFreeNode, so a node only
+     * gets data if its one and only child is text, and comments count as
+     * children the same way they do in a DOM.
+     */
+    private static class WhitespaceFreeXMLHandler extends DefaultHandler2
+    {
+        // THE TREE WE'RE BUILDING
+        private WhitespaceFreeXMLNode root;
+        
+        // THE NODES WE'RE CURRENTLY INSIDE OF, THE LAST ONE IS INNERMOST
+        private ArrayList<WhitespaceFreeXMLNode> openNodes = new ArrayList<WhitespaceFreeXMLNode>();
+        
+        // TEXT FOUND SO FAR INSIDE THE INNERMOST NODE
+        private StringBuilder text = new StringBuilder();
+        
+        // TRUE IF THE INNERMOST NODE HAS ANY CHILD THAT ISN'T TEXT
+        private boolean hasNonTextChild;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+            WhitespaceFreeXMLNode node = new WhitespaceFreeXMLNode(qName);
+            for (int i = 0; i < attributes.getLength(); i++)
+            {
+                node.addAttribute(attributes.getQName(i), attributes.getValue(i));
+            }
+            if (openNodes.isEmpty())
+            {
+                root = node;
+            }
+            else
+            {
+                openNodes.get(openNodes.size() - 1).addChild(node);
+            }
+            openNodes.add(node);
+            text.setLength(0);
+            hasNonTextChild = false;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        {
+            WhitespaceFreeXMLNode node = openNodes.remove(openNodes.size() - 1);
+            if (!hasNonTextChild && (text.length() > 0))
+            {
+                node.setData(text.toString().trim());
+            }
+            // THE PARENT NOW HAS AT LEAST ONE ELEMENT CHILD
+            text.setLength(0);
+            hasNonTextChild = true;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            text.append(ch, start, length);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length)
+        {
+            text.append(ch, start, length);
+        }
+
+        @Override
+        public void comment(char[] ch, int start, int length)
+        {
+            hasNonTextChild = true;
+        }
+
+        @Override
+        public void startCDATA()
+        {
+            // THE DOM KEEPS THESE AS THEIR OWN KIND OF NODE
+            hasNonTextChild = true;
+        }
+
+        @Override
+        public void processingInstruction(String target, String data)
+        {
+            hasNonTextChild = true;
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException
+        {
+            // VALIDATION ERRORS ARE JUST AS FATAL AS ANY OTHER FOR US
+            throw e;
+        }
+    }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package animated_sprite_viewer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * The WhitespaceFreeXMLNode class works hand in hand with the corresponding
@@ -10,22 +12,47 @@ import java.util.Iterator;
  * classes make our life easier when dealing with xml documents. XML documents
  * are basically trees, this organizes them formally as such.
  * 
+ * Since a loaded document can have a great many nodes, most of them
+ * leaves, nodes are kept compact. Nodes without children or attributes
+ * all share the same empty storage, node and attribute names are
+ * interned, and small attribute sets are kept in a flat array rather
+ * than a map. Nodes with many children index them by name, so looking
+ * up children of a given type doesn't mean scanning all of them.
+ * 
  * @author  Richard McKenna &
  *          Debugging Enterprises
  * @version 1.0
  */
 public class WhitespaceFreeXMLNode 
 {
+    // SHARED BY ALL NODES WITHOUT CHILDREN OR ATTRIBUTES
+    private static final WhitespaceFreeXMLNode[] NO_CHILDREN = new WhitespaceFreeXMLNode[0];
+    private static final String[] NO_ATTRIBUTES = new String[0];
+    
+    // NODES WITH MORE CHILDREN THAN THIS GET THEM INDEXED BY NAME
+    public static final int CHILD_INDEX_THRESHOLD = 8;
+    
+    // NODES WITH MORE ATTRIBUTES THAN THIS KEEP THEM IN A MAP
+    public static final int FLAT_ATTRIBUTES_LIMIT = 8;
+    
     // NAME OF THIS NODE
     private String name;
     
     // DATA FOR THIS NODE
     private String data;
 
-    // CHILD NODES
-    private ArrayList<WhitespaceFreeXMLNode> children;
+    // CHILD NODES, ONLY THE FIRST numChildren ARE USED
+    private WhitespaceFreeXMLNode[] children;
+    private int numChildren;
+    
+    // CHILD NODES BY NAME, BUILT THE FIRST TIME IT'S NEEDED
+    private volatile HashMap<String, WhitespaceFreeXMLNode[]> childrenByName;
 
-    // ATTRIBUTES
+    // ATTRIBUTES, AS NAME, VALUE PAIRS, UNTIL THERE ARE TOO MANY
+    private String[] flatAttributes;
+    private int numFlatAttributes;
+    
+    // AND AFTER THAT, IN A MAP
     private HashMap<String, String> attributes;
     
     /**
@@ -36,10 +63,14 @@ public class WhitespaceFreeXMLNode
      */
     public WhitespaceFreeXMLNode(String initName)
     {
-        name = initName;
+        name = initName.intern();
         data = "";
-        children = new ArrayList<WhitespaceFreeXMLNode>();
-        attributes = new HashMap<String, String>();
+        children = NO_CHILDREN;
+        numChildren = 0;
+        childrenByName = null;
+        flatAttributes = NO_ATTRIBUTES;
+        numFlatAttributes = 0;
+        attributes = null;
     }
 
     // ACCESSOR METHODS
@@ -61,10 +92,36 @@ public class WhitespaceFreeXMLNode
 
     /**
      * Accessor method for getting all the children nodes of this node.
+     * Removing a child through the iterator removes it from this node.
      * 
      * @return An Iterator for getting each child node of this node.
      */
-    public Iterator<WhitespaceFreeXMLNode> getChildren() { return children.iterator(); }
+    public Iterator<WhitespaceFreeXMLNode> getChildren() { return new ChildIterator(); }
+    
+    /**
+     * Accessor method for getting the number of children of this node.
+     * Together with getChild, this lets one go through all the children
+     * without allocating anything.
+     * 
+     * @return The number of child nodes of this node.
+     */
+    public int getNumChildren() { return numChildren; }
+    
+    /**
+     * Accessor method for getting a child of this node by position.
+     * 
+     * @param index Position of the child, from 0 to getNumChildren() - 1.
+     * 
+     * @return The child node at that position.
+     */
+    public WhitespaceFreeXMLNode getChild(int index)
+    {
+        if ((index < 0) || (index >= numChildren))
+        {
+            throw new IndexOutOfBoundsException("Child " + index + " of " + numChildren);
+        }
+        return children[index];
+    }
     
     /**
      * Accessor method for getting the value of a given attribute for this node.
@@ -75,7 +132,12 @@ public class WhitespaceFreeXMLNode
      */
     public String getAttributeValue(String attributeName)
     {
-        return attributes.get(attributeName);
+        if (attributes != null)
+        {
+            return attributes.get(attributeName);
+        }
+        int i = findFlatAttribute(attributeName);
+        return (i < 0) ? null : flatAttributes[i + 1];
     }
     
     /**
@@ -84,7 +146,14 @@ public class WhitespaceFreeXMLNode
      * 
      * @return An iterator for going through all the attribute names.
      */
-    public Iterator<String> getAttributeNamesIterator() { return attributes.keySet().iterator(); }
+    public Iterator<String> getAttributeNamesIterator()
+    {
+        if (attributes != null)
+        {
+            return attributes.keySet().iterator();
+        }
+        return new FlatAttributeNameIterator();
+    }
 
     /**
      * A search method for returning all the child nodes named type.
@@ -95,23 +164,61 @@ public class WhitespaceFreeXMLNode
      */
     public ArrayList<WhitespaceFreeXMLNode> getChildrenOfType(String type)
     {
-        // WE'LL PUT THE CHILD NODES THAT FIT THE DESCRIPTION IN HERE
+        // IF WE'RE INDEXED, THE MATCHES ARE ALREADY ALL TOGETHER
+        if (numChildren > CHILD_INDEX_THRESHOLD)
+        {
+            WhitespaceFreeXMLNode[] found = getChildIndex().get(type);
+            if (found == null)
+            {
+                return new ArrayList<WhitespaceFreeXMLNode>();
+            }
+            return new ArrayList<WhitespaceFreeXMLNode>(Arrays.asList(found));
+        }
+        
+        // OTHERWISE WE'LL PUT THE CHILD NODES THAT FIT THE DESCRIPTION IN HERE
         ArrayList<WhitespaceFreeXMLNode> foundNodes = new ArrayList<WhitespaceFreeXMLNode>();
         
         // GO THROUGH ALL THE NODES
-        for (WhitespaceFreeXMLNode node : children)
+        for (int i = 0; i < numChildren; i++)
         {
             // IS IT A MATCH?
-            if (node.getName().equals(type))
+            if (children[i].isNamed(type))
             {
                 // YES SO ADD IT
-                foundNodes.add(node);
+                foundNodes.add(children[i]);
             }
         }
         // RETURN THE LIST FULL OF THE FOUND MATCHES
         return foundNodes;
     }
 
+    /**
+     * A search method for counting the child nodes named type. Together
+     * with getChildOfType(type, index), this lets one go through all the
+     * children of a type without allocating anything.
+     * 
+     * @param type The name of the child nodes to count.
+     * 
+     * @return The number of child nodes of this node with a name of type.
+     */
+    public int getNumChildrenOfType(String type)
+    {
+        if (numChildren > CHILD_INDEX_THRESHOLD)
+        {
+            WhitespaceFreeXMLNode[] found = getChildIndex().get(type);
+            return (found == null) ? 0 : found.length;
+        }
+        int count = 0;
+        for (int i = 0; i < numChildren; i++)
+        {
+            if (children[i].isNamed(type))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * A search method for getting a single child node of this node
      * that has a name of type.
@@ -122,11 +229,36 @@ public class WhitespaceFreeXMLNode
      */
     public WhitespaceFreeXMLNode getChildOfType(String type)
     {
-        ArrayList<WhitespaceFreeXMLNode> foundNodes = getChildrenOfType(type);
-        if (foundNodes.size() > 0)
-            return foundNodes.get(0);
-        else
-            return null;
+        return getChildOfType(type, 0);
+    }
+
+    /**
+     * A search method for getting the nth child node of this node
+     * that has a name of type.
+     * 
+     * @param type The name of the child node to look for.
+     * 
+     * @param index Which of the child nodes named type to get, from 0
+     * to getNumChildrenOfType(type) - 1.
+     * 
+     * @return The found child node, or null if there's no such child.
+     */
+    public WhitespaceFreeXMLNode getChildOfType(String type, int index)
+    {
+        if (numChildren > CHILD_INDEX_THRESHOLD)
+        {
+            WhitespaceFreeXMLNode[] found = getChildIndex().get(type);
+            return ((found == null) || (index < 0) || (index >= found.length)) ? null : found[index];
+        }
+        int count = 0;
+        for (int i = 0; i < numChildren; i++)
+        {
+            if (children[i].isNamed(type) && (count++ == index))
+            {
+                return children[i];
+            }
+        }
+        return null;
     }
     
     /**
@@ -136,7 +268,14 @@ public class WhitespaceFreeXMLNode
      */
     public void addChild(WhitespaceFreeXMLNode nodeToAdd)
     {
-        children.add(nodeToAdd);
+        if (numChildren == children.length)
+        {
+            children = Arrays.copyOf(children, Math.max(4, 2 * numChildren));
+        }
+        children[numChildren++] = nodeToAdd;
+        
+        // THE INDEX IS OUT OF DATE NOW
+        childrenByName = null;
     }
 
     /**
@@ -148,7 +287,39 @@ public class WhitespaceFreeXMLNode
      */
     public void addAttribute(String attributeName, String attributeValue)
     {
-        attributes.put(attributeName, attributeValue);
+        if (attributes != null)
+        {
+            attributes.put(attributeName.intern(), attributeValue);
+            return;
+        }
+        
+        // REPLACE IT IF WE ALREADY HAVE IT
+        int i = findFlatAttribute(attributeName);
+        if (i >= 0)
+        {
+            flatAttributes[i + 1] = attributeValue;
+            return;
+        }
+        
+        // TOO MANY TO KEEP FLAT, SO MOVE THEM ALL INTO A MAP
+        if ((numFlatAttributes / 2) == FLAT_ATTRIBUTES_LIMIT)
+        {
+            attributes = new HashMap<String, String>();
+            for (int j = 0; j < numFlatAttributes; j += 2)
+            {
+                attributes.put(flatAttributes[j], flatAttributes[j + 1]);
+            }
+            attributes.put(attributeName.intern(), attributeValue);
+            flatAttributes = NO_ATTRIBUTES;
+            numFlatAttributes = 0;
+            return;
+        }
+        if (numFlatAttributes == flatAttributes.length)
+        {
+            flatAttributes = Arrays.copyOf(flatAttributes, Math.max(2, 2 * numFlatAttributes));
+        }
+        flatAttributes[numFlatAttributes++] = attributeName.intern();
+        flatAttributes[numFlatAttributes++] = attributeValue;
     }
     
     /**
@@ -160,4 +331,163 @@ public class WhitespaceFreeXMLNode
     {
         data = initData;
     }
+    
+    /**
+     * Tests if this node is named type. Names are interned, so most
+     * of the time this doesn't even need to compare characters.
+     */
+    private boolean isNamed(String type)
+    {
+        return (name == type) || name.equals(type);
+    }
+    
+    /**
+     * Finds where the named attribute is in our flat attributes.
+     * 
+     * @return The index of the attribute's name, or -1 if we don't have it.
+     */
+    private int findFlatAttribute(String attributeName)
+    {
+        for (int i = 0; i < numFlatAttributes; i += 2)
+        {
+            String flatName = flatAttributes[i];
+            if ((flatName == attributeName) || flatName.equals(attributeName))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Gets the index of our children by name, building it if needed.
+     */
+    private HashMap<String, WhitespaceFreeXMLNode[]> getChildIndex()
+    {
+        HashMap<String, WhitespaceFreeXMLNode[]> index = childrenByName;
+        if (index == null)
+        {
+            // FIRST COUNT HOW MANY OF EACH NAME THERE ARE
+            HashMap<String, int[]> counts = new HashMap<String, int[]>();
+            for (int i = 0; i < numChildren; i++)
+            {
+                int[] count = counts.get(children[i].name);
+                if (count == null)
+                {
+                    count = new int[1];
+                    counts.put(children[i].name, count);
+                }
+                count[0]++;
+            }
+            
+            // THEN FILL IN EXACTLY SIZED ARRAYS, IN DOCUMENT ORDER
+            index = new HashMap<String, WhitespaceFreeXMLNode[]>();
+            for (int i = 0; i < numChildren; i++)
+            {
+                WhitespaceFreeXMLNode[] named = index.get(children[i].name);
+                int[] count = counts.get(children[i].name);
+                if (named == null)
+                {
+                    named = new WhitespaceFreeXMLNode[count[0]];
+                    index.put(children[i].name, named);
+                    count[0] = 0;
+                }
+                named[count[0]++] = children[i];
+            }
+            
+            // NOTE THAT IF TWO THREADS GET HERE AT ONCE THEY'LL JUST
+            // EACH BUILD THE SAME INDEX, WHICH IS HARMLESS
+            childrenByName = index;
+        }
+        return index;
+    }
+    
+    /**
+     * Goes through our children in order, without copying them.
+     */
+    private class ChildIterator implements Iterator<WhitespaceFreeXMLNode>
+    {
+        private int next = 0;
+        
+        // WHERE THE CHILD next() LAST RETURNED IS, OR -1 IF IT WAS REMOVED
+        private int last = -1;
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < numChildren;
+        }
+
+        @Override
+        public WhitespaceFreeXMLNode next()
+        {
+            if (next >= numChildren)
+            {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            return children[next++];
+        }
+
+        @Override
+        public void remove()
+        {
+            if (last < 0)
+            {
+                throw new IllegalStateException();
+            }
+            System.arraycopy(children, last + 1, children, last, numChildren - last - 1);
+            children[--numChildren] = null;
+            next = last;
+            last = -1;
+            
+            // THE INDEX IS OUT OF DATE NOW
+            childrenByName = null;
+        }
+    }
+    
+    /**
+     * Goes through the names of our flat attributes in order, removing
+     * the whole name and value pair if asked to.
+     */
+    private class FlatAttributeNameIterator implements Iterator<String>
+    {
+        // WHERE THE NEXT NAME IS IN flatAttributes
+        private int next = 0;
+        
+        // WHERE THE NAME next() LAST RETURNED IS, OR -1 IF IT WAS REMOVED
+        private int last = -1;
+
+        @Override
+        public boolean hasNext()
+        {
+            return next < numFlatAttributes;
+        }
+
+        @Override
+        public String next()
+        {
+            if (next >= numFlatAttributes)
+            {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            next += 2;
+            return flatAttributes[last];
+        }
+
+        @Override
+        public void remove()
+        {
+            if (last < 0)
+            {
+                throw new IllegalStateException();
+            }
+            System.arraycopy(flatAttributes, last + 2, flatAttributes, last, numFlatAttributes - last - 2);
+            flatAttributes[--numFlatAttributes] = null;
+            flatAttributes[--numFlatAttributes] = null;
+            next = last;
+            last = -1;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package animated_sprite_viewer.benchmarks;
+
+import static animated_sprite_viewer.AnimatedSpriteXMLLoader.*;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import animated_sprite_viewer.AnimatedSpriteXMLLoader;
+import animated_sprite_viewer.WhitespaceFreeXMLNode;
+import java.util.Iterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The ChildrenOfTypeBenchmark class measures looking up children by
+ * name in trees that are already loaded, which is all the DOM walk of a
+ * sprite type does once its file is read. It covers the many narrow
+ * nodes of the sprite type files, and the single wide node of the
+ * sprite type list, which has a child for every sprite type.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class ChildrenOfTypeBenchmark extends SpriteLibraryBenchmark
+{
+    private WhitespaceFreeXMLNode[] spriteTypeRoots;
+    private WhitespaceFreeXMLNode spriteTypeListRoot;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        AnimatedSpriteXMLLoader xmlLoader = new AnimatedSpriteXMLLoader(null);
+        spriteTypeRoots = new WhitespaceFreeXMLNode[library.getSpriteTypeNames().size()];
+        for (int i = 0; i < spriteTypeRoots.length; i++)
+        {
+            String xmlFile = library.getSpriteTypeFile(library.getSpriteTypeNames().get(i));
+            spriteTypeRoots[i] = xmlLoader.loadXMLDocument(xmlFile, library.getSpriteTypeSchemaFile()).getRoot();
+        }
+        String listFile = library.getPath() + AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE;
+        String listSchemaFile = library.getPath() + AnimatedSpriteViewer.SPRITE_TYPE_LIST_SCHEMA_FILE;
+        spriteTypeListRoot = xmlLoader.loadXMLDocument(listFile, listSchemaFile).getRoot();
+    }
+
+    @Benchmark
+    public void getChildrenOfTypeInSpriteTypes(Blackhole bh)
+    {
+        for (WhitespaceFreeXMLNode root : spriteTypeRoots)
+        {
+            bh.consume(root.getChildOfType(IMAGES_LIST_NODE_NAME).getChildrenOfType(IMAGE_FILE_NODE_NAME));
+            Iterator<WhitespaceFreeXMLNode> states = root.getChildOfType(ANIMATIONS_LIST_NODE_NAME).getChildren();
+            while (states.hasNext())
+            {
+                WhitespaceFreeXMLNode sequence = states.next().getChildOfType(ANIMATION_SEQUENCE_NODE_NAME);
+                bh.consume(sequence.getChildrenOfType(POSE_NODE_NAME));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getChildrenOfTypeInSpriteTypeList(Blackhole bh)
+    {
+        bh.consume(spriteTypeListRoot.getChildrenOfType(SPRITE_TYPE_NODE_NAME));
+    }
+
+    @Benchmark
+    public void getChildOfTypeByIndexInSpriteTypeList(Blackhole bh)
+    {
+        int numSpriteTypes = spriteTypeListRoot.getNumChildrenOfType(SPRITE_TYPE_NODE_NAME);
+        for (int i = 0; i < numSpriteTypes; i++)
+        {
+            bh.consume(spriteTypeListRoot.getChildOfType(SPRITE_TYPE_NODE_NAME, i));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package animated_sprite_viewer.benchmarks;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import animated_sprite_viewer.AnimatedSpriteXMLLoader;
+import animated_sprite_viewer.InvalidXMLFileFormatException;
+import animated_sprite_viewer.SpritePackCompiler;
+import animated_sprite_viewer.SpriteTypeLibraryLoader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Properties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import sprite_renderer.SpriteType;
+
+/**
+ * The LoadSpriteTypesBenchmark class measures the complete loading path
+ * the viewer goes through at startup, by running the viewer's own
+ * SpriteTypeLibraryLoader over the library: reading the sprite type
+ * list, then validating, parsing, and decoding the frames of every
+ * sprite type, through whichever of the loader's optional pieces the
+ * features parameter turns on. Each run starts with a new loader, so
+ * compiling the schemas is part of what's measured, just like it is at
+ * startup.
+ *
+ * The validation manifest, frame disk cache, and sprite pack are made
+ * on the first run and kept for the rest, so what's measured for those
+ * is a startup with them already up to date.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class LoadSpriteTypesBenchmark extends SpriteLibraryBenchmark
+{
+    // WHAT THE LOADER GETS TO USE, SEE FEATURE_PROPERTIES
+    public static final String NO_FEATURES = "none";
+    public static final String PACK_FEATURE = "pack";
+    public static final String ALL_FEATURES = "all";
+
+    // THE VIEWER SETTING EACH FEATURE TURNS ON. ALL OF THEM BUT THE PACK
+    // GO TOGETHER, THE PACK SKIPS EVERYTHING BUT THE CONVERSION ANYWAY
+    public static final String[][] FEATURE_PROPERTIES = {
+        { "streaming",          AnimatedSpriteViewer.LOADER_STREAMING_PROPERTY },
+        { "validationManifest", AnimatedSpriteViewer.VALIDATION_MANIFEST_PROPERTY },
+        { "diskCache",          AnimatedSpriteViewer.DISK_CACHE_PROPERTY },
+        { "compatibleImages",   AnimatedSpriteViewer.COMPATIBLE_IMAGES_PROPERTY },
+        { "dedupImages",        AnimatedSpriteViewer.DEDUPLICATE_IMAGES_PROPERTY },
+        { "atlas",              AnimatedSpriteViewer.ATLAS_PROPERTY }
+    };
+
+    // THE SAME SETTINGS THE VIEWER TAKES AS SYSTEM PROPERTIES
+    @Param({"1", "4"})
+    public int loaderThreads;
+
+    @Param({"none", "streaming", "validationManifest", "diskCache",
+            "compatibleImages", "dedupImages", "atlas", "pack", "all"})
+    public String features;
+
+    // EVERYTHING THE LOADER WRITES, KEPT OUT OF THE LIBRARY SO
+    // THE PACK DOESN'T GO STALE BECAUSE OF IT
+    private File loaderFilesDir;
+
+    // THE SETTINGS EVERY RUN'S LOADER GETS
+    private Properties settings;
+
+    // WHERE THE SPRITE PACK GOES
+    private String packFile;
+
+    @Override
+    protected void setUp() throws IOException, InvalidXMLFileFormatException
+    {
+        loaderFilesDir = Files.createTempDirectory("sprite-library-loader-").toFile();
+        settings = new Properties();
+        settings.setProperty(AnimatedSpriteViewer.LOADER_THREADS_PROPERTY, String.valueOf(loaderThreads));
+        settings.setProperty(AnimatedSpriteViewer.VALIDATION_MANIFEST_FILE_PROPERTY,
+                new File(loaderFilesDir, "validation_manifest.txt").getPath());
+        settings.setProperty(AnimatedSpriteViewer.DISK_CACHE_DIR_PROPERTY,
+                new File(loaderFilesDir, "frame_cache").getPath());
+        for (String[] feature : FEATURE_PROPERTIES)
+        {
+            if (features.equals(ALL_FEATURES) || features.equals(feature[0]))
+            {
+                settings.setProperty(feature[1], "true");
+            }
+        }
+
+        // ONLY THE PACK BENCHMARK GETS A PACK TO LOAD
+        packFile = new File(loaderFilesDir, SpritePackCompiler.DEFAULT_PACK_FILE).getPath();
+        if (features.equals(PACK_FEATURE))
+        {
+            new SpritePackCompiler(new AnimatedSpriteXMLLoader(null)).compile(library.getPath(), packFile);
+        }
+    }
+
+    /**
+     * Deletes everything the loader wrote.
+     *
+     * @throws IOException Thrown if something can't be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void deleteLoaderFiles() throws IOException
+    {
+        SpriteLibrary.deleteDirectory(loaderFilesDir);
+    }
+
+    @Benchmark
+    public HashMap<String, SpriteType> loadSpriteTypes() throws InvalidXMLFileFormatException
+    {
+        // JUST LIKE THE VIEWER, THE PACK IF THERE IS ONE, THE XML IF NOT
+        SpriteTypeLibraryLoader libraryLoader = new SpriteTypeLibraryLoader(new AnimatedSpriteXMLLoader(null), settings);
+        ArrayList<String> spriteTypeNames = new ArrayList<String>();
+        HashMap<String, SpriteType> spriteTypes = new HashMap<String, SpriteType>();
+        if (!libraryLoader.loadSpriteTypePack(library.getPath(), packFile, spriteTypeNames, spriteTypes))
+        {
+            libraryLoader.loadSpriteTypes(library.getPath(), AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE,
+                    spriteTypeNames, spriteTypes);
+        }
+        return spriteTypes;
+    }
+}
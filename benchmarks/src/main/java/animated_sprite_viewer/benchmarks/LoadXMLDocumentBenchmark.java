@@ -0,0 +1,52 @@
+package animated_sprite_viewer.benchmarks;
+
+import animated_sprite_viewer.AnimatedSpriteXMLLoader;
+import animated_sprite_viewer.InvalidXMLFileFormatException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The LoadXMLDocumentBenchmark class measures loading every sprite type
+ * xml file in a library into a WhitespaceFreeXMLDoc, validation included,
+ * both the way AnimatedSpriteXMLLoader.loadXMLDocument does it now, in a
+ * single pass, and the old way through a validated DOM.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class LoadXMLDocumentBenchmark extends SpriteLibraryBenchmark
+{
+    private AnimatedSpriteXMLLoader xmlLoader;
+    private String[] xmlFiles;
+    private String schemaFile;
+
+    @Override
+    protected void setUp()
+    {
+        xmlLoader = new AnimatedSpriteXMLLoader(null);
+        xmlFiles = new String[library.getSpriteTypeNames().size()];
+        for (int i = 0; i < xmlFiles.length; i++)
+        {
+            xmlFiles[i] = library.getSpriteTypeFile(library.getSpriteTypeNames().get(i));
+        }
+        schemaFile = library.getSpriteTypeSchemaFile();
+    }
+
+    @Benchmark
+    public void loadXMLDocument(Blackhole bh) throws InvalidXMLFileFormatException
+    {
+        for (String xmlFile : xmlFiles)
+        {
+            bh.consume(xmlLoader.loadXMLDocument(xmlFile, schemaFile));
+        }
+    }
+
+    @Benchmark
+    public void loadXMLDocumentViaDOM(Blackhole bh) throws InvalidXMLFileFormatException
+    {
+        for (String xmlFile : xmlFiles)
+        {
+            bh.consume(xmlLoader.loadXMLDocumentViaDOM(xmlFile, schemaFile));
+        }
+    }
+}
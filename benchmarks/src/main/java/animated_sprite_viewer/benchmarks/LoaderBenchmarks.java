@@ -0,0 +1,70 @@
+package animated_sprite_viewer.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The LoaderBenchmarks class runs all the loader benchmarks with the GC
+ * profiler on, so every result comes with its allocation rate, and
+ * saves the results as JSON. Results saved before a change to the loader
+ * are the baseline the results after it should be compared against.
+ *
+ * These benchmarks need JMH (jmh-core and jmh-generator-annprocess) and
+ * the sprite renderer on the classpath, with the annotation processor
+ * run over this package, which is what benchmarks/pom.xml sets up.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class LoaderBenchmarks
+{
+    // WHERE THE RESULTS GO IF WE'RE NOT TOLD OTHERWISE
+    public static final String DEFAULT_RESULTS_FILE = "loader-benchmarks.json";
+
+    // ALL THE LOADER BENCHMARKS
+    public static final String[] BENCHMARKS = {
+        ValidateXMLDocBenchmark.class.getSimpleName(),
+        LoadXMLDocumentBenchmark.class.getSimpleName(),
+        WhitespaceFreeXMLDocBenchmark.class.getSimpleName(),
+        ChildrenOfTypeBenchmark.class.getSimpleName(),
+        LoadSpriteTypesBenchmark.class.getSimpleName()
+    };
+
+    /**
+     * Runs the loader benchmarks.
+     *
+     * @param args Optionally, the file to save the results in, and then
+     * the names of the benchmarks to run, all of them if none are given.
+     *
+     * @throws RunnerException Thrown if JMH can't run the benchmarks.
+     */
+    public static void main(String[] args) throws RunnerException
+    {
+        String resultsFile = (args.length > 0) ? args[0] : DEFAULT_RESULTS_FILE;
+        OptionsBuilder options = new OptionsBuilder();
+        if (args.length > 1)
+        {
+            for (int i = 1; i < args.length; i++)
+            {
+                options.include(args[i]);
+            }
+        }
+        else
+        {
+            for (String benchmark : BENCHMARKS)
+            {
+                options.include(benchmark);
+            }
+        }
+        Options opts = options
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultsFile)
+                .build();
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,276 @@
+package animated_sprite_viewer.benchmarks;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import javax.imageio.ImageIO;
+import sprite_renderer.AnimationState;
+
+/**
+ * The SpriteLibrary class generates a synthetic sprite types directory
+ * for the benchmarks to load. It's laid out just like the real one, a
+ * sprite type list, the two schemas, and a directory per sprite type
+ * with its xml file and frames, so every benchmark runs the same code
+ * the viewer does, on a library of whatever size we ask for.
+ *
+ * The frames are small noisy images with some transparent pixels, so
+ * decoding them costs about what real sprite art does.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class SpriteLibrary
+{
+    // THE SIZE OF EACH GENERATED FRAME
+    public static final int FRAME_SIZE = 64;
+
+    // HOW MANY ANIMATION STATES EACH SPRITE TYPE GETS, AT MOST
+    public static final int MAX_ANIMATION_STATES = 4;
+
+    // WHAT THE XML FILES ARE VALIDATED AGAINST, SAME AS THE REAL ONES
+    public static final String SPRITE_TYPE_LIST_SCHEMA =
+              "<?xml version=\"1.0\"?>\n"
+            + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n"
+            + "  <xs:element name=\"sprite_type_list\"><xs:complexType><xs:sequence>\n"
+            + "    <xs:element name=\"sprite_type\" type=\"xs:string\" maxOccurs=\"unbounded\"/>\n"
+            + "  </xs:sequence></xs:complexType></xs:element>\n"
+            + "</xs:schema>\n";
+    public static final String SPRITE_TYPE_SCHEMA =
+              "<?xml version=\"1.0\"?>\n"
+            + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n"
+            + "  <xs:element name=\"sprite_type\"><xs:complexType><xs:sequence>\n"
+            + "    <xs:element name=\"width\" type=\"xs:int\"/>\n"
+            + "    <xs:element name=\"height\" type=\"xs:int\"/>\n"
+            + "    <xs:element name=\"images_list\"><xs:complexType><xs:sequence>\n"
+            + "      <xs:element name=\"image_file\" maxOccurs=\"unbounded\"><xs:complexType>\n"
+            + "        <xs:attribute name=\"id\" type=\"xs:int\" use=\"required\"/>\n"
+            + "        <xs:attribute name=\"file_name\" type=\"xs:string\" use=\"required\"/>\n"
+            + "      </xs:complexType></xs:element>\n"
+            + "    </xs:sequence></xs:complexType></xs:element>\n"
+            + "    <xs:element name=\"animations_list\"><xs:complexType><xs:sequence>\n"
+            + "      <xs:element name=\"animation_state\" maxOccurs=\"unbounded\"><xs:complexType><xs:sequence>\n"
+            + "        <xs:element name=\"state\" type=\"xs:string\"/>\n"
+            + "        <xs:element name=\"animation_sequence\"><xs:complexType><xs:sequence>\n"
+            + "          <xs:element name=\"pose\" maxOccurs=\"unbounded\"><xs:complexType>\n"
+            + "            <xs:attribute name=\"image_id\" type=\"xs:int\" use=\"required\"/>\n"
+            + "            <xs:attribute name=\"duration\" type=\"xs:int\" use=\"required\"/>\n"
+            + "          </xs:complexType></xs:element>\n"
+            + "        </xs:sequence></xs:complexType></xs:element>\n"
+            + "      </xs:sequence></xs:complexType></xs:element>\n"
+            + "    </xs:sequence></xs:complexType></xs:element>\n"
+            + "  </xs:sequence></xs:complexType></xs:element>\n"
+            + "</xs:schema>\n";
+
+    // WHERE THE LIBRARY LIVES, WITH A TRAILING SEPARATOR LIKE
+    // AnimatedSpriteViewer.SPRITES_DATA_PATH HAS
+    private File directory;
+    private String path;
+
+    // THE NAMES OF ALL THE GENERATED SPRITE TYPES, IN LIST ORDER
+    private ArrayList<String> spriteTypeNames;
+
+    /**
+     * Constructor for this library, it generates the whole thing in a
+     * new temporary directory.
+     *
+     * @param numSpriteTypes How many sprite types to generate.
+     *
+     * @param framesPerSpriteType How many frames each sprite type has.
+     *
+     * @param posesPerState How many poses each animation state has.
+     *
+     * @throws IOException Thrown if the library can't be written.
+     */
+    public SpriteLibrary(int numSpriteTypes, int framesPerSpriteType, int posesPerState)
+            throws IOException
+    {
+        directory = Files.createTempDirectory("sprite-library-").toFile();
+        path = directory.getPath() + File.separator;
+        spriteTypeNames = new ArrayList<String>();
+        for (int i = 0; i < numSpriteTypes; i++)
+        {
+            spriteTypeNames.add("sprite_type_" + i);
+        }
+        writeText(AnimatedSpriteViewer.SPRITE_TYPE_LIST_SCHEMA_FILE, SPRITE_TYPE_LIST_SCHEMA);
+        writeText(AnimatedSpriteViewer.SPRITE_TYPE_SCHEMA_FILE, SPRITE_TYPE_SCHEMA);
+        writeSpriteTypeList();
+        for (int i = 0; i < numSpriteTypes; i++)
+        {
+            writeSpriteType(i, framesPerSpriteType, posesPerState);
+        }
+    }
+
+    // ACCESSOR METHODS
+
+    /**
+     * Accessor method for getting the path to this library.
+     *
+     * @return The library's directory, ending with a separator.
+     */
+    public String getPath() { return path; }
+
+    /**
+     * Accessor method for getting the names of the sprite types.
+     *
+     * @return The names of all the sprite types, in list order.
+     */
+    public ArrayList<String> getSpriteTypeNames() { return spriteTypeNames; }
+
+    /**
+     * This method builds the path and name of a sprite type's xml file.
+     *
+     * @param spriteTypeName The sprite type whose xml file we want.
+     *
+     * @return Where that sprite type's xml file is.
+     */
+    public String getSpriteTypeFile(String spriteTypeName)
+    {
+        return path + spriteTypeName + '/' + spriteTypeName + ".xml";
+    }
+
+    /**
+     * This method builds the path and name of the sprite type schema.
+     *
+     * @return Where the sprite type schema is.
+     */
+    public String getSpriteTypeSchemaFile()
+    {
+        return path + AnimatedSpriteViewer.SPRITE_TYPE_SCHEMA_FILE;
+    }
+
+    /**
+     * This method deletes the whole library.
+     *
+     * @throws IOException Thrown if something can't be deleted.
+     */
+    public void delete() throws IOException
+    {
+        deleteDirectory(directory);
+    }
+
+    /**
+     * This method deletes a directory and everything in it.
+     *
+     * @param dir The directory to delete.
+     *
+     * @throws IOException Thrown if something can't be deleted.
+     */
+    public static void deleteDirectory(File dir) throws IOException
+    {
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException ioe) throws IOException
+            {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Writes the list of all the sprite types.
+     */
+    private void writeSpriteTypeList() throws IOException
+    {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<sprite_type_list>\n");
+        for (String name : spriteTypeNames)
+        {
+            xml.append("  <sprite_type>").append(name).append("</sprite_type>\n");
+        }
+        xml.append("</sprite_type_list>\n");
+        writeText(AnimatedSpriteViewer.SPRITE_TYPE_LIST_FILE, xml.toString());
+    }
+
+    /**
+     * Writes one sprite type's directory, its frames, and its xml file.
+     */
+    private void writeSpriteType(int index, int numFrames, int posesPerState) throws IOException
+    {
+        String name = spriteTypeNames.get(index);
+        new File(directory, name).mkdirs();
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<sprite_type>\n");
+        xml.append("  <width>").append(FRAME_SIZE).append("</width>\n");
+        xml.append("  <height>").append(FRAME_SIZE).append("</height>\n");
+
+        // ALL THE FRAMES
+        xml.append("  <images_list>\n");
+        for (int i = 0; i < numFrames; i++)
+        {
+            String fileName = "frame_" + i + ".png";
+            ImageIO.write(makeFrame(index * numFrames + i), "png", new File(directory, name + '/' + fileName));
+            xml.append("    <image_file id=\"").append(i).append("\" file_name=\"").append(fileName).append("\"/>\n");
+        }
+        xml.append("  </images_list>\n");
+
+        // AND THE ANIMATION STATES, WHATEVER ONES THE RENDERER HAS
+        xml.append("  <animations_list>\n");
+        AnimationState[] states = AnimationState.values();
+        for (int s = 0; s < Math.min(states.length, MAX_ANIMATION_STATES); s++)
+        {
+            xml.append("    <animation_state>\n");
+            xml.append("      <state>").append(states[s].name()).append("</state>\n");
+            xml.append("      <animation_sequence>\n");
+            for (int p = 0; p < posesPerState; p++)
+            {
+                xml.append("        <pose image_id=\"").append((s + p) % numFrames)
+                   .append("\" duration=\"").append(5 + (p % 10)).append("\"/>\n");
+            }
+            xml.append("      </animation_sequence>\n");
+            xml.append("    </animation_state>\n");
+        }
+        xml.append("  </animations_list>\n");
+        xml.append("</sprite_type>\n");
+        writeText(name + '/' + name + ".xml", xml.toString());
+    }
+
+    /**
+     * Makes a frame of noise with a transparent border, seeded so the
+     * same library is generated every time.
+     */
+    private BufferedImage makeFrame(int seed)
+    {
+        BufferedImage frame = new BufferedImage(FRAME_SIZE, FRAME_SIZE, BufferedImage.TYPE_INT_ARGB);
+        int random = seed * 1103515245 + 12345;
+        for (int y = 4; y < FRAME_SIZE - 4; y++)
+        {
+            for (int x = 4; x < FRAME_SIZE - 4; x++)
+            {
+                random = random * 1103515245 + 12345;
+                frame.setRGB(x, y, 0xFF000000 | (random >>> 8));
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Writes a text file into the library.
+     */
+    private void writeText(String fileName, String text) throws IOException
+    {
+        PrintWriter out = new PrintWriter(new File(directory, fileName), "UTF-8");
+        try
+        {
+            out.print(text);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package animated_sprite_viewer.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The SpriteLibraryBenchmark class is the base of all our loader
+ * benchmarks. It generates a sprite library of each size we benchmark
+ * before the runs at that size, and deletes it afterwards, and it sets
+ * the modes and run lengths all the loader benchmarks share, so their
+ * results can be compared with each other.
+ *
+ * Every benchmark method does its work over the whole library, so
+ * throughput is in libraries per second, and average time is per
+ * library.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public abstract class SpriteLibraryBenchmark
+{
+    // THE SIZES OF LIBRARY WE BENCHMARK, IN SPRITE TYPES
+    @Param({"10", "100", "1000"})
+    public int spriteTypes;
+
+    // AND WHAT EACH SPRITE TYPE HAS IN IT
+    @Param({"8"})
+    public int framesPerSpriteType;
+
+    @Param({"16"})
+    public int posesPerState;
+
+    // THE GENERATED LIBRARY
+    protected SpriteLibrary library;
+
+    /**
+     * Generates the library, then lets the benchmark get ready to run.
+     *
+     * @throws Exception Thrown if the library or anything the benchmark
+     * needs can't be set up.
+     */
+    @Setup(Level.Trial)
+    public void setUpLibrary() throws Exception
+    {
+        library = new SpriteLibrary(spriteTypes, framesPerSpriteType, posesPerState);
+        setUp();
+    }
+
+    /**
+     * Deletes the library.
+     *
+     * @throws IOException Thrown if the library can't be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void deleteLibrary() throws IOException
+    {
+        library.delete();
+    }
+
+    /**
+     * Called once the library exists, for whatever else the benchmark
+     * needs before it runs. Nothing is timed in here.
+     *
+     * @throws Exception Thrown if the benchmark can't be set up.
+     */
+    protected abstract void setUp() throws Exception;
+}
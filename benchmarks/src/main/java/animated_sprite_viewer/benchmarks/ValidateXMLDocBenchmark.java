@@ -0,0 +1,53 @@
+package animated_sprite_viewer.benchmarks;
+
+import animated_sprite_viewer.AnimatedSpriteXMLLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The ValidateXMLDocBenchmark class measures validating every sprite
+ * type xml file in a library with AnimatedSpriteXMLLoader.validateXMLDoc,
+ * both with the schema already compiled, as it is for all but the first
+ * sprite type, and compiling it again for every library, as it was
+ * before schemas were cached.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class ValidateXMLDocBenchmark extends SpriteLibraryBenchmark
+{
+    private AnimatedSpriteXMLLoader xmlLoader;
+    private String[] xmlFiles;
+    private String schemaFile;
+
+    @Override
+    protected void setUp()
+    {
+        xmlLoader = new AnimatedSpriteXMLLoader(null);
+        xmlFiles = new String[library.getSpriteTypeNames().size()];
+        for (int i = 0; i < xmlFiles.length; i++)
+        {
+            xmlFiles[i] = library.getSpriteTypeFile(library.getSpriteTypeNames().get(i));
+        }
+        schemaFile = library.getSpriteTypeSchemaFile();
+    }
+
+    @Benchmark
+    public void validateWithCachedSchema(Blackhole bh)
+    {
+        for (String xmlFile : xmlFiles)
+        {
+            bh.consume(xmlLoader.validateXMLDoc(xmlFile, schemaFile));
+        }
+    }
+
+    @Benchmark
+    public void validateWithColdSchema(Blackhole bh)
+    {
+        xmlLoader.getSchemaCache().clear();
+        for (String xmlFile : xmlFiles)
+        {
+            bh.consume(xmlLoader.validateXMLDoc(xmlFile, schemaFile));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package animated_sprite_viewer.benchmarks;
+
+import animated_sprite_viewer.AnimatedSpriteXMLLoader;
+import animated_sprite_viewer.WhitespaceFreeXMLDoc;
+import java.io.IOException;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.validation.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * The WhitespaceFreeXMLDocBenchmark class measures the two ways of
+ * filling a WhitespaceFreeXMLDoc on their own, without any of the
+ * loader around them: WhitespaceFreeXMLDoc.loadDoc straight from a
+ * file, with and without a schema to validate against, and loadDoc
+ * from DOM documents that have already been parsed.
+ *
+ * @author  Debugging Enterprises
+ * @version 1.0
+ */
+public class WhitespaceFreeXMLDocBenchmark extends SpriteLibraryBenchmark
+{
+    private String[] xmlFiles;
+    private Schema schema;
+    private Document[] domDocs;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        AnimatedSpriteXMLLoader xmlLoader = new AnimatedSpriteXMLLoader(null);
+        schema = xmlLoader.getSchemaCache().getSchema(library.getSpriteTypeSchemaFile());
+        xmlFiles = new String[library.getSpriteTypeNames().size()];
+        domDocs = new Document[xmlFiles.length];
+        DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        for (int i = 0; i < xmlFiles.length; i++)
+        {
+            xmlFiles[i] = library.getSpriteTypeFile(library.getSpriteTypeNames().get(i));
+            domDocs[i] = db.parse(xmlFiles[i]);
+        }
+    }
+
+    @Benchmark
+    public void loadDocFromFile(Blackhole bh) throws SAXException, IOException
+    {
+        for (String xmlFile : xmlFiles)
+        {
+            WhitespaceFreeXMLDoc doc = new WhitespaceFreeXMLDoc();
+            doc.loadDoc(xmlFile, schema);
+            bh.consume(doc.getRoot());
+        }
+    }
+
+    @Benchmark
+    public void loadDocFromFileWithoutSchema(Blackhole bh) throws SAXException, IOException
+    {
+        for (String xmlFile : xmlFiles)
+        {
+            WhitespaceFreeXMLDoc doc = new WhitespaceFreeXMLDoc();
+            doc.loadDoc(xmlFile, null);
+            bh.consume(doc.getRoot());
+        }
+    }
+
+    @Benchmark
+    public void loadDocFromDOM(Blackhole bh)
+    {
+        for (Document domDoc : domDocs)
+        {
+            WhitespaceFreeXMLDoc doc = new WhitespaceFreeXMLDoc();
+            doc.loadDoc(domDoc);
+            bh.consume(doc.getRoot());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.PerformanceHUD;
+import animated_sprite_viewer.PoseScrubber;
+import animated_sprite_viewer.SpriteTypeFrames;
+import animated_sprite_viewer.ViewerMetrics;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.util.HashMap;
+import javax.swing.JComboBox;
+import javax.swing.JList;
+import sprite_renderer.AnimationState;
+import sprite_renderer.SpriteType;
+
+/**
+ * This event listener implements Item Listener to handle ItemEvents
+ * which should occur when a selection changes in the ComboBox
+ * We want to do the following when this occurs:
+ * 
+ * -get the animation state just selected
+ * -get the sprite type currently selected
+ * -find the images and poses that were loaded for that sprite type
+ * -give them to the scrubber so the user can step through the animation
+ * -tell the HUD, so it can follow the animation and show its memory
+ * 
+ * @author Debugging Enterprises
+ * 
+ * @version 1.0
+ */
+public class AnimationFramesListener implements ItemListener {
+
+    private PoseScrubber scrubber;
+    private PerformanceHUD hud;
+    private JList<String> list;
+    private HashMap<String, SpriteType> map;
+    private static final String SELECTION_DEFAULT = "Select Animation State";
+
+    /**
+     * Default Constructor
+     * 
+     * @param ps The PoseScrubber that steps through the selected animation
+     * @param ph The PerformanceHUD drawn over the renderer
+     * @param jl The JList of SpriteTypes
+     * @param hmap The HashMap that stores the SpriteTypes
+     */
+    public AnimationFramesListener(PoseScrubber ps, PerformanceHUD ph, JList<String> jl, HashMap<String, SpriteType> hmap)
+    {
+        scrubber = ps;
+        hud = ph;
+        list = jl;
+        map = hmap;
+    }
+
+    @Override
+    /**
+     * give the selected sprite type's frames and selected animation state
+     * to both the scrubber and the HUD, or clear them both when no
+     * animation state is selected
+     */
+    public void itemStateChanged(ItemEvent e) 
+    {
+        if (e.getStateChange() != ItemEvent.SELECTED) {
+            return;
+        }
+        Object itemSelected = ((JComboBox)e.getSource()).getModel().getSelectedItem();
+        //"Select Animation State" means there's nothing being animated
+        if (itemSelected == null || itemSelected.toString().equals(SELECTION_DEFAULT) || list.getSelectedValue() == null) {
+            scrubber.setAnimation(null, null);
+            hud.setAnimation(null, null, 0);
+            return;
+        }
+        String name = list.getSelectedValue().toString();
+        SpriteType type = map.get(name);
+        //the frames are only there if the sprite type came from our loaders
+        SpriteTypeFrames frames = (type == null) ? null : SpriteTypeFrames.getFrames(type);
+        AnimationState state = AnimationState.valueOf(itemSelected.toString());
+        scrubber.setAnimation(frames, state);
+        hud.setAnimation(frames, state, ViewerMetrics.getMetrics().getDecodedBytes(name));
+    }
+}
@@ -1,5 +1,6 @@
 package animated_sprite_viewer.events;
 
+import animated_sprite_viewer.ViewerMetrics;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.util.ArrayList;
@@ -19,6 +20,7 @@ import sprite_renderer.*;
  * -clear the sprite list (ArrayList)
  * -add it to the sprite list (ArrayList)
  * -start the scene renderer
+ * -draw the first frame right away, and record how long it took to get there
  * 
  * @author Andrew Ireland
  * 
@@ -57,6 +59,7 @@ public class AnimationStateSelectedListener implements ItemListener {
     public void itemStateChanged(ItemEvent e) 
     {
         if(e.getStateChange() == ItemEvent.SELECTED) {
+        long startTime = System.nanoTime();
         String itemSelected = ((JComboBox)e.getSource()).getModel().getSelectedItem().toString();
         //We want to prevent passing "Select Animation State" into the new Sprite
         if (!itemSelected.equals(SELECTION_DEFAULT)) {
@@ -71,6 +74,9 @@ public class AnimationStateSelectedListener implements ItemListener {
             }
             renderer.unpauseScene();
             lamefix = false;
+            //don't wait for the renderer to get around to it
+            renderer.paintImmediately(0, 0, renderer.getWidth(), renderer.getHeight());
+            ViewerMetrics.getMetrics().recordSelectionToFirstFrame(System.nanoTime() - startTime);
             }
         }
     }
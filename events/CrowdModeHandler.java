@@ -0,0 +1,65 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.AnimatedSpriteViewer;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.JCheckBox;
+import javax.swing.JSpinner;
+import javax.swing.JToggleButton;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * This handler turns crowd mode on and off when the crowd button is
+ * pressed, and makes a new crowd whenever the crowd size or the
+ * selected type only box is changed while crowd mode is on.
+ * 
+ * @author Debugging Enterprises
+ */
+public class CrowdModeHandler implements ActionListener, ChangeListener
+{
+
+    private AnimatedSpriteViewer viewer;
+    private JToggleButton crowdButton;
+    private JSpinner sizeSpinner;
+    private JCheckBox selectedOnlyBox;
+    
+    /**
+     * Default constructor
+     * 
+     * @param asv The viewer whose crowd mode we control
+     * @param tb The button that turns crowd mode on and off
+     * @param sp The spinner with how many sprites to put in the crowd
+     * @param cb The box for only using the selected sprite type
+     */
+    public CrowdModeHandler(AnimatedSpriteViewer asv, JToggleButton tb, JSpinner sp, JCheckBox cb) {
+        viewer = asv;
+        crowdButton = tb;
+        sizeSpinner = sp;
+        selectedOnlyBox = cb;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        //the box only matters while there's a crowd
+        if (e.getSource() == selectedOnlyBox && !crowdButton.isSelected()) {
+            return;
+        }
+        updateCrowd();
+    }
+
+    @Override
+    public void stateChanged(ChangeEvent e) {
+        if (crowdButton.isSelected()) {
+            updateCrowd();
+        }
+    }
+    
+    /**
+     * tells the viewer what the crowd should look like now
+     */
+    private void updateCrowd() {
+        int size = ((Number)sizeSpinner.getValue()).intValue();
+        viewer.setCrowdMode(crowdButton.isSelected(), size, selectedOnlyBox.isSelected());
+    }
+}
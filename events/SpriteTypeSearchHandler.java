@@ -0,0 +1,59 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.SpriteTypeListModel;
+import javax.swing.JList;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * As the user types in the search field, this handler will
+ * narrow down the sprite type list to the types that match,
+ * keeping the selected type selected if it still shows
+ * 
+ * @author Debugging Enterprises
+ */
+public class SpriteTypeSearchHandler implements DocumentListener 
+{
+
+    private JList<String> spriteTypesList;
+    private SpriteTypeListModel spriteTypesListModel;
+    
+    public SpriteTypeSearchHandler(JList<String> stl, SpriteTypeListModel stlm) {
+        spriteTypesList = stl;
+        spriteTypesListModel = stlm;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        search(e.getDocument());
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        search(e.getDocument());
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        //only the text matters, not how it looks
+    }
+    
+    private void search(Document doc) {
+        String text;
+        try {
+            text = doc.getText(0, doc.getLength());
+        } catch (BadLocationException ble) {
+            return;
+        }
+        Object selected = spriteTypesList.getSelectedValue();
+        spriteTypesListModel.setFilter(text.trim());
+        
+        //changing the filter clears the selection, so put it back if it's still there
+        if (selected != null) {
+            spriteTypesList.setSelectedValue(selected, true);
+        }
+    }
+    
+}
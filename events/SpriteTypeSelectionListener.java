@@ -1,11 +1,18 @@
 package animated_sprite_viewer.events;
 
+import animated_sprite_viewer.InvalidXMLFileFormatException;
+import animated_sprite_viewer.SpriteTypeBuilder;
+import animated_sprite_viewer.SpriteTypeCache;
+import animated_sprite_viewer.SpriteTypeLoadScheduler;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JComboBox;
 import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import sprite_renderer.AnimationState;
@@ -21,13 +28,19 @@ import sprite_renderer.SpriteType;
  */
 public class SpriteTypeSelectionListener implements ListSelectionListener {
 
-    private DefaultComboBoxModel model;
+    private DefaultComboBoxModel<Object> model;
     private HashMap<String, SpriteType> spriteTypes;
     private ArrayList<Sprite> sprites;
-    private JComboBox combobox;
+    private JComboBox<Object> combobox;
+    //only used when sprite types are loaded lazily, may be null
+    private SpriteTypeCache cache;
+    //only used when sprite types are loaded in the background, may be null
+    private SpriteTypeLoadScheduler scheduler;
     private static final String SELECTION_DEFAULT = "Select Animation State";
-    //DEBUG
-    private int count;
+    //the sprite type whose animation states are in the combobox
+    private String shownSpriteTypeName;
+    //the sprite type selected before it was loaded, we show it once it is
+    private String pendingSpriteTypeName;
     
     /**
      * Default constructor
@@ -36,13 +49,47 @@ public class SpriteTypeSelectionListener implements ListSelectionListener {
      * @param st The hash map of sprite types
      * @param sl The sprite list of rendered sprites
      */
-    public SpriteTypeSelectionListener(JComboBox cb, HashMap<String,SpriteType> st, ArrayList<Sprite> sl) 
+    public SpriteTypeSelectionListener(JComboBox<Object> cb, HashMap<String,SpriteType> st, ArrayList<Sprite> sl) 
+    {
+        this(cb, st, sl, null);
+    }
+    
+    /**
+     * Constructor for when sprite types are loaded lazily, the selected
+     * sprite type is loaded through the cache in the background when it
+     * isn't cached, and shown once it's loaded
+     * 
+     * @param cb The combobox in which to add the animation states
+     * @param st The hash map of sprite types
+     * @param sl The sprite list of rendered sprites
+     * @param stc The cache that loads sprite types on demand, may be null
+     */
+    public SpriteTypeSelectionListener(JComboBox<Object> cb, HashMap<String,SpriteType> st, ArrayList<Sprite> sl, SpriteTypeCache stc) 
+    {
+        this(cb, st, sl, stc, null);
+    }
+    
+    /**
+     * Constructor for when sprite types are loaded in the background, the
+     * selected sprite type is moved to the front of the scheduler's queue
+     * and shown once it's loaded, see spriteTypeLoaded
+     * 
+     * @param cb The combobox in which to add the animation states
+     * @param st The hash map of sprite types
+     * @param sl The sprite list of rendered sprites
+     * @param stc The cache that loads sprite types on demand, may be null
+     * @param stls The scheduler loading sprite types in the background, may be null
+     */
+    public SpriteTypeSelectionListener(JComboBox<Object> cb, HashMap<String,SpriteType> st, ArrayList<Sprite> sl, SpriteTypeCache stc, SpriteTypeLoadScheduler stls) 
     {
         combobox = cb;
-        model = (DefaultComboBoxModel) cb.getModel();
+        model = (DefaultComboBoxModel<Object>) cb.getModel();
         spriteTypes = st;
         sprites = sl;
-        count=0;
+        cache = stc;
+        scheduler = stls;
+        shownSpriteTypeName = null;
+        pendingSpriteTypeName = null;
     }
     
     @Override
@@ -52,12 +99,82 @@ public class SpriteTypeSelectionListener implements ListSelectionListener {
      */
     public void valueChanged(ListSelectionEvent e) 
     {
-        //This method gets called twice when a new selection is made so we only
-        //want this to run once per new selection
-        count++;
-        if (count%2==1) {
-        String spriteTypeName = ((JList)e.getSource()).getSelectedValue().toString();
+        //This method gets called twice when a new selection is made, and
+        //again when sprite types are added to or removed from the list, so
+        //we only want this to run once the selected sprite type has changed
+        Object selected = ((JList)e.getSource()).getSelectedValue();
+        if (e.getValueIsAdjusting() || selected == null) {
+            return;
+        }
+        String spriteTypeName = selected.toString();
+        if (spriteTypeName.equals(shownSpriteTypeName)) {
+            return;
+        }
+        //load it next if it isn't yet, and its neighbors after it
+        if (scheduler != null) {
+            scheduler.demand(spriteTypeName);
+        }
+        //loading lazily, anything not cached is loaded off the event thread
+        if (cache != null && !cache.contains(spriteTypeName)) {
+            showPending(spriteTypeName);
+            loadSpriteType(spriteTypeName);
+            return;
+        }
+        SpriteType spriteType = getSpriteType(spriteTypeName);
+        if (spriteType == null) {
+            if (scheduler != null) {
+                //nothing to show until it's loaded
+                showPending(spriteTypeName);
+            }
+            return;
+        }
+        showAnimationStates(spriteTypeName, spriteType);
+    }
+    
+    /**
+     * this should be called whenever a sprite type finishes loading in
+     * the background, if it's the one that's selected its animation
+     * states are shown now
+     * 
+     * @param spriteTypeName The name of the sprite type just loaded
+     */
+    public void spriteTypeLoaded(String spriteTypeName)
+    {
+        if (!spriteTypeName.equals(pendingSpriteTypeName)) {
+            return;
+        }
         SpriteType spriteType = spriteTypes.get(spriteTypeName);
+        if (spriteType != null) {
+            showAnimationStates(spriteTypeName, spriteType);
+        }
+    }
+    
+    /**
+     * empties and disables the combobox until the selected sprite type
+     * is loaded
+     * 
+     * @param spriteTypeName The name of the sprite type being loaded
+     */
+    private void showPending(String spriteTypeName)
+    {
+        pendingSpriteTypeName = spriteTypeName;
+        shownSpriteTypeName = null;
+        model.removeAllElements();
+        model.addElement(SELECTION_DEFAULT);
+        sprites.clear();
+        combobox.setEnabled(false);
+    }
+    
+    /**
+     * fills the combobox with the sprite type's animation states
+     * 
+     * @param spriteTypeName The name of the sprite type to show
+     * @param spriteType The sprite type to show
+     */
+    private void showAnimationStates(String spriteTypeName, SpriteType spriteType)
+    {
+        pendingSpriteTypeName = null;
+        shownSpriteTypeName = spriteTypeName;
         //Remove all but "Select Animation State" from combobox
         model.removeAllElements();
         model.addElement(SELECTION_DEFAULT);
@@ -68,7 +185,69 @@ public class SpriteTypeSelectionListener implements ListSelectionListener {
         }
         sprites.clear();
         combobox.setEnabled(true);
-        }
     }
     
+    /**
+     * forgets which sprite type's animation states are in the combobox,
+     * so that selecting any sprite type fills it again, this should be
+     * called whenever the combobox is cleared by someone else
+     */
+    public void reset()
+    {
+        shownSpriteTypeName = null;
+        pendingSpriteTypeName = null;
+    }
+    
+    /**
+     * reads the sprite type in the background, then puts it in the cache
+     * and shows its animation states if it's still the one selected
+     * 
+     * @param spriteTypeName The name of the selected sprite type
+     */
+    private void loadSpriteType(final String spriteTypeName)
+    {
+        new SwingWorker<SpriteTypeBuilder, Void>() {
+            @Override
+            protected SpriteTypeBuilder doInBackground() throws InvalidXMLFileFormatException {
+                return cache.read(spriteTypeName);
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    //the cache shares its map with everyone on this thread
+                    SpriteType spriteType = cache.add(spriteTypeName, get());
+                    if (spriteTypeName.equals(pendingSpriteTypeName)) {
+                        showAnimationStates(spriteTypeName, spriteType);
+                    }
+                } catch (ExecutionException ee) {
+                    if (spriteTypeName.equals(pendingSpriteTypeName)) {
+                        pendingSpriteTypeName = null;
+                        JOptionPane.showMessageDialog(combobox, ee.getCause().toString());
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * gets the sprite type, through the cache if we're loading lazily
+     * 
+     * @param spriteTypeName The name of the selected sprite type
+     * @return The sprite type, or null if it could not be loaded
+     */
+    private SpriteType getSpriteType(String spriteTypeName)
+    {
+        if (cache == null) {
+            return spriteTypes.get(spriteTypeName);
+        }
+        try {
+            return cache.get(spriteTypeName);
+        } catch (InvalidXMLFileFormatException ixffe) {
+            JOptionPane.showMessageDialog(combobox, ixffe.toString());
+            return null;
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package animated_sprite_viewer.events;
+
+import animated_sprite_viewer.PerformanceHUD;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.AbstractButton;
+
+/**
+ * When the HUD button is toggled, this handler will
+ * show or hide the performance HUD over the renderer
+ * 
+ * @author Debugging Enterprises
+ */
+public class ToggleHUDHandler implements ActionListener 
+{
+
+    private PerformanceHUD hud;
+    
+    public ToggleHUDHandler(PerformanceHUD ph) {
+        hud = ph;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        //The button stays pressed for as long as the HUD is showing
+        hud.setShowing(((AbstractButton)e.getSource()).isSelected());
+    }
+    
+    
+}